@@ -0,0 +1,87 @@
+package br.edu.ufpr.hospital.autenticacao.config;
+
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.tracing.ConditionalOnEnabledTracing;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Exportação local dos spans do Micrometer Tracing (ponte OpenTelemetry)
+ * Cada lote de spans é gravado em OTLP JSON, um objeto ResourceSpans por linha,
+ * num arquivo rotativo, para inspecionar os traces sem um coletor externo. O
+ * contexto (traceparent W3C) é propagado nas chamadas HTTP entre os serviços,
+ * então o mesmo traceId aparece nos arquivos de ms-autenticacao, ms-consulta e
+ * ms-paciente
+ */
+@Configuration
+@ConditionalOnEnabledTracing
+@Slf4j
+public class RastreamentoConfig {
+
+    private static final int TAMANHO_MAXIMO_ARQUIVO = 50 * 1024 * 1024;
+    private static final int ARQUIVOS_MANTIDOS = 5;
+
+    // O exportador OTLP JSON escreve no java.util.logging com este nome de logger;
+    // a referência forte evita que o logger (e o handler) seja coletado
+    private static final Logger LOGGER_OTLP = Logger.getLogger(OtlpJsonLoggingSpanExporter.class.getName());
+
+    @Bean
+    @ConditionalOnProperty(name = "rastreamento.arquivo.habilitado", havingValue = "true", matchIfMissing = true)
+    public SpanExporter exportadorSpansArquivo(
+            @Value("${rastreamento.arquivo.caminho:traces/${spring.application.name}-spans.%g.jsonl}") String caminho)
+            throws IOException {
+        Path arquivo = Path.of(caminho).toAbsolutePath();
+        Files.createDirectories(arquivo.getParent());
+
+        FileHandler handler = new FileHandler(arquivo.toString(), TAMANHO_MAXIMO_ARQUIVO, ARQUIVOS_MANTIDOS, true);
+        handler.setEncoding("UTF-8");
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord registro) {
+                return registro.getMessage() + System.lineSeparator();
+            }
+        });
+        LOGGER_OTLP.setUseParentHandlers(false);
+        LOGGER_OTLP.setLevel(Level.INFO);
+        LOGGER_OTLP.addHandler(handler);
+        log.info("Spans de rastreamento exportados em OTLP JSON para {}", arquivo);
+
+        SpanExporter otlpJson = OtlpJsonLoggingSpanExporter.create();
+        return new SpanExporter() {
+            @Override
+            public CompletableResultCode export(Collection<SpanData> spans) {
+                return otlpJson.export(spans);
+            }
+
+            @Override
+            public CompletableResultCode flush() {
+                handler.flush();
+                return otlpJson.flush();
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                CompletableResultCode resultado = otlpJson.shutdown();
+                LOGGER_OTLP.removeHandler(handler);
+                handler.close();
+                return resultado;
+            }
+        };
+    }
+}
@@ -15,6 +15,8 @@ import br.edu.ufpr.hospital.autenticacao.model.UsuarioModel;
 import br.edu.ufpr.hospital.autenticacao.repository.UsuarioRepository;
 import br.edu.ufpr.hospital.autenticacao.security.JwtUtil;
 import br.edu.ufpr.hospital.autenticacao.security.SecureUtils;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +33,7 @@ public class UsuarioService {
   private final PasswordEncoder passwordEncoder;
   private final JwtUtil jwtUtil;
   private final WebClient webClient;;
+  private final ObservationRegistry observationRegistry;
 
   // Alterado para receber CriarFuncionarioDTO
   public FuncionarioModel cadastrarFuncionario(CriarFuncionarioDTO funcionarioDTO) { // Recebe o DTO
@@ -120,11 +123,15 @@ public class UsuarioService {
     if (UsuarioModel.PERFIL_PACIENTE.equals(usuario.getPerfil())) {
       try {
         // Faz a chamada interna para GET http://ms-paciente:8083/pacientes/by-cpf/{cpf}
-        PacienteResponseDTO paciente = this.webClient.get()
-            .uri("/pacientes/by-cpf/" + usuario.getCpf())
-            .retrieve()
-            .bodyToMono(PacienteResponseDTO.class)
-            .block(); // .block() torna a chamada síncrona, pois precisamos esperar a resposta
+        // dentro de um span próprio, pai do span do cliente HTTP (traceparent propagado)
+        PacienteResponseDTO paciente = Observation
+            .createNotStarted("pacientes.busca-por-cpf", observationRegistry)
+            .contextualName("ms-paciente busca-por-cpf")
+            .observe(() -> this.webClient.get()
+                .uri("/pacientes/by-cpf/" + usuario.getCpf())
+                .retrieve()
+                .bodyToMono(PacienteResponseDTO.class)
+                .block()); // .block() torna a chamada síncrona, pois precisamos esperar a resposta
 
         if (paciente == null) {
           log.warn("Paciente não encontrado para o CPF: {}", usuario.getCpf());
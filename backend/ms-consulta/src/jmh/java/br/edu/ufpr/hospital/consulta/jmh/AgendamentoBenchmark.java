@@ -0,0 +1,84 @@
+package br.edu.ufpr.hospital.consulta.jmh;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.service.ConsultaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ConsultaService#agendarConsulta} end to end against H2: booking
+ * checks, atomic slot reservation, booking code, insert and outbox row.
+ * With points the stubbed balance lookup is also on the path
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgendamentoBenchmark {
+
+    private static final int VAGAS_POR_ITERACAO = 1_000_000;
+
+    @Param({"0", "5"})
+    public String pontos;
+
+    private final AtomicInteger proximoPaciente = new AtomicInteger(1);
+    private int iteracao;
+
+    private ConfigurableApplicationContext contexto;
+    private ConsultaService consultaService;
+    private ConsultaRepository consultaRepository;
+    private AgendamentoDTO agendamento;
+    private Long consultaId;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = ContextoBenchmark.iniciar("agendamento-" + pontos);
+        consultaService = contexto.getBean(ConsultaService.class);
+        consultaRepository = contexto.getBean(ConsultaRepository.class);
+        agendamento = new AgendamentoDTO(new BigDecimal(pontos));
+    }
+
+    /**
+     * A fresh consultation per iteration, so each patient books it once and
+     * slots never run out
+     */
+    @Setup(Level.Iteration)
+    public void novaConsulta() {
+        consultaId = consultaRepository.save(new Consulta("JMH" + ++iteracao,
+                LocalDateTime.now().plusDays(7), "CARD", "Dr. Benchmark", new BigDecimal("200.00"),
+                VAGAS_POR_ITERACAO)).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public AgendamentoResponseDTO agendarConsulta() {
+        return consultaService.agendarConsulta(consultaId, agendamento, proximoPaciente.getAndIncrement(),
+                "Bearer jmh");
+    }
+}
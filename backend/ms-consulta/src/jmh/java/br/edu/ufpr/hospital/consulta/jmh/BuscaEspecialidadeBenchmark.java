@@ -0,0 +1,84 @@
+package br.edu.ufpr.hospital.consulta.jmh;
+
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.service.ConsultaService;
+import br.edu.ufpr.hospital.consulta.service.IndiceDisponibilidadeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConsultaService#buscarPorEspecialidade} served from the availability
+ * index, for the whole specialty and for a single day. Consultations are
+ * spread over 30 days and five specialties, one in five is cardiology
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuscaEspecialidadeBenchmark {
+
+    private static final String[] ESPECIALIDADES = {"CARD", "DERM", "PED", "ORTO", "NEURO"};
+    private static final int DIAS = 30;
+
+    @Param({"1000", "10000"})
+    public int consultas;
+
+    private ConfigurableApplicationContext contexto;
+    private ConsultaService consultaService;
+    private LocalDate dia;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = ContextoBenchmark.iniciar("busca-" + consultas);
+        consultaService = contexto.getBean(ConsultaService.class);
+
+        LocalDateTime inicio = LocalDate.now().plusDays(1).atTime(8, 0);
+        List<Consulta> lote = new ArrayList<>(consultas);
+        for (int i = 0; i < consultas; i++) {
+            lote.add(new Consulta("JMH" + i, inicio.plusDays(i % DIAS).plusMinutes(i / DIAS % 600),
+                    ESPECIALIDADES[i % ESPECIALIDADES.length], "Dr. Benchmark " + i % 200,
+                    new BigDecimal("200.00"), 10));
+        }
+        contexto.getBean(ConsultaRepository.class).saveAll(lote);
+        contexto.getBean(IndiceDisponibilidadeService.class).reconstruir();
+        dia = inicio.toLocalDate().plusDays(DIAS / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<ConsultaResponseDTO> buscarPorEspecialidade() {
+        return consultaService.buscarPorEspecialidade("CARD", null);
+    }
+
+    @Benchmark
+    public List<ConsultaResponseDTO> buscarPorEspecialidadeNoDia() {
+        return consultaService.buscarPorEspecialidade("CARD", dia);
+    }
+}
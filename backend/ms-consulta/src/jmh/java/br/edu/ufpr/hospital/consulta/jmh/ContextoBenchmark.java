@@ -0,0 +1,67 @@
+package br.edu.ufpr.hospital.consulta.jmh;
+
+import br.edu.ufpr.hospital.consulta.MsConsultaApplication;
+import br.edu.ufpr.hospital.consulta.dto.OperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoOperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.service.PacienteIntegrationService;
+import org.mockito.Mockito;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * Boots ms-consulta for the JMH benchmarks: no web server, a private H2
+ * database per benchmark and ms-paciente replaced by a Mockito stub that
+ * reports a large balance and accepts every points operation
+ */
+final class ContextoBenchmark {
+
+    static final BigDecimal SALDO_PACIENTE = new BigDecimal("1000000");
+
+    private ContextoBenchmark() {
+    }
+
+    static ConfigurableApplicationContext iniciar(String banco) {
+        return new SpringApplicationBuilder(MsConsultaApplication.class, PacienteSimuladoConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.allow-bean-definition-overriding=true",
+                        "spring.datasource.url=jdbc:h2:mem:jmh-" + banco
+                                + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                        // Estatísticas do Hibernate distorcem a medição
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "logging.level.root=WARN",
+                        "logging.level.br.edu.ufpr.hospital=WARN")
+                .run();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class PacienteSimuladoConfig {
+
+        @Bean
+        @Primary
+        PacienteIntegrationService pacienteIntegrationServiceSimulado() {
+            PacienteIntegrationService simulado = Mockito.mock(PacienteIntegrationService.class);
+            Mockito.when(simulado.verificarSaldoPontos(anyInt(), any())).thenReturn(SALDO_PACIENTE);
+            Mockito.when(simulado.pacienteExiste(anyInt(), any())).thenReturn(true);
+            Mockito.when(simulado.processarOperacoesEmLote(anyList(), any())).thenAnswer(chamada -> {
+                List<OperacaoPontosDTO> operacoes = chamada.getArgument(0);
+                return operacoes.stream()
+                        .map(op -> new ResultadoOperacaoPontosDTO(op.getChaveIdempotencia(), op.getPacienteId(),
+                                true, null))
+                        .toList();
+            });
+            return simulado;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package br.edu.ufpr.hospital.consulta.jmh;
+
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Detached entities shaped like the ones the API returns, for the benchmarks
+ * that do not need a database
+ */
+final class FixturesBenchmark {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2030, 3, 4, 8, 0);
+
+    private FixturesBenchmark() {
+    }
+
+    static Consulta consulta(int i) {
+        Consulta consulta = new Consulta(String.format("CON%06d", i), INICIO.plusMinutes(30L * i), "CARD",
+                "Dr. Benchmark " + i % 50, new BigDecimal("200.00"), 10);
+        consulta.setId((long) i);
+        consulta.setVagasOcupadas(i % 10);
+        return consulta;
+    }
+
+    static Agendamento agendamento(int i, Consulta consulta) {
+        Agendamento agendamento = new Agendamento(String.format("AGD%06d", i), 1000 + i, consulta,
+                new BigDecimal("5"), new BigDecimal("175.00"));
+        agendamento.setId((long) i);
+        agendamento.setStatus(StatusAgendamento.CRIADO);
+        agendamento.setDataAgendamento(INICIO.minusDays(1));
+        return agendamento;
+    }
+}
@@ -0,0 +1,49 @@
+package br.edu.ufpr.hospital.consulta.jmh;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping used by every list response, without Spring or JPA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapeamentoDtoBenchmark {
+
+    private Consulta consulta;
+    private Agendamento agendamento;
+
+    @Setup
+    public void preparar() {
+        consulta = FixturesBenchmark.consulta(1);
+        agendamento = FixturesBenchmark.agendamento(1, consulta);
+    }
+
+    @Benchmark
+    public ConsultaResponseDTO consultaFromEntity() {
+        return ConsultaResponseDTO.fromEntity(consulta);
+    }
+
+    @Benchmark
+    public AgendamentoResponseDTO agendamentoFromEntity() {
+        return AgendamentoResponseDTO.fromEntity(agendamento);
+    }
+}
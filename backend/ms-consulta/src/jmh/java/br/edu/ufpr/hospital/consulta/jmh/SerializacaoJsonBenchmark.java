@@ -0,0 +1,72 @@
+package br.edu.ufpr.hospital.consulta.jmh;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the list responses (consultation search and patient
+ * bookings) with an ObjectMapper configured like Spring MVC's
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializacaoJsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int itens;
+
+    private ObjectWriter escritorConsultas;
+    private ObjectWriter escritorAgendamentos;
+    private List<ConsultaResponseDTO> consultas;
+    private List<AgendamentoResponseDTO> agendamentos;
+
+    @Setup
+    public void preparar() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        escritorConsultas = mapper.writerFor(mapper.getTypeFactory()
+                .constructCollectionType(List.class, ConsultaResponseDTO.class));
+        escritorAgendamentos = mapper.writerFor(mapper.getTypeFactory()
+                .constructCollectionType(List.class, AgendamentoResponseDTO.class));
+
+        consultas = new ArrayList<>(itens);
+        agendamentos = new ArrayList<>(itens);
+        for (int i = 0; i < itens; i++) {
+            Consulta consulta = FixturesBenchmark.consulta(i);
+            consultas.add(ConsultaResponseDTO.fromEntity(consulta));
+            agendamentos.add(AgendamentoResponseDTO.fromEntity(FixturesBenchmark.agendamento(i, consulta)));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializarConsultas() throws JsonProcessingException {
+        return escritorConsultas.writeValueAsBytes(consultas);
+    }
+
+    @Benchmark
+    public byte[] serializarAgendamentos() throws JsonProcessingException {
+        return escritorAgendamentos.writeValueAsBytes(agendamentos);
+    }
+}
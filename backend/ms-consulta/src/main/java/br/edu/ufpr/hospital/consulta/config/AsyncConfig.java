@@ -0,0 +1,153 @@
+package br.edu.ufpr.hospital.consulta.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Configuração para processamento assíncrono
+ * Usado pelo relay do outbox de pontos, que envia ao ms-paciente, fora da
+ * transação, os débitos e estornos de pontos, pelas etapas de banco do
+ * agendamento não bloqueante e pelo envio dos eventos do dashboard
+ * Com spring.threads.virtual.enabled=true os executores passam a criar threads
+ * virtuais, mantendo os mesmos limites de concorrência e de fila
+ */
+@Configuration
+@Slf4j
+public class AsyncConfig {
+
+    private final boolean threadsVirtuais;
+
+    public AsyncConfig(@Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuais) {
+        this.threadsVirtuais = threadsVirtuais;
+    }
+
+    /**
+     * Executor do relay do outbox de pontos; o número máximo de threads limita
+     * quantos lotes são enviados ao ms-paciente ao mesmo tempo
+     */
+    @Bean(name = "outboxPontosTaskExecutor")
+    public Executor outboxPontosTaskExecutor(
+            @Value("${outbox.pontos.envios-simultaneos:2}") int enviosSimultaneos) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(Math.max(1, enviosSimultaneos));
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("OutboxPontos-");
+        usarThreadsVirtuaisSeHabilitado(executor);
+
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+
+        // Fila cheia: já existe um envio agendado que vai pegar as operações pendentes
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.DiscardPolicy());
+
+        executor.initialize();
+
+        log.info("Outbox Pontos Task Executor configurado: Core={}, Max={}, Queue={}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
+
+        return executor;
+    }
+
+    /**
+     * Executor das etapas de banco do agendamento não bloqueante; dimensionado
+     * pelo pool de conexões, para que a vazão de agendamentos seja limitada pelo
+     * banco e não pelas threads do Tomcat. Fila cheia recusa o agendamento (503)
+     */
+    @Bean(name = "agendamentoTaskExecutor")
+    public Executor agendamentoTaskExecutor(
+            @Value("${agendamento.execucao.threads:10}") int threads,
+            @Value("${agendamento.execucao.fila:500}") int fila) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(Math.max(1, threads));
+        executor.setMaxPoolSize(Math.max(1, threads));
+        executor.setQueueCapacity(fila);
+        executor.setThreadNamePrefix("Agendamento-");
+        usarThreadsVirtuaisSeHabilitado(executor);
+
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+
+        executor.initialize();
+
+        log.info("Agendamento Task Executor configurado: Core={}, Max={}, Queue={}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
+
+        return executor;
+    }
+
+    /**
+     * Executor que escreve os eventos do dashboard de funcionários nos sockets dos
+     * assinantes, fora da trava do dashboard e das threads que confirmam transações.
+     * Cada assinante ocupa no máximo uma tarefa por vez, então a fila fica limitada
+     * ao número de assinantes
+     */
+    @Bean(name = "dashboardTaskExecutor")
+    public Executor dashboardTaskExecutor(
+            @Value("${consulta.dashboard.envio.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(Math.max(1, threads));
+        executor.setMaxPoolSize(Math.max(1, threads));
+        executor.setThreadNamePrefix("DashboardSse-");
+        usarThreadsVirtuaisSeHabilitado(executor);
+
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+
+        executor.initialize();
+
+        log.info("Dashboard Task Executor configurado: Core={}, Max={}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize());
+
+        return executor;
+    }
+
+    /**
+     * Executor padrão (respostas transmitidas do MVC); declarado aqui porque o
+     * Spring Boot deixa de criar o seu quando existe outro executor no contexto
+     */
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public Executor taskExecutor() {
+        if (threadsVirtuais) {
+            // Mesmo comportamento do executor padrão do Spring Boot com threads virtuais
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("AsyncTask-");
+            executor.setVirtualThreads(true);
+            executor.setTaskTerminationTimeout(30_000);
+            log.info("Default Task Executor configurado com threads virtuais");
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(8);
+        executor.setThreadNamePrefix("AsyncTask-");
+
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+
+        executor.initialize();
+
+        log.info("Default Task Executor configurado: Core={}, Max={}, Queue={}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
+
+        return executor;
+    }
+
+    /**
+     * Troca as threads de plataforma do pool por threads virtuais; o pool continua
+     * limitando quantas tarefas rodam ao mesmo tempo
+     */
+    private void usarThreadsVirtuaisSeHabilitado(ThreadPoolTaskExecutor executor) {
+        if (threadsVirtuais) {
+            executor.setThreadFactory(Thread.ofVirtual().name(executor.getThreadNamePrefix(), 0).factory());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package br.edu.ufpr.hospital.consulta.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+
+/**
+ * Réplica de leitura do banco de consultas
+ * Ativada quando consulta.datasource.replica.jdbc-url está definida: o pool do
+ * primário continua configurado por spring.datasource.* e o da réplica por
+ * consulta.datasource.replica.* (propriedades do Hikari). O DataSource usado pelo
+ * JPA e pelo JdbcTemplate passa a ser o roteado, que manda as transações somente
+ * leitura para a réplica (ver RoteamentoLeituraDataSource). Sem a propriedade,
+ * tudo segue no DataSource único da autoconfiguração do Spring Boot
+ * O DataSource roteado fica fora do proxy do datasource-micrometer
+ * (jdbc.excluded-data-source-bean-names): o proxy lê os metadados da conexão ao
+ * obtê-la, o que escolheria o destino antes de a transação ser marcada somente leitura
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "consulta.datasource.replica", name = "jdbc-url")
+@Slf4j
+public class ReplicaLeituraConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSourcePrimario(DataSourceProperties propriedades) {
+        HikariDataSource dataSource = propriedades.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName(StringUtils.hasText(propriedades.getName()) ? propriedades.getName() : "primario");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("consulta.datasource.replica")
+    public HikariDataSource dataSourceReplica() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSourceRoteado(@Qualifier("dataSourcePrimario") DataSource primario,
+            @Qualifier("dataSourceReplica") DataSource replica, MeterRegistry meterRegistry) {
+        RoteamentoLeituraDataSource roteamento = new RoteamentoLeituraDataSource(primario, replica, meterRegistry);
+        roteamento.afterPropertiesSet();
+        log.info("Read-only transactions routed to the read replica");
+        return new LazyConnectionDataSourceProxy(roteamento);
+    }
+}
@@ -0,0 +1,81 @@
+package br.edu.ufpr.hospital.consulta.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * DataSource que escolhe, a cada conexão obtida, entre o banco primário e a réplica
+ * de leitura
+ * Transações somente leitura (@Transactional(readOnly = true)) vão para a réplica;
+ * escritas, transações comuns e acessos sem transação vão para o primário. Precisa
+ * ficar atrás de um LazyConnectionDataSourceProxy: a conexão real só é obtida no
+ * primeiro comando SQL, quando a transação já foi marcada como somente leitura
+ */
+public class RoteamentoLeituraDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARIO = "primario";
+    static final String REPLICA = "replica";
+
+    static final String METRICA_CONEXOES = "consulta.datasource.conexoes";
+
+    private static final ThreadLocal<Boolean> FORCAR_PRIMARIO = new ThreadLocal<>();
+
+    private final Counter conexoesPrimario;
+    private final Counter conexoesReplica;
+
+    public RoteamentoLeituraDataSource(DataSource primario, DataSource replica, MeterRegistry meterRegistry) {
+        setTargetDataSources(Map.of(PRIMARIO, primario, REPLICA, replica));
+        setDefaultTargetDataSource(primario);
+        this.conexoesPrimario = contador(meterRegistry, PRIMARIO);
+        this.conexoesReplica = contador(meterRegistry, REPLICA);
+    }
+
+    /**
+     * Executa a ação lendo do primário mesmo em transações somente leitura, para
+     * leituras que não podem enxergar o atraso de replicação (ex.: o paciente
+     * consultando o que acabou de gravar). Sem réplica configurada não tem efeito
+     * A transação precisa começar dentro da ação, não antes
+     */
+    public static <T> T noPrimario(Supplier<T> acao) {
+        if (Boolean.TRUE.equals(FORCAR_PRIMARIO.get())) {
+            return acao.get();
+        }
+        FORCAR_PRIMARIO.set(Boolean.TRUE);
+        try {
+            return acao.get();
+        } finally {
+            FORCAR_PRIMARIO.remove();
+        }
+    }
+
+    public static void noPrimario(Runnable acao) {
+        noPrimario(() -> {
+            acao.run();
+            return null;
+        });
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !Boolean.TRUE.equals(FORCAR_PRIMARIO.get())) {
+            conexoesReplica.increment();
+            return REPLICA;
+        }
+        conexoesPrimario.increment();
+        return PRIMARIO;
+    }
+
+    private static Counter contador(MeterRegistry meterRegistry, String destino) {
+        return Counter.builder(METRICA_CONEXOES)
+                .description("Conexões obtidas por destino (primário ou réplica de leitura)")
+                .tag("destino", destino)
+                .register(meterRegistry);
+    }
+}
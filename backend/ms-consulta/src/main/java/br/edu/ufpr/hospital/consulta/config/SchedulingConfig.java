@@ -0,0 +1,12 @@
+package br.edu.ufpr.hospital.consulta.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables scheduled background jobs (index rebuilds, relays, finalizers)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
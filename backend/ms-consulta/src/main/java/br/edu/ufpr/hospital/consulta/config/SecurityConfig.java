@@ -42,6 +42,12 @@ public class SecurityConfig {
                         // Public endpoints
                         .requestMatchers("/actuator/health", "/actuator/info").permitAll()
 
+                        // Prometheus scrape endpoint - restricted at the network level, scrapers carry no JWT
+                        .requestMatchers("/actuator/prometheus").permitAll()
+
+                        // Operational endpoints (metrics, circuit breakers) - employees only
+                        .requestMatchers("/actuator/**").hasRole("FUNCIONARIO")
+
                         // Search endpoints - accessible by both roles (authenticated users)
                         .requestMatchers("/consultas/buscar/**").authenticated()
 
@@ -0,0 +1,41 @@
+package br.edu.ufpr.hospital.consulta.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Ajuste da sequência de ids das consultas
+ * Os ids de Consulta vêm de uma sequência com blocos de 50 (para permitir inserts
+ * em lote via JDBC) em vez da coluna IDENTITY usada antes. Na inicialização, depois
+ * que o Hibernate cria/atualiza o schema, a sequência é avançada para além do maior
+ * id já existente, para que bases criadas com IDENTITY não gerem ids repetidos
+ */
+@Configuration
+@Slf4j
+public class SequenciaIdsConfig {
+
+    private static final String SEQ_CONSULTAS = "consultas_id_bloco_seq";
+    private static final int ALOCACAO_IDS = 50; // Mesmo allocationSize de Consulta.id
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // EntityManagerFactory garante que o schema já foi criado/atualizado pelo Hibernate
+    public SequenciaIdsConfig(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void ajustarSequenciaConsultas() {
+        Long maiorId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM consultas", Long.class);
+        Long atual = jdbcTemplate.queryForObject("SELECT nextval('" + SEQ_CONSULTAS + "')", Long.class);
+        // O bloco de um valor v da sequência cobre os ids (v - 50, v]
+        if (maiorId > 0 && maiorId > atual - ALOCACAO_IDS) {
+            long inicio = maiorId + ALOCACAO_IDS + 1;
+            jdbcTemplate.execute("ALTER SEQUENCE " + SEQ_CONSULTAS + " RESTART WITH " + inicio);
+            log.info("Sequence {} moved past existing consultation ids (restarts at {})", SEQ_CONSULTAS, inicio);
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package br.edu.ufpr.hospital.consulta.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.net.http.HttpClient;
+import java.util.concurrent.Executors;
+
 /**
  * Configuration for WebClient beans used for inter-service communication
  */
@@ -12,9 +19,23 @@ public class WebClientConfig {
     
     /**
      * WebClient builder for creating WebClient instances
+     * In virtual-thread mode outbound calls go through the JDK HTTP client, whose
+     * I/O completions run on virtual threads instead of Netty event loops. Spring
+     * Boot's customizers are applied, so outbound calls are observed and carry the
+     * trace context (traceparent) to ms-paciente
      */
     @Bean
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder webClientBuilder(
+            @Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuais,
+            ObjectProvider<WebClientCustomizer> customizers) {
+        WebClient.Builder builder = WebClient.builder();
+        customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+        if (threadsVirtuais) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .executor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("HttpSaida-", 0).factory()))
+                    .build();
+            builder.clientConnector(new JdkClientHttpConnector(httpClient));
+        }
+        return builder;
     }
 }
\ No newline at end of file
@@ -2,14 +2,24 @@ package br.edu.ufpr.hospital.consulta.controller;
 
 import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
 import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.EntradaListaEsperaDTO;
+import br.edu.ufpr.hospital.consulta.service.AgendamentoReativoService;
 import br.edu.ufpr.hospital.consulta.service.ConsultaService;
+import br.edu.ufpr.hospital.consulta.service.LeituraPropriaService;
+import br.edu.ufpr.hospital.consulta.service.ListaEsperaService;
+import br.edu.ufpr.hospital.consulta.service.MetricasConsultaService;
+import br.edu.ufpr.hospital.consulta.service.NotificacaoPacienteService;
+import br.edu.ufpr.hospital.consulta.service.RetentativaConcorrenciaService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -22,20 +32,36 @@ import java.util.List;
 public class AgendamentoController {
 
     private final ConsultaService consultaService;
-
-    public AgendamentoController(ConsultaService consultaService) {
+    private final AgendamentoReativoService agendamentoReativoService;
+    private final ListaEsperaService listaEsperaService;
+    private final NotificacaoPacienteService notificacaoPacienteService;
+    private final RetentativaConcorrenciaService retentativas;
+    private final LeituraPropriaService leituraPropria;
+
+    public AgendamentoController(ConsultaService consultaService,
+            AgendamentoReativoService agendamentoReativoService,
+            ListaEsperaService listaEsperaService,
+            NotificacaoPacienteService notificacaoPacienteService,
+            RetentativaConcorrenciaService retentativas,
+            LeituraPropriaService leituraPropria) {
         this.consultaService = consultaService;
+        this.agendamentoReativoService = agendamentoReativoService;
+        this.listaEsperaService = listaEsperaService;
+        this.notificacaoPacienteService = notificacaoPacienteService;
+        this.retentativas = retentativas;
+        this.leituraPropria = leituraPropria;
     }
 
     // ========== PATIENT BOOKING OPERATIONS ==========
 
     /**
      * Create a new booking (R05)
-     * Only patients can create bookings
+     * Only patients can create bookings. Processed asynchronously: the servlet
+     * thread is released while ms-paciente and the database are consulted
      */
     @PostMapping("/consulta/{consultaId}")
     @PreAuthorize("hasRole('PACIENTE')")
-    public ResponseEntity<AgendamentoResponseDTO> agendarConsulta(
+    public Mono<ResponseEntity<AgendamentoResponseDTO>> agendarConsulta(
             @PathVariable Long consultaId,
             @Valid @RequestBody AgendamentoDTO dto,
             Authentication authentication,
@@ -44,10 +70,8 @@ public class AgendamentoController {
         Integer pacienteId = ConsultaService.extractPacienteIdFromToken(authentication);
         String authToken = request.getHeader("Authorization");
 
-        AgendamentoResponseDTO response = consultaService.agendarConsulta(
-                consultaId, dto, pacienteId, authToken);
-
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        return agendamentoReativoService.agendarConsulta(consultaId, dto, pacienteId, authToken)
+                .map(response -> ResponseEntity.status(HttpStatus.CREATED).body(response));
     }
 
     @GetMapping("/consulta/{consultaId}")
@@ -66,13 +90,12 @@ public class AgendamentoController {
     @PreAuthorize("hasRole('PACIENTE')")
     public ResponseEntity<Void> cancelarAgendamento(
             @PathVariable String agendamentoId,
-            Authentication authentication,
-            HttpServletRequest request) {
+            Authentication authentication) {
 
         Integer pacienteId = ConsultaService.extractPacienteIdFromToken(authentication);
-        String authToken = request.getHeader("Authorization");
 
-        consultaService.cancelarAgendamento(agendamentoId, pacienteId, authToken);
+        retentativas.executar(MetricasConsultaService.CANCELAR_AGENDAMENTO,
+                () -> consultaService.cancelarAgendamento(agendamentoId, pacienteId));
         return ResponseEntity.noContent().build();
     }
 
@@ -87,23 +110,85 @@ public class AgendamentoController {
             Authentication authentication) {
 
         Integer pacienteId = ConsultaService.extractPacienteIdFromToken(authentication);
-        consultaService.realizarCheckin(agendamentoId, pacienteId);
+        retentativas.executar(MetricasConsultaService.CHECKIN,
+                () -> consultaService.realizarCheckin(agendamentoId, pacienteId));
         return ResponseEntity.noContent().build();
     }
 
     /**
      * List patient's bookings (R03)
-     * Only patients can see their own bookings
+     * Only patients can see their own bookings. Read from the replica, or from the
+     * primary right after the patient changed a booking (read-your-writes). Archived
+     * bookings are only included on request, after the current ones
      */
     @GetMapping("/paciente")
     @PreAuthorize("hasRole('PACIENTE')")
     public ResponseEntity<List<AgendamentoResponseDTO>> listarAgendamentosPaciente(
+            @RequestParam(defaultValue = "false") boolean incluirArquivados,
             Authentication authentication) {
 
         Integer pacienteId = ConsultaService.extractPacienteIdFromToken(authentication);
-        List<AgendamentoResponseDTO> agendamentos = consultaService.listarAgendamentosPaciente(pacienteId);
+        List<AgendamentoResponseDTO> agendamentos = leituraPropria.ler(pacienteId,
+                () -> consultaService.listarAgendamentosPaciente(pacienteId, incluirArquivados));
 
         return ResponseEntity.ok(agendamentos);
     }
 
+    // ========== WAITLIST ==========
+
+    /**
+     * Join the waitlist of a full consultation
+     * The patient is booked automatically, in arrival order, when a booking of the
+     * consultation is cancelled
+     */
+    @PostMapping("/consulta/{consultaId}/espera")
+    @PreAuthorize("hasRole('PACIENTE')")
+    public ResponseEntity<EntradaListaEsperaDTO> entrarListaEspera(
+            @PathVariable Long consultaId,
+            @Valid @RequestBody AgendamentoDTO dto,
+            Authentication authentication,
+            HttpServletRequest request) {
+
+        Integer pacienteId = ConsultaService.extractPacienteIdFromToken(authentication);
+        EntradaListaEsperaDTO entrada = listaEsperaService.entrar(consultaId, dto.getPontosUsados(), pacienteId,
+                request.getHeader("Authorization"));
+        return ResponseEntity.status(HttpStatus.CREATED).body(entrada);
+    }
+
+    /**
+     * Leave the waitlist of a consultation
+     */
+    @DeleteMapping("/consulta/{consultaId}/espera")
+    @PreAuthorize("hasRole('PACIENTE')")
+    public ResponseEntity<Void> sairListaEspera(
+            @PathVariable Long consultaId,
+            Authentication authentication) {
+
+        Integer pacienteId = ConsultaService.extractPacienteIdFromToken(authentication);
+        listaEsperaService.sair(consultaId, pacienteId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * List the patient's waitlist entries, with the position of those still waiting
+     */
+    @GetMapping("/espera")
+    @PreAuthorize("hasRole('PACIENTE')")
+    public ResponseEntity<List<EntradaListaEsperaDTO>> listarListaEspera(Authentication authentication) {
+        Integer pacienteId = ConsultaService.extractPacienteIdFromToken(authentication);
+        return ResponseEntity.ok(leituraPropria.ler(pacienteId,
+                () -> listaEsperaService.listarPorPaciente(pacienteId)));
+    }
+
+    /**
+     * Patient's notification stream (SSE): "promocao" when a waitlist entry becomes
+     * a booking and "encerramento" when the consultation will not take bookings anymore
+     */
+    @GetMapping(value = "/espera/notificacoes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('PACIENTE')")
+    public SseEmitter notificacoesListaEspera(Authentication authentication) {
+        Integer pacienteId = ConsultaService.extractPacienteIdFromToken(authentication);
+        return notificacaoPacienteService.assinar(pacienteId);
+    }
+
 }
@@ -4,16 +4,38 @@ import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
 import br.edu.ufpr.hospital.consulta.dto.ConsultaDTO;
 import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
 import br.edu.ufpr.hospital.consulta.dto.EspecialidadeDTO;
+import br.edu.ufpr.hospital.consulta.dto.JanelaLivreDTO;
+import br.edu.ufpr.hospital.consulta.dto.LoteConsultasDTO;
+import br.edu.ufpr.hospital.consulta.dto.MedicoEncontradoDTO;
+import br.edu.ufpr.hospital.consulta.dto.PaginaConsultasDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoLoteConsultasDTO;
 import br.edu.ufpr.hospital.consulta.service.ConsultaService;
-import jakarta.servlet.http.HttpServletRequest;
+import br.edu.ufpr.hospital.consulta.service.DashboardConsultasService;
+import br.edu.ufpr.hospital.consulta.service.EspecialidadeService;
+import br.edu.ufpr.hospital.consulta.service.LoteConsultasService;
+import br.edu.ufpr.hospital.consulta.service.MetricasConsultaService;
+import br.edu.ufpr.hospital.consulta.service.RetentativaConcorrenciaService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import lombok.extern.slf4j.Slf4j;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * REST Controller for consultation management
@@ -24,10 +46,29 @@ import java.util.List;
 @RequestMapping("/consultas")
 public class ConsultaController {
 
+    private static final int LIMITE_MAXIMO_PAGINA = 500;
+    private static final int LIMITE_MAXIMO_MEDICOS = 50;
+    private static final int FLUSH_A_CADA = 200;
+
     private final ConsultaService consultaService;
+    private final DashboardConsultasService dashboardConsultas;
+    private final EspecialidadeService especialidadeService;
+    private final LoteConsultasService loteConsultasService;
+    private final RetentativaConcorrenciaService retentativas;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter escritorLinha;
 
-    public ConsultaController(ConsultaService consultaService) {
+    public ConsultaController(ConsultaService consultaService, DashboardConsultasService dashboardConsultas,
+            EspecialidadeService especialidadeService, LoteConsultasService loteConsultasService,
+            RetentativaConcorrenciaService retentativas, ObjectMapper objectMapper) {
         this.consultaService = consultaService;
+        this.dashboardConsultas = dashboardConsultas;
+        this.especialidadeService = especialidadeService;
+        this.loteConsultasService = loteConsultasService;
+        this.retentativas = retentativas;
+        this.objectMapper = objectMapper;
+        this.escritorLinha = objectMapper.writerFor(ConsultaResponseDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     // ========== CONSULTATION CREATION AND MANAGEMENT ==========
@@ -44,18 +85,102 @@ public class ConsultaController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Create many consultations at once, from a list and/or a recurring weekly template
+     * Only employees can create consultations. All or nothing: 201 with the created
+     * consultations, or 400 with the validation errors of every item
+     */
+    @PostMapping("/lote")
+    @PreAuthorize("hasRole('FUNCIONARIO')")
+    public ResponseEntity<ResultadoLoteConsultasDTO> criarConsultasEmLote(@RequestBody LoteConsultasDTO lote) {
+
+        ResultadoLoteConsultasDTO resultado = loteConsultasService.criar(lote);
+        HttpStatus status = resultado.getErros().isEmpty() ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(resultado);
+    }
+
     // ========== SEARCH ENDPOINTS ==========
 
     /**
      * Search for available consultations (R05 - Part 1)
      * Accessible by both patients and employees
+     * Returns the full JSON array, written row by row as keyset pages are read,
+     * so heap use stays flat regardless of table size
      */
     @GetMapping("/buscar")
-    public ResponseEntity<List<ConsultaResponseDTO>> buscarTodasConsultas() {
+    public ResponseEntity<StreamingResponseBody> buscarTodasConsultas() {
 
         log.info("Searching for available consultations");
-        List<ConsultaResponseDTO> consultas = consultaService.buscarTodasConsultas();
-        return ResponseEntity.ok(consultas);
+        StreamingResponseBody corpo = saida -> {
+            try (JsonGenerator gerador = gerador(saida)) {
+                gerador.writeStartArray();
+                consultaService.transmitirTodasConsultas(escritor(gerador, null));
+                gerador.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(corpo);
+    }
+
+    /**
+     * Search consultations as newline-delimited JSON (one consultation per line)
+     * Usage: /consultas/buscar?formato=ndjson
+     */
+    @GetMapping(value = "/buscar", params = "formato=ndjson")
+    public ResponseEntity<StreamingResponseBody> transmitirConsultasNdjson() {
+
+        log.info("Streaming consultations as NDJSON");
+        StreamingResponseBody corpo = saida -> {
+            try (JsonGenerator gerador = gerador(saida)) {
+                gerador.setRootValueSeparator(null);
+                consultaService.transmitirTodasConsultas(escritor(gerador, "\n"));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(corpo);
+    }
+
+    /**
+     * Search consultations with keyset pagination
+     * Usage: /consultas/buscar?limite=50 then /consultas/buscar?limite=50&cursor={proximoCursor}
+     */
+    @GetMapping(value = "/buscar", params = "limite")
+    public ResponseEntity<PaginaConsultasDTO> buscarConsultasPaginadas(
+            @RequestParam int limite,
+            @RequestParam(required = false) String cursor) {
+
+        if (limite < 1 || limite > LIMITE_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("Limite deve estar entre 1 e " + LIMITE_MAXIMO_PAGINA);
+        }
+        return ResponseEntity.ok(consultaService.buscarConsultasPaginadas(cursor, limite));
+    }
+
+    /**
+     * Generator for a streamed response; closing it after a failure must not
+     * complete the array, or a truncated response would look whole
+     */
+    private JsonGenerator gerador(OutputStream saida) throws IOException {
+        return objectMapper.getFactory().createGenerator(saida)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+    }
+
+    /**
+     * Writes each consultation to the generator, flushing periodically so rows
+     * leave the server as they are read
+     */
+    private Consumer<ConsultaResponseDTO> escritor(JsonGenerator gerador, String separador) {
+        int[] escritas = {0};
+        return consulta -> {
+            try {
+                escritorLinha.writeValue(gerador, consulta);
+                if (separador != null) {
+                    gerador.writeRaw(separador);
+                }
+                if (++escritas[0] % FLUSH_A_CADA == 0) {
+                    gerador.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
     }
 
     /**
@@ -64,22 +189,16 @@ public class ConsultaController {
      */
     @GetMapping("/buscar/especialidade/{especialidade}")
     public ResponseEntity<List<ConsultaResponseDTO>> buscarPorEspecialidade(
-            @PathVariable String especialidade) {
-        List<ConsultaResponseDTO> consultas = consultaService.buscarPorEspecialidade(especialidade);
+            @PathVariable String especialidade,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate data) {
+        List<ConsultaResponseDTO> consultas = consultaService.buscarPorEspecialidade(especialidade, data);
         return ResponseEntity.ok(consultas);
     }
 
     @GetMapping("/especialidades")
     public ResponseEntity<List<EspecialidadeDTO>> listarEspecialidades() {
-        // A lógica para buscar do banco de dados ficaria em um service.
-        // Para o escopo do projeto, retornar uma lista fixa atende aos requisitos.
-        List<EspecialidadeDTO> especialidades = List.of(
-                new EspecialidadeDTO("CARD", "Cardiologia"),
-                new EspecialidadeDTO("DERM", "Dermatologia"),
-                new EspecialidadeDTO("PEDI", "Pediatria"),
-                new EspecialidadeDTO("GINE", "Ginecologia"),
-                new EspecialidadeDTO("ORTO", "Ortopedia"));
-        return ResponseEntity.ok(especialidades);
+        // Mesmo catálogo de /especialidades
+        return ResponseEntity.ok(especialidadeService.buscarTodasEspecialidades());
     }
 
     /**
@@ -88,11 +207,41 @@ public class ConsultaController {
      */
     @GetMapping("/buscar/medico")
     public ResponseEntity<List<ConsultaResponseDTO>> buscarPorMedico(
-            @RequestParam String medico) {
-        List<ConsultaResponseDTO> consultas = consultaService.buscarPorMedico(medico);
+            @RequestParam String medico,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate data) {
+        List<ConsultaResponseDTO> consultas = consultaService.buscarPorMedico(medico, data);
         return ResponseEntity.ok(consultas);
     }
 
+    /**
+     * Fuzzy doctor search by name, ignoring case and accents ("jose" finds "Dr. José")
+     * Accessible by both patients and employees
+     * Usage: /consultas/buscar/medicos?nome=alvarez&limite=10
+     */
+    @GetMapping("/buscar/medicos")
+    public ResponseEntity<List<MedicoEncontradoDTO>> buscarMedicos(
+            @RequestParam String nome,
+            @RequestParam(defaultValue = "10") int limite) {
+
+        if (limite < 1 || limite > LIMITE_MAXIMO_MEDICOS) {
+            throw new IllegalArgumentException("Limite deve estar entre 1 e " + LIMITE_MAXIMO_MEDICOS);
+        }
+        return ResponseEntity.ok(consultaService.buscarMedicos(nome, limite));
+    }
+
+    /**
+     * Free windows of a doctor on a day, within working hours, to pick the time of
+     * a new consultation. Only employees can access this
+     * Usage: /consultas/agenda/janelas-livres?medico=Dr. João Silva&data=2025-12-25
+     */
+    @GetMapping("/agenda/janelas-livres")
+    @PreAuthorize("hasRole('FUNCIONARIO')")
+    public ResponseEntity<List<JanelaLivreDTO>> buscarJanelasLivres(
+            @RequestParam String medico,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate data) {
+        return ResponseEntity.ok(consultaService.buscarJanelasLivres(medico, data));
+    }
+
     // ========== EMPLOYEE DASHBOARD AND OPERATIONS ==========
 
     /**
@@ -106,18 +255,26 @@ public class ConsultaController {
         return ResponseEntity.ok(consultas);
     }
 
+    /**
+     * Live employee dashboard (R08) over server-sent events
+     * Sends a "snapshot" of the next 48 hours, then "consulta", "remocao" and
+     * "checkin" deltas as bookings, cancellations and check-ins happen
+     */
+    @GetMapping(value = "/dashboard/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('FUNCIONARIO')")
+    public SseEmitter acompanharDashboard() {
+        return dashboardConsultas.assinar();
+    }
+
     /**
      * Cancel entire consultation (R10)
      * Only employees can cancel consultations
      */
     @PutMapping("/{consultaId}/cancelar")
     @PreAuthorize("hasRole('FUNCIONARIO')")
-    public ResponseEntity<Void> cancelarConsulta(
-            @PathVariable Long consultaId,
-            HttpServletRequest request) {
-
-        String authToken = request.getHeader("Authorization");
-        consultaService.cancelarConsulta(consultaId, authToken);
+    public ResponseEntity<Void> cancelarConsulta(@PathVariable Long consultaId) {
+        retentativas.executar(MetricasConsultaService.CANCELAR_CONSULTA,
+                () -> consultaService.cancelarConsulta(consultaId));
         return ResponseEntity.noContent().build();
     }
 
@@ -128,7 +285,8 @@ public class ConsultaController {
     @PutMapping("/{consultaId}/realizar")
     @PreAuthorize("hasRole('FUNCIONARIO')")
     public ResponseEntity<Void> realizarConsulta(@PathVariable Long consultaId) {
-        consultaService.realizarConsulta(consultaId);
+        retentativas.executar(MetricasConsultaService.REALIZAR_CONSULTA,
+                () -> consultaService.realizarConsulta(consultaId));
         return ResponseEntity.noContent().build();
     }
 
@@ -139,7 +297,8 @@ public class ConsultaController {
     @PutMapping("/agendamento/confirmar")
     @PreAuthorize("hasRole('FUNCIONARIO')")
     public ResponseEntity<Void> confirmarComparecimento(@RequestParam String codigo) {
-        consultaService.confirmarComparecimento(codigo);
+        retentativas.executar(MetricasConsultaService.CONFIRMAR_COMPARECIMENTO,
+                () -> consultaService.confirmarComparecimento(codigo));
         return ResponseEntity.noContent().build();
     }
 
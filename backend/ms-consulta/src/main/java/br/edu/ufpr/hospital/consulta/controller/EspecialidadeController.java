@@ -1,10 +1,15 @@
 package br.edu.ufpr.hospital.consulta.controller;
 
+import br.edu.ufpr.hospital.consulta.dto.DisponibilidadeEspecialidadeDTO;
 import br.edu.ufpr.hospital.consulta.dto.EspecialidadeDTO;
 import br.edu.ufpr.hospital.consulta.service.EspecialidadeService;
+import br.edu.ufpr.hospital.consulta.service.EspecialidadeService.ContagemDisponibilidade;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -38,6 +43,27 @@ public class EspecialidadeController {
         return ResponseEntity.ok(especialidades);
     }
 
+    /**
+     * Count upcoming consultations with free slots per specialty
+     * Supports conditional GET: the response carries an ETag, and a request with a
+     * matching If-None-Match gets 304 Not Modified without a body
+     */
+    @GetMapping("/disponibilidade")
+    public ResponseEntity<List<DisponibilidadeEspecialidadeDTO>> contarDisponibilidade(WebRequest request) {
+        ContagemDisponibilidade contagem = especialidadeService.contarDisponibilidade();
+
+        if (request.checkNotModified(contagem.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(contagem.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(contagem.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(contagem.itens());
+    }
+
     /**
      * Get specialty by code
      * Public endpoint - no authentication required
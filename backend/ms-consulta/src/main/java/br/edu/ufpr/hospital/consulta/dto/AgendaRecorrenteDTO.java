@@ -0,0 +1,78 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Modelo de agenda recorrente: uma consulta em cada horário, nos dias da semana
+ * escolhidos, entre as datas de início e fim (inclusive).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgendaRecorrenteDTO {
+
+    /**
+     * Nome do médico das consultas geradas.
+     */
+    @NotBlank(message = "Nome do médico é obrigatório")
+    @Size(max = 100, message = "Nome do médico deve ter no máximo 100 caracteres")
+    private String medico;
+
+    /**
+     * Código da especialidade das consultas geradas.
+     */
+    @NotBlank(message = "Especialidade é obrigatória")
+    @Size(max = 50, message = "Especialidade deve ter no máximo 50 caracteres")
+    private String especialidade;
+
+    /**
+     * Valor de cada consulta.
+     */
+    @NotNull(message = "Valor é obrigatório")
+    @DecimalMin(value = "0.01", message = "Valor deve ser maior que zero")
+    @Digits(integer = 8, fraction = 2, message = "Valor deve ter no máximo 8 dígitos inteiros e 2 decimais")
+    private BigDecimal valor;
+
+    /**
+     * Vagas de cada consulta.
+     */
+    @NotNull(message = "Número de vagas é obrigatório")
+    @Min(value = 1, message = "Deve haver pelo menos 1 vaga")
+    @Max(value = 50, message = "Número máximo de vagas é 50")
+    private Integer vagas;
+
+    /**
+     * Primeiro dia da agenda.
+     */
+    @NotNull(message = "Data de início é obrigatória")
+    private LocalDate dataInicio;
+
+    /**
+     * Último dia da agenda (inclusive).
+     */
+    @NotNull(message = "Data de fim é obrigatória")
+    private LocalDate dataFim;
+
+    /**
+     * Dias da semana com atendimento (ex.: MONDAY, WEDNESDAY).
+     */
+    @NotEmpty(message = "Informe ao menos um dia da semana")
+    private Set<DayOfWeek> diasSemana;
+
+    /**
+     * Horários das consultas em cada dia de atendimento (ex.: 08:00, 09:30).
+     */
+    @NotEmpty(message = "Informe ao menos um horário")
+    private List<LocalTime> horarios;
+
+}
@@ -1,7 +1,9 @@
 package br.edu.ufpr.hospital.consulta.dto;
 
 import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.AgendamentoArquivado;
 import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -41,6 +43,35 @@ public class AgendamentoResponseDTO {
         this.valorTotal = valorPago.add(descontoPontos);
     }
     
+    /**
+     * Flat projection constructor used by single-query listings (JPQL constructor expression)
+     * Receives the booking columns followed by the joined consultation columns
+     */
+    public AgendamentoResponseDTO(Long id, String codigoAgendamento, Integer pacienteId,
+                                 LocalDateTime dataAgendamento, BigDecimal pontosUsados,
+                                 BigDecimal valorPago, StatusAgendamento status, String observacoes,
+                                 LocalDateTime dataCheckin, LocalDateTime dataConfirmacao,
+                                 Long consultaId, String consultaCodigo, LocalDateTime consultaDataHora,
+                                 String consultaEspecialidade, String consultaMedico, BigDecimal consultaValor,
+                                 Integer consultaVagas, Integer consultaVagasOcupadas,
+                                 StatusConsulta consultaStatus, LocalDateTime consultaDataCriacao) {
+        this.id = id;
+        this.codigoAgendamento = codigoAgendamento;
+        this.pacienteId = pacienteId;
+        this.dataAgendamento = dataAgendamento;
+        this.pontosUsados = pontosUsados;
+        this.valorPago = valorPago;
+        this.status = status;
+        this.observacoes = observacoes;
+        this.dataCheckin = dataCheckin;
+        this.dataConfirmacao = dataConfirmacao;
+        this.descontoPontos = pontosUsados.multiply(new BigDecimal("5.00"));
+        this.valorTotal = consultaValor;
+        this.consulta = new ConsultaResponseDTO(consultaId, consultaCodigo, consultaDataHora,
+                consultaEspecialidade, consultaMedico, consultaValor, consultaVagas, consultaVagasOcupadas,
+                consultaStatus, consultaDataCriacao);
+    }
+    
     /**
      * Static factory method to create DTO from entity
      */
@@ -73,6 +104,31 @@ public class AgendamentoResponseDTO {
         return dto;
     }
     
+    /**
+     * Create DTO from an archived booking
+     * The archive keeps only the consultation fields a patient's history needs;
+     * slots and creation date are not kept
+     */
+    public static AgendamentoResponseDTO fromArquivado(AgendamentoArquivado arquivado) {
+        AgendamentoResponseDTO dto = new AgendamentoResponseDTO(arquivado.getId(),
+                arquivado.getCodigoAgendamento(), arquivado.getPacienteId(), arquivado.getDataAgendamento(),
+                arquivado.getPontosUsados(), arquivado.getValorPago(), arquivado.getStatus());
+        dto.setDataCheckin(arquivado.getDataCheckin());
+        dto.setDataConfirmacao(arquivado.getDataConfirmacao());
+        dto.setValorTotal(arquivado.getValorConsulta());
+        
+        ConsultaResponseDTO consulta = new ConsultaResponseDTO();
+        consulta.setId(arquivado.getConsultaId());
+        consulta.setCodigo(arquivado.getConsultaCodigo());
+        consulta.setDataHora(arquivado.getDataConsulta());
+        consulta.setEspecialidade(arquivado.getEspecialidade());
+        consulta.setMedico(arquivado.getMedico());
+        consulta.setValor(arquivado.getValorConsulta());
+        consulta.setStatus(arquivado.getStatusConsulta());
+        dto.setConsulta(consulta);
+        return dto;
+    }
+    
     /**
      * Create DTO with minimal consultation info (to avoid circular references)
      */
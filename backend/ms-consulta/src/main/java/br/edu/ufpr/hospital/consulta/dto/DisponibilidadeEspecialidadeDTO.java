@@ -0,0 +1,26 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.Value;
+
+/**
+ * Quantidade de consultas futuras com vagas livres de uma especialidade.
+ */
+@Value
+public class DisponibilidadeEspecialidadeDTO {
+
+    /**
+     * O código da especialidade (ex: "CARD").
+     */
+    String codigo;
+
+    /**
+     * O nome da especialidade, ou null se o código não estiver no catálogo.
+     */
+    String nome;
+
+    /**
+     * Consultas DISPONIVEL, ainda não realizadas, com pelo menos uma vaga livre.
+     */
+    long consultasDisponiveis;
+
+}
@@ -0,0 +1,54 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import br.edu.ufpr.hospital.consulta.model.StatusListaEspera;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Entrada de um paciente na lista de espera de uma consulta lotada.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntradaListaEsperaDTO {
+
+    /**
+     * Identificador da entrada (define a ordem de chegada).
+     */
+    private Long id;
+
+    /**
+     * Consulta aguardada.
+     */
+    private Long consultaId;
+
+    /**
+     * Pontos a usar no agendamento quando a vaga for repassada.
+     */
+    private BigDecimal pontosUsados;
+
+    /**
+     * Situação da entrada (AGUARDANDO, PROMOVIDO, SAIU ou ENCERRADO).
+     */
+    private StatusListaEspera status;
+
+    /**
+     * Posição na fila (1 = próximo a receber vaga), ou null se não está mais aguardando.
+     */
+    private Long posicao;
+
+    /**
+     * Momento da entrada na lista.
+     */
+    private LocalDateTime dataEntrada;
+
+    /**
+     * Código do agendamento criado na promoção, ou null se ainda não foi promovido.
+     */
+    private String codigoAgendamento;
+
+}
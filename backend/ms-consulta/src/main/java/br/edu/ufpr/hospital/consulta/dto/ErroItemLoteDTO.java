@@ -0,0 +1,30 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Erro de validação de um item de um lote de consultas.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ErroItemLoteDTO {
+
+    /**
+     * Item com erro: "consultas[3]" para a lista, "agenda" ou "agenda 2025-07-07T08:00" para a agenda recorrente.
+     */
+    private String item;
+
+    /**
+     * Campo com erro, ou null quando o erro é do item como um todo (ex.: horário em conflito).
+     */
+    private String campo;
+
+    /**
+     * Descrição do erro.
+     */
+    private String mensagem;
+
+}
@@ -1,26 +1,23 @@
 package br.edu.ufpr.hospital.consulta.dto;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 /**
  * DTO (Data Transfer Object) para representar uma Especialidade Médica.
  * Usado para transferir a lista de especialidades para o frontend.
+ * Imutável: as mesmas instâncias do catálogo são compartilhadas entre requisições.
  */
-@Data // Anotação do Lombok que gera Getters, Setters, toString, etc.
-@NoArgsConstructor // Gera um construtor sem argumentos.
-@AllArgsConstructor // Gera um construtor com todos os campos como argumentos.
+@Value // Anotação do Lombok que gera construtor com todos os campos, getters, equals/hashCode e toString (sem setters).
 public class EspecialidadeDTO {
 
     /**
      * O código da especialidade (ex: "CARD", "DERM").
      */
-    private String codigo;
+    String codigo;
 
     /**
      * O nome completo da especialidade (ex: "Cardiologia", "Dermatologia").
      */
-    private String nome;
+    String nome;
 
 }
@@ -0,0 +1,27 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Intervalo livre na agenda de um médico em um dia, onde cabe ao menos uma consulta.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JanelaLivreDTO {
+
+    /**
+     * Início do intervalo livre.
+     */
+    private LocalDateTime inicio;
+
+    /**
+     * Fim do intervalo livre (início da próxima consulta ou fim do expediente).
+     */
+    private LocalDateTime fim;
+
+}
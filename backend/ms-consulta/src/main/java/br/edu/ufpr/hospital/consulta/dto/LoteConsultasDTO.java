@@ -0,0 +1,28 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Pedido de criação de várias consultas de uma vez: uma lista de consultas, uma
+ * agenda recorrente, ou ambas.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoteConsultasDTO {
+
+    /**
+     * Consultas informadas uma a uma.
+     */
+    private List<ConsultaDTO> consultas;
+
+    /**
+     * Agenda recorrente a expandir em consultas (apenas horários futuros são gerados).
+     */
+    private AgendaRecorrenteDTO agenda;
+
+}
@@ -0,0 +1,35 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Médico encontrado pela busca aproximada por nome, com a similaridade ao termo buscado.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicoEncontradoDTO {
+
+    /**
+     * Nome do médico como cadastrado (funcionário ou consulta).
+     */
+    private String nome;
+
+    /**
+     * Especialidade do médico, se conhecida.
+     */
+    private String especialidade;
+
+    /**
+     * CRM do médico, ou null se ele só aparece em consultas.
+     */
+    private String crm;
+
+    /**
+     * Similaridade entre o termo e o nome, de 0 a 1 (1 = todos os trigramas do termo presentes).
+     */
+    private double similaridade;
+
+}
@@ -0,0 +1,38 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Item enviado ao endpoint de operações de pontos em lote do ms-paciente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OperacaoPontosDTO {
+
+    /**
+     * Chave de idempotência: o ms-paciente aplica cada chave uma única vez.
+     */
+    private String chaveIdempotencia;
+
+    private Integer pacienteId;
+
+    /**
+     * "SAIDA" (débito) ou "ENTRADA" (crédito).
+     */
+    private String tipo;
+
+    private BigDecimal pontos;
+
+    private String descricao;
+
+    /**
+     * Origem da transação no ms-paciente (ex: "USO_CONSULTA", "CANCELAMENTO_CONSULTA").
+     */
+    private String origem;
+
+}
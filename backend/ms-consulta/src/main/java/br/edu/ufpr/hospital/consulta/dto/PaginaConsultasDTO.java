@@ -0,0 +1,27 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de consultas obtida por paginação keyset (cursor em dataHora + id).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaConsultasDTO {
+
+    /**
+     * Consultas da página, ordenadas por dataHora e id.
+     */
+    private List<ConsultaResponseDTO> itens;
+
+    /**
+     * Cursor opaco para buscar a próxima página, ou null se esta for a última.
+     */
+    private String proximoCursor;
+
+}
@@ -0,0 +1,28 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resultado da criação de um lote de consultas. O lote é tudo ou nada: com algum
+ * erro, nenhuma consulta é criada e os erros de todos os itens são listados.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoLoteConsultasDTO {
+
+    /**
+     * Consultas criadas, na ordem do pedido (lista primeiro, depois a agenda); vazia se houve erros.
+     */
+    private List<ConsultaResponseDTO> consultas;
+
+    /**
+     * Erros de validação por item; vazia se o lote foi criado.
+     */
+    private List<ErroItemLoteDTO> erros;
+
+}
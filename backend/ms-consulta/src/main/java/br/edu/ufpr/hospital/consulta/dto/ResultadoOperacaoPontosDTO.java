@@ -0,0 +1,26 @@
+package br.edu.ufpr.hospital.consulta.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de um item das operações de pontos em lote no ms-paciente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoOperacaoPontosDTO {
+
+    private String chaveIdempotencia;
+
+    private Integer pacienteId;
+
+    private boolean sucesso;
+
+    /**
+     * Motivo da recusa quando a operação não foi aplicada.
+     */
+    private String mensagem;
+
+}
@@ -0,0 +1,11 @@
+package br.edu.ufpr.hospital.consulta.exception;
+
+/**
+ * Exception thrown when a new consultation overlaps another one of the same doctor
+ */
+public class ConflitoAgendaMedicoException extends RuntimeException {
+    
+    public ConflitoAgendaMedicoException(String message) {
+        super(message);
+    }
+}
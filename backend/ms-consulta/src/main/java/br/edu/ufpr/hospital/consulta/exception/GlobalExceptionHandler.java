@@ -1,5 +1,6 @@
 package br.edu.ufpr.hospital.consulta.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -10,6 +11,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Global exception handler for MS Consulta
@@ -77,6 +79,16 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
     
+    @ExceptionHandler(ListaEsperaInvalidaException.class)
+    public ResponseEntity<ErrorResponse> handleListaEsperaInvalida(ListaEsperaInvalidaException e) {
+        ErrorResponse error = new ErrorResponse(
+            "LISTA_ESPERA_INVALIDA", 
+            e.getMessage(), 
+            LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+    
     @ExceptionHandler(AcessoNegadoException.class)
     public ResponseEntity<ErrorResponse> handleAcessoNegado(AcessoNegadoException e) {
         ErrorResponse error = new ErrorResponse(
@@ -97,6 +109,16 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
     
+    @ExceptionHandler(ConflitoAgendaMedicoException.class)
+    public ResponseEntity<ErrorResponse> handleConflitoAgendaMedico(ConflitoAgendaMedicoException e) {
+        ErrorResponse error = new ErrorResponse(
+            "CONFLITO_AGENDA_MEDICO", 
+            e.getMessage(), 
+            LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+    
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleValidationErrors(MethodArgumentNotValidException e) {
         Map<String, String> errors = new HashMap<>();
@@ -124,6 +146,36 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
     
+    @ExceptionHandler(ServicoPacientesIndisponivelException.class)
+    public ResponseEntity<ErrorResponse> handleServicoPacientesIndisponivel(ServicoPacientesIndisponivelException e) {
+        ErrorResponse error = new ErrorResponse(
+            "SERVICO_PONTOS_INDISPONIVEL", 
+            e.getMessage(), 
+            LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+    
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ErrorResponse> handleRejectedExecution(RejectedExecutionException e) {
+        ErrorResponse error = new ErrorResponse(
+            "SERVICO_SOBRECARREGADO", 
+            "Serviço sobrecarregado, tente novamente em instantes", 
+            LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+    
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailure(OptimisticLockingFailureException e) {
+        ErrorResponse error = new ErrorResponse(
+            "CONFLITO_CONCORRENTE", 
+            "O registro foi alterado por outra operação ao mesmo tempo, tente novamente", 
+            LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+    
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ErrorResponse> handleRuntimeException(RuntimeException e) {
         ErrorResponse error = new ErrorResponse(
@@ -0,0 +1,15 @@
+package br.edu.ufpr.hospital.consulta.exception;
+
+/**
+ * Exception thrown when a waitlist operation is not allowed
+ */
+public class ListaEsperaInvalidaException extends RuntimeException {
+    
+    public ListaEsperaInvalidaException(String message) {
+        super(message);
+    }
+    
+    public ListaEsperaInvalidaException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package br.edu.ufpr.hospital.consulta.exception;
+
+/**
+ * Exception thrown when a call to ms-paciente is refused locally, without being
+ * attempted, because its circuit breaker is open or its bulkhead is full
+ */
+public class ServicoPacientesIndisponivelException extends RuntimeException {
+    
+    public ServicoPacientesIndisponivelException(String message) {
+        super(message);
+    }
+    
+    public ServicoPacientesIndisponivelException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
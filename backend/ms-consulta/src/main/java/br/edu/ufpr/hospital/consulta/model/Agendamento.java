@@ -1,6 +1,7 @@
 package br.edu.ufpr.hospital.consulta.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -8,15 +9,20 @@ import java.time.LocalDateTime;
  * Entidade que representa um Agendamento - a reserva individual de um paciente em uma consulta
  */
 @Entity
-@Table(name = "agendamentos")
+@Table(name = "agendamentos", indexes = {
+        @Index(name = "idx_agendamentos_paciente_data", columnList = "paciente_id, data_agendamento"),
+        @Index(name = "idx_agendamentos_status_data_consulta", columnList = "status, data_consulta")
+})
 public class Agendamento {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Column(name = "codigo_agendamento", unique = true, nullable = false, length = 50)
-    private String codigoAgendamento; // Unique booking code (e.g., AGD1672589123456)
+    // Unique booking code (e.g., AGD000051). The unique key is created by
+    // ParticionamentoAgendamentosService: it depends on whether the table is partitioned
+    @Column(name = "codigo_agendamento", nullable = false, length = 50)
+    private String codigoAgendamento;
     
     @Column(name = "paciente_id", nullable = false)
     private Integer pacienteId; // Reference to ms-paciente service
@@ -43,11 +49,21 @@ public class Agendamento {
     @Column(name = "data_confirmacao")
     private LocalDateTime dataConfirmacao;
     
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "versao", nullable = false)
+    private Long versao; // Optimistic lock; the set-based status UPDATEs bump it too
+    
     // Relacionamento com Consulta
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "consulta_id", nullable = false)
     private Consulta consulta;
     
+    // Cópia de consulta.dataHora: chave de partição por mês e horizonte de arquivamento,
+    // permite filtrar por data sem JOIN com consultas
+    @Column(name = "data_consulta")
+    private LocalDateTime dataConsulta;
+    
     // Constructors
     public Agendamento() {}
     
@@ -56,6 +72,7 @@ public class Agendamento {
         this.codigoAgendamento = codigoAgendamento;
         this.pacienteId = pacienteId;
         this.consulta = consulta;
+        this.dataConsulta = consulta.getDataHora();
         this.pontosUsados = pontosUsados;
         this.valorPago = valorPago;
         this.dataAgendamento = LocalDateTime.now();
@@ -195,6 +212,10 @@ public class Agendamento {
         return dataConfirmacao;
     }
     
+    public Long getVersao() {
+        return versao;
+    }
+    
     public void setDataConfirmacao(LocalDateTime dataConfirmacao) {
         this.dataConfirmacao = dataConfirmacao;
     }
@@ -205,6 +226,11 @@ public class Agendamento {
     
     public void setConsulta(Consulta consulta) {
         this.consulta = consulta;
+        this.dataConsulta = consulta != null ? consulta.getDataHora() : null;
+    }
+    
+    public LocalDateTime getDataConsulta() {
+        return dataConsulta;
     }
     
     @Override
@@ -0,0 +1,144 @@
+package br.edu.ufpr.hospital.consulta.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que representa um agendamento encerrado (REALIZADO, FALTOU ou CANCELADO)
+ * movido para o arquivo depois do horizonte de retenção
+ * Compacta e autocontida: guarda os dados da consulta necessários para o histórico
+ * do paciente, sem chave estrangeira nem JOIN com consultas, e sem os campos que
+ * só servem a agendamentos ativos (observações, versão)
+ */
+@Entity
+@Table(name = "agendamentos_arquivo", indexes = {
+        @Index(name = "idx_agendamentos_arquivo_paciente", columnList = "paciente_id, data_agendamento")
+})
+public class AgendamentoArquivado {
+
+    @Id
+    private Long id; // Same id the booking had in agendamentos
+
+    @Column(name = "codigo_agendamento", nullable = false, length = 50)
+    private String codigoAgendamento;
+
+    @Column(name = "paciente_id", nullable = false)
+    private Integer pacienteId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private StatusAgendamento status;
+
+    @Column(name = "pontos_usados", nullable = false, precision = 10, scale = 2)
+    private BigDecimal pontosUsados;
+
+    @Column(name = "valor_pago", nullable = false, precision = 10, scale = 2)
+    private BigDecimal valorPago;
+
+    @Column(name = "data_agendamento", nullable = false)
+    private LocalDateTime dataAgendamento;
+
+    @Column(name = "data_checkin")
+    private LocalDateTime dataCheckin;
+
+    @Column(name = "data_confirmacao")
+    private LocalDateTime dataConfirmacao;
+
+    @Column(name = "consulta_id", nullable = false)
+    private Long consultaId;
+
+    @Column(name = "consulta_codigo", nullable = false, length = 20)
+    private String consultaCodigo;
+
+    @Column(name = "data_consulta", nullable = false)
+    private LocalDateTime dataConsulta;
+
+    @Column(name = "especialidade", nullable = false, length = 50)
+    private String especialidade;
+
+    @Column(name = "medico", nullable = false, length = 100)
+    private String medico;
+
+    @Column(name = "valor_consulta", nullable = false, precision = 10, scale = 2)
+    private BigDecimal valorConsulta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status_consulta", nullable = false, length = 20)
+    private StatusConsulta statusConsulta;
+
+    @Column(name = "data_arquivamento", nullable = false)
+    private LocalDateTime dataArquivamento;
+
+    // Constructors
+    public AgendamentoArquivado() {}
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getCodigoAgendamento() {
+        return codigoAgendamento;
+    }
+
+    public Integer getPacienteId() {
+        return pacienteId;
+    }
+
+    public StatusAgendamento getStatus() {
+        return status;
+    }
+
+    public BigDecimal getPontosUsados() {
+        return pontosUsados;
+    }
+
+    public BigDecimal getValorPago() {
+        return valorPago;
+    }
+
+    public LocalDateTime getDataAgendamento() {
+        return dataAgendamento;
+    }
+
+    public LocalDateTime getDataCheckin() {
+        return dataCheckin;
+    }
+
+    public LocalDateTime getDataConfirmacao() {
+        return dataConfirmacao;
+    }
+
+    public Long getConsultaId() {
+        return consultaId;
+    }
+
+    public String getConsultaCodigo() {
+        return consultaCodigo;
+    }
+
+    public LocalDateTime getDataConsulta() {
+        return dataConsulta;
+    }
+
+    public String getEspecialidade() {
+        return especialidade;
+    }
+
+    public String getMedico() {
+        return medico;
+    }
+
+    public BigDecimal getValorConsulta() {
+        return valorConsulta;
+    }
+
+    public StatusConsulta getStatusConsulta() {
+        return statusConsulta;
+    }
+
+    public LocalDateTime getDataArquivamento() {
+        return dataArquivamento;
+    }
+}
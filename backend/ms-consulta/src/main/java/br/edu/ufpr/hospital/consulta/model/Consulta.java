@@ -1,6 +1,8 @@
 package br.edu.ufpr.hospital.consulta.model;
 
+import br.edu.ufpr.hospital.consulta.util.TextoUtils;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -11,12 +13,15 @@ import java.util.List;
  * com um número específico de vagas que podem ser agendadas por pacientes
  */
 @Entity
-@Table(name = "consultas")
+@Table(name = "consultas", indexes = {
+        @Index(name = "idx_consultas_medico_normalizado_data", columnList = "medico_normalizado, data_hora")
+})
 public class Consulta {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "consultas_id")
+    @SequenceGenerator(name = "consultas_id", sequenceName = "consultas_id_bloco_seq", allocationSize = 50)
+    private Long id; // Pooled sequence: one nextval per 50 inserts, so inserts can be JDBC-batched
     
     @Column(name = "codigo", unique = true, nullable = false, length = 20)
     private String codigo; // Auto-generated (CON001, CON002, etc.)
@@ -30,6 +35,9 @@ public class Consulta {
     @Column(name = "medico", nullable = false, length = 100)
     private String medico;
     
+    @Column(name = "medico_normalizado", length = 100)
+    private String medicoNormalizado; // TextoUtils.normalizar(medico): key of the doctor's agenda checks
+    
     @Column(name = "valor", nullable = false, precision = 10, scale = 2)
     private BigDecimal valor;
     
@@ -46,6 +54,11 @@ public class Consulta {
     @Column(name = "data_criacao", nullable = false)
     private LocalDateTime dataCriacao = LocalDateTime.now();
     
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "versao", nullable = false)
+    private Long versao; // Optimistic lock; the atomic slot/status UPDATEs bump it too
+    
     // Relacionamento bidirecional com Agendamento
     @OneToMany(mappedBy = "consulta", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Agendamento> agendamentos = new ArrayList<>();
@@ -66,6 +79,12 @@ public class Consulta {
         this.dataCriacao = LocalDateTime.now();
     }
     
+    @PrePersist
+    @PreUpdate
+    protected void normalizarMedico() {
+        this.medicoNormalizado = TextoUtils.normalizar(medico);
+    }
+    
     // Business methods
     public boolean temVagasDisponiveis() {
         return vagasOcupadas < vagas;
@@ -135,6 +154,10 @@ public class Consulta {
         this.medico = medico;
     }
     
+    public String getMedicoNormalizado() {
+        return medicoNormalizado;
+    }
+    
     public BigDecimal getValor() {
         return valor;
     }
@@ -171,6 +194,10 @@ public class Consulta {
         return dataCriacao;
     }
     
+    public Long getVersao() {
+        return versao;
+    }
+    
     public void setDataCriacao(LocalDateTime dataCriacao) {
         this.dataCriacao = dataCriacao;
     }
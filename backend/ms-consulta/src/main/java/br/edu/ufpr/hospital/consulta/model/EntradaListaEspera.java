@@ -0,0 +1,120 @@
+package br.edu.ufpr.hospital.consulta.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que representa um paciente aguardando vaga em uma consulta lotada
+ * A ordem de chegada (FIFO) é a ordem do id; quando uma vaga é liberada, a primeira
+ * entrada AGUARDANDO é promovida a um agendamento CRIADO com os pontos informados na entrada
+ */
+@Entity
+@Table(name = "lista_espera", indexes = {
+        @Index(name = "idx_lista_espera_consulta_status", columnList = "consulta_id, status, id"),
+        @Index(name = "idx_lista_espera_paciente", columnList = "paciente_id")
+})
+public class EntradaListaEspera {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "consulta_id", nullable = false)
+    private Long consultaId;
+
+    @Column(name = "paciente_id", nullable = false)
+    private Integer pacienteId; // Reference to ms-paciente service
+
+    @Column(name = "pontos_usados", nullable = false, precision = 10, scale = 2)
+    private BigDecimal pontosUsados = BigDecimal.ZERO;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private StatusListaEspera status = StatusListaEspera.AGUARDANDO;
+
+    @Column(name = "data_entrada", nullable = false)
+    private LocalDateTime dataEntrada = LocalDateTime.now();
+
+    @Column(name = "data_saida")
+    private LocalDateTime dataSaida; // Promotion, withdrawal or closing of the queue
+
+    @Column(name = "codigo_agendamento", length = 50)
+    private String codigoAgendamento; // Booking created on promotion
+
+    // Constructors
+    public EntradaListaEspera() {}
+
+    public EntradaListaEspera(Long consultaId, Integer pacienteId, BigDecimal pontosUsados) {
+        this.consultaId = consultaId;
+        this.pacienteId = pacienteId;
+        this.pontosUsados = pontosUsados;
+        this.dataEntrada = LocalDateTime.now();
+        this.status = StatusListaEspera.AGUARDANDO;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getConsultaId() {
+        return consultaId;
+    }
+
+    public void setConsultaId(Long consultaId) {
+        this.consultaId = consultaId;
+    }
+
+    public Integer getPacienteId() {
+        return pacienteId;
+    }
+
+    public void setPacienteId(Integer pacienteId) {
+        this.pacienteId = pacienteId;
+    }
+
+    public BigDecimal getPontosUsados() {
+        return pontosUsados;
+    }
+
+    public void setPontosUsados(BigDecimal pontosUsados) {
+        this.pontosUsados = pontosUsados;
+    }
+
+    public StatusListaEspera getStatus() {
+        return status;
+    }
+
+    public void setStatus(StatusListaEspera status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getDataEntrada() {
+        return dataEntrada;
+    }
+
+    public void setDataEntrada(LocalDateTime dataEntrada) {
+        this.dataEntrada = dataEntrada;
+    }
+
+    public LocalDateTime getDataSaida() {
+        return dataSaida;
+    }
+
+    public void setDataSaida(LocalDateTime dataSaida) {
+        this.dataSaida = dataSaida;
+    }
+
+    public String getCodigoAgendamento() {
+        return codigoAgendamento;
+    }
+
+    public void setCodigoAgendamento(String codigoAgendamento) {
+        this.codigoAgendamento = codigoAgendamento;
+    }
+}
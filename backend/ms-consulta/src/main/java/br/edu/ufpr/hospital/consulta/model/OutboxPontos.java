@@ -0,0 +1,240 @@
+package br.edu.ufpr.hospital.consulta.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que representa uma operação de pontos (débito ou estorno) a ser aplicada no ms-paciente
+ * Gravada na mesma transação do agendamento/cancelamento que a originou e enviada em lote
+ * depois do commit pelo relay, com novas tentativas em caso de falha de comunicação
+ */
+@Entity
+@Table(name = "outbox_pontos", indexes = {
+        @Index(name = "idx_outbox_pontos_status_tentativa", columnList = "status, proxima_tentativa"),
+        @Index(name = "idx_outbox_pontos_lote", columnList = "lote"),
+        @Index(name = "idx_outbox_pontos_paciente_status", columnList = "paciente_id, status")
+})
+public class OutboxPontos {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chave_idempotencia", unique = true, nullable = false, length = 100)
+    private String chaveIdempotencia; // e.g. AGD000051:SAIDA - ms-paciente applies each key only once
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", nullable = false, length = 10)
+    private TipoOperacaoPontos tipo;
+
+    @Column(name = "paciente_id", nullable = false)
+    private Integer pacienteId;
+
+    @Column(name = "pontos", nullable = false, precision = 10, scale = 2)
+    private BigDecimal pontos;
+
+    @Column(name = "descricao", nullable = false, length = 100)
+    private String descricao;
+
+    @Column(name = "origem", nullable = false, length = 30)
+    private String origem; // OrigemTransacaoPonto on ms-paciente
+
+    @Column(name = "codigo_agendamento", nullable = false, length = 50)
+    private String codigoAgendamento; // Booking that originated the operation
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private StatusOutbox status = StatusOutbox.PENDENTE;
+
+    @Column(name = "tentativas", nullable = false)
+    private Integer tentativas = 0;
+
+    @Column(name = "ultimo_erro", length = 500)
+    private String ultimoErro;
+
+    @Column(name = "lote", length = 36)
+    private String lote; // Dispatch batch currently holding this operation
+
+    @Column(name = "proxima_tentativa", nullable = false)
+    private LocalDateTime proximaTentativa = LocalDateTime.now();
+
+    @Column(name = "data_criacao", nullable = false)
+    private LocalDateTime dataCriacao = LocalDateTime.now();
+
+    @Column(name = "data_atualizacao", nullable = false)
+    private LocalDateTime dataAtualizacao = LocalDateTime.now();
+
+    // Constructors
+    public OutboxPontos() {}
+
+    public OutboxPontos(TipoOperacaoPontos tipo, Agendamento agendamento, String descricao, String origem) {
+        this.tipo = tipo;
+        this.chaveIdempotencia = chave(agendamento.getCodigoAgendamento(), tipo);
+        this.pacienteId = agendamento.getPacienteId();
+        this.pontos = agendamento.getPontosUsados();
+        this.descricao = descricao;
+        this.origem = origem;
+        this.codigoAgendamento = agendamento.getCodigoAgendamento();
+    }
+
+    /**
+     * Idempotency key of an operation: one debit and at most one refund per booking
+     */
+    public static String chave(String codigoAgendamento, TipoOperacaoPontos tipo) {
+        return codigoAgendamento + ":" + tipo.name();
+    }
+
+    // Business methods
+    public void concluir() {
+        this.status = StatusOutbox.CONCLUIDO;
+        this.ultimoErro = null;
+        this.lote = null;
+        this.dataAtualizacao = LocalDateTime.now();
+    }
+
+    public void registrarFalha(String erro, int maxTentativas, LocalDateTime proximaTentativa) {
+        this.tentativas++;
+        this.ultimoErro = erro != null && erro.length() > 500 ? erro.substring(0, 500) : erro;
+        this.status = tentativas >= maxTentativas ? StatusOutbox.FALHOU : StatusOutbox.PENDENTE;
+        this.proximaTentativa = proximaTentativa;
+        this.lote = null;
+        this.dataAtualizacao = LocalDateTime.now();
+    }
+
+    /**
+     * Back to the queue without counting an attempt (the call was never sent)
+     */
+    public void adiar(String motivo, LocalDateTime proximaTentativa) {
+        this.ultimoErro = motivo != null && motivo.length() > 500 ? motivo.substring(0, 500) : motivo;
+        this.status = StatusOutbox.PENDENTE;
+        this.proximaTentativa = proximaTentativa;
+        this.lote = null;
+        this.dataAtualizacao = LocalDateTime.now();
+    }
+
+    public void recusar(String motivo) {
+        registrarFalha(motivo, 0, proximaTentativa);
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getChaveIdempotencia() {
+        return chaveIdempotencia;
+    }
+
+    public void setChaveIdempotencia(String chaveIdempotencia) {
+        this.chaveIdempotencia = chaveIdempotencia;
+    }
+
+    public TipoOperacaoPontos getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(TipoOperacaoPontos tipo) {
+        this.tipo = tipo;
+    }
+
+    public Integer getPacienteId() {
+        return pacienteId;
+    }
+
+    public void setPacienteId(Integer pacienteId) {
+        this.pacienteId = pacienteId;
+    }
+
+    public BigDecimal getPontos() {
+        return pontos;
+    }
+
+    public void setPontos(BigDecimal pontos) {
+        this.pontos = pontos;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    public void setDescricao(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getOrigem() {
+        return origem;
+    }
+
+    public void setOrigem(String origem) {
+        this.origem = origem;
+    }
+
+    public String getCodigoAgendamento() {
+        return codigoAgendamento;
+    }
+
+    public void setCodigoAgendamento(String codigoAgendamento) {
+        this.codigoAgendamento = codigoAgendamento;
+    }
+
+    public StatusOutbox getStatus() {
+        return status;
+    }
+
+    public void setStatus(StatusOutbox status) {
+        this.status = status;
+    }
+
+    public Integer getTentativas() {
+        return tentativas;
+    }
+
+    public void setTentativas(Integer tentativas) {
+        this.tentativas = tentativas;
+    }
+
+    public String getUltimoErro() {
+        return ultimoErro;
+    }
+
+    public void setUltimoErro(String ultimoErro) {
+        this.ultimoErro = ultimoErro;
+    }
+
+    public String getLote() {
+        return lote;
+    }
+
+    public void setLote(String lote) {
+        this.lote = lote;
+    }
+
+    public LocalDateTime getProximaTentativa() {
+        return proximaTentativa;
+    }
+
+    public void setProximaTentativa(LocalDateTime proximaTentativa) {
+        this.proximaTentativa = proximaTentativa;
+    }
+
+    public LocalDateTime getDataCriacao() {
+        return dataCriacao;
+    }
+
+    public void setDataCriacao(LocalDateTime dataCriacao) {
+        this.dataCriacao = dataCriacao;
+    }
+
+    public LocalDateTime getDataAtualizacao() {
+        return dataAtualizacao;
+    }
+
+    public void setDataAtualizacao(LocalDateTime dataAtualizacao) {
+        this.dataAtualizacao = dataAtualizacao;
+    }
+}
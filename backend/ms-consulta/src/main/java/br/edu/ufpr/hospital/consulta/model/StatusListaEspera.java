@@ -0,0 +1,21 @@
+package br.edu.ufpr.hospital.consulta.model;
+
+/**
+ * Status de uma entrada na lista de espera de uma consulta lotada
+ */
+public enum StatusListaEspera {
+    AGUARDANDO("Aguardando vaga"),
+    PROMOVIDO("Promovido a agendamento"),
+    SAIU("Saiu da lista"),
+    ENCERRADO("Encerrado");
+
+    private final String descricao;
+
+    StatusListaEspera(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+}
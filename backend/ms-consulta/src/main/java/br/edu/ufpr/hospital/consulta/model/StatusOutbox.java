@@ -0,0 +1,22 @@
+package br.edu.ufpr.hospital.consulta.model;
+
+/**
+ * Status de uma operação de pontos no outbox, aguardando envio ao ms-paciente
+ */
+public enum StatusOutbox {
+    PENDENTE("Pendente"),
+    PROCESSANDO("Processando"),
+    CONCLUIDO("Concluído"),
+    FALHOU("Falhou"),
+    DESCARTADO("Descartado");
+
+    private final String descricao;
+
+    StatusOutbox(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+}
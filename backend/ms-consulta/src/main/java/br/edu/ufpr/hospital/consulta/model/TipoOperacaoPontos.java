@@ -0,0 +1,19 @@
+package br.edu.ufpr.hospital.consulta.model;
+
+/**
+ * Tipos de operação de pontos enviadas ao ms-paciente (mesmos nomes de TipoTransacaoPonto lá)
+ */
+public enum TipoOperacaoPontos {
+    SAIDA("Débito"),
+    ENTRADA("Crédito");
+
+    private final String descricao;
+
+    TipoOperacaoPontos(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+}
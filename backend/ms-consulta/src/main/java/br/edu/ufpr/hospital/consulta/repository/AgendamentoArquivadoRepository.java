@@ -0,0 +1,45 @@
+package br.edu.ufpr.hospital.consulta.repository;
+
+import br.edu.ufpr.hospital.consulta.model.AgendamentoArquivado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for archived (closed, past the retention horizon) bookings
+ */
+@Repository
+public interface AgendamentoArquivadoRepository extends JpaRepository<AgendamentoArquivado, Long> {
+
+    /**
+     * Copy the given bookings, with the consultation fields the archive keeps, into
+     * the archive in one INSERT ... SELECT. The caller deletes them from agendamentos
+     * in the same transaction. Returns the number of archived bookings
+     */
+    @Modifying
+    @Query("INSERT INTO AgendamentoArquivado (id, codigoAgendamento, pacienteId, status, pontosUsados, " +
+           "valorPago, dataAgendamento, dataCheckin, dataConfirmacao, consultaId, consultaCodigo, " +
+           "dataConsulta, especialidade, medico, valorConsulta, statusConsulta, dataArquivamento) " +
+           "SELECT a.id, a.codigoAgendamento, a.pacienteId, a.status, a.pontosUsados, a.valorPago, " +
+           "a.dataAgendamento, a.dataCheckin, a.dataConfirmacao, c.id, c.codigo, c.dataHora, " +
+           "c.especialidade, c.medico, c.valor, c.status, LOCAL DATETIME " +
+           "FROM Agendamento a JOIN a.consulta c WHERE a.id IN :ids")
+    int arquivar(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Patient's archived bookings, newest first
+     */
+    List<AgendamentoArquivado> findByPacienteIdOrderByDataAgendamentoDesc(Integer pacienteId);
+
+    /**
+     * Patient's archived bookings whose consultation took place before the given time, latest first
+     */
+    List<AgendamentoArquivado> findByPacienteIdAndDataConsultaBeforeOrderByDataConsultaDesc(Integer pacienteId,
+            LocalDateTime agora);
+}
@@ -0,0 +1,27 @@
+package br.edu.ufpr.hospital.consulta.repository;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Patient booking history across the hot table and the archive
+ * Hot bookings (agendamentos) are always read first; the archive
+ * (agendamentos_arquivo) is only queried when the caller asks for it, and its
+ * rows are appended after the hot ones
+ */
+public interface AgendamentoHistoricoRepository {
+
+    /**
+     * Patient's bookings, newest first, optionally followed by the archived ones
+     */
+    List<AgendamentoResponseDTO> listarHistoricoPorPaciente(Integer pacienteId, boolean incluirArquivados);
+
+    /**
+     * Patient's bookings for consultations before the given time, latest first,
+     * optionally followed by the archived ones
+     */
+    List<AgendamentoResponseDTO> listarPassadosPorPaciente(Integer pacienteId, LocalDateTime agora,
+            boolean incluirArquivados);
+}
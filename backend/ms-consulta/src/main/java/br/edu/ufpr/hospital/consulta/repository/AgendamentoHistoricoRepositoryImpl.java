@@ -0,0 +1,60 @@
+package br.edu.ufpr.hospital.consulta.repository;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spring Data fragment implementing {@link AgendamentoHistoricoRepository}
+ */
+@Transactional(readOnly = true)
+class AgendamentoHistoricoRepositoryImpl implements AgendamentoHistoricoRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AgendamentoArquivadoRepository arquivo;
+
+    AgendamentoHistoricoRepositoryImpl(AgendamentoArquivadoRepository arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    @Override
+    public List<AgendamentoResponseDTO> listarHistoricoPorPaciente(Integer pacienteId, boolean incluirArquivados) {
+        List<AgendamentoResponseDTO> agendamentos = new ArrayList<>(entityManager
+                .createQuery(AgendamentoRepository.PROJECAO_LISTAGEM +
+                        "WHERE a.pacienteId = :pacienteId ORDER BY a.dataAgendamento DESC",
+                        AgendamentoResponseDTO.class)
+                .setParameter("pacienteId", pacienteId)
+                .getResultList());
+        if (incluirArquivados) {
+            arquivo.findByPacienteIdOrderByDataAgendamentoDesc(pacienteId).stream()
+                    .map(AgendamentoResponseDTO::fromArquivado)
+                    .forEach(agendamentos::add);
+        }
+        return agendamentos;
+    }
+
+    @Override
+    public List<AgendamentoResponseDTO> listarPassadosPorPaciente(Integer pacienteId, LocalDateTime agora,
+            boolean incluirArquivados) {
+        List<AgendamentoResponseDTO> agendamentos = new ArrayList<>(entityManager
+                .createQuery(AgendamentoRepository.PROJECAO_LISTAGEM +
+                        "WHERE a.pacienteId = :pacienteId AND a.dataConsulta < :agora " +
+                        "ORDER BY a.dataConsulta DESC", AgendamentoResponseDTO.class)
+                .setParameter("pacienteId", pacienteId)
+                .setParameter("agora", agora)
+                .getResultList());
+        if (incluirArquivados) {
+            arquivo.findByPacienteIdAndDataConsultaBeforeOrderByDataConsultaDesc(pacienteId, agora).stream()
+                    .map(AgendamentoResponseDTO::fromArquivado)
+                    .forEach(agendamentos::add);
+        }
+        return agendamentos;
+    }
+}
@@ -1,13 +1,17 @@
 package br.edu.ufpr.hospital.consulta.repository;
 
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
 import br.edu.ufpr.hospital.consulta.model.Agendamento;
 import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,7 +19,7 @@ import java.util.Optional;
  * Repository interface for Agendamento entity
  */
 @Repository
-public interface AgendamentoRepository extends JpaRepository<Agendamento, Long> {
+public interface AgendamentoRepository extends JpaRepository<Agendamento, Long>, AgendamentoHistoricoRepository {
     
     /**
      * Find all bookings for a specific patient
@@ -57,7 +61,7 @@ public interface AgendamentoRepository extends JpaRepository<Agendamento, Long>
      * Find bookings that can be checked in (within 48h window)
      */
     @Query("SELECT a FROM Agendamento a WHERE a.pacienteId = :pacienteId AND a.status = :status " +
-           "AND a.consulta.dataHora BETWEEN :inicio AND :fim")
+           "AND a.dataConsulta BETWEEN :inicio AND :fim")
     List<Agendamento> findBookingsForCheckin(@Param("pacienteId") Integer pacienteId,
                                            @Param("status") StatusAgendamento status,
                                            @Param("inicio") LocalDateTime inicio,
@@ -74,7 +78,7 @@ public interface AgendamentoRepository extends JpaRepository<Agendamento, Long>
      * Find bookings by date range for a patient
      */
     @Query("SELECT a FROM Agendamento a WHERE a.pacienteId = :pacienteId " +
-           "AND a.consulta.dataHora BETWEEN :inicio AND :fim ORDER BY a.consulta.dataHora ASC")
+           "AND a.dataConsulta BETWEEN :inicio AND :fim ORDER BY a.dataConsulta ASC")
     List<Agendamento> findByPacienteIdAndDateRange(@Param("pacienteId") Integer pacienteId,
                                                   @Param("inicio") LocalDateTime inicio,
                                                   @Param("fim") LocalDateTime fim);
@@ -90,8 +94,8 @@ public interface AgendamentoRepository extends JpaRepository<Agendamento, Long>
      * Find upcoming bookings for a patient (future consultations only)
      */
     @Query("SELECT a FROM Agendamento a WHERE a.pacienteId = :pacienteId " +
-           "AND a.consulta.dataHora > :agora AND a.status != 'CANCELADO' " +
-           "ORDER BY a.consulta.dataHora ASC")
+           "AND a.dataConsulta > :agora AND a.status != 'CANCELADO' " +
+           "ORDER BY a.dataConsulta ASC")
     List<Agendamento> findUpcomingBookingsByPaciente(@Param("pacienteId") Integer pacienteId,
                                                     @Param("agora") LocalDateTime agora);
     
@@ -99,8 +103,8 @@ public interface AgendamentoRepository extends JpaRepository<Agendamento, Long>
      * Find past bookings for a patient (completed consultations)
      */
     @Query("SELECT a FROM Agendamento a WHERE a.pacienteId = :pacienteId " +
-           "AND a.consulta.dataHora < :agora " +
-           "ORDER BY a.consulta.dataHora DESC")
+           "AND a.dataConsulta < :agora " +
+           "ORDER BY a.dataConsulta DESC")
     List<Agendamento> findPastBookingsByPaciente(@Param("pacienteId") Integer pacienteId,
                                                 @Param("agora") LocalDateTime agora);
     
@@ -108,7 +112,7 @@ public interface AgendamentoRepository extends JpaRepository<Agendamento, Long>
      * Find bookings that need attendance confirmation
      */
     @Query("SELECT a FROM Agendamento a WHERE a.status = :status " +
-           "AND a.consulta.dataHora BETWEEN :inicio AND :fim")
+           "AND a.dataConsulta BETWEEN :inicio AND :fim")
     List<Agendamento> findBookingsForAttendanceConfirmation(@Param("status") StatusAgendamento status,
                                                            @Param("inicio") LocalDateTime inicio,
                                                            @Param("fim") LocalDateTime fim);
@@ -120,4 +124,66 @@ public interface AgendamentoRepository extends JpaRepository<Agendamento, Long>
            "AND a.consulta.id = :consultaId AND a.status != 'CANCELADO'")
     boolean hasActiveBookingForConsulta(@Param("pacienteId") Integer pacienteId,
                                        @Param("consultaId") Long consultaId);
-}
\ No newline at end of file
+
+    // ========== BULK STATUS TRANSITIONS (one statement per target status) ==========
+    
+    /**
+     * Move every booking of the given consultations that is in one of the current
+     * statuses to the new status, without loading the bookings.
+     * Returns the number of updated bookings
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Agendamento a SET a.status = :novoStatus, a.versao = a.versao + 1 " +
+           "WHERE a.consulta.id IN :consultaIds AND a.status IN :statusAtuais")
+    int atualizarStatusPorConsultas(@Param("consultaIds") Collection<Long> consultaIds,
+                                    @Param("statusAtuais") Collection<StatusAgendamento> statusAtuais,
+                                    @Param("novoStatus") StatusAgendamento novoStatus);
+
+    // ========== ARCHIVAL ==========
+    
+    /**
+     * Ids of closed bookings (in one of the given statuses) whose consultation took
+     * place before the limit, oldest first
+     */
+    @Query("SELECT a.id FROM Agendamento a WHERE a.status IN :statuses AND a.dataConsulta < :limite " +
+           "ORDER BY a.dataConsulta ASC, a.id ASC")
+    List<Long> findIdsArquivaveis(@Param("statuses") Collection<StatusAgendamento> statuses,
+                                  @Param("limite") LocalDateTime limite,
+                                  Pageable pagina);
+    
+    /**
+     * Delete the given bookings without loading them (after they were archived)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Agendamento a WHERE a.id IN :ids")
+    int excluirPorIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Fill the consultation date copy of bookings created before the column existed
+     */
+    @Modifying
+    @Query("UPDATE Agendamento a SET a.dataConsulta = " +
+           "(SELECT c.dataHora FROM Consulta c WHERE c.id = a.consulta.id) WHERE a.dataConsulta IS NULL")
+    int preencherDataConsulta();
+
+    // ========== READ PATHS (single query, no entity loading) ==========
+    
+    String PROJECAO_LISTAGEM = "SELECT new br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO(" +
+           "a.id, a.codigoAgendamento, a.pacienteId, a.dataAgendamento, a.pontosUsados, a.valorPago, " +
+           "a.status, a.observacoes, a.dataCheckin, a.dataConfirmacao, " +
+           "c.id, c.codigo, c.dataHora, c.especialidade, c.medico, c.valor, c.vagas, c.vagasOcupadas, " +
+           "c.status, c.dataCriacao) " +
+           "FROM Agendamento a JOIN a.consulta c ";
+    
+    /**
+     * Patient's bookings with their consultation, newest first, as response DTOs in one query
+     */
+    @Query(PROJECAO_LISTAGEM + "WHERE a.pacienteId = :pacienteId ORDER BY a.dataAgendamento DESC")
+    List<AgendamentoResponseDTO> listarResumoPorPaciente(@Param("pacienteId") Integer pacienteId);
+    
+    /**
+     * Bookings of a consultation, as response DTOs in one query
+     */
+    @Query(PROJECAO_LISTAGEM + "WHERE c.id = :consultaId ORDER BY a.dataAgendamento ASC")
+    List<AgendamentoResponseDTO> listarResumoPorConsulta(@Param("consultaId") Long consultaId);
+}
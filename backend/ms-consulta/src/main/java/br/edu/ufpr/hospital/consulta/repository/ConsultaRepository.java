@@ -1,13 +1,19 @@
 package br.edu.ufpr.hospital.consulta.repository;
 
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
 import br.edu.ufpr.hospital.consulta.model.Consulta;
 import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,10 +35,21 @@ public interface ConsultaRepository extends JpaRepository<Consulta, Long> {
         String especialidade, StatusConsulta status, LocalDateTime dataHora);
     
     /**
-     * Find consultations by doctor name (case insensitive) and status after a specific date/time
+     * Count upcoming consultations with free slots per specialty, as
+     * [especialidade, count] rows, in a single GROUP BY
      */
-    List<Consulta> findByMedicoContainingIgnoreCaseAndStatusAndDataHoraAfter(
-        String medico, StatusConsulta status, LocalDateTime dataHora);
+    @Query("SELECT c.especialidade, COUNT(c) FROM Consulta c " +
+           "WHERE c.status = :status AND c.dataHora > :agora AND c.vagasOcupadas < c.vagas " +
+           "GROUP BY c.especialidade")
+    List<Object[]> contarDisponiveisPorEspecialidade(@Param("status") StatusConsulta status,
+                                                     @Param("agora") LocalDateTime agora);
+
+    /**
+     * Distinct doctor names with one of their specialties, as [medico, especialidade]
+     * rows (source of the in-memory doctor name index)
+     */
+    @Query("SELECT c.medico, MAX(c.especialidade) FROM Consulta c GROUP BY c.medico")
+    List<Object[]> findMedicosDistintos();
     
     /**
      * Find consultation by unique code
@@ -85,4 +102,109 @@ public interface ConsultaRepository extends JpaRepository<Consulta, Long> {
     @Query("SELECT c FROM Consulta c WHERE c.dataHora < :agora AND c.status = :status")
     List<Consulta> findConsultasToFinalize(@Param("agora") LocalDateTime agora, 
                                          @Param("status") StatusConsulta status);
-}
\ No newline at end of file
+    
+    /**
+     * One chunk of consultations that need to be finalized, oldest first
+     */
+    @Query("SELECT c FROM Consulta c WHERE c.dataHora < :agora AND c.status = :status " +
+           "ORDER BY c.dataHora, c.id")
+    List<Consulta> findConsultasToFinalize(@Param("agora") LocalDateTime agora, 
+                                         @Param("status") StatusConsulta status,
+                                         Pageable pageable);
+    
+    /**
+     * Set the status of several consultations in a single statement.
+     * Returns the number of updated rows
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Consulta c SET c.status = :status, c.versao = c.versao + 1 WHERE c.id IN :ids")
+    int atualizarStatus(@Param("ids") Collection<Long> ids, @Param("status") StatusConsulta status);
+
+    /**
+     * Atomically occupy one slot if the consultation is still available and not full.
+     * Returns the number of updated rows (1 = slot reserved, 0 = unavailable or full)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Consulta c SET c.vagasOcupadas = c.vagasOcupadas + 1, c.versao = c.versao + 1 " +
+           "WHERE c.id = :id AND c.status = :status AND c.vagasOcupadas < c.vagas")
+    int ocuparVagaSeDisponivel(@Param("id") Long id, @Param("status") StatusConsulta status);
+    
+    /**
+     * Atomically release one occupied slot.
+     * Returns the number of updated rows (1 = slot released, 0 = nothing to release)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Consulta c SET c.vagasOcupadas = c.vagasOcupadas - 1, c.versao = c.versao + 1 " +
+           "WHERE c.id = :id AND c.vagasOcupadas > 0")
+    int liberarVagaOcupada(@Param("id") Long id);
+
+    /**
+     * (medico, dataHora) of the non-cancelled consultations of the given doctors in a period,
+     * used to reject duplicated slots in bulk creation with a single query
+     * Doctors are matched by normalized name (TextoUtils.normalizar), like the agenda index
+     */
+    @Query("SELECT c.medico, c.dataHora FROM Consulta c WHERE c.medicoNormalizado IN :medicos " +
+           "AND c.dataHora BETWEEN :inicio AND :fim AND c.status <> :cancelada")
+    List<Object[]> findHorariosOcupados(@Param("medicos") Collection<String> medicosNormalizados,
+                                        @Param("inicio") LocalDateTime inicio,
+                                        @Param("fim") LocalDateTime fim,
+                                        @Param("cancelada") StatusConsulta cancelada);
+
+    /**
+     * (id, medico, dataHora) of the non-cancelled consultations from the given time on,
+     * source of the in-memory doctor agenda index
+     */
+    @Query("SELECT c.id, c.medico, c.dataHora FROM Consulta c WHERE c.dataHora > :desde " +
+           "AND c.status <> :cancelada")
+    List<Object[]> findHorariosAgenda(@Param("desde") LocalDateTime desde,
+                                      @Param("cancelada") StatusConsulta cancelada);
+
+    /**
+     * (id, medico, dataHora) of the non-cancelled consultations of the given doctors
+     * starting within [inicio, fim], checked when a consultation takes a doctor's time
+     * Doctors are matched by normalized name (TextoUtils.normalizar), like the agenda index
+     */
+    @Query("SELECT c.id, c.medico, c.dataHora FROM Consulta c WHERE c.medicoNormalizado IN :medicos " +
+           "AND c.dataHora BETWEEN :inicio AND :fim AND c.status <> :cancelada")
+    List<Object[]> findHorariosMedicos(@Param("medicos") Collection<String> medicosNormalizados,
+                                       @Param("inicio") LocalDateTime inicio,
+                                       @Param("fim") LocalDateTime fim,
+                                       @Param("cancelada") StatusConsulta cancelada);
+
+    /**
+     * Take a PostgreSQL advisory lock held until the end of the transaction, used to
+     * serialize creations for the same doctor across ms-consulta replicas
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(:espaco, hashtext(:chave))) t",
+           nativeQuery = true)
+    long travarAteOFimDaTransacao(@Param("espaco") int espaco, @Param("chave") String chave);
+
+    /**
+     * Load the consultation locking its row until the end of the transaction (SELECT ... FOR UPDATE).
+     * Serializes slot hand-overs with waitlist entries of the same consultation
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Consulta c WHERE c.id = :id")
+    Optional<Consulta> bloquearPorId(@Param("id") Long id);
+
+    /**
+     * First keyset page of all consultations ordered by (dataHora, id), projected straight to DTOs
+     */
+    @Query("SELECT new br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO(" +
+           "c.id, c.codigo, c.dataHora, c.especialidade, c.medico, c.valor, c.vagas, c.vagasOcupadas, " +
+           "c.status, c.dataCriacao) " +
+           "FROM Consulta c ORDER BY c.dataHora ASC, c.id ASC")
+    List<ConsultaResponseDTO> findPrimeiraPagina(Pageable pageable);
+    
+    /**
+     * Next keyset page: consultations strictly after the (dataHora, id) cursor
+     */
+    @Query("SELECT new br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO(" +
+           "c.id, c.codigo, c.dataHora, c.especialidade, c.medico, c.valor, c.vagas, c.vagasOcupadas, " +
+           "c.status, c.dataCriacao) " +
+           "FROM Consulta c WHERE c.dataHora > :dataHora OR (c.dataHora = :dataHora AND c.id > :id) " +
+           "ORDER BY c.dataHora ASC, c.id ASC")
+    List<ConsultaResponseDTO> findPaginaApos(@Param("dataHora") LocalDateTime dataHora,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+}
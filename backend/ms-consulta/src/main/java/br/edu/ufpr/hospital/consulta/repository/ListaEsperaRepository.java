@@ -0,0 +1,92 @@
+package br.edu.ufpr.hospital.consulta.repository;
+
+import br.edu.ufpr.hospital.consulta.model.EntradaListaEspera;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.model.StatusListaEspera;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for the consultation waitlists
+ */
+@Repository
+public interface ListaEsperaRepository extends JpaRepository<EntradaListaEspera, Long> {
+
+    /**
+     * Head of a consultation's queue (arrival order)
+     */
+    List<EntradaListaEspera> findByConsultaIdAndStatusOrderByIdAsc(Long consultaId, StatusListaEspera status,
+                                                                   Pageable pageable);
+
+    /**
+     * Check if the patient is already in the consultation's queue
+     */
+    boolean existsByConsultaIdAndPacienteIdAndStatus(Long consultaId, Integer pacienteId, StatusListaEspera status);
+
+    /**
+     * Number of entries ahead of the given one in the same queue
+     */
+    long countByConsultaIdAndStatusAndIdLessThan(Long consultaId, StatusListaEspera status, Long id);
+
+    /**
+     * Patient's waitlist entries, newest first
+     */
+    List<EntradaListaEspera> findByPacienteIdOrderByIdDesc(Integer pacienteId);
+
+    /**
+     * Entries of the given consultations that are in the given status
+     */
+    List<EntradaListaEspera> findByConsultaIdInAndStatus(Collection<Long> consultaIds, StatusListaEspera status);
+
+    /**
+     * Waiting entries of consultations that no longer take bookings (not DISPONIVEL or already started)
+     */
+    @Query("SELECT e FROM EntradaListaEspera e WHERE e.status = :aguardando AND e.consultaId IN " +
+           "(SELECT c.id FROM Consulta c WHERE c.status <> :disponivel OR c.dataHora <= :agora)")
+    List<EntradaListaEspera> findAguardandoEmConsultasEncerradas(@Param("aguardando") StatusListaEspera aguardando,
+                                                                 @Param("disponivel") StatusConsulta disponivel,
+                                                                 @Param("agora") LocalDateTime agora);
+
+    /**
+     * Atomically claim a waiting entry for promotion, recording the booking it became.
+     * Returns the number of updated rows (0 = the patient left the queue in the meantime)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE EntradaListaEspera e SET e.status = :promovido, e.codigoAgendamento = :codigo, " +
+           "e.dataSaida = :agora WHERE e.id = :id AND e.status = :aguardando")
+    int promoverSeAguardando(@Param("id") Long id, @Param("codigo") String codigoAgendamento,
+                             @Param("agora") LocalDateTime agora,
+                             @Param("aguardando") StatusListaEspera aguardando,
+                             @Param("promovido") StatusListaEspera promovido);
+
+    /**
+     * Take a patient's waiting entries for a consultation out of the queue.
+     * Returns the number of updated rows
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE EntradaListaEspera e SET e.status = :novoStatus, e.dataSaida = :agora " +
+           "WHERE e.consultaId = :consultaId AND e.pacienteId = :pacienteId AND e.status = :aguardando")
+    int retirarPaciente(@Param("consultaId") Long consultaId, @Param("pacienteId") Integer pacienteId,
+                        @Param("agora") LocalDateTime agora,
+                        @Param("aguardando") StatusListaEspera aguardando,
+                        @Param("novoStatus") StatusListaEspera novoStatus);
+
+    /**
+     * Close the queues of the given consultations (cancelled or finalized) in one statement
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE EntradaListaEspera e SET e.status = :encerrado, e.dataSaida = :agora " +
+           "WHERE e.consultaId IN :consultaIds AND e.status = :aguardando")
+    int encerrarPorConsultas(@Param("consultaIds") Collection<Long> consultaIds,
+                             @Param("agora") LocalDateTime agora,
+                             @Param("aguardando") StatusListaEspera aguardando,
+                             @Param("encerrado") StatusListaEspera encerrado);
+}
@@ -0,0 +1,98 @@
+package br.edu.ufpr.hospital.consulta.repository;
+
+import br.edu.ufpr.hospital.consulta.model.OutboxPontos;
+import br.edu.ufpr.hospital.consulta.model.StatusOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for OutboxPontos entity
+ */
+@Repository
+public interface OutboxPontosRepository extends JpaRepository<OutboxPontos, Long> {
+
+    /**
+     * IDs of pending operations due for (re)delivery, oldest first.
+     * A refund waits until the debit of the same booking has been resolved, so the
+     * two can never reach ms-paciente out of order
+     */
+    @Query("SELECT o.id FROM OutboxPontos o " +
+           "WHERE o.status = :pendente AND o.proximaTentativa <= :agora " +
+           "AND NOT (o.tipo = br.edu.ufpr.hospital.consulta.model.TipoOperacaoPontos.ENTRADA AND EXISTS (" +
+           "  SELECT d.id FROM OutboxPontos d WHERE d.codigoAgendamento = o.codigoAgendamento " +
+           "  AND d.tipo = br.edu.ufpr.hospital.consulta.model.TipoOperacaoPontos.SAIDA " +
+           "  AND d.status IN (:pendente, :processando))) " +
+           "ORDER BY o.id")
+    List<Long> findIdsProntosParaEnvio(@Param("pendente") StatusOutbox pendente,
+                                       @Param("processando") StatusOutbox processando,
+                                       @Param("agora") LocalDateTime agora, Pageable pageable);
+
+    /**
+     * Find an operation by its idempotency key
+     */
+    Optional<OutboxPontos> findByChaveIdempotencia(String chaveIdempotencia);
+
+    /**
+     * Atomically move the given pending operations into a dispatch batch.
+     * Operations already claimed by another dispatcher (or replica) are skipped
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OutboxPontos o SET o.status = :processando, o.lote = :lote, o.dataAtualizacao = :agora " +
+           "WHERE o.id IN :ids AND o.status = :pendente")
+    int reservarLote(@Param("ids") Collection<Long> ids, @Param("lote") String lote,
+                     @Param("agora") LocalDateTime agora,
+                     @Param("pendente") StatusOutbox pendente,
+                     @Param("processando") StatusOutbox processando);
+
+    /**
+     * Operations held by a dispatch batch, in creation order
+     */
+    List<OutboxPontos> findByLoteOrderById(String lote);
+
+    /**
+     * Return to the queue operations whose dispatcher died before recording the outcome
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OutboxPontos o SET o.status = :pendente, o.lote = NULL " +
+           "WHERE o.status = :processando AND o.dataAtualizacao < :limite")
+    int liberarLotesExpirados(@Param("limite") LocalDateTime limite,
+                              @Param("pendente") StatusOutbox pendente,
+                              @Param("processando") StatusOutbox processando);
+
+    /**
+     * Atomically discard an operation that has not been sent yet.
+     * Returns the number of updated rows (1 = discarded, 0 = already sent, in flight or absent)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE OutboxPontos o SET o.status = :descartado, o.dataAtualizacao = :agora " +
+           "WHERE o.chaveIdempotencia = :chave AND o.status = :pendente")
+    int descartarSePendente(@Param("chave") String chave, @Param("agora") LocalDateTime agora,
+                            @Param("pendente") StatusOutbox pendente,
+                            @Param("descartado") StatusOutbox descartado);
+
+    /**
+     * Points of the patient's debits not yet applied on ms-paciente, which its
+     * balance does not reflect yet
+     */
+    @Query("SELECT COALESCE(SUM(o.pontos), 0) FROM OutboxPontos o WHERE o.pacienteId = :pacienteId " +
+           "AND o.tipo = br.edu.ufpr.hospital.consulta.model.TipoOperacaoPontos.SAIDA " +
+           "AND o.status IN (:pendente, :processando)")
+    BigDecimal somarDebitosNaoAplicados(@Param("pacienteId") Integer pacienteId,
+                                        @Param("pendente") StatusOutbox pendente,
+                                        @Param("processando") StatusOutbox processando);
+
+    /**
+     * Find operations by status
+     */
+    List<OutboxPontos> findByStatus(StatusOutbox status);
+}
@@ -0,0 +1,144 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.util.TextoUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Consultation intervals [dataHora, dataHora + duration) per doctor (normalized
+ * name), each doctor's intervals kept in a skip list ordered by start
+ * Every consultation lasts the same duration, so the interval starting last
+ * before a given end is also the one ending last: a single ordered lookup,
+ * O(log n) in the doctor's agenda, tells whether a new interval overlaps any
+ */
+final class AgendaMedicos {
+
+    private static final Comparator<Intervalo> ORDEM =
+            Comparator.comparing(Intervalo::inicio).thenComparing(Intervalo::consultaId);
+
+    private final Duration duracao;
+    private final Map<String, NavigableSet<Intervalo>> porMedico = new ConcurrentHashMap<>();
+    private final Map<Long, Intervalo> porId = new ConcurrentHashMap<>();
+
+    AgendaMedicos(Duration duracao) {
+        this.duracao = duracao;
+    }
+
+    /**
+     * The interval of the doctor that overlaps a consultation starting at the given time, if any
+     */
+    Optional<Intervalo> conflito(String medico, LocalDateTime inicio) {
+        NavigableSet<Intervalo> agenda = porMedico.get(TextoUtils.normalizar(medico));
+        return agenda == null ? Optional.empty() : conflito(agenda, inicio);
+    }
+
+    /**
+     * Add the consultation unless it overlaps another one of the doctor; check and
+     * insertion are atomic per doctor
+     *
+     * @return The overlapping interval, or empty if the consultation was added
+     */
+    Optional<Intervalo> adicionarSeLivre(Long consultaId, String medico, LocalDateTime inicio) {
+        Intervalo novo = intervalo(consultaId, medico, inicio);
+        NavigableSet<Intervalo> agenda = agendaDe(novo.medicoNormalizado());
+        synchronized (agenda) {
+            Optional<Intervalo> conflito = conflito(agenda, inicio);
+            if (conflito.isEmpty()) {
+                registrar(agenda, novo);
+            }
+            return conflito;
+        }
+    }
+
+    /**
+     * Add the consultation even if it overlaps others (existing data, rebuilds)
+     */
+    void adicionar(Long consultaId, String medico, LocalDateTime inicio) {
+        Intervalo novo = intervalo(consultaId, medico, inicio);
+        NavigableSet<Intervalo> agenda = agendaDe(novo.medicoNormalizado());
+        synchronized (agenda) {
+            registrar(agenda, novo);
+        }
+    }
+
+    void adicionar(Intervalo intervalo) {
+        adicionar(intervalo.consultaId(), intervalo.medico(), intervalo.inicio());
+    }
+
+    void remover(Long consultaId) {
+        Intervalo removido = porId.remove(consultaId);
+        if (removido != null) {
+            remover(removido.medicoNormalizado(), removido);
+        }
+    }
+
+    Optional<Intervalo> buscar(Long consultaId) {
+        return Optional.ofNullable(porId.get(consultaId));
+    }
+
+    boolean contem(Long consultaId) {
+        return porId.containsKey(consultaId);
+    }
+
+    int tamanho() {
+        return porId.size();
+    }
+
+    /**
+     * Intervals of the doctor overlapping [de, ate), ordered by start
+     */
+    NavigableSet<Intervalo> noPeriodo(String medico, LocalDateTime de, LocalDateTime ate) {
+        NavigableSet<Intervalo> agenda = porMedico.get(TextoUtils.normalizar(medico));
+        if (agenda == null || !de.isBefore(ate)) {
+            return new ConcurrentSkipListSet<>(ORDEM);
+        }
+        // Starting after de - duration means ending after de
+        return agenda.subSet(limite(de.minus(duracao), Long.MAX_VALUE), false, limite(ate, Long.MIN_VALUE), false);
+    }
+
+    private Optional<Intervalo> conflito(NavigableSet<Intervalo> agenda, LocalDateTime inicio) {
+        Intervalo anterior = agenda.lower(limite(inicio.plus(duracao), Long.MIN_VALUE));
+        return anterior != null && anterior.fim().isAfter(inicio) ? Optional.of(anterior) : Optional.empty();
+    }
+
+    private void registrar(NavigableSet<Intervalo> agenda, Intervalo intervalo) {
+        Intervalo anterior = porId.put(intervalo.consultaId(), intervalo);
+        if (anterior != null) {
+            remover(anterior.medicoNormalizado(), anterior);
+        }
+        agenda.add(intervalo);
+    }
+
+    private void remover(String medicoNormalizado, Intervalo intervalo) {
+        NavigableSet<Intervalo> agenda = porMedico.get(medicoNormalizado);
+        if (agenda != null) {
+            agenda.remove(intervalo);
+        }
+    }
+
+    private NavigableSet<Intervalo> agendaDe(String medicoNormalizado) {
+        return porMedico.computeIfAbsent(medicoNormalizado, m -> new ConcurrentSkipListSet<>(ORDEM));
+    }
+
+    private Intervalo intervalo(Long consultaId, String medico, LocalDateTime inicio) {
+        return new Intervalo(consultaId, medico, TextoUtils.normalizar(medico), inicio, inicio.plus(duracao));
+    }
+
+    private static Intervalo limite(LocalDateTime inicio, long consultaId) {
+        return new Intervalo(consultaId, null, null, inicio, inicio);
+    }
+
+    /**
+     * One consultation of a doctor's agenda
+     */
+    record Intervalo(Long consultaId, String medico, String medicoNormalizado, LocalDateTime inicio,
+            LocalDateTime fim) {
+    }
+}
@@ -0,0 +1,78 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Executor;
+
+import static br.edu.ufpr.hospital.consulta.service.MetricasConsultaService.*;
+
+/**
+ * Non-blocking booking flow (R05)
+ * The points balance is fetched from ms-paciente without holding a thread while
+ * the local availability checks run on the database executor; once both pass,
+ * the slot is reserved in a short transaction on the same executor. No servlet
+ * thread or database connection waits on ms-paciente, so booking throughput is
+ * bounded by the database executor rather than by the Tomcat pool
+ */
+@Service
+public class AgendamentoReativoService {
+
+    private final ConsultaService consultaService;
+    private final PacienteIntegrationService pacienteService;
+    private final MetricasConsultaService metricas;
+    private final RetentativaConcorrenciaService retentativas;
+    private final Scheduler banco;
+
+    public AgendamentoReativoService(ConsultaService consultaService,
+            PacienteIntegrationService pacienteService,
+            MetricasConsultaService metricas,
+            RetentativaConcorrenciaService retentativas,
+            @Qualifier("agendamentoTaskExecutor") Executor agendamentoTaskExecutor) {
+        this.consultaService = consultaService;
+        this.pacienteService = pacienteService;
+        this.metricas = metricas;
+        this.retentativas = retentativas;
+        this.banco = Schedulers.fromExecutor(agendamentoTaskExecutor);
+    }
+
+    /**
+     * Create a new booking
+     *
+     * @return The created booking; fails with the same exceptions as
+     *         {@link ConsultaService#agendarConsulta}, or RejectedExecutionException
+     *         when the database executor is saturated
+     */
+    public Mono<AgendamentoResponseDTO> agendarConsulta(Long consultaId, AgendamentoDTO dto,
+            Integer pacienteId, String authToken) {
+        BigDecimal pontosUsados = dto.getPontosUsados();
+
+        // Pre-checks read the primary: a lagging replica could miss the patient's active booking
+        Mono<Void> disponibilidade = metricas.medirEtapaReativa(AGENDAR, "validacao", BANCO, Mono
+                .<Void>fromRunnable(() -> RoteamentoLeituraDataSource.noPrimario(
+                        () -> consultaService.validarAgendamento(consultaId, pacienteId)))
+                .subscribeOn(banco));
+
+        Mono<Void> saldo = pontosUsados.compareTo(BigDecimal.ZERO) > 0
+                ? metricas.medirEtapaReativa(AGENDAR, "saldo_pontos", PONTOS,
+                        pacienteService.verificarSaldoPontosReativo(pacienteId, authToken))
+                        // The check reads the outbox: off the HTTP client's event loop
+                        .publishOn(banco)
+                        .doOnNext(saldoAtual -> consultaService.validarSaldoPontos(pacienteId, pontosUsados, saldoAtual))
+                        .then()
+                : Mono.empty();
+
+        // confirmarAgendamento times its own reservation, registration and commit phases
+        return metricas.medirReativo(AGENDAR, Mono.when(disponibilidade, saldo)
+                .then(Mono.fromCallable(() -> retentativas.executar(AGENDAR,
+                                () -> consultaService.confirmarAgendamento(consultaId, pontosUsados, pacienteId)))
+                        .subscribeOn(banco)));
+    }
+}
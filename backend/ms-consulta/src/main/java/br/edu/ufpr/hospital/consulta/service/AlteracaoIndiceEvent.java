@@ -0,0 +1,17 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+/**
+ * Published by the availability index after it applies a change
+ *
+ * @param consultaId The consultation that changed, or null after a full rebuild
+ */
+public record AlteracaoIndiceEvent(Long consultaId) {
+
+    public static AlteracaoIndiceEvent reconstrucao() {
+        return new AlteracaoIndiceEvent(null);
+    }
+
+    public boolean isReconstrucao() {
+        return consultaId == null;
+    }
+}
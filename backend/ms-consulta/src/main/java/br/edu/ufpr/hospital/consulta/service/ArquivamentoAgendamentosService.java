@@ -0,0 +1,96 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoArquivadoRepository;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Background job that moves closed bookings out of the hot agendamentos table
+ * Bookings REALIZADO, FALTOU or CANCELADO whose consultation is older than the
+ * retention horizon are copied into agendamentos_arquivo and deleted from
+ * agendamentos, a chunk per short transaction, so per-patient queries on the hot
+ * table only ever see recent history. Archived bookings stay available through
+ * {@link br.edu.ufpr.hospital.consulta.repository.AgendamentoHistoricoRepository}
+ */
+@Service
+@Slf4j
+public class ArquivamentoAgendamentosService {
+
+    static final Set<StatusAgendamento> STATUS_ENCERRADOS =
+            EnumSet.of(StatusAgendamento.REALIZADO, StatusAgendamento.FALTOU, StatusAgendamento.CANCELADO);
+
+    private final AgendamentoRepository agendamentoRepository;
+    private final AgendamentoArquivadoRepository arquivoRepository;
+    private final TransactionTemplate transacao;
+
+    private final boolean habilitado;
+    private final long horizonteDias;
+    private final int tamanhoLote;
+
+    public ArquivamentoAgendamentosService(AgendamentoRepository agendamentoRepository,
+            AgendamentoArquivadoRepository arquivoRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${agendamentos.arquivamento.habilitado:true}") boolean habilitado,
+            @Value("${agendamentos.arquivamento.horizonte-dias:365}") long horizonteDias,
+            @Value("${agendamentos.arquivamento.tamanho-lote:500}") int tamanhoLote) {
+        this.agendamentoRepository = agendamentoRepository;
+        this.arquivoRepository = arquivoRepository;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.horizonteDias = horizonteDias;
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    @Scheduled(fixedDelayString = "${agendamentos.arquivamento.intervalo-ms:86400000}",
+            initialDelayString = "${agendamentos.arquivamento.intervalo-ms:86400000}")
+    public void arquivarPeriodicamente() {
+        if (habilitado) {
+            arquivarEncerrados();
+        }
+    }
+
+    /**
+     * Archive every closed booking whose consultation took place before the horizon
+     *
+     * @return Number of bookings archived
+     */
+    public int arquivarEncerrados() {
+        LocalDateTime limite = LocalDateTime.now().minusDays(horizonteDias);
+        int total = 0;
+
+        List<Long> ids;
+        while (!(ids = proximoLote(limite)).isEmpty()) {
+            List<Long> lote = ids;
+            total += transacao.execute(status -> {
+                int arquivados = arquivoRepository.arquivar(lote);
+                agendamentoRepository.excluirPorIds(lote);
+                return arquivados;
+            });
+        }
+
+        if (total > 0) {
+            log.info("Archived {} closed bookings with consultations before {}", total, limite);
+        }
+        return total;
+    }
+
+    private List<Long> proximoLote(LocalDateTime limite) {
+        // Always the first page: archived bookings leave the table. Read from the primary,
+        // a lagging replica would keep returning the batch just archived
+        return RoteamentoLeituraDataSource.noPrimario(() -> agendamentoRepository
+                .findIdsArquivaveis(STATUS_ENCERRADOS, limite, PageRequest.of(0, tamanhoLote)));
+    }
+}
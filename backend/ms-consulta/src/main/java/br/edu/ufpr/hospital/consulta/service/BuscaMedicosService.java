@@ -0,0 +1,300 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import br.edu.ufpr.hospital.consulta.dto.MedicoEncontradoDTO;
+import br.edu.ufpr.hospital.consulta.model.Funcionario;
+import br.edu.ufpr.hospital.consulta.model.StatusFuncionario;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.FuncionarioRepository;
+import br.edu.ufpr.hospital.consulta.util.TextoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Fuzzy, accent-insensitive doctor name search
+ * Keeps an in-memory trigram index (pg_trgm style: each word padded with two
+ * leading blanks and one trailing blank) over the names of active doctors
+ * (Funcionario with CRM) and of every Consulta.medico, normalized with
+ * TextoUtils. A query only walks the posting lists of its own trigrams, so
+ * matches are ranked without scanning names or touching the database.
+ * The index is an immutable snapshot: new names are merged in after commit
+ * and the whole index is rebuilt on startup and periodically
+ */
+@Service
+@Slf4j
+public class BuscaMedicosService {
+
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{Alnum}]+");
+
+    private final FuncionarioRepository funcionarioRepository;
+    private final ConsultaRepository consultaRepository;
+    private final double similaridadeMinima;
+
+    // Serializes writers only; readers use the current snapshot without locking
+    private final ReentrantLock trava = new ReentrantLock();
+    private final ReentrantLock reconstrucao = new ReentrantLock();
+    // Names registered while a rebuild runs, replayed on the new index; null otherwise
+    private volatile Queue<Consumer<Map<String, MedicoIndexado>>> alteracoesNaReconstrucao;
+    private volatile Indice indice = Indice.de(Map.of());
+
+    public BuscaMedicosService(FuncionarioRepository funcionarioRepository, ConsultaRepository consultaRepository,
+            @Value("${consulta.busca-medico.similaridade-minima:0.5}") double similaridadeMinima) {
+        this.funcionarioRepository = funcionarioRepository;
+        this.consultaRepository = consultaRepository;
+        this.similaridadeMinima = similaridadeMinima;
+    }
+
+    // ========== QUERIES ==========
+
+    /**
+     * Doctors whose name is similar to the given text, best matches first
+     * Similarity is the share of the text's trigrams found in the name; ties go
+     * to the name with fewer extra trigrams (closer overall), then alphabetical
+     */
+    public List<MedicoEncontradoDTO> buscar(String termo, int limite) {
+        return ranquear(termo, limite).stream()
+                .map(r -> new MedicoEncontradoDTO(r.medico().nome(), r.medico().especialidade(),
+                        r.medico().crm(), Math.round(r.cobertura() * 1000) / 1000.0))
+                .toList();
+    }
+
+    /**
+     * Normalized names (as produced by TextoUtils.normalizar) of the doctors most
+     * similar to the given text
+     */
+    public List<String> nomesSemelhantes(String termo, int limite) {
+        return ranquear(termo, limite).stream()
+                .map(r -> r.medico().nomeNormalizado())
+                .toList();
+    }
+
+    private List<Resultado> ranquear(String termo, int limite) {
+        Indice atual = indice;
+        Set<String> trigramasTermo = trigramas(TextoUtils.normalizar(termo));
+        if (trigramasTermo.isEmpty() || limite <= 0) {
+            return List.of();
+        }
+
+        int[] acertos = new int[atual.medicos().size()];
+        for (String trigrama : trigramasTermo) {
+            int[] postagens = atual.porTrigrama().get(trigrama);
+            if (postagens != null) {
+                for (int posicao : postagens) {
+                    acertos[posicao]++;
+                }
+            }
+        }
+
+        int total = trigramasTermo.size();
+        List<Resultado> resultados = new ArrayList<>();
+        for (int posicao = 0; posicao < acertos.length; posicao++) {
+            double cobertura = (double) acertos[posicao] / total;
+            if (acertos[posicao] > 0 && cobertura >= similaridadeMinima) {
+                MedicoIndexado medico = atual.medicos().get(posicao);
+                double jaccard = (double) acertos[posicao] / (total + medico.totalTrigramas() - acertos[posicao]);
+                resultados.add(new Resultado(medico, cobertura, jaccard));
+            }
+        }
+        return resultados.stream()
+                .sorted(Comparator.comparingDouble(Resultado::cobertura).reversed()
+                        .thenComparing(Comparator.comparingDouble(Resultado::jaccard).reversed())
+                        .thenComparing(r -> r.medico().nomeNormalizado()))
+                .limit(limite)
+                .toList();
+    }
+
+    // ========== INCREMENTAL UPDATES ==========
+
+    /**
+     * Add a doctor name (new employee or new consultation) once the current
+     * transaction commits; names already indexed are left as they are
+     */
+    public void registrarAposCommit(String nome, String especialidade, String crm) {
+        if (nome == null || nome.isBlank()) {
+            return;
+        }
+        MedicoIndexado novo = MedicoIndexado.of(nome, especialidade, crm);
+        aposCommit(() -> {
+            trava.lock();
+            try {
+                MedicoIndexado atual = indice.porNome().get(novo.nomeNormalizado());
+                MedicoIndexado mesclado = mesclar(atual, novo);
+                if (mesclado != atual) {
+                    Map<String, MedicoIndexado> medicos = new LinkedHashMap<>(indice.porNome());
+                    medicos.put(mesclado.nomeNormalizado(), mesclado);
+                    indice = Indice.de(medicos);
+                }
+                registrarAlteracao(medicos -> adicionar(medicos, novo));
+            } finally {
+                trava.unlock();
+            }
+        });
+    }
+
+    private void registrarAlteracao(Consumer<Map<String, MedicoIndexado>> alteracao) {
+        Queue<Consumer<Map<String, MedicoIndexado>>> alteracoes = alteracoesNaReconstrucao;
+        if (alteracoes != null) {
+            alteracoes.add(alteracao);
+        }
+    }
+
+    /**
+     * An employee record (with CRM) takes precedence over a name only seen in consultations
+     */
+    private static MedicoIndexado mesclar(MedicoIndexado atual, MedicoIndexado novo) {
+        if (atual == null || (atual.crm() == null && novo.crm() != null)) {
+            return novo;
+        }
+        return atual;
+    }
+
+    private static void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    // ========== REBUILD ==========
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarNaInicializacao() {
+        reconstruir();
+    }
+
+    /**
+     * Rebuild the whole index from employees and consultations and swap it in atomically
+     * Reads the primary, like the agenda index: a lagging replica would miss
+     * doctors just hired or scheduled
+     * Names registered while the database is read are replayed on the new index,
+     * in order, before the swap
+     */
+    @Scheduled(fixedDelayString = "${consulta.busca-medico.reconstrucao-ms:300000}",
+            initialDelayString = "${consulta.busca-medico.reconstrucao-ms:300000}")
+    public void reconstruir() {
+        reconstrucao.lock();
+        try {
+            Queue<Consumer<Map<String, MedicoIndexado>>> alteracoes = new ConcurrentLinkedQueue<>();
+            alteracoesNaReconstrucao = alteracoes;
+            try {
+                Map<String, MedicoIndexado> medicos = RoteamentoLeituraDataSource.noPrimario(this::lerMedicos);
+
+                trava.lock();
+                try {
+                    alteracoes.forEach(alteracao -> alteracao.accept(medicos));
+                    indice = Indice.de(medicos);
+                } finally {
+                    trava.unlock();
+                }
+                log.debug("Doctor name index rebuilt with {} names", medicos.size());
+            } finally {
+                alteracoesNaReconstrucao = null;
+            }
+        } finally {
+            reconstrucao.unlock();
+        }
+    }
+
+    private Map<String, MedicoIndexado> lerMedicos() {
+        Map<String, MedicoIndexado> medicos = new LinkedHashMap<>();
+        for (Funcionario funcionario : funcionarioRepository.findByStatus(StatusFuncionario.ATIVO)) {
+            if (funcionario.isMedico()) {
+                adicionar(medicos, MedicoIndexado.of(funcionario.getNome(), funcionario.getEspecialidade(),
+                        funcionario.getCrm()));
+            }
+        }
+        for (Object[] linha : consultaRepository.findMedicosDistintos()) {
+            if (linha[0] != null) {
+                adicionar(medicos, MedicoIndexado.of((String) linha[0], (String) linha[1], null));
+            }
+        }
+        return medicos;
+    }
+
+    private static void adicionar(Map<String, MedicoIndexado> medicos, MedicoIndexado medico) {
+        if (!medico.nomeNormalizado().isEmpty()) {
+            medicos.merge(medico.nomeNormalizado(), medico, BuscaMedicosService::mesclar);
+        }
+    }
+
+    // ========== INTERNAL STRUCTURES ==========
+
+    /**
+     * Trigrams of every word of an already normalized text
+     * (e.g. "jose" -> "  j", " jo", "jos", "ose", "se ")
+     */
+    static Set<String> trigramas(String normalizado) {
+        Set<String> trigramas = new LinkedHashSet<>();
+        for (String palavra : SEPARADORES.split(normalizado)) {
+            if (palavra.isEmpty()) {
+                continue;
+            }
+            String preenchida = "  " + palavra + " ";
+            for (int i = 0; i + 3 <= preenchida.length(); i++) {
+                trigramas.add(preenchida.substring(i, i + 3));
+            }
+        }
+        return trigramas;
+    }
+
+    /**
+     * Immutable snapshot: doctors by position and, per trigram, the positions of
+     * the doctors whose name contains it
+     */
+    private record Indice(Map<String, MedicoIndexado> porNome, List<MedicoIndexado> medicos,
+            Map<String, int[]> porTrigrama) {
+
+        static Indice de(Map<String, MedicoIndexado> porNome) {
+            List<MedicoIndexado> medicos = List.copyOf(porNome.values());
+            Map<String, List<Integer>> postagens = new HashMap<>();
+            for (int posicao = 0; posicao < medicos.size(); posicao++) {
+                for (String trigrama : trigramas(medicos.get(posicao).nomeNormalizado())) {
+                    postagens.computeIfAbsent(trigrama, t -> new ArrayList<>()).add(posicao);
+                }
+            }
+
+            Map<String, int[]> porTrigrama = new HashMap<>(postagens.size() * 2);
+            postagens.forEach((trigrama, posicoes) ->
+                    porTrigrama.put(trigrama, posicoes.stream().mapToInt(Integer::intValue).toArray()));
+            return new Indice(Map.copyOf(porNome), medicos, porTrigrama);
+        }
+    }
+
+    private record MedicoIndexado(String nome, String nomeNormalizado, String especialidade, String crm,
+            int totalTrigramas) {
+
+        static MedicoIndexado of(String nome, String especialidade, String crm) {
+            String normalizado = TextoUtils.normalizar(nome);
+            return new MedicoIndexado(nome, normalizado, especialidade, crm, trigramas(normalizado).size());
+        }
+    }
+
+    private record Resultado(MedicoIndexado medico, double cobertura, double jaccard) {
+    }
+}
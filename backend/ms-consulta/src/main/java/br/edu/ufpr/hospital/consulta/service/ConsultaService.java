@@ -6,15 +6,27 @@ import br.edu.ufpr.hospital.consulta.model.*;
 import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
 import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static br.edu.ufpr.hospital.consulta.service.MetricasConsultaService.*;
 
 /**
  * Service class for Consulta and Agendamento business logic
@@ -27,16 +39,52 @@ public class ConsultaService {
     private final ConsultaRepository consultaRepository;
     private final AgendamentoRepository agendamentoRepository;
     private final PacienteIntegrationService pacienteService;
+    private final ReservaVagaService reservaVagaService;
+    private final GeradorCodigoService geradorCodigoService;
+    private final IndiceDisponibilidadeService indiceDisponibilidade;
+    private final IndiceAgendaMedicosService indiceAgenda;
+    private final OutboxPontosService outboxPontos;
+    private final DashboardConsultasService dashboardConsultas;
+    private final BuscaMedicosService buscaMedicos;
+    private final ListaEsperaService listaEspera;
+    private final MetricasConsultaService metricas;
+    private final LeituraPropriaService leituraPropria;
+    private final TransactionTemplate leitura;
 
     // Constants
     private static final BigDecimal VALOR_PONTO_REAIS = new BigDecimal("5.00"); // 1 ponto = R$ 5,00
+    private static final int MEDICOS_SEMELHANTES = 5;
+    private static final int PAGINA_TRANSMISSAO = 500;
 
     public ConsultaService(ConsultaRepository consultaRepository,
             AgendamentoRepository agendamentoRepository,
-            PacienteIntegrationService pacienteService) {
+            PacienteIntegrationService pacienteService,
+            ReservaVagaService reservaVagaService,
+            GeradorCodigoService geradorCodigoService,
+            IndiceDisponibilidadeService indiceDisponibilidade,
+            IndiceAgendaMedicosService indiceAgenda,
+            OutboxPontosService outboxPontos,
+            DashboardConsultasService dashboardConsultas,
+            BuscaMedicosService buscaMedicos,
+            ListaEsperaService listaEspera,
+            MetricasConsultaService metricas,
+            LeituraPropriaService leituraPropria,
+            PlatformTransactionManager transactionManager) {
         this.consultaRepository = consultaRepository;
         this.agendamentoRepository = agendamentoRepository;
         this.pacienteService = pacienteService;
+        this.reservaVagaService = reservaVagaService;
+        this.geradorCodigoService = geradorCodigoService;
+        this.indiceDisponibilidade = indiceDisponibilidade;
+        this.indiceAgenda = indiceAgenda;
+        this.outboxPontos = outboxPontos;
+        this.dashboardConsultas = dashboardConsultas;
+        this.buscaMedicos = buscaMedicos;
+        this.listaEspera = listaEspera;
+        this.metricas = metricas;
+        this.leituraPropria = leituraPropria;
+        this.leitura = new TransactionTemplate(transactionManager);
+        this.leitura.setReadOnly(true);
     }
 
     // ========== CONSULTATION MANAGEMENT METHODS ==========
@@ -44,11 +92,14 @@ public class ConsultaService {
     /**
      * Create a new consultation (R12)
      * Employee creates a new consultation slot with specialty, doctor, date/time,
-     * price, and slots
+     * price, and slots. The doctor's time is checked against the in-memory agenda
+     * index and reserved there before commit
+     *
+     * @throws ConflitoAgendaMedicoException if the doctor already has a consultation overlapping it
      */
     public ConsultaResponseDTO criarConsulta(ConsultaDTO dto) {
         // Generate unique consultation code
-        String codigo = generateConsultaCode();
+        String codigo = geradorCodigoService.proximoCodigoConsulta();
 
         // Create consultation entity
         Consulta consulta = new Consulta();
@@ -62,122 +113,159 @@ public class ConsultaService {
         consulta.setStatus(StatusConsulta.DISPONIVEL);
         consulta.setDataCriacao(LocalDateTime.now());
 
-        // Save consultation
+        // Save consultation and take the doctor's time (rolled back on conflict)
         consulta = consultaRepository.save(consulta);
+        indiceAgenda.reservar(consulta);
+        indiceDisponibilidade.registrarAposCommit(consulta);
+        buscaMedicos.registrarAposCommit(consulta.getMedico(), consulta.getEspecialidade(), null);
 
         return ConsultaResponseDTO.fromEntity(consulta);
     }
 
     /**
-     * Search for available consultations (R05 - Part 1)
-     * Returns consultations with DISPONIVEL status, future date, and available
-     * slots
+     * Search consultations page by page (R05 - Part 1)
+     * Keyset pagination on (dataHora, id): cost and memory per page stay constant
+     * no matter how many consultations exist
+     *
+     * @param cursor Opaque cursor returned by the previous page, or null for the first page
+     * @param limite Page size
      */
-    public List<ConsultaResponseDTO> buscarTodasConsultas() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Consulta> consultas = consultaRepository.findAll();
+    @Transactional(readOnly = true)
+    public PaginaConsultasDTO buscarConsultasPaginadas(String cursor, int limite) {
+        Pageable pagina = PageRequest.of(0, limite);
+        List<ConsultaResponseDTO> itens;
+        if (cursor == null || cursor.isBlank()) {
+            itens = consultaRepository.findPrimeiraPagina(pagina);
+        } else {
+            String[] partes = decodificarCursor(cursor);
+            itens = consultaRepository.findPaginaApos(LocalDateTime.parse(partes[0]), Long.valueOf(partes[1]), pagina);
+        }
 
-        return consultas.stream()
-                // .filter(c -> c.getVagasOcupadas() < c.getVagas()) // Has available slots
-                .map(ConsultaResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+        String proximoCursor = itens.size() < limite ? null : codificarCursor(itens.get(itens.size() - 1));
+        return new PaginaConsultasDTO(itens, proximoCursor);
+    }
+
+    /**
+     * Stream every consultation, ordered by (dataHora, id), to the given consumer
+     * Read in keyset pages, each in its own short read-only transaction: the
+     * consumer (e.g. a slow client) runs with no connection or cursor held, and
+     * only one page is ever in memory
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void transmitirTodasConsultas(Consumer<ConsultaResponseDTO> consumidor) {
+        Pageable pagina = PageRequest.of(0, PAGINA_TRANSMISSAO);
+        List<ConsultaResponseDTO> itens = leitura.execute(status -> consultaRepository.findPrimeiraPagina(pagina));
+        while (!itens.isEmpty()) {
+            itens.forEach(consumidor);
+            if (itens.size() < PAGINA_TRANSMISSAO) {
+                return;
+            }
+            ConsultaResponseDTO ultima = itens.get(itens.size() - 1);
+            itens = leitura.execute(status ->
+                    consultaRepository.findPaginaApos(ultima.getDataHora(), ultima.getId(), pagina));
+        }
     }
 
     /**
      * Search consultations by specialty (R05 - Part 1)
-     * Returns available consultations for a specific specialty
+     * Returns available consultations for a specific specialty, optionally on a given day
+     * Served from the in-memory availability index, no database access
      */
-    public List<ConsultaResponseDTO> buscarPorEspecialidade(String especialidade) {
-        LocalDateTime now = LocalDateTime.now();
-        List<Consulta> consultas = consultaRepository
-                .findByEspecialidadeAndStatusAndDataHoraAfter(
-                        especialidade, StatusConsulta.DISPONIVEL, now);
-
-        return consultas.stream()
-                .filter(c -> c.getVagasOcupadas() < c.getVagas()) // Has available slots
-                .map(ConsultaResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<ConsultaResponseDTO> buscarPorEspecialidade(String especialidade, LocalDate dia) {
+        return indiceDisponibilidade.buscarPorEspecialidade(especialidade, dia);
     }
 
     /**
      * Search consultations by doctor name (R05 - Part 1)
-     * Returns available consultations for a specific doctor
+     * Returns available consultations for a specific doctor, optionally on a given day
+     * Served from the in-memory availability index, no database access. When no
+     * doctor name contains the text (e.g. a typo), falls back to the most similar
+     * names from the doctor name index
      */
-    public List<ConsultaResponseDTO> buscarPorMedico(String medico) {
-        LocalDateTime now = LocalDateTime.now();
-        List<Consulta> consultas = consultaRepository
-                .findByMedicoContainingIgnoreCaseAndStatusAndDataHoraAfter(
-                        medico, StatusConsulta.DISPONIVEL, now);
-
-        return consultas.stream()
-                .filter(c -> c.getVagasOcupadas() < c.getVagas()) // Has available slots
-                .map(ConsultaResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<ConsultaResponseDTO> buscarPorMedico(String medico, LocalDate dia) {
+        List<ConsultaResponseDTO> consultas = indiceDisponibilidade.buscarPorMedico(medico, dia);
+        if (!consultas.isEmpty()) {
+            return consultas;
+        }
+        return indiceDisponibilidade.buscarPorNomesMedico(
+                buscaMedicos.nomesSemelhantes(medico, MEDICOS_SEMELHANTES), dia);
+    }
+
+    /**
+     * Fuzzy doctor search by name, ignoring case and accents, best matches first
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<MedicoEncontradoDTO> buscarMedicos(String nome, int limite) {
+        return buscaMedicos.buscar(nome, limite);
+    }
+
+    /**
+     * Free windows of a doctor on a day, within working hours
+     * Served from the in-memory doctor agenda index, no database access
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<JanelaLivreDTO> buscarJanelasLivres(String medico, LocalDate dia) {
+        return indiceAgenda.janelasLivres(medico, dia);
     }
 
     /**
      * Get consultations for employee dashboard - next 48 hours (R08)
      * Returns consultations occurring in the next 48 hours for employee management
+     * Served from the materialized dashboard window, no database access
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<ConsultaResponseDTO> buscarConsultasProximas48h() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime limit = now.plusHours(48);
-
-        List<Consulta> consultas = consultaRepository
-                .findConsultasNext48Hours(now, limit, StatusConsulta.DISPONIVEL);
-
-        return consultas.stream()
-                .map(ConsultaResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+        return dashboardConsultas.listarJanela();
     }
 
     /**
      * Cancel entire consultation (R10)
      * Employee cancels consultation if less than 50% occupied, refunds all patients
+     * Only local status changes happen here; refunds are queued and sent to
+     * ms-paciente in batches after commit
      */
-    public void cancelarConsulta(Long consultaId, String authToken) {
-        Consulta consulta = consultaRepository.findById(consultaId)
-                .orElseThrow(() -> new ConsultaNaoEncontradaException("Consulta não encontrada"));
-
-        // Check if consultation can be cancelled (less than 50% occupied)
-        double occupancyRate = consulta.getTaxaOcupacao();
-        if (occupancyRate >= 0.5) {
-            throw new CancelamentoInvalidoException(
-                    "Consulta com 50% ou mais das vagas ocupadas não pode ser cancelada");
-        }
-
-        // Get all active bookings for this consultation
-        List<Agendamento> agendamentosAtivos = agendamentoRepository
-                .findByConsultaIdAndStatusIn(consultaId,
-                        List.of(StatusAgendamento.CRIADO, StatusAgendamento.CHECK_IN));
-
-        // Cancel all active bookings and refund points
-        for (Agendamento agendamento : agendamentosAtivos) {
-            // Refund points if any were used
-            if (agendamento.getPontosUsados().compareTo(BigDecimal.ZERO) > 0) {
-                try {
-                    pacienteService.adicionarPontos(
-                            agendamento.getPacienteId(),
-                            agendamento.getPontosUsados(),
-                            "CANCELAMENTO DE CONSULTA",
-                            authToken);
-                } catch (Exception e) {
-                    // Log error but continue with cancellation
-                    System.err.println("Erro ao refundar pontos para paciente " +
-                            agendamento.getPacienteId() + ": " + e.getMessage());
-                }
+    public void cancelarConsulta(Long consultaId) {
+        metricas.medir(CANCELAR_CONSULTA, () -> {
+            Consulta consulta = metricas.medirEtapa(CANCELAR_CONSULTA, "busca", BANCO,
+                    () -> consultaRepository.findById(consultaId))
+                    .orElseThrow(() -> new ConsultaNaoEncontradaException("Consulta não encontrada"));
+
+            // Check if consultation can be cancelled (less than 50% occupied)
+            double occupancyRate = consulta.getTaxaOcupacao();
+            if (occupancyRate >= 0.5) {
+                throw new CancelamentoInvalidoException(
+                        "Consulta com 50% ou mais das vagas ocupadas não pode ser cancelada");
             }
 
-            // Update booking status
-            agendamento.setStatus(StatusAgendamento.CANCELADO);
-        }
+            metricas.medirEtapa(CANCELAR_CONSULTA, "atualizacao", BANCO, () -> {
+                // Get all active bookings for this consultation
+                List<Agendamento> agendamentosAtivos = agendamentoRepository
+                        .findByConsultaIdAndStatusIn(consultaId,
+                                List.of(StatusAgendamento.CRIADO, StatusAgendamento.CHECK_IN));
 
-        // Update consultation status
-        consulta.setStatus(StatusConsulta.CANCELADA);
+                // Cancel all active bookings
+                for (Agendamento agendamento : agendamentosAtivos) {
+                    agendamento.setStatus(StatusAgendamento.CANCELADO);
+                }
 
-        // Save changes
-        agendamentoRepository.saveAll(agendamentosAtivos);
-        consultaRepository.save(consulta);
+                // Queue refunds of the points used; delivered after commit
+                outboxPontos.registrarEstornos(agendamentosAtivos, "CANCELAMENTO DE CONSULTA",
+                        OutboxPontosService.ORIGEM_CANCELAMENTO_CONSULTA);
+
+                // Update consultation status
+                consulta.setStatus(StatusConsulta.CANCELADA);
+
+                // Save changes
+                agendamentoRepository.saveAll(agendamentosAtivos);
+                consultaRepository.save(consulta);
+            });
+            metricas.medirEtapa(CANCELAR_CONSULTA, "encerramento_lista_espera", BANCO,
+                    () -> listaEspera.encerrarFilas(List.of(consultaId)));
+            indiceDisponibilidade.removerAposCommit(consultaId);
+            indiceAgenda.liberarAposCommit(consultaId);
+        });
     }
 
     /**
@@ -185,32 +273,32 @@ public class ConsultaService {
      * Employee marks consultation as completed, updates all booking statuses
      */
     public void realizarConsulta(Long consultaId) {
-        Consulta consulta = consultaRepository.findById(consultaId)
-                .orElseThrow(() -> new ConsultaNaoEncontradaException("Consulta não encontrada"));
-
-        // Update consultation status
-        consulta.setStatus(StatusConsulta.REALIZADA);
-
-        // Get all bookings for this consultation
-        List<Agendamento> agendamentos = agendamentoRepository.findByConsultaId(consultaId);
-
-        // Update booking statuses based on current status
-        for (Agendamento agendamento : agendamentos) {
-            switch (agendamento.getStatus()) {
-                case COMPARECEU:
-                    agendamento.setStatus(StatusAgendamento.REALIZADO);
-                    break;
-                case CRIADO:
-                case CHECK_IN:
-                    agendamento.setStatus(StatusAgendamento.FALTOU);
-                    break;
-                // CANCELADO remains unchanged
-            }
+        if (!consultaRepository.existsById(consultaId)) {
+            throw new ConsultaNaoEncontradaException("Consulta não encontrada");
         }
 
-        // Save changes
-        consultaRepository.save(consulta);
-        agendamentoRepository.saveAll(agendamentos);
+        finalizarConsultas(List.of(consultaId));
+    }
+
+    /**
+     * Finalize several consultations at once
+     * Set-based: one UPDATE for the consultations and one per target booking status
+     * (COMPARECEU -> REALIZADO, CRIADO/CHECK_IN -> FALTOU; CANCELADO remains unchanged),
+     * regardless of how many bookings they have
+     *
+     * @param consultaIds IDs of the consultations to finalize
+     * @return Number of consultations updated
+     */
+    public int finalizarConsultas(List<Long> consultaIds) {
+        int finalizadas = consultaRepository.atualizarStatus(consultaIds, StatusConsulta.REALIZADA);
+
+        agendamentoRepository.atualizarStatusPorConsultas(consultaIds,
+                List.of(StatusAgendamento.COMPARECEU), StatusAgendamento.REALIZADO);
+        agendamentoRepository.atualizarStatusPorConsultas(consultaIds,
+                List.of(StatusAgendamento.CRIADO, StatusAgendamento.CHECK_IN), StatusAgendamento.FALTOU);
+
+        consultaIds.forEach(indiceDisponibilidade::removerAposCommit);
+        return finalizadas;
     }
 
     // ========== BOOKING MANAGEMENT METHODS ==========
@@ -219,10 +307,32 @@ public class ConsultaService {
      * Create a new booking (R05)
      * Patient books a consultation slot, uses points for discount, receives unique
      * booking code
+     *
+     * @see AgendamentoReativoService for the non-blocking variant used by the REST API
      */
     public AgendamentoResponseDTO agendarConsulta(Long consultaId, AgendamentoDTO dto,
             Integer pacienteId, String authToken) {
-        // Validate consultation exists and has available slots
+        return metricas.medir(AGENDAR, () -> {
+            metricas.medirEtapa(AGENDAR, "validacao", BANCO, () -> validarAgendamento(consultaId, pacienteId));
+
+            // Validate points usage
+            BigDecimal pontosUsados = dto.getPontosUsados();
+            if (pontosUsados.compareTo(BigDecimal.ZERO) > 0) {
+                BigDecimal saldoAtual = metricas.medirEtapa(AGENDAR, "saldo_pontos", PONTOS,
+                        () -> pacienteService.verificarSaldoPontos(pacienteId, authToken));
+                validarSaldoPontos(pacienteId, pontosUsados, saldoAtual);
+            }
+
+            return confirmarAgendamento(consultaId, pontosUsados, pacienteId);
+        });
+    }
+
+    /**
+     * Booking pre-checks that only need the local database: the consultation is
+     * available, has free slots and the patient has no active booking for it
+     */
+    @Transactional(readOnly = true)
+    public void validarAgendamento(Long consultaId, Integer pacienteId) {
         Consulta consulta = consultaRepository.findById(consultaId)
                 .orElseThrow(() -> new ConsultaNaoEncontradaException("Consulta não encontrada"));
 
@@ -231,37 +341,49 @@ public class ConsultaService {
         }
 
         if (!consulta.temVagasDisponiveis()) {
-            throw new ConsultaIndisponivelException("Consulta sem vagas disponíveis");
+            throw new ConsultaIndisponivelException("Consulta sem vagas disponíveis; entre na lista de espera");
         }
 
         // Check if patient already has an active booking for this consultation
         if (agendamentoRepository.hasActiveBookingForConsulta(pacienteId, consultaId)) {
             throw new ConsultaIndisponivelException("Paciente já possui agendamento ativo para esta consulta");
         }
+    }
 
-        // Validate and handle points usage
-        BigDecimal pontosUsados = dto.getPontosUsados();
-        if (pontosUsados.compareTo(BigDecimal.ZERO) > 0) {
-            // Verify patient has enough points
-            BigDecimal saldoAtual = pacienteService.verificarSaldoPontos(pacienteId, authToken);
-            if (saldoAtual.compareTo(pontosUsados) < 0) {
-                throw new SaldoInsuficienteException("Saldo de pontos insuficiente. Saldo atual: " +
-                        saldoAtual + ", necessário: " + pontosUsados);
-            }
+    /**
+     * Reject a booking whose points exceed the patient's balance
+     * The balance from ms-paciente does not include the patient's debits still in
+     * the outbox, so those are subtracted first
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void validarSaldoPontos(Integer pacienteId, BigDecimal pontosUsados, BigDecimal saldoAtual) {
+        BigDecimal saldoLivre = saldoAtual.subtract(outboxPontos.debitosNaoAplicados(pacienteId));
+        if (saldoLivre.compareTo(pontosUsados) < 0) {
+            // The balance may be cached; let a retry (e.g. right after buying points) read it fresh
+            pacienteService.invalidarSaldo(pacienteId);
+            throw new SaldoInsuficienteException("Saldo de pontos insuficiente. Saldo atual: " +
+                    saldoLivre + ", necessário: " + pontosUsados);
         }
+    }
 
-        // Calculate payment amounts (1 point = R$ 5.00)
-        BigDecimal descontoPontos = pontosUsados.multiply(VALOR_PONTO_REAIS);
-        BigDecimal valorPago = consulta.getValor().subtract(descontoPontos);
+    /**
+     * Reserve the slot and persist an already validated booking
+     */
+    public AgendamentoResponseDTO confirmarAgendamento(Long consultaId, BigDecimal pontosUsados,
+            Integer pacienteId) {
+        metricas.medirCommit(AGENDAR);
 
-        // Ensure valor pago is not negative
-        if (valorPago.compareTo(BigDecimal.ZERO) < 0) {
-            valorPago = BigDecimal.ZERO;
-        }
+        // Atomically reserve the slot before touching the patient's points
+        Consulta consulta = metricas.medirEtapa(AGENDAR, "reserva_vaga", BANCO,
+                () -> reservaVagaService.reservarVaga(consultaId));
+        indiceDisponibilidade.registrarAposCommit(consulta);
+        metricas.registrarVagasRestantes(consulta);
+
+        BigDecimal valorPago = calcularValorPago(consulta.getValor(), pontosUsados);
 
         // Create booking
         Agendamento agendamento = new Agendamento();
-        agendamento.setCodigoAgendamento(generateBookingCode());
+        agendamento.setCodigoAgendamento(geradorCodigoService.proximoCodigoAgendamento());
         agendamento.setPacienteId(pacienteId);
         agendamento.setConsulta(consulta);
         agendamento.setPontosUsados(pontosUsados);
@@ -269,59 +391,64 @@ public class ConsultaService {
         agendamento.setDataAgendamento(LocalDateTime.now());
         agendamento.setStatus(StatusAgendamento.CRIADO);
 
-        // Deduct points from patient account
-        if (pontosUsados.compareTo(BigDecimal.ZERO) > 0) {
-            pacienteService.deduzirPontos(pacienteId, pontosUsados, authToken);
-        }
-
-        // Update consultation occupancy and save
-        consulta.ocuparVaga();
-        consultaRepository.save(consulta);
+        // Save booking and queue the points debit in the same transaction;
+        // ms-paciente is updated by the outbox relay after commit
+        Agendamento salvo = metricas.medirEtapa(AGENDAR, "registro", BANCO, () -> {
+            Agendamento registrado = agendamentoRepository.save(agendamento);
+            outboxPontos.registrarDebito(registrado);
+            return registrado;
+        });
+        leituraPropria.registrarEscrita(pacienteId);
 
-        // Save booking
-        agendamento = agendamentoRepository.save(agendamento);
+        return AgendamentoResponseDTO.fromEntity(salvo);
+    }
 
-        return AgendamentoResponseDTO.fromEntity(agendamento);
+    /**
+     * Amount paid for a consultation after the points discount (1 point = R$ 5.00), never negative
+     */
+    static BigDecimal calcularValorPago(BigDecimal valorConsulta, BigDecimal pontosUsados) {
+        BigDecimal valorPago = valorConsulta.subtract(pontosUsados.multiply(VALOR_PONTO_REAIS));
+        return valorPago.compareTo(BigDecimal.ZERO) < 0 ? BigDecimal.ZERO : valorPago;
     }
 
     /**
      * Cancel a booking (R06)
      * Patient cancels booking if status is CRIADO or CHECK_IN, gets points refunded
+     * (queued in the outbox, applied on ms-paciente after commit). The slot goes to
+     * the head of the consultation's waitlist, if anyone is waiting
      */
-    public void cancelarAgendamento(String agendamentoId, Integer pacienteId, String authToken) {
-        Agendamento agendamento = agendamentoRepository.findByCodigoAgendamento(agendamentoId)
-                .orElseThrow(() -> new AgendamentoNaoEncontradoException("Agendamento não encontrado"));
-
-        // Verify ownership
-        if (!agendamento.getPacienteId().equals(pacienteId)) {
-            throw new AcessoNegadoException("Agendamento pertence a outro paciente");
-        }
-
-        // Verify status allows cancellation
-        if (!agendamento.podeSerCancelado()) {
-            throw new CancelamentoInvalidoException(
-                    "Agendamento não pode ser cancelado. Status atual: " + agendamento.getStatus());
-        }
-
-        // Refund points if any were used
-        if (agendamento.getPontosUsados().compareTo(BigDecimal.ZERO) > 0) {
-            pacienteService.adicionarPontos(
-                    pacienteId,
-                    agendamento.getPontosUsados(),
-                    "CANCELAMENTO DE AGENDAMENTO",
-                    authToken);
-        }
-
-        // Update booking status
-        agendamento.setStatus(StatusAgendamento.CANCELADO);
+    public void cancelarAgendamento(String agendamentoId, Integer pacienteId) {
+        metricas.medir(CANCELAR_AGENDAMENTO, () -> {
+            Agendamento agendamento = buscarAgendamento(CANCELAR_AGENDAMENTO, agendamentoId)
+                    .orElseThrow(() -> new AgendamentoNaoEncontradoException("Agendamento não encontrado"));
+
+            // Verify ownership
+            if (!agendamento.getPacienteId().equals(pacienteId)) {
+                throw new AcessoNegadoException("Agendamento pertence a outro paciente");
+            }
 
-        // Free up consultation slot
-        Consulta consulta = agendamento.getConsulta();
-        consulta.liberarVaga();
+            // Verify status allows cancellation
+            if (!agendamento.podeSerCancelado()) {
+                throw new CancelamentoInvalidoException(
+                        "Agendamento não pode ser cancelado. Status atual: " + agendamento.getStatus());
+            }
 
-        // Save changes
-        agendamentoRepository.save(agendamento);
-        consultaRepository.save(consulta);
+            Long consultaId = agendamento.getConsulta().getId();
+            metricas.medirEtapa(CANCELAR_AGENDAMENTO, "atualizacao", BANCO, () -> {
+                // Update booking status
+                agendamento.setStatus(StatusAgendamento.CANCELADO);
+                agendamentoRepository.save(agendamento);
+
+                // Queue the refund of the points used, if any
+                outboxPontos.registrarEstornos(List.of(agendamento), "CANCELAMENTO DE AGENDAMENTO",
+                        OutboxPontosService.ORIGEM_CANCELAMENTO_AGENDAMENTO);
+            });
+            leituraPropria.registrarEscrita(pacienteId);
+
+            // Hand the slot to the next patient on the waitlist (debiting their points), or free it
+            metricas.medirEtapa(CANCELAR_AGENDAMENTO, "repasse_vaga", BANCO,
+                    () -> listaEspera.repassarVaga(consultaId).ifPresent(outboxPontos::registrarDebito));
+        });
     }
 
     /**
@@ -329,9 +456,14 @@ public class ConsultaService {
      * Patient performs check-in within 48 hours before consultation
      */
     public void realizarCheckin(String agendamentoId, Integer pacienteId) {
-        Agendamento agendamento = agendamentoRepository.findByCodigoAgendamento(agendamentoId)
-                .orElseThrow(() -> new AgendamentoNaoEncontradoException("Agendamento não encontrado"));
+        metricas.medir(CHECKIN, () -> {
+            Agendamento agendamento = buscarAgendamento(CHECKIN, agendamentoId)
+                    .orElseThrow(() -> new AgendamentoNaoEncontradoException("Agendamento não encontrado"));
+            registrarCheckin(agendamento, pacienteId);
+        });
+    }
 
+    private void registrarCheckin(Agendamento agendamento, Integer pacienteId) {
         // Verify ownership
         if (!agendamento.getPacienteId().equals(pacienteId)) {
             throw new AcessoNegadoException("Agendamento pertence a outro paciente");
@@ -362,7 +494,10 @@ public class ConsultaService {
         // Update status and save
         agendamento.setStatus(StatusAgendamento.CHECK_IN);
         agendamento.setDataCheckin(LocalDateTime.now());
-        agendamentoRepository.save(agendamento);
+        metricas.medirEtapa(CHECKIN, "atualizacao", BANCO, () -> agendamentoRepository.save(agendamento));
+        dashboardConsultas.registrarCheckinAposCommit(agendamento.getConsulta().getId(),
+                agendamento.getCodigoAgendamento());
+        leituraPropria.registrarEscrita(pacienteId);
     }
 
     /**
@@ -370,53 +505,72 @@ public class ConsultaService {
      * Employee confirms patient attendance using booking code
      */
     public void confirmarComparecimento(String codigoAgendamento) {
-        Agendamento agendamento = agendamentoRepository.findByCodigoAgendamento(codigoAgendamento)
-                .orElseThrow(() -> new AgendamentoNaoEncontradoException(
-                        "Agendamento não encontrado com código: " + codigoAgendamento));
-
-        // Verify status allows confirmation
-        if (agendamento.getStatus() != StatusAgendamento.CHECK_IN) {
-            throw new ConfirmacaoInvalidaException(
-                    "Só é possível confirmar agendamentos com check-in realizado. Status atual: " +
-                            agendamento.getStatus());
-        }
+        metricas.medir(CONFIRMAR_COMPARECIMENTO, () -> {
+            Agendamento agendamento = buscarAgendamento(CONFIRMAR_COMPARECIMENTO, codigoAgendamento)
+                    .orElseThrow(() -> new AgendamentoNaoEncontradoException(
+                            "Agendamento não encontrado com código: " + codigoAgendamento));
+
+            // Verify status allows confirmation
+            if (agendamento.getStatus() != StatusAgendamento.CHECK_IN) {
+                throw new ConfirmacaoInvalidaException(
+                        "Só é possível confirmar agendamentos com check-in realizado. Status atual: " +
+                                agendamento.getStatus());
+            }
 
-        // Update status and save
-        agendamento.setStatus(StatusAgendamento.COMPARECEU);
-        agendamento.setDataConfirmacao(LocalDateTime.now());
-        agendamentoRepository.save(agendamento);
+            // Update status and save
+            agendamento.setStatus(StatusAgendamento.COMPARECEU);
+            agendamento.setDataConfirmacao(LocalDateTime.now());
+            metricas.medirEtapa(CONFIRMAR_COMPARECIMENTO, "atualizacao", BANCO,
+                    () -> agendamentoRepository.save(agendamento));
+        });
+    }
+
+    private Optional<Agendamento> buscarAgendamento(String operacao, String codigoAgendamento) {
+        return metricas.medirEtapa(operacao, "busca", BANCO,
+                () -> agendamentoRepository.findByCodigoAgendamento(codigoAgendamento));
     }
 
     /**
      * List patient's bookings (R03)
      * Returns all bookings for a patient ordered by date
+     * Booking and consultation columns come from a single joined projection query
      */
+    @Transactional(readOnly = true)
     public List<AgendamentoResponseDTO> listarAgendamentosPaciente(Integer pacienteId) {
-        List<Agendamento> agendamentos = agendamentoRepository
-                .findByPacienteIdOrderByDataAgendamentoDesc(pacienteId);
+        return agendamentoRepository.listarResumoPorPaciente(pacienteId);
+    }
 
-        return agendamentos.stream()
-                .map(AgendamentoResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+    /**
+     * List patient's bookings, optionally followed by the archived ones (closed
+     * bookings older than the retention horizon, see ArquivamentoAgendamentosService)
+     */
+    @Transactional(readOnly = true)
+    public List<AgendamentoResponseDTO> listarAgendamentosPaciente(Integer pacienteId, boolean incluirArquivados) {
+        return incluirArquivados
+                ? agendamentoRepository.listarHistoricoPorPaciente(pacienteId, true)
+                : listarAgendamentosPaciente(pacienteId);
     }
 
     // ========== UTILITY METHODS ==========
 
-    /**
-     * Generate unique consultation code
-     * Format: CON{sequential_number} (e.g., CON001, CON002, etc.)
-     */
-    private String generateConsultaCode() {
-        Long count = consultaRepository.count() + 1;
-        return String.format("CON%03d", count);
+    private static String codificarCursor(ConsultaResponseDTO ultima) {
+        String valor = ultima.getDataHora() + "|" + ultima.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
     }
 
-    /**
-     * Generate unique booking code
-     * Format: AGD{timestamp} (e.g., AGD1672589123456)
-     */
-    private String generateBookingCode() {
-        return "AGD" + System.currentTimeMillis();
+    private static String[] decodificarCursor(String cursor) {
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = valor.split("\\|");
+            if (partes.length != 2) {
+                throw new IllegalArgumentException("Cursor de paginação inválido");
+            }
+            LocalDateTime.parse(partes[0]);
+            Long.parseLong(partes[1]);
+            return partes;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor de paginação inválido", e);
+        }
     }
 
     /**
@@ -439,22 +593,10 @@ public class ConsultaService {
         throw new AcessoNegadoException("Formato de token inválido");
     }
 
-    public List<ConsultaResponseDTO> buscarEspecialidades() {
-        List<Consulta> consultas = consultaRepository.findAll();
-        return consultas.stream()
-                .map(ConsultaResponseDTO::fromEntity)
-                .collect(Collectors.toList());
-    }
-
+    @Transactional(readOnly = true)
     public List<AgendamentoResponseDTO> buscarAgendamentosPorConsultaId(Long consultaId) {
-        // 1. Busca as entidades 'Agendamento' do banco de dados usando o repositório.
-        List<Agendamento> agendamentos = agendamentoRepository.findByConsultaId(consultaId);
-
-        // 2. Converte a lista de entidades para uma lista de DTOs.
-        // Isso assume que seu AgendamentoResponseDTO tem um método estático
-        // 'fromEntity'.
-        return agendamentos.stream()
-                .map(AgendamentoResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+        // Uma única consulta com JOIN projeta agendamento + consulta direto no DTO,
+        // evitando um SELECT extra por agendamento para carregar a consulta (N+1)
+        return agendamentoRepository.listarResumoPorConsulta(consultaId);
     }
 }
@@ -0,0 +1,335 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Materialized rolling window (next 48h by default) of consultations for the employee dashboard
+ * Built from the in-memory availability index, so neither polls nor stream
+ * subscribers hit the database. Subscribers get a snapshot when they connect and
+ * then only deltas: booking, cancellation and rebuild changes arrive through
+ * AlteracaoIndiceEvent, check-ins are announced by the booking flow, and a periodic
+ * sweep rolls the window forward
+ * Deltas are numbered and queued under a lock, but written to the sockets by the
+ * dashboard executor, so the threads committing bookings never wait on a slow
+ * browser. Each subscriber has a bounded queue; one that falls behind is dropped
+ * and gets a fresh snapshot when it reconnects
+ */
+@Service
+@Slf4j
+public class DashboardConsultasService {
+
+    static final String EVENTO_SNAPSHOT = "snapshot";
+    static final String EVENTO_CONSULTA = "consulta";
+    static final String EVENTO_REMOCAO = "remocao";
+    static final String EVENTO_CHECKIN = "checkin";
+
+    private final IndiceDisponibilidadeService indiceDisponibilidade;
+    private final Executor executor;
+    private final Duration janela;
+    private final long timeoutAssinaturaMs;
+    private final int filaPorAssinante;
+
+    private final Set<Assinante> assinantes = ConcurrentHashMap.newKeySet();
+
+    // Last state sent to subscribers; guarded by "trava" together with the sequence,
+    // so deltas are numbered and queued in order. Nothing is written to a socket while it is held
+    private final ReentrantLock trava = new ReentrantLock();
+    private final Map<Long, ConsultaResponseDTO> publicado = new HashMap<>();
+    private long sequencia;
+
+    public DashboardConsultasService(IndiceDisponibilidadeService indiceDisponibilidade,
+            @Qualifier("dashboardTaskExecutor") Executor executor,
+            @Value("${consulta.dashboard.janela-horas:48}") long janelaHoras,
+            @Value("${consulta.dashboard.sse-timeout-ms:1800000}") long timeoutAssinaturaMs,
+            @Value("${consulta.dashboard.envio.fila-por-assinante:256}") int filaPorAssinante) {
+        this.indiceDisponibilidade = indiceDisponibilidade;
+        this.executor = executor;
+        this.janela = Duration.ofHours(janelaHoras);
+        this.timeoutAssinaturaMs = timeoutAssinaturaMs;
+        this.filaPorAssinante = Math.max(1, filaPorAssinante);
+    }
+
+    // ========== QUERIES ==========
+
+    /**
+     * Consultations within the window, ordered by date/time
+     */
+    public List<ConsultaResponseDTO> listarJanela() {
+        LocalDateTime agora = LocalDateTime.now();
+        return indiceDisponibilidade.buscarJanela(agora, agora.plus(janela));
+    }
+
+    // ========== SUBSCRIPTIONS ==========
+
+    /**
+     * Open a dashboard stream: a "snapshot" event with the whole window, followed
+     * by "consulta" (insert/update), "remocao" and "checkin" deltas
+     */
+    public SseEmitter assinar() {
+        SseEmitter emitter = new SseEmitter(timeoutAssinaturaMs);
+        Assinante assinante = new Assinante(emitter);
+        emitter.onCompletion(() -> assinantes.remove(assinante));
+        emitter.onTimeout(() -> assinantes.remove(assinante));
+        emitter.onError(e -> assinantes.remove(assinante));
+
+        trava.lock();
+        try {
+            // Bring everyone up to date first, so the snapshot matches the delta sequence
+            sincronizarJanelaEPublicar();
+            List<ConsultaResponseDTO> snapshot = publicado.values().stream()
+                    .sorted(Comparator.comparing(ConsultaResponseDTO::getDataHora)
+                            .thenComparing(ConsultaResponseDTO::getId))
+                    .toList();
+            // Queued before joining, so it reaches the socket ahead of any later delta
+            assinante.enfileirar(SseEmitter.event().id(Long.toString(sequencia)).name(EVENTO_SNAPSHOT)
+                    .data(snapshot, MediaType.APPLICATION_JSON).build());
+            assinantes.add(assinante);
+        } finally {
+            trava.unlock();
+        }
+        assinante.agendarEnvio();
+        log.debug("Dashboard subscriber connected ({} active)", assinantes.size());
+        return emitter;
+    }
+
+    int totalAssinantes() {
+        return assinantes.size();
+    }
+
+    // ========== DELTAS ==========
+
+    @EventListener
+    public void aoAlterarIndice(AlteracaoIndiceEvent evento) {
+        if (evento.isReconstrucao()) {
+            sincronizarJanelaEPublicar();
+        } else {
+            sincronizarConsulta(evento.consultaId());
+        }
+    }
+
+    /**
+     * Announce a check-in on a consultation of the window once the current transaction commits
+     */
+    public void registrarCheckinAposCommit(Long consultaId, String codigoAgendamento) {
+        Runnable acao = () -> {
+            trava.lock();
+            try {
+                if (publicado.containsKey(consultaId)) {
+                    enviar(EVENTO_CHECKIN, new CheckinDashboard(consultaId, codigoAgendamento));
+                }
+            } finally {
+                trava.unlock();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    /**
+     * Roll the window forward (consultations entering or leaving it as time passes)
+     * and keep idle connections alive
+     */
+    @Scheduled(fixedDelayString = "${consulta.dashboard.sincronizacao-ms:30000}")
+    public void sincronizarPeriodicamente() {
+        sincronizarJanelaEPublicar();
+        publicar(SseEmitter.event().comment("ping").build());
+    }
+
+    private void sincronizarConsulta(Long consultaId) {
+        trava.lock();
+        try {
+            sincronizarConsultaComTrava(consultaId);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private void sincronizarConsultaComTrava(Long consultaId) {
+        LocalDateTime agora = LocalDateTime.now();
+        Optional<ConsultaResponseDTO> atual = indiceDisponibilidade.buscarPorId(consultaId)
+                .filter(c -> naJanela(c, agora));
+        ConsultaResponseDTO anterior = publicado.get(consultaId);
+
+        if (atual.isEmpty()) {
+            if (anterior != null) {
+                publicado.remove(consultaId);
+                enviar(EVENTO_REMOCAO, new RemocaoDashboard(consultaId));
+            }
+        } else if (anterior == null || mudou(anterior, atual.get())) {
+            publicado.put(consultaId, atual.get());
+            enviar(EVENTO_CONSULTA, atual.get());
+        }
+    }
+
+    private void sincronizarJanelaEPublicar() {
+        trava.lock();
+        try {
+            sincronizarJanelaComTrava();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private void sincronizarJanelaComTrava() {
+        Map<Long, ConsultaResponseDTO> anteriores = new HashMap<>(publicado);
+        publicado.clear();
+        listarJanela().forEach(c -> publicado.put(c.getId(), c));
+
+        for (Long id : anteriores.keySet()) {
+            if (!publicado.containsKey(id)) {
+                enviar(EVENTO_REMOCAO, new RemocaoDashboard(id));
+            }
+        }
+        publicado.forEach((id, consulta) -> {
+            ConsultaResponseDTO anterior = anteriores.get(id);
+            if (anterior == null || mudou(anterior, consulta)) {
+                enviar(EVENTO_CONSULTA, consulta);
+            }
+        });
+    }
+
+    private boolean naJanela(ConsultaResponseDTO consulta, LocalDateTime agora) {
+        return consulta.getDataHora().isAfter(agora) && consulta.getDataHora().isBefore(agora.plus(janela));
+    }
+
+    private static boolean mudou(ConsultaResponseDTO a, ConsultaResponseDTO b) {
+        return !Objects.equals(a.getVagasOcupadas(), b.getVagasOcupadas())
+                || !Objects.equals(a.getVagas(), b.getVagas())
+                || a.getStatus() != b.getStatus()
+                || !Objects.equals(a.getDataHora(), b.getDataHora())
+                || !Objects.equals(a.getMedico(), b.getMedico())
+                || !Objects.equals(a.getEspecialidade(), b.getEspecialidade())
+                || !mesmoValor(a.getValor(), b.getValor());
+    }
+
+    private static boolean mesmoValor(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
+    /**
+     * Number a delta and queue it for every subscriber (caller holds the lock, so
+     * deltas keep their order)
+     */
+    private void enviar(String nome, Object dados) {
+        sequencia++;
+        publicar(SseEmitter.event().id(Long.toString(sequencia)).name(nome)
+                .data(dados, MediaType.APPLICATION_JSON).build());
+    }
+
+    private void publicar(Set<DataWithMediaType> evento) {
+        for (Assinante assinante : assinantes) {
+            if (assinante.enfileirar(evento)) {
+                assinante.agendarEnvio();
+            } else {
+                descartar(assinante, new IllegalStateException(
+                        "Mais de " + filaPorAssinante + " eventos pendentes"));
+            }
+        }
+    }
+
+    private void descartar(Assinante assinante, Exception causa) {
+        if (assinantes.remove(assinante)) {
+            assinante.emitter.completeWithError(causa);
+            log.debug("Dashboard subscriber dropped: {}", causa.getMessage());
+        }
+    }
+
+    /**
+     * A connected stream and its pending events, written to the socket in order by
+     * at most one executor task at a time
+     */
+    private final class Assinante {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<DataWithMediaType>> pendentes = new ArrayBlockingQueue<>(filaPorAssinante);
+        private final AtomicBoolean enviando = new AtomicBoolean();
+
+        private Assinante(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        boolean enfileirar(Set<DataWithMediaType> evento) {
+            return pendentes.offer(evento);
+        }
+
+        void agendarEnvio() {
+            if (!enviando.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this::esvaziar);
+            } catch (RejectedExecutionException e) {
+                enviando.set(false);
+                descartar(this, e);
+            }
+        }
+
+        private void esvaziar() {
+            try {
+                Set<DataWithMediaType> evento;
+                while ((evento = pendentes.poll()) != null) {
+                    emitter.send(evento);
+                }
+            } catch (IOException | IllegalStateException e) {
+                descartar(this, e);
+                pendentes.clear();
+            } finally {
+                enviando.set(false);
+            }
+            // An event queued after the last poll, while the flag was still set
+            if (!pendentes.isEmpty() && assinantes.contains(this)) {
+                agendarEnvio();
+            }
+        }
+    }
+
+    /**
+     * Payload of a "remocao" event
+     */
+    public record RemocaoDashboard(Long id) {
+    }
+
+    /**
+     * Payload of a "checkin" event
+     */
+    public record CheckinDashboard(Long consultaId, String codigoAgendamento) {
+    }
+}
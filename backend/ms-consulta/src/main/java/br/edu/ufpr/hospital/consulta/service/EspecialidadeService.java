@@ -1,50 +1,87 @@
 package br.edu.ufpr.hospital.consulta.service;
 
+import br.edu.ufpr.hospital.consulta.dto.DisponibilidadeEspecialidadeDTO;
 import br.edu.ufpr.hospital.consulta.dto.EspecialidadeDTO;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 /**
  * Service for managing medical specialties
- * Returns predefined list of specialties as specified in requirements
+ * Returns predefined list of specialties as specified in requirements, from an
+ * immutable registry built once (lookup by code is a map access). Also serves
+ * the per-specialty count of bookable consultations, computed with one GROUP BY
+ * and reused until the availability index reports a change
  */
 @Service
 public class EspecialidadeService {
-    
+
+    /**
+     * Predefined medical specialties
+     * As specified in REQUISITOS.md - the first five are the required specialties
+     */
+    private static final List<EspecialidadeDTO> ESPECIALIDADES = List.of(
+        new EspecialidadeDTO("CARD", "Cardiologia"),
+        new EspecialidadeDTO("DERM", "Dermatologia"),
+        new EspecialidadeDTO("PED", "Pediatria"),
+        new EspecialidadeDTO("GINE", "Ginecologia"),
+        new EspecialidadeDTO("ORTO", "Ortopedia"),
+        // Additional common specialties for better system usability
+        new EspecialidadeDTO("NEURO", "Neurologia"),
+        new EspecialidadeDTO("OFTAL", "Oftalmologia"),
+        new EspecialidadeDTO("PSIQ", "Psiquiatria"),
+        new EspecialidadeDTO("ENDO", "Endocrinologia"),
+        new EspecialidadeDTO("GASTRO", "Gastroenterologia"),
+        new EspecialidadeDTO("PNEUMO", "Pneumologia"),
+        new EspecialidadeDTO("URO", "Urologia"),
+        new EspecialidadeDTO("OTORRINO", "Otorrinolaringologia")
+    );
+
+    private static final Map<String, EspecialidadeDTO> POR_CODIGO = ESPECIALIDADES.stream()
+        .collect(Collectors.toUnmodifiableMap(EspecialidadeDTO::getCodigo, Function.identity()));
+
+    private final ConsultaRepository consultaRepository;
+    private final long validadeContagemMs;
+
+    // Bumped on every availability change; a count computed under an older generation is stale
+    private final AtomicLong geracao = new AtomicLong();
+    // Lets a single request recompute the counts while concurrent ones wait for its result
+    private final ReentrantLock trava = new ReentrantLock();
+    private volatile ContagemDisponibilidade contagem;
+
+    public EspecialidadeService(ConsultaRepository consultaRepository,
+            @Value("${consulta.especialidades.disponibilidade.validade-ms:30000}") long validadeContagemMs) {
+        this.consultaRepository = consultaRepository;
+        this.validadeContagemMs = validadeContagemMs;
+    }
+
     /**
      * Get all predefined medical specialties
      * As specified in REQUISITOS.md - these are the required specialties
      */
     public List<EspecialidadeDTO> buscarTodasEspecialidades() {
-        return Arrays.asList(
-            new EspecialidadeDTO("CARD", "Cardiologia"),
-            new EspecialidadeDTO("DERM", "Dermatologia"),
-            new EspecialidadeDTO("PED", "Pediatria"),
-            new EspecialidadeDTO("GINE", "Ginecologia"),
-            new EspecialidadeDTO("ORTO", "Ortopedia"),
-            // Additional common specialties for better system usability
-            new EspecialidadeDTO("NEURO", "Neurologia"),
-            new EspecialidadeDTO("OFTAL", "Oftalmologia"),
-            new EspecialidadeDTO("PSIQ", "Psiquiatria"),
-            new EspecialidadeDTO("ENDO", "Endocrinologia"),
-            new EspecialidadeDTO("GASTRO", "Gastroenterologia"),
-            new EspecialidadeDTO("PNEUMO", "Pneumologia"),
-            new EspecialidadeDTO("URO", "Urologia"),
-            new EspecialidadeDTO("OTORRINO", "Otorrinolaringologia")
-        );
+        return ESPECIALIDADES;
     }
     
     /**
      * Get specialty by code
      */
     public EspecialidadeDTO buscarPorCodigo(String codigo) {
-        return buscarTodasEspecialidades()
-            .stream()
-            .filter(esp -> esp.getCodigo().equals(codigo))
-            .findFirst()
-            .orElse(null);
+        return codigo == null ? null : POR_CODIGO.get(codigo);
     }
     
     /**
@@ -53,4 +90,83 @@ public class EspecialidadeService {
     public boolean isValidSpecialty(String codigo) {
         return buscarPorCodigo(codigo) != null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Number of upcoming DISPONIVEL consultations with free slots per specialty
+     * Every registry specialty is listed (0 if none), followed by any other code
+     * found in consultations. Cached until a booking change is applied to the
+     * availability index or the validity period ends (consultations leave the
+     * count as their time passes)
+     */
+    public ContagemDisponibilidade contarDisponibilidade() {
+        ContagemDisponibilidade atual = contagem;
+        if (valida(atual)) {
+            return atual;
+        }
+        trava.lock();
+        try {
+            atual = contagem;
+            if (valida(atual)) {
+                return atual;
+            }
+            long geracaoCalculo = geracao.get();
+            contagem = calcular(geracaoCalculo);
+            return contagem;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    @EventListener
+    public void aoAlterarIndice(AlteracaoIndiceEvent evento) {
+        geracao.incrementAndGet();
+    }
+
+    private boolean valida(ContagemDisponibilidade c) {
+        return c != null && c.geracao() == geracao.get()
+                && System.currentTimeMillis() - c.calculadaEm() < validadeContagemMs;
+    }
+
+    private ContagemDisponibilidade calcular(long geracaoCalculo) {
+        Map<String, Long> porCodigo = new TreeMap<>();
+        for (Object[] linha : consultaRepository.contarDisponiveisPorEspecialidade(StatusConsulta.DISPONIVEL,
+                LocalDateTime.now())) {
+            if (linha[0] != null) {
+                porCodigo.put((String) linha[0], ((Number) linha[1]).longValue());
+            }
+        }
+
+        List<DisponibilidadeEspecialidadeDTO> itens = new ArrayList<>(ESPECIALIDADES.size() + porCodigo.size());
+        for (EspecialidadeDTO especialidade : ESPECIALIDADES) {
+            itens.add(new DisponibilidadeEspecialidadeDTO(especialidade.getCodigo(), especialidade.getNome(),
+                    porCodigo.getOrDefault(especialidade.getCodigo(), 0L)));
+        }
+        porCodigo.forEach((codigo, quantidade) -> {
+            if (!POR_CODIGO.containsKey(codigo)) {
+                itens.add(new DisponibilidadeEspecialidadeDTO(codigo, null, quantidade));
+            }
+        });
+
+        return new ContagemDisponibilidade(List.copyOf(itens), etag(itens), geracaoCalculo,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Derived from the content only, so every replica gives the same tag for the same counts
+     */
+    private static String etag(List<DisponibilidadeEspecialidadeDTO> itens) {
+        CRC32 crc = new CRC32();
+        for (DisponibilidadeEspecialidadeDTO item : itens) {
+            crc.update((item.getCodigo() + "=" + item.getConsultasDisponiveis() + ";")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Counts per specialty with the ETag that identifies them
+     */
+    public record ContagemDisponibilidade(List<DisponibilidadeEspecialidadeDTO> itens, String etag, long geracao,
+            long calculadaEm) {
+    }
+}
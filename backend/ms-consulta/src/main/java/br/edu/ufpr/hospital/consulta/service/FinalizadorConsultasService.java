@@ -0,0 +1,72 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Background job that closes consultations left DISPONIVEL after their date
+ * Works in chunks, each finalized in its own short transaction with set-based
+ * updates, so a large backlog never holds locks on every row at once
+ */
+@Service
+@Slf4j
+public class FinalizadorConsultasService {
+
+    private final ConsultaRepository consultaRepository;
+    private final ConsultaService consultaService;
+
+    private final int tamanhoLote;
+    private final long carenciaHoras;
+
+    public FinalizadorConsultasService(ConsultaRepository consultaRepository,
+            ConsultaService consultaService,
+            @Value("${consulta.finalizador.tamanho-lote:200}") int tamanhoLote,
+            @Value("${consulta.finalizador.carencia-horas:24}") long carenciaHoras) {
+        this.consultaRepository = consultaRepository;
+        this.consultaService = consultaService;
+        this.tamanhoLote = tamanhoLote;
+        this.carenciaHoras = carenciaHoras;
+    }
+
+    /**
+     * Finalize every consultation that took place more than the grace period ago
+     *
+     * @return Number of consultations finalized
+     */
+    @Scheduled(fixedDelayString = "${consulta.finalizador.intervalo-ms:3600000}",
+            initialDelayString = "${consulta.finalizador.intervalo-ms:3600000}")
+    public int finalizarConsultasPassadas() {
+        LocalDateTime limite = LocalDateTime.now().minusHours(carenciaHoras);
+        int total = 0;
+
+        List<Long> ids;
+        while (!(ids = proximoLote(limite)).isEmpty()) {
+            total += consultaService.finalizarConsultas(ids);
+        }
+
+        if (total > 0) {
+            log.info("Finalized {} past consultations", total);
+        }
+        return total;
+    }
+
+    private List<Long> proximoLote(LocalDateTime limite) {
+        // Always the first page: finalized consultations drop out of the filter. Read from
+        // the primary, a lagging replica would keep returning the batch just finalized
+        return RoteamentoLeituraDataSource.noPrimario(() -> consultaRepository
+                .findConsultasToFinalize(limite, StatusConsulta.DISPONIVEL, PageRequest.of(0, tamanhoLote))
+                .stream()
+                .map(Consulta::getId)
+                .toList());
+    }
+}
@@ -20,9 +20,11 @@ import java.util.List;
 public class FuncionarioService {
 
     private final FuncionarioRepository funcionarioRepository;
+    private final BuscaMedicosService buscaMedicos;
 
-    public FuncionarioService(FuncionarioRepository funcionarioRepository) {
+    public FuncionarioService(FuncionarioRepository funcionarioRepository, BuscaMedicosService buscaMedicos) {
         this.funcionarioRepository = funcionarioRepository;
+        this.buscaMedicos = buscaMedicos;
     }
 
     // ========== EMPLOYEE CRUD METHODS (R13-R15) ==========
@@ -55,6 +57,10 @@ public class FuncionarioService {
         
         // Save to database
         Funcionario savedFuncionario = funcionarioRepository.save(funcionario);
+        if (savedFuncionario.isMedico()) {
+            buscaMedicos.registrarAposCommit(savedFuncionario.getNome(), savedFuncionario.getEspecialidade(),
+                    savedFuncionario.getCrm());
+        }
         
         // Convert to response DTO
         return FuncionarioResponseDTO.fromEntity(savedFuncionario);
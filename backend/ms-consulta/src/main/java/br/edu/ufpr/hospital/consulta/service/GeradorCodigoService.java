@@ -0,0 +1,141 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Allocates unique CON/AGD codes using a pooled sequence
+ * Each JVM leases a block of values from a database sequence (one nextval per
+ * block) and hands codes out from memory, so codes stay unique across
+ * ms-consulta replicas without a database round trip per insert
+ * The block size is the sequence's own INCREMENT BY: a value v leases the codes
+ * [v, v + increment). Replicas configured with another codigo.bloco.tamanho use
+ * the sequence's increment, so blocks never overlap. The sequences are created on
+ * startup, in their own auto-committed statements, never inside a caller's
+ * transaction whose rollback would undo them
+ */
+@Service
+@Slf4j
+public class GeradorCodigoService {
+
+    private static final String SEQ_CONSULTA = "consultas_codigo_bloco_seq";
+    private static final String SEQ_AGENDAMENTO = "agendamentos_codigo_bloco_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int tamanhoBloco;
+
+    private final BlocoSequencia blocoConsulta;
+    private final BlocoSequencia blocoAgendamento;
+
+    // EntityManagerFactory garante que o schema já foi criado/atualizado pelo Hibernate
+    public GeradorCodigoService(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+            @Value("${codigo.bloco.tamanho:50}") int tamanhoBloco) {
+        if (tamanhoBloco < 1) {
+            throw new IllegalArgumentException("Tamanho do bloco de códigos deve ser positivo");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.tamanhoBloco = tamanhoBloco;
+        this.blocoConsulta = new BlocoSequencia(SEQ_CONSULTA, "consultas");
+        this.blocoAgendamento = new BlocoSequencia(SEQ_AGENDAMENTO, "agendamentos");
+    }
+
+    @PostConstruct
+    void preparar() {
+        blocoConsulta.preparar();
+        blocoAgendamento.preparar();
+    }
+
+    /**
+     * Next consultation code
+     * Format: CON{number} (e.g., CON001, CON1051)
+     */
+    public String proximoCodigoConsulta() {
+        return String.format("CON%03d", blocoConsulta.proximo());
+    }
+
+    /**
+     * Next booking code
+     * Format: AGD{number} (e.g., AGD000051)
+     */
+    public String proximoCodigoAgendamento() {
+        return String.format("AGD%06d", blocoAgendamento.proximo());
+    }
+
+    /**
+     * In-memory window over one leased block: values [v, v + incremento)
+     * Guarded by a lock instead of synchronized because leasing a block runs a
+     * query, which would pin the carrier thread on virtual threads
+     */
+    private final class BlocoSequencia {
+
+        private final String sequencia;
+        private final String tabela;
+
+        private final ReentrantLock trava = new ReentrantLock();
+
+        private volatile long incremento;
+        private long proximo;
+        private long limite;
+
+        private BlocoSequencia(String sequencia, String tabela) {
+            this.sequencia = sequencia;
+            this.tabela = tabela;
+        }
+
+        long proximo() {
+            trava.lock();
+            try {
+                if (proximo >= limite) {
+                    proximo = arrendarBloco();
+                    limite = proximo + incremento;
+                }
+                return proximo++;
+            } finally {
+                trava.unlock();
+            }
+        }
+
+        private long arrendarBloco() {
+            Long inicio = jdbcTemplate.queryForObject("SELECT nextval('" + sequencia + "')", Long.class);
+            log.debug("Leased codes [{}, {}) from {}", inicio, inicio + incremento, sequencia);
+            return inicio;
+        }
+
+        /**
+         * Creates the sequence if needed, starting past the row ids (the former
+         * count-based CON codes never exceed them; former AGD codes were timestamps),
+         * and reads the block size it was created with
+         */
+        void preparar() {
+            if (!existe(sequencia)) {
+                long inicio = primeiroCodigoLivre();
+                jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + sequencia + " START WITH " + inicio
+                        + " INCREMENT BY " + tamanhoBloco);
+                log.info("Created code sequence {} (blocks of {}, starting at {})", sequencia, tamanhoBloco, inicio);
+            }
+            incremento = Long.parseLong(jdbcTemplate.queryForObject("SELECT CAST(increment AS VARCHAR(20)) "
+                    + "FROM information_schema.sequences WHERE LOWER(sequence_name) = ?", String.class, sequencia));
+            if (incremento != tamanhoBloco) {
+                log.warn("Sequence {} hands out blocks of {}, not codigo.bloco.tamanho={}; using {}",
+                        sequencia, incremento, tamanhoBloco, incremento);
+            }
+        }
+
+        private long primeiroCodigoLivre() {
+            Long maiorId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + tabela, Long.class);
+            return maiorId + 1;
+        }
+
+        private boolean existe(String nome) {
+            Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.sequences "
+                    + "WHERE LOWER(sequence_name) = ?", Long.class, nome);
+            return total != null && total > 0;
+        }
+    }
+}
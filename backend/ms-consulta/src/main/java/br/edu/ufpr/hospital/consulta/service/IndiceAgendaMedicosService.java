@@ -0,0 +1,365 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import br.edu.ufpr.hospital.consulta.dto.JanelaLivreDTO;
+import br.edu.ufpr.hospital.consulta.exception.ConflitoAgendaMedicoException;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.util.TextoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory agenda of every doctor: the intervals of their non-cancelled
+ * consultations, from the one in progress onwards (see AgendaMedicos)
+ * Used to reject overlapping consultations on creation, single or bulk, and to
+ * list a doctor's free windows on a day, both without touching the database
+ * A consultation is reserved in the agenda as soon as it is saved, so concurrent
+ * creations on this instance cannot both take the same time, and released if its
+ * transaction rolls back or when it is cancelled. Other ms-consulta replicas have
+ * their own agenda: a reservation also takes a per-doctor advisory lock on
+ * PostgreSQL until commit and checks the doctor's consultations in the database
+ * The agenda is fully rebuilt on startup and periodically; changes made while a
+ * rebuild reads the database are replayed on the new agenda before it is swapped in
+ */
+@Service
+@Slf4j
+public class IndiceAgendaMedicosService {
+
+    private static final DateTimeFormatter HORA = DateTimeFormatter.ofPattern("HH:mm");
+    // First key of the advisory locks taken for doctors' agendas
+    private static final int ESPACO_TRAVAS_AGENDA = 25;
+    private static final int LOTE_NORMALIZACAO = 1000;
+
+    private final ConsultaRepository consultaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration duracao;
+    private final LocalTime inicioExpediente;
+    private final LocalTime fimExpediente;
+
+    private volatile AgendaMedicos agenda;
+    // Reserved by transactions not finished yet: kept across rebuilds
+    private final Map<Long, AgendaMedicos.Intervalo> pendentes = new ConcurrentHashMap<>();
+    // Changes to the agenda take the read lock, the swap of a rebuilt agenda the write lock
+    private final ReentrantReadWriteLock trocaAgenda = new ReentrantReadWriteLock();
+    private final ReentrantLock reconstrucao = new ReentrantLock();
+    // Changes made while a rebuild runs, replayed on the new agenda; null otherwise
+    private volatile Queue<Consumer<AgendaMedicos>> alteracoesNaReconstrucao;
+    private volatile Boolean postgres;
+
+    public IndiceAgendaMedicosService(ConsultaRepository consultaRepository, JdbcTemplate jdbcTemplate,
+            @Value("${consulta.agenda.duracao-minutos:30}") long duracaoMinutos,
+            @Value("${consulta.agenda.inicio-expediente:07:00}") String inicioExpediente,
+            @Value("${consulta.agenda.fim-expediente:19:00}") String fimExpediente) {
+        this.consultaRepository = consultaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.duracao = Duration.ofMinutes(duracaoMinutos);
+        this.inicioExpediente = LocalTime.parse(inicioExpediente);
+        this.fimExpediente = LocalTime.parse(fimExpediente);
+        this.agenda = new AgendaMedicos(duracao);
+    }
+
+    // ========== QUERIES ==========
+
+    /**
+     * Length of every consultation in the agenda
+     */
+    public Duration getDuracao() {
+        return duracao;
+    }
+
+    /**
+     * Whether a consultation of the doctor starting at the given time would overlap another one
+     */
+    public boolean temConflito(String medico, LocalDateTime dataHora) {
+        return agenda.conflito(medico, dataHora).isPresent();
+    }
+
+    /**
+     * Free windows of the doctor on a day, within working hours and from now on,
+     * each long enough for at least one consultation
+     */
+    public List<JanelaLivreDTO> janelasLivres(String medico, LocalDate dia) {
+        LocalDateTime inicio = dia.atTime(inicioExpediente);
+        LocalDateTime fim = dia.atTime(fimExpediente);
+        LocalDateTime agora = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        if (agora.isAfter(inicio)) {
+            inicio = agora;
+        }
+
+        List<JanelaLivreDTO> janelas = new ArrayList<>();
+        LocalDateTime livreDesde = inicio;
+        for (AgendaMedicos.Intervalo ocupado : agenda.noPeriodo(medico, inicio, fim)) {
+            adicionarJanela(janelas, livreDesde, ocupado.inicio().isBefore(fim) ? ocupado.inicio() : fim);
+            if (ocupado.fim().isAfter(livreDesde)) {
+                livreDesde = ocupado.fim();
+            }
+        }
+        adicionarJanela(janelas, livreDesde, fim);
+        return janelas;
+    }
+
+    private void adicionarJanela(List<JanelaLivreDTO> janelas, LocalDateTime inicio, LocalDateTime fim) {
+        if (!inicio.plus(duracao).isAfter(fim)) {
+            janelas.add(new JanelaLivreDTO(inicio, fim));
+        }
+    }
+
+    // ========== RESERVATIONS ==========
+
+    /**
+     * Reserve the time of a consultation just saved in the current transaction;
+     * released again if the transaction rolls back
+     *
+     * @throws ConflitoAgendaMedicoException if the doctor already has a consultation overlapping it
+     */
+    public void reservar(Consulta consulta) {
+        reservar(List.of(consulta));
+    }
+
+    /**
+     * Reserve the times of consultations just saved in the current transaction,
+     * already checked against each other; released again if the transaction rolls back
+     * The doctors are locked until commit and their consultations read from the
+     * database, which sees those created by other replicas since the last rebuild
+     *
+     * @throws ConflitoAgendaMedicoException if a doctor already has a consultation overlapping one of them
+     */
+    public void reservar(List<Consulta> consultas) {
+        if (consultas.isEmpty()) {
+            return;
+        }
+        travarMedicos(consultas);
+        verificarNoBanco(consultas);
+        consultas.forEach(this::reservarNaAgenda);
+    }
+
+    /**
+     * Free the time of a cancelled consultation once the current transaction commits
+     */
+    public void liberarAposCommit(Long consultaId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    alterar(atual -> atual.remover(consultaId));
+                }
+            });
+        } else {
+            alterar(atual -> atual.remover(consultaId));
+        }
+    }
+
+    /**
+     * Lock the doctors of the consultations until commit, keyed by normalized name
+     * Only on PostgreSQL: other databases (H2 in tests and local runs) have no
+     * advisory locks and are only used with a single instance, where reserving in
+     * the agenda already serializes creations for the same doctor
+     */
+    private void travarMedicos(List<Consulta> consultas) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive() || !postgres()) {
+            return;
+        }
+        // Always in the same order, so two batches sharing doctors cannot deadlock
+        consultas.stream()
+                .map(consulta -> TextoUtils.normalizar(consulta.getMedico()))
+                .collect(Collectors.toCollection(TreeSet::new))
+                .forEach(medico -> consultaRepository.travarAteOFimDaTransacao(ESPACO_TRAVAS_AGENDA, medico));
+    }
+
+    private void verificarNoBanco(List<Consulta> consultas) {
+        Set<Long> ids = new HashSet<>();
+        Set<String> medicos = new HashSet<>();
+        LocalDateTime inicio = consultas.get(0).getDataHora();
+        LocalDateTime fim = inicio;
+        for (Consulta consulta : consultas) {
+            ids.add(consulta.getId());
+            medicos.add(TextoUtils.normalizar(consulta.getMedico()));
+            inicio = consulta.getDataHora().isBefore(inicio) ? consulta.getDataHora() : inicio;
+            fim = consulta.getDataHora().isAfter(fim) ? consulta.getDataHora() : fim;
+        }
+
+        AgendaMedicos existentes = new AgendaMedicos(duracao);
+        for (Object[] linha : consultaRepository.findHorariosMedicos(medicos, inicio.minus(duracao),
+                fim.plus(duracao), StatusConsulta.CANCELADA)) {
+            if (!ids.contains((Long) linha[0])) {
+                existentes.adicionar((Long) linha[0], (String) linha[1], (LocalDateTime) linha[2]);
+            }
+        }
+        for (Consulta consulta : consultas) {
+            existentes.conflito(consulta.getMedico(), consulta.getDataHora()).ifPresent(conflito -> {
+                throw conflito(conflito);
+            });
+        }
+    }
+
+    private void reservarNaAgenda(Consulta consulta) {
+        Long consultaId = consulta.getId();
+        Optional<AgendaMedicos.Intervalo> conflito;
+        AgendaMedicos.Intervalo reservado;
+        trocaAgenda.readLock().lock();
+        try {
+            conflito = agenda.adicionarSeLivre(consultaId, consulta.getMedico(), consulta.getDataHora());
+            if (conflito.isPresent()) {
+                throw conflito(conflito.get());
+            }
+            reservado = agenda.buscar(consultaId).orElseThrow();
+            registrarAlteracao(atual -> atual.adicionar(reservado));
+        } finally {
+            trocaAgenda.readLock().unlock();
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        pendentes.put(consultaId, reservado);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    // A rebuild that read the database before the commit must still keep it
+                    alterar(atual -> atual.adicionar(reservado));
+                } else {
+                    alterar(atual -> atual.remover(consultaId));
+                }
+                pendentes.remove(consultaId);
+            }
+        });
+    }
+
+    private static ConflitoAgendaMedicoException conflito(AgendaMedicos.Intervalo conflito) {
+        return new ConflitoAgendaMedicoException("Médico já possui consulta das "
+                + conflito.inicio().format(HORA) + " às " + conflito.fim().format(HORA));
+    }
+
+    /**
+     * Apply a change to the current agenda and, during a rebuild, record it for the new one
+     */
+    private void alterar(Consumer<AgendaMedicos> alteracao) {
+        trocaAgenda.readLock().lock();
+        try {
+            alteracao.accept(agenda);
+            registrarAlteracao(alteracao);
+        } finally {
+            trocaAgenda.readLock().unlock();
+        }
+    }
+
+    private void registrarAlteracao(Consumer<AgendaMedicos> alteracao) {
+        Queue<Consumer<AgendaMedicos>> alteracoes = alteracoesNaReconstrucao;
+        if (alteracoes != null) {
+            alteracoes.add(alteracao);
+        }
+    }
+
+    private boolean postgres() {
+        Boolean atual = postgres;
+        if (atual == null) {
+            atual = jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                    "PostgreSQL".equalsIgnoreCase(con.getMetaData().getDatabaseProductName()));
+            postgres = atual;
+        }
+        return atual;
+    }
+
+    // ========== REBUILD ==========
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarNaInicializacao() {
+        normalizarMedicosExistentes();
+        reconstruir();
+    }
+
+    /**
+     * Fill medico_normalizado on consultations saved before the column existed,
+     * so the database checks match them by normalized name too
+     */
+    private void normalizarMedicosExistentes() {
+        int total = 0;
+        List<Object[]> lote;
+        do {
+            lote = jdbcTemplate.query("SELECT id, medico FROM consultas WHERE medico_normalizado IS NULL "
+                            + "ORDER BY id LIMIT " + LOTE_NORMALIZACAO,
+                    (rs, linha) -> new Object[] {TextoUtils.normalizar(rs.getString("medico")), rs.getLong("id")});
+            if (!lote.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE consultas SET medico_normalizado = ? WHERE id = ?", lote);
+                total += lote.size();
+            }
+        } while (lote.size() == LOTE_NORMALIZACAO);
+        if (total > 0) {
+            log.info("Normalized the doctor name of {} existing consultations", total);
+        }
+    }
+
+    /**
+     * Rebuild every agenda from the database and swap it in atomically
+     * Reads the primary, like the availability index: a lagging replica would miss
+     * consultations just created and let their times be taken again
+     * Reservations, commits and cancellations that happen while the database is
+     * read are replayed on the new agenda, in order, before the swap
+     */
+    @Scheduled(fixedDelayString = "${consulta.agenda.reconstrucao-ms:60000}",
+            initialDelayString = "${consulta.agenda.reconstrucao-ms:60000}")
+    public void reconstruir() {
+        reconstrucao.lock();
+        try {
+            Queue<Consumer<AgendaMedicos>> alteracoes = new ConcurrentLinkedQueue<>();
+            alteracoesNaReconstrucao = alteracoes;
+            try {
+                List<Object[]> horarios = RoteamentoLeituraDataSource.noPrimario(() -> consultaRepository
+                        .findHorariosAgenda(LocalDateTime.now().minus(duracao), StatusConsulta.CANCELADA));
+
+                AgendaMedicos nova = new AgendaMedicos(duracao);
+                for (Object[] linha : horarios) {
+                    nova.adicionar((Long) linha[0], (String) linha[1], (LocalDateTime) linha[2]);
+                }
+
+                trocaAgenda.writeLock().lock();
+                try {
+                    alteracoes.forEach(alteracao -> alteracao.accept(nova));
+                    pendentes.values().stream()
+                            .filter(reservado -> !nova.contem(reservado.consultaId()))
+                            .forEach(nova::adicionar);
+                    agenda = nova;
+                } finally {
+                    trocaAgenda.writeLock().unlock();
+                }
+                log.debug("Doctor agenda index rebuilt with {} consultations", nova.tamanho());
+            } finally {
+                alteracoesNaReconstrucao = null;
+            }
+        } finally {
+            reconstrucao.unlock();
+        }
+    }
+}
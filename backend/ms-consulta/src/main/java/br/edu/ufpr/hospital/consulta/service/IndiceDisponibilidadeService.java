@@ -0,0 +1,392 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.util.TextoUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Read-optimized in-memory index of upcoming DISPONIVEL consultations
+ * Indexed by specialty, normalized doctor name and day, so the search endpoints
+ * answer without touching the database. Kept current incrementally (after commit)
+ * by the booking flows and fully rebuilt on startup and periodically, which also
+ * picks up changes made by other ms-consulta replicas. Every applied change is
+ * announced with an AlteracaoIndiceEvent (e.g. for the live dashboard)
+ * Snapshots carry the consultation's version, so one committed after a newer one
+ * but applied later is ignored. Changes applied while a rebuild reads the database
+ * are replayed on the new index, with the same check, before it is swapped in
+ */
+@Service
+@Slf4j
+public class IndiceDisponibilidadeService {
+
+    private final ConsultaRepository consultaRepository;
+    private final ApplicationEventPublisher eventos;
+
+    private volatile Indice indice = new Indice();
+    // Changes to the index take the read lock, the swap of a rebuilt index the write lock
+    private final ReentrantReadWriteLock trocaIndice = new ReentrantReadWriteLock();
+    private final ReentrantLock reconstrucao = new ReentrantLock();
+    // Changes made while a rebuild runs, replayed on the new index; null otherwise
+    private volatile Queue<Consumer<Indice>> alteracoesNaReconstrucao;
+
+    public IndiceDisponibilidadeService(ConsultaRepository consultaRepository, ApplicationEventPublisher eventos,
+            MeterRegistry meterRegistry) {
+        this.consultaRepository = consultaRepository;
+        this.eventos = eventos;
+
+        Gauge.builder("consulta.vagas.disponiveis", this, IndiceDisponibilidadeService::totalVagasLivres)
+                .description("Vagas livres somadas nas consultas futuras disponíveis")
+                .register(meterRegistry);
+    }
+
+    // ========== QUERIES ==========
+
+    /**
+     * Upcoming consultations with free slots for a specialty, optionally on a given day
+     */
+    public List<ConsultaResponseDTO> buscarPorEspecialidade(String especialidade, LocalDate dia) {
+        Indice atual = indice;
+        Set<Long> ids = dia != null
+                ? menor(atual.porEspecialidade.get(especialidade), atual.porDia.get(dia))
+                : atual.porEspecialidade.get(especialidade);
+        return disponiveis(atual, ids == null ? Stream.empty() : ids.stream(), dia);
+    }
+
+    /**
+     * Upcoming consultations with free slots whose doctor name contains the given
+     * text, ignoring case and accents, optionally on a given day
+     */
+    public List<ConsultaResponseDTO> buscarPorMedico(String medico, LocalDate dia) {
+        Indice atual = indice;
+        String termo = TextoUtils.normalizar(medico);
+        Stream<Long> ids = atual.porMedico.entrySet().stream()
+                .filter(e -> e.getKey().contains(termo))
+                .flatMap(e -> e.getValue().stream());
+        return disponiveis(atual, ids, dia);
+    }
+
+    /**
+     * Upcoming consultations with free slots for any of the given doctors, matched
+     * by exact normalized name (see TextoUtils.normalizar), optionally on a given day
+     */
+    public List<ConsultaResponseDTO> buscarPorNomesMedico(Collection<String> nomesNormalizados, LocalDate dia) {
+        Indice atual = indice;
+        Stream<Long> ids = nomesNormalizados.stream()
+                .map(atual.porMedico::get)
+                .filter(Objects::nonNull)
+                .flatMap(Set::stream);
+        return disponiveis(atual, ids, dia);
+    }
+
+    /**
+     * Every indexed consultation (full ones included) taking place within the given
+     * interval, ordered by date/time
+     */
+    public List<ConsultaResponseDTO> buscarJanela(LocalDateTime inicio, LocalDateTime fim) {
+        Indice atual = indice;
+        return inicio.toLocalDate().datesUntil(fim.toLocalDate().plusDays(1))
+                .map(atual.porDia::get)
+                .filter(ids -> ids != null)
+                .flatMap(Set::stream)
+                .map(atual.porId::get)
+                .filter(c -> c != null && c.dataHora().isAfter(inicio) && c.dataHora().isBefore(fim))
+                .sorted(Comparator.comparing(ConsultaIndexada::dataHora).thenComparing(ConsultaIndexada::id))
+                .map(ConsultaIndexada::toDTO)
+                .toList();
+    }
+
+    /**
+     * An indexed consultation, if it is still upcoming and DISPONIVEL
+     */
+    public Optional<ConsultaResponseDTO> buscarPorId(Long consultaId) {
+        return Optional.ofNullable(indice.porId.get(consultaId)).map(ConsultaIndexada::toDTO);
+    }
+
+    private List<ConsultaResponseDTO> disponiveis(Indice atual, Stream<Long> ids, LocalDate dia) {
+        LocalDateTime agora = LocalDateTime.now();
+        return ids.map(atual.porId::get)
+                .filter(c -> c != null && c.temVagas() && c.dataHora().isAfter(agora))
+                .filter(c -> dia == null || c.dataHora().toLocalDate().equals(dia))
+                .sorted(Comparator.comparing(ConsultaIndexada::dataHora))
+                .map(ConsultaIndexada::toDTO)
+                .toList();
+    }
+
+    private static Set<Long> menor(Set<Long> a, Set<Long> b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        return a.size() <= b.size() ? a : b;
+    }
+
+    // ========== INCREMENTAL UPDATES ==========
+
+    /**
+     * Insert or refresh a consultation once the current transaction commits,
+     * unless a newer version of it has been applied in the meantime
+     */
+    public void registrarAposCommit(Consulta consulta) {
+        ConsultaIndexada snapshot = ConsultaIndexada.of(consulta);
+        aposCommit(() -> {
+            alterar(atual -> atual.aplicar(snapshot));
+            eventos.publishEvent(new AlteracaoIndiceEvent(snapshot.id()));
+        });
+    }
+
+    /**
+     * Shift the occupancy of an indexed consultation once the current transaction commits
+     * Each adjustment mirrors one atomic slot UPDATE, which bumps the version by one
+     */
+    public void ajustarOcupacaoAposCommit(Long consultaId, int delta) {
+        aposCommit(() -> {
+            trocaIndice.readLock().lock();
+            try {
+                ConsultaIndexada atual = indice.porId.get(consultaId);
+                if (atual != null) {
+                    // Recorded as the resulting snapshot: replaying a delta could count it twice
+                    ConsultaIndexada ajustada = atual.comOcupacao(Math.max(0, atual.vagasOcupadas() + delta),
+                            atual.versao() + 1);
+                    indice.aplicar(ajustada);
+                    registrarAlteracao(novo -> novo.aplicar(ajustada));
+                }
+            } finally {
+                trocaIndice.readLock().unlock();
+            }
+            eventos.publishEvent(new AlteracaoIndiceEvent(consultaId));
+        });
+    }
+
+    /**
+     * Drop a consultation (cancelled or finalized) once the current transaction commits
+     */
+    public void removerAposCommit(Long consultaId) {
+        aposCommit(() -> {
+            alterar(atual -> atual.remover(consultaId));
+            eventos.publishEvent(new AlteracaoIndiceEvent(consultaId));
+        });
+    }
+
+    /**
+     * Apply a change to the current index and, during a rebuild, record it for the new one
+     */
+    private void alterar(Consumer<Indice> alteracao) {
+        trocaIndice.readLock().lock();
+        try {
+            alteracao.accept(indice);
+            registrarAlteracao(alteracao);
+        } finally {
+            trocaIndice.readLock().unlock();
+        }
+    }
+
+    private void registrarAlteracao(Consumer<Indice> alteracao) {
+        Queue<Consumer<Indice>> alteracoes = alteracoesNaReconstrucao;
+        if (alteracoes != null) {
+            alteracoes.add(alteracao);
+        }
+    }
+
+    private static void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    // ========== REBUILD ==========
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarNaInicializacao() {
+        reconstruir();
+    }
+
+    /**
+     * Rebuild the whole index from the database and swap it in atomically
+     * Reads the primary: the index is kept current by the write path, and a snapshot
+     * from a lagging replica would undo changes made since
+     * Changes applied while the database is read are replayed on the new index
+     * before the swap; removals seen by the previous index are kept one more round,
+     * so a late snapshot older than them cannot bring a consultation back
+     */
+    @Scheduled(fixedDelayString = "${consulta.indice.reconstrucao-ms:60000}",
+            initialDelayString = "${consulta.indice.reconstrucao-ms:60000}")
+    public void reconstruir() {
+        reconstrucao.lock();
+        try {
+            Queue<Consumer<Indice>> alteracoes = new ConcurrentLinkedQueue<>();
+            alteracoesNaReconstrucao = alteracoes;
+            try {
+                List<Consulta> consultas = RoteamentoLeituraDataSource.noPrimario(() -> consultaRepository
+                        .findByStatusAndDataHoraAfter(StatusConsulta.DISPONIVEL, LocalDateTime.now()));
+
+                Indice novo = new Indice();
+                consultas.forEach(c -> novo.adicionar(ConsultaIndexada.of(c)));
+
+                trocaIndice.writeLock().lock();
+                try {
+                    indice.removidas.forEach((id, versao) -> {
+                        if (!novo.porId.containsKey(id)) {
+                            novo.removidasAnteriores.put(id, versao);
+                        }
+                    });
+                    alteracoes.forEach(alteracao -> alteracao.accept(novo));
+                    indice = novo;
+                } finally {
+                    trocaIndice.writeLock().unlock();
+                }
+                log.debug("Availability index rebuilt with {} consultations", consultas.size());
+            } finally {
+                alteracoesNaReconstrucao = null;
+            }
+        } finally {
+            reconstrucao.unlock();
+        }
+        eventos.publishEvent(AlteracaoIndiceEvent.reconstrucao());
+    }
+
+    private double totalVagasLivres() {
+        return indice.porId.values().stream()
+                .mapToInt(c -> Math.max(0, c.vagas() - c.vagasOcupadas()))
+                .sum();
+    }
+
+    // ========== INTERNAL STRUCTURES ==========
+
+    private static final class Indice {
+        private final Map<Long, ConsultaIndexada> porId = new ConcurrentHashMap<>();
+        private final Map<String, Set<Long>> porEspecialidade = new ConcurrentHashMap<>();
+        private final Map<String, Set<Long>> porMedico = new ConcurrentHashMap<>();
+        private final Map<LocalDate, Set<Long>> porDia = new ConcurrentHashMap<>();
+        // Version from which each removed consultation left the index (Long.MAX_VALUE: for good)
+        private final Map<Long, Long> removidas = new ConcurrentHashMap<>();
+        private final Map<Long, Long> removidasAnteriores = new ConcurrentHashMap<>();
+
+        /**
+         * Apply a snapshot unless a newer version of the consultation is indexed or was removed
+         */
+        synchronized void aplicar(ConsultaIndexada consulta) {
+            ConsultaIndexada atual = porId.get(consulta.id());
+            if ((atual != null && consulta.versao() < atual.versao())
+                    || consulta.versao() <= versaoRemovida(consulta.id())) {
+                return;
+            }
+            if (atual != null) {
+                removerDosIndices(atual);
+            }
+            if (consulta.status() == StatusConsulta.DISPONIVEL) {
+                removidas.remove(consulta.id());
+                adicionar(consulta);
+            } else {
+                porId.remove(consulta.id());
+                removidas.put(consulta.id(), consulta.versao());
+            }
+        }
+
+        synchronized void remover(Long consultaId) {
+            ConsultaIndexada removida = porId.remove(consultaId);
+            if (removida != null) {
+                removerDosIndices(removida);
+            }
+            removidas.put(consultaId, Long.MAX_VALUE);
+        }
+
+        private long versaoRemovida(Long consultaId) {
+            return Math.max(removidas.getOrDefault(consultaId, Long.MIN_VALUE),
+                    removidasAnteriores.getOrDefault(consultaId, Long.MIN_VALUE));
+        }
+
+        void adicionar(ConsultaIndexada consulta) {
+            porId.put(consulta.id(), consulta);
+            adicionarChave(porEspecialidade, consulta.especialidade(), consulta.id());
+            adicionarChave(porMedico, consulta.medicoNormalizado(), consulta.id());
+            adicionarChave(porDia, consulta.dataHora().toLocalDate(), consulta.id());
+        }
+
+        void removerDosIndices(ConsultaIndexada consulta) {
+            removerChave(porEspecialidade, consulta.especialidade(), consulta.id());
+            removerChave(porMedico, consulta.medicoNormalizado(), consulta.id());
+            removerChave(porDia, consulta.dataHora().toLocalDate(), consulta.id());
+        }
+
+        private static <K> void adicionarChave(Map<K, Set<Long>> mapa, K chave, Long id) {
+            mapa.compute(chave, (k, ids) -> {
+                Set<Long> conjunto = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                conjunto.add(id);
+                return conjunto;
+            });
+        }
+
+        private static <K> void removerChave(Map<K, Set<Long>> mapa, K chave, Long id) {
+            mapa.computeIfPresent(chave, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * Immutable snapshot of the consultation fields needed to answer searches
+     */
+    private record ConsultaIndexada(Long id, String codigo, LocalDateTime dataHora, String especialidade,
+            String medico, String medicoNormalizado, BigDecimal valor, int vagas, int vagasOcupadas,
+            StatusConsulta status, LocalDateTime dataCriacao, long versao) {
+
+        static ConsultaIndexada of(Consulta c) {
+            return new ConsultaIndexada(c.getId(), c.getCodigo(), c.getDataHora(), c.getEspecialidade(),
+                    c.getMedico(), TextoUtils.normalizar(c.getMedico()), c.getValor(), c.getVagas(),
+                    c.getVagasOcupadas(), c.getStatus(), c.getDataCriacao(),
+                    c.getVersao() != null ? c.getVersao() : 0L);
+        }
+
+        boolean temVagas() {
+            return vagasOcupadas < vagas;
+        }
+
+        ConsultaIndexada comOcupacao(int ocupadas, long novaVersao) {
+            return new ConsultaIndexada(id, codigo, dataHora, especialidade, medico, medicoNormalizado, valor,
+                    vagas, ocupadas, status, dataCriacao, novaVersao);
+        }
+
+        ConsultaResponseDTO toDTO() {
+            return new ConsultaResponseDTO(id, codigo, dataHora, especialidade, medico, valor, vagas,
+                    vagasOcupadas, status, dataCriacao);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes for patients when read-only transactions go to a read replica
+ * A patient who just booked, cancelled, checked in or joined/left a waitlist has
+ * their own reads served by the primary for a short window (longer than the
+ * expected replication lag), so they never see their booking list without the
+ * change they just made. Everyone else keeps reading from the replica. The window
+ * is tracked per instance; without a replica this only costs a map lookup
+ */
+@Service
+public class LeituraPropriaService {
+
+    private final long janelaNanos;
+    private final Map<Integer, Long> escritasRecentes = new ConcurrentHashMap<>();
+
+    public LeituraPropriaService(@Value("${consulta.leitura-propria.janela-ms:5000}") long janelaMs) {
+        this.janelaNanos = Duration.ofMillis(janelaMs).toNanos();
+    }
+
+    /**
+     * Record that the patient changed their data; the window starts when the
+     * current transaction commits (right away when there is none)
+     */
+    public void registrarEscrita(Integer pacienteId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    marcar(pacienteId);
+                }
+            });
+        } else {
+            marcar(pacienteId);
+        }
+    }
+
+    /**
+     * Run a read for the patient, on the primary while their last write is recent
+     */
+    public <T> T ler(Integer pacienteId, Supplier<T> leitura) {
+        return escreveuRecentemente(pacienteId) ? RoteamentoLeituraDataSource.noPrimario(leitura) : leitura.get();
+    }
+
+    public boolean escreveuRecentemente(Integer pacienteId) {
+        Long ate = escritasRecentes.get(pacienteId);
+        return ate != null && ate - System.nanoTime() > 0;
+    }
+
+    /**
+     * Drop expired windows so the map only holds recently active patients
+     */
+    @Scheduled(fixedDelayString = "${consulta.leitura-propria.janela-ms:5000}")
+    public void descartarExpiradas() {
+        long agora = System.nanoTime();
+        escritasRecentes.values().removeIf(ate -> ate - agora <= 0);
+    }
+
+    private void marcar(Integer pacienteId) {
+        escritasRecentes.put(pacienteId, System.nanoTime() + janelaNanos);
+    }
+}
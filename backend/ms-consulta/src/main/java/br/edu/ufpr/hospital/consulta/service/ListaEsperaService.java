@@ -0,0 +1,287 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import br.edu.ufpr.hospital.consulta.dto.EntradaListaEsperaDTO;
+import br.edu.ufpr.hospital.consulta.exception.ConsultaIndisponivelException;
+import br.edu.ufpr.hospital.consulta.exception.ListaEsperaInvalidaException;
+import br.edu.ufpr.hospital.consulta.exception.SaldoInsuficienteException;
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.EntradaListaEspera;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.model.StatusListaEspera;
+import br.edu.ufpr.hospital.consulta.model.StatusOutbox;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ListaEsperaRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * FIFO waitlist for full consultations
+ * Instead of retrying the booking endpoint, a patient joins the queue of a full
+ * consultation. When one of its bookings is cancelled the freed slot is handed
+ * straight to the head of the queue, in the cancelling transaction: the slot
+ * never becomes free in between, so occupancy does not change and nobody else
+ * can take it. The consultation row is locked while the queue is read (and while
+ * a patient joins), so a patient joining concurrently with the last cancellation
+ * is either promoted or told the slot is free, never left waiting for nothing.
+ * Queues of consultations that stop taking bookings are closed. Promoted and
+ * dropped patients are notified through their SSE stream
+ */
+@Service
+@Slf4j
+public class ListaEsperaService {
+
+    public static final String EVENTO_PROMOCAO = "promocao";
+    public static final String EVENTO_ENCERRAMENTO = "encerramento";
+
+    // Entries examined per round while looking for a patient that can still be promoted
+    private static final int CANDIDATOS_POR_RODADA = 10;
+
+    private final ListaEsperaRepository listaEsperaRepository;
+    private final AgendamentoRepository agendamentoRepository;
+    private final ReservaVagaService reservaVagaService;
+    private final GeradorCodigoService geradorCodigoService;
+    private final IndiceDisponibilidadeService indiceDisponibilidade;
+    private final PacienteIntegrationService pacienteService;
+    private final OutboxPontosRepository outboxRepository;
+    private final NotificacaoPacienteService notificacoes;
+    private final LeituraPropriaService leituraPropria;
+    private final TransactionTemplate transacao;
+
+    public ListaEsperaService(ListaEsperaRepository listaEsperaRepository,
+            AgendamentoRepository agendamentoRepository,
+            ReservaVagaService reservaVagaService,
+            GeradorCodigoService geradorCodigoService,
+            IndiceDisponibilidadeService indiceDisponibilidade,
+            PacienteIntegrationService pacienteService,
+            OutboxPontosRepository outboxRepository,
+            NotificacaoPacienteService notificacoes,
+            LeituraPropriaService leituraPropria,
+            PlatformTransactionManager transactionManager) {
+        this.listaEsperaRepository = listaEsperaRepository;
+        this.agendamentoRepository = agendamentoRepository;
+        this.reservaVagaService = reservaVagaService;
+        this.geradorCodigoService = geradorCodigoService;
+        this.indiceDisponibilidade = indiceDisponibilidade;
+        this.pacienteService = pacienteService;
+        this.outboxRepository = outboxRepository;
+        this.notificacoes = notificacoes;
+        this.leituraPropria = leituraPropria;
+        this.transacao = new TransactionTemplate(transactionManager);
+    }
+
+    // ========== PATIENT OPERATIONS ==========
+
+    /**
+     * Join the waitlist of a full consultation
+     * The points balance is checked up front (outside the transaction), less the
+     * patient's debits still in the outbox; the points are only debited if and when
+     * the entry is promoted to a booking
+     *
+     * @throws ListaEsperaInvalidaException if the consultation still has free slots,
+     *         or the patient is already booked or waiting for it
+     */
+    public EntradaListaEsperaDTO entrar(Long consultaId, BigDecimal pontosUsados, Integer pacienteId,
+            String authToken) {
+        if (pontosUsados.compareTo(BigDecimal.ZERO) > 0) {
+            BigDecimal saldoAtual = pacienteService.verificarSaldoPontos(pacienteId, authToken)
+                    .subtract(RoteamentoLeituraDataSource.noPrimario(() -> outboxRepository
+                            .somarDebitosNaoAplicados(pacienteId, StatusOutbox.PENDENTE, StatusOutbox.PROCESSANDO)));
+            if (saldoAtual.compareTo(pontosUsados) < 0) {
+                pacienteService.invalidarSaldo(pacienteId);
+                throw new SaldoInsuficienteException("Saldo de pontos insuficiente. Saldo atual: " +
+                        saldoAtual + ", necessário: " + pontosUsados);
+            }
+        }
+
+        return transacao.execute(status -> {
+            Consulta consulta = reservaVagaService.bloquearConsulta(consultaId);
+            if (!aceitaAgendamentos(consulta)) {
+                throw new ConsultaIndisponivelException("Consulta não está disponível para agendamento");
+            }
+            if (consulta.temVagasDisponiveis()) {
+                throw new ListaEsperaInvalidaException("Consulta possui vagas disponíveis; agende diretamente");
+            }
+            if (agendamentoRepository.hasActiveBookingForConsulta(pacienteId, consultaId)) {
+                throw new ListaEsperaInvalidaException("Paciente já possui agendamento ativo para esta consulta");
+            }
+            if (listaEsperaRepository.existsByConsultaIdAndPacienteIdAndStatus(consultaId, pacienteId,
+                    StatusListaEspera.AGUARDANDO)) {
+                throw new ListaEsperaInvalidaException("Paciente já está na lista de espera desta consulta");
+            }
+
+            EntradaListaEspera entrada = listaEsperaRepository.save(
+                    new EntradaListaEspera(consultaId, pacienteId, pontosUsados));
+            leituraPropria.registrarEscrita(pacienteId);
+            log.debug("Patient {} joined the waitlist of consultation {}", pacienteId, consultaId);
+            return paraDTO(entrada);
+        });
+    }
+
+    /**
+     * Leave the waitlist of a consultation
+     */
+    @Transactional
+    public void sair(Long consultaId, Integer pacienteId) {
+        int retiradas = listaEsperaRepository.retirarPaciente(consultaId, pacienteId, LocalDateTime.now(),
+                StatusListaEspera.AGUARDANDO, StatusListaEspera.SAIU);
+        if (retiradas == 0) {
+            throw new ListaEsperaInvalidaException("Paciente não está na lista de espera desta consulta");
+        }
+        leituraPropria.registrarEscrita(pacienteId);
+    }
+
+    /**
+     * Patient's waitlist entries, newest first, with the current position of those still waiting
+     */
+    @Transactional(readOnly = true)
+    public List<EntradaListaEsperaDTO> listarPorPaciente(Integer pacienteId) {
+        return listaEsperaRepository.findByPacienteIdOrderByIdDesc(pacienteId).stream()
+                .map(this::paraDTO)
+                .toList();
+    }
+
+    // ========== SLOT HAND-OVER ==========
+
+    /**
+     * Hand a slot released by a cancelled booking to the head of the queue
+     * The first waiting patient that can still be booked gets a CRIADO booking on
+     * the same slot (occupancy is unchanged); if nobody is waiting, the slot is
+     * freed. Runs in the caller's transaction, which must also queue the points
+     * debit of the returned booking
+     *
+     * @param consultaId The consultation whose booking was cancelled
+     * @return The booking created for the promoted patient, or empty if the slot was freed
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Agendamento> repassarVaga(Long consultaId) {
+        Consulta consulta = reservaVagaService.bloquearConsulta(consultaId);
+        if (aceitaAgendamentos(consulta)) {
+            List<EntradaListaEspera> candidatos;
+            while (!(candidatos = listaEsperaRepository.findByConsultaIdAndStatusOrderByIdAsc(consultaId,
+                    StatusListaEspera.AGUARDANDO, PageRequest.of(0, CANDIDATOS_POR_RODADA))).isEmpty()) {
+                for (EntradaListaEspera entrada : candidatos) {
+                    Optional<Agendamento> agendamento = promover(entrada, consulta);
+                    if (agendamento.isPresent()) {
+                        return agendamento;
+                    }
+                }
+            }
+        }
+
+        if (reservaVagaService.liberarVaga(consultaId)) {
+            indiceDisponibilidade.ajustarOcupacaoAposCommit(consultaId, -1);
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Agendamento> promover(EntradaListaEspera entrada, Consulta consulta) {
+        LocalDateTime agora = LocalDateTime.now();
+        if (agendamentoRepository.hasActiveBookingForConsulta(entrada.getPacienteId(), consulta.getId())) {
+            // Booked meanwhile through another path: the entry is no longer needed
+            listaEsperaRepository.retirarPaciente(consulta.getId(), entrada.getPacienteId(), agora,
+                    StatusListaEspera.AGUARDANDO, StatusListaEspera.ENCERRADO);
+            return Optional.empty();
+        }
+
+        String codigo = geradorCodigoService.proximoCodigoAgendamento();
+        if (listaEsperaRepository.promoverSeAguardando(entrada.getId(), codigo, agora,
+                StatusListaEspera.AGUARDANDO, StatusListaEspera.PROMOVIDO) == 0) {
+            // Left the queue after being read
+            return Optional.empty();
+        }
+
+        Agendamento agendamento = agendamentoRepository.save(new Agendamento(codigo, entrada.getPacienteId(),
+                consulta, entrada.getPontosUsados(),
+                ConsultaService.calcularValorPago(consulta.getValor(), entrada.getPontosUsados())));
+        notificacoes.notificarAposCommit(entrada.getPacienteId(), EVENTO_PROMOCAO,
+                new PromocaoListaEspera(consulta.getId(), codigo));
+        // The notified patient is likely to open their bookings right away
+        leituraPropria.registrarEscrita(entrada.getPacienteId());
+        log.info("Waitlist entry {} of consultation {} promoted to booking {}", entrada.getId(),
+                consulta.getId(), codigo);
+        return Optional.of(agendamento);
+    }
+
+    // ========== CLOSING ==========
+
+    /**
+     * Close the queues of consultations that will not take bookings anymore
+     * (e.g. cancelled) and tell the waiting patients
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void encerrarFilas(Collection<Long> consultaIds) {
+        encerrar(listaEsperaRepository.findByConsultaIdInAndStatus(consultaIds, StatusListaEspera.AGUARDANDO));
+    }
+
+    /**
+     * Close the queues of consultations that started, were finalized or were
+     * cancelled elsewhere, so nobody keeps waiting for a slot that cannot come
+     *
+     * @return Number of waiting entries closed
+     */
+    @Scheduled(fixedDelayString = "${consulta.lista-espera.encerramento-ms:300000}",
+            initialDelayString = "${consulta.lista-espera.encerramento-ms:300000}")
+    public int encerrarFilasVencidas() {
+        int encerradas = transacao.execute(status -> encerrar(listaEsperaRepository
+                .findAguardandoEmConsultasEncerradas(StatusListaEspera.AGUARDANDO, StatusConsulta.DISPONIVEL,
+                        LocalDateTime.now())));
+        if (encerradas > 0) {
+            log.info("Closed {} waitlist entries of consultations no longer taking bookings", encerradas);
+        }
+        return encerradas;
+    }
+
+    private int encerrar(List<EntradaListaEspera> aguardando) {
+        if (aguardando.isEmpty()) {
+            return 0;
+        }
+        List<Long> consultaIds = aguardando.stream().map(EntradaListaEspera::getConsultaId).distinct().toList();
+        listaEsperaRepository.encerrarPorConsultas(consultaIds, LocalDateTime.now(),
+                StatusListaEspera.AGUARDANDO, StatusListaEspera.ENCERRADO);
+        aguardando.forEach(e -> notificacoes.notificarAposCommit(e.getPacienteId(), EVENTO_ENCERRAMENTO,
+                new EncerramentoListaEspera(e.getConsultaId())));
+        return aguardando.size();
+    }
+
+    // ========== UTILITY METHODS ==========
+
+    private static boolean aceitaAgendamentos(Consulta consulta) {
+        return consulta.getStatus() == StatusConsulta.DISPONIVEL
+                && consulta.getDataHora().isAfter(LocalDateTime.now());
+    }
+
+    private EntradaListaEsperaDTO paraDTO(EntradaListaEspera entrada) {
+        Long posicao = entrada.getStatus() != StatusListaEspera.AGUARDANDO ? null
+                : listaEsperaRepository.countByConsultaIdAndStatusAndIdLessThan(entrada.getConsultaId(),
+                        StatusListaEspera.AGUARDANDO, entrada.getId()) + 1;
+        return new EntradaListaEsperaDTO(entrada.getId(), entrada.getConsultaId(), entrada.getPontosUsados(),
+                entrada.getStatus(), posicao, entrada.getDataEntrada(), entrada.getCodigoAgendamento());
+    }
+
+    /**
+     * Payload of a "promocao" event: the patient now holds this booking
+     */
+    public record PromocaoListaEspera(Long consultaId, String codigoAgendamento) {
+    }
+
+    /**
+     * Payload of an "encerramento" event: the consultation will not take bookings anymore
+     */
+    public record EncerramentoListaEspera(Long consultaId) {
+    }
+}
@@ -0,0 +1,235 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendaRecorrenteDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.ErroItemLoteDTO;
+import br.edu.ufpr.hospital.consulta.dto.LoteConsultasDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoLoteConsultasDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.util.TextoUtils;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bulk creation of consultations (e.g. weeks of a doctor's agenda at once)
+ * Items come as a list and/or a recurring weekly template. Every item is
+ * validated first (bean validation plus overlapping doctor times, checked
+ * against the batch, the in-memory doctor agenda and the database in one query);
+ * any error rejects the whole
+ * batch with the errors of every item. Valid batches are inserted in a single
+ * transaction: ids come from a pooled sequence and codes from the hi/lo
+ * generator, so Hibernate sends the inserts as JDBC batches
+ */
+@Service
+@Slf4j
+public class LoteConsultasService {
+
+    private static final String ITEM_AGENDA = "agenda";
+    private static final long DIAS_MAXIMOS_AGENDA = 366;
+
+    private final ConsultaRepository consultaRepository;
+    private final GeradorCodigoService geradorCodigoService;
+    private final IndiceDisponibilidadeService indiceDisponibilidade;
+    private final IndiceAgendaMedicosService indiceAgenda;
+    private final BuscaMedicosService buscaMedicos;
+    private final Validator validator;
+    private final int maximoItens;
+
+    public LoteConsultasService(ConsultaRepository consultaRepository,
+            GeradorCodigoService geradorCodigoService,
+            IndiceDisponibilidadeService indiceDisponibilidade,
+            IndiceAgendaMedicosService indiceAgenda,
+            BuscaMedicosService buscaMedicos,
+            Validator validator,
+            @Value("${consulta.lote.maximo-itens:1000}") int maximoItens) {
+        this.consultaRepository = consultaRepository;
+        this.geradorCodigoService = geradorCodigoService;
+        this.indiceDisponibilidade = indiceDisponibilidade;
+        this.indiceAgenda = indiceAgenda;
+        this.buscaMedicos = buscaMedicos;
+        this.validator = validator;
+        this.maximoItens = maximoItens;
+    }
+
+    /**
+     * Validate and create every consultation of the batch, all or nothing
+     *
+     * @return The created consultations, or the per-item errors (nothing created)
+     * @throws IllegalArgumentException if the batch is empty or larger than the limit
+     */
+    @Transactional
+    public ResultadoLoteConsultasDTO criar(LoteConsultasDTO lote) {
+        List<ErroItemLoteDTO> erros = new ArrayList<>();
+        List<ItemLote> itens = new ArrayList<>();
+
+        List<ConsultaDTO> consultas = lote.getConsultas() != null ? lote.getConsultas() : List.of();
+        for (int i = 0; i < consultas.size(); i++) {
+            String item = "consultas[" + i + "]";
+            ConsultaDTO dto = consultas.get(i);
+            if (dto == null) {
+                erros.add(new ErroItemLoteDTO(item, null, "Consulta não informada"));
+            } else if (validar(item, dto, erros)) {
+                itens.add(new ItemLote(item, dto));
+            }
+        }
+        if (lote.getAgenda() != null && validar(ITEM_AGENDA, lote.getAgenda(), erros)
+                && validarPeriodo(lote.getAgenda(), erros)) {
+            itens.addAll(expandir(lote.getAgenda()));
+        }
+
+        if (itens.isEmpty() && erros.isEmpty()) {
+            throw new IllegalArgumentException("Informe ao menos uma consulta ou uma agenda com horários futuros");
+        }
+        if (itens.size() > maximoItens) {
+            throw new IllegalArgumentException("Lote com " + itens.size()
+                    + " consultas excede o máximo de " + maximoItens);
+        }
+
+        rejeitarHorariosRepetidos(itens, erros);
+        if (!erros.isEmpty()) {
+            return new ResultadoLoteConsultasDTO(List.of(), erros);
+        }
+        return new ResultadoLoteConsultasDTO(inserir(itens), List.of());
+    }
+
+    // ========== VALIDATION ==========
+
+    private <T> boolean validar(String item, T dto, List<ErroItemLoteDTO> erros) {
+        Set<ConstraintViolation<T>> violacoes = validator.validate(dto);
+        violacoes.stream()
+                .sorted(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                .forEach(v -> erros.add(new ErroItemLoteDTO(item, v.getPropertyPath().toString(), v.getMessage())));
+        return violacoes.isEmpty();
+    }
+
+    private boolean validarPeriodo(AgendaRecorrenteDTO agenda, List<ErroItemLoteDTO> erros) {
+        if (agenda.getDataFim().isBefore(agenda.getDataInicio())) {
+            erros.add(new ErroItemLoteDTO(ITEM_AGENDA, "dataFim", "Data de fim deve ser igual ou posterior à de início"));
+            return false;
+        }
+        if (ChronoUnit.DAYS.between(agenda.getDataInicio(), agenda.getDataFim()) >= DIAS_MAXIMOS_AGENDA) {
+            erros.add(new ErroItemLoteDTO(ITEM_AGENDA, "dataFim", "A agenda pode cobrir no máximo "
+                    + DIAS_MAXIMOS_AGENDA + " dias"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * One consultation per weekday and time of the template; times already past are skipped
+     */
+    private List<ItemLote> expandir(AgendaRecorrenteDTO agenda) {
+        LocalDateTime agora = LocalDateTime.now();
+        List<LocalTime> horarios = agenda.getHorarios().stream().distinct().sorted().toList();
+        List<ItemLote> itens = new ArrayList<>();
+        for (LocalDate dia = agenda.getDataInicio(); !dia.isAfter(agenda.getDataFim()); dia = dia.plusDays(1)) {
+            if (!agenda.getDiasSemana().contains(dia.getDayOfWeek())) {
+                continue;
+            }
+            for (LocalTime horario : horarios) {
+                LocalDateTime dataHora = dia.atTime(horario);
+                if (dataHora.isAfter(agora)) {
+                    itens.add(new ItemLote(ITEM_AGENDA + " " + dataHora, new ConsultaDTO(dataHora,
+                            agenda.getEspecialidade(), agenda.getMedico(), agenda.getValor(), agenda.getVagas())));
+                }
+            }
+        }
+        return itens;
+    }
+
+    /**
+     * A doctor cannot have two overlapping consultations, within the batch or
+     * against consultations already created (cancelled ones excepted)
+     * Existing consultations are looked up in the in-memory agenda index and, in
+     * one query, in the database, which also sees those created directly or by
+     * other replicas since the last index rebuild
+     */
+    private void rejeitarHorariosRepetidos(List<ItemLote> itens, List<ErroItemLoteDTO> erros) {
+        if (itens.isEmpty()) {
+            return;
+        }
+        Duration duracao = indiceAgenda.getDuracao();
+        Set<String> medicos = new LinkedHashSet<>();
+        LocalDateTime inicio = itens.get(0).dto().getDataHora();
+        LocalDateTime fim = inicio;
+        for (ItemLote item : itens) {
+            medicos.add(TextoUtils.normalizar(item.dto().getMedico()));
+            inicio = item.dto().getDataHora().isBefore(inicio) ? item.dto().getDataHora() : inicio;
+            fim = item.dto().getDataHora().isAfter(fim) ? item.dto().getDataHora() : fim;
+        }
+
+        // Rows carry no id: the agendas below are keyed by position
+        AgendaMedicos ocupados = new AgendaMedicos(duracao);
+        long posicao = 0;
+        for (Object[] linha : consultaRepository.findHorariosOcupados(medicos, inicio.minus(duracao),
+                fim.plus(duracao), StatusConsulta.CANCELADA)) {
+            ocupados.adicionar(posicao++, (String) linha[0], (LocalDateTime) linha[1]);
+        }
+
+        AgendaMedicos noLote = new AgendaMedicos(duracao);
+        for (int i = 0; i < itens.size(); i++) {
+            ItemLote item = itens.get(i);
+            String medico = item.dto().getMedico();
+            LocalDateTime dataHora = item.dto().getDataHora();
+            if (indiceAgenda.temConflito(medico, dataHora) || ocupados.conflito(medico, dataHora).isPresent()) {
+                erros.add(new ErroItemLoteDTO(item.item(), "dataHora", "Médico já possui consulta neste horário"));
+                continue;
+            }
+            noLote.adicionarSeLivre((long) i, medico, dataHora).ifPresent(outro -> erros.add(new ErroItemLoteDTO(
+                    item.item(), "dataHora", outro.inicio().equals(dataHora)
+                            ? "Horário repetido para o médico no lote"
+                            : "Horário sobreposto a outra consulta do médico no lote")));
+        }
+    }
+
+    // ========== INSERTION ==========
+
+    private List<ConsultaResponseDTO> inserir(List<ItemLote> itens) {
+        LocalDateTime agora = LocalDateTime.now();
+        List<Consulta> consultas = new ArrayList<>(itens.size());
+        for (ItemLote item : itens) {
+            ConsultaDTO dto = item.dto();
+            Consulta consulta = new Consulta(geradorCodigoService.proximoCodigoConsulta(), dto.getDataHora(),
+                    dto.getEspecialidade(), dto.getMedico(), dto.getValor(), dto.getVagas());
+            consulta.setDataCriacao(agora);
+            consultas.add(consulta);
+        }
+
+        // Inserts are queued and flushed at commit in JDBC batches (hibernate.jdbc.batch_size)
+        consultaRepository.saveAll(consultas);
+        // A creation on this instance or another replica may have taken one of the times since validation
+        indiceAgenda.reservar(consultas);
+
+        Set<String> medicosRegistrados = new HashSet<>();
+        for (Consulta consulta : consultas) {
+            indiceDisponibilidade.registrarAposCommit(consulta);
+            if (medicosRegistrados.add(consulta.getMedico())) {
+                buscaMedicos.registrarAposCommit(consulta.getMedico(), consulta.getEspecialidade(), null);
+            }
+        }
+        log.info("Created {} consultations in one batch", consultas.size());
+        return consultas.stream().map(ConsultaResponseDTO::fromEntity).toList();
+    }
+
+    private record ItemLote(String item, ConsultaDTO dto) {
+    }
+}
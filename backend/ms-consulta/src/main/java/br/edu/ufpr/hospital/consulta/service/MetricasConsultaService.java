@@ -0,0 +1,213 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Timers for the booking lifecycle operations (booking, booking cancellation,
+ * check-in, attendance confirmation, consultation cancellation)
+ *
+ * consulta.operacao times a whole operation, tagged with its outcome (sucesso,
+ * rollback or the exception's simple name); consulta.operacao.etapa times each
+ * phase, tagged with the resource it waits on (banco or pontos for the
+ * ms-paciente balance call), including the commit, so the phase that dominates
+ * booking latency is visible. Both publish percentile histograms for Prometheus
+ */
+@Service
+public class MetricasConsultaService {
+
+    public static final String AGENDAR = "agendar";
+    public static final String CANCELAR_AGENDAMENTO = "cancelar_agendamento";
+    public static final String CHECKIN = "checkin";
+    public static final String CONFIRMAR_COMPARECIMENTO = "confirmar_comparecimento";
+    public static final String CANCELAR_CONSULTA = "cancelar_consulta";
+    public static final String REALIZAR_CONSULTA = "realizar_consulta";
+
+    public static final String BANCO = "banco";
+    public static final String PONTOS = "pontos";
+
+    static final String METRICA_OPERACAO = "consulta.operacao";
+    static final String METRICA_ETAPA = "consulta.operacao.etapa";
+    static final String METRICA_VAGAS_RESTANTES = "consulta.vagas.restantes";
+
+    static final String SUCESSO = "sucesso";
+    static final String ROLLBACK = "rollback";
+
+    // Recurso de transação que marca o commit como já medido (fluxos aninhados)
+    private static final Object CHAVE_COMMIT = new Object();
+
+    private final MeterRegistry meterRegistry;
+
+    public MetricasConsultaService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // ========== OPERATIONS ==========
+
+    /**
+     * Time a whole operation; when it runs inside a transaction the outcome and
+     * the total are recorded only once the transaction completes, so the commit
+     * is included
+     */
+    public <T> T medir(String operacao, Supplier<T> acao) {
+        Medicao medicao = new Medicao(operacao, Timer.start(meterRegistry));
+        boolean concluidaNaTransacao = medirCommit(operacao, medicao);
+        try {
+            T resultado = acao.get();
+            if (!concluidaNaTransacao) {
+                medicao.concluir(SUCESSO);
+            }
+            return resultado;
+        } catch (RuntimeException e) {
+            medicao.concluir(e.getClass().getSimpleName());
+            throw e;
+        }
+    }
+
+    public void medir(String operacao, Runnable acao) {
+        medir(operacao, () -> {
+            acao.run();
+            return null;
+        });
+    }
+
+    /**
+     * Time an operation that completes asynchronously (non-blocking booking flow)
+     */
+    public <T> Mono<T> medirReativo(String operacao, Mono<T> acao) {
+        return Mono.defer(() -> {
+            Timer.Sample inicio = Timer.start(meterRegistry);
+            return acao
+                    .doOnSuccess(r -> inicio.stop(timerOperacao(operacao, SUCESSO)))
+                    .doOnError(e -> inicio.stop(timerOperacao(operacao, e.getClass().getSimpleName())));
+        });
+    }
+
+    // ========== PHASES ==========
+
+    public <T> T medirEtapa(String operacao, String etapa, String recurso, Supplier<T> acao) {
+        Timer.Sample inicio = Timer.start(meterRegistry);
+        try {
+            return acao.get();
+        } finally {
+            inicio.stop(timerEtapa(operacao, etapa, recurso));
+        }
+    }
+
+    public void medirEtapa(String operacao, String etapa, String recurso, Runnable acao) {
+        medirEtapa(operacao, etapa, recurso, () -> {
+            acao.run();
+            return null;
+        });
+    }
+
+    public <T> Mono<T> medirEtapaReativa(String operacao, String etapa, String recurso, Mono<T> acao) {
+        return Mono.defer(() -> {
+            Timer.Sample inicio = Timer.start(meterRegistry);
+            return acao.doFinally(sinal -> inicio.stop(timerEtapa(operacao, etapa, recurso)));
+        });
+    }
+
+    /**
+     * Time the commit of the current transaction as the operation's "commit"
+     * phase; a no-op outside a transaction or if the commit is already timed
+     */
+    public void medirCommit(String operacao) {
+        medirCommit(operacao, null);
+    }
+
+    /**
+     * @param total The whole operation, concluded when the transaction completes (may be null)
+     * @return whether the transaction will conclude the total
+     */
+    private boolean medirCommit(String operacao, Medicao total) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(CHAVE_COMMIT)) {
+            return false;
+        }
+        TransactionSynchronizationManager.bindResource(CHAVE_COMMIT, operacao);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private Timer.Sample commit;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commit = Timer.start(meterRegistry);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(CHAVE_COMMIT);
+                if (commit != null) {
+                    commit.stop(timerEtapa(operacao, "commit", BANCO));
+                }
+                if (total != null) {
+                    total.concluir(status == STATUS_COMMITTED ? SUCESSO : ROLLBACK);
+                }
+            }
+        });
+        return total != null;
+    }
+
+    // ========== SLOTS ==========
+
+    /**
+     * Slots still free on a consultation right after a booking reserved one
+     */
+    public void registrarVagasRestantes(Consulta consulta) {
+        DistributionSummary.builder(METRICA_VAGAS_RESTANTES)
+                .description("Vagas livres na consulta logo após cada agendamento")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Math.max(0, consulta.getVagas() - consulta.getVagasOcupadas()));
+    }
+
+    /**
+     * Whole-operation sample stopped once: by the failure that aborted it or by
+     * the completion of its transaction, whichever comes first
+     */
+    private final class Medicao {
+
+        private final String operacao;
+        private final Timer.Sample inicio;
+        private boolean concluida;
+
+        private Medicao(String operacao, Timer.Sample inicio) {
+            this.operacao = operacao;
+            this.inicio = inicio;
+        }
+
+        void concluir(String resultado) {
+            if (!concluida) {
+                concluida = true;
+                inicio.stop(timerOperacao(operacao, resultado));
+            }
+        }
+    }
+
+    private Timer timerOperacao(String operacao, String resultado) {
+        return Timer.builder(METRICA_OPERACAO)
+                .description("Duração das operações do ciclo de vida de consultas e agendamentos")
+                .tag("operacao", operacao)
+                .tag("resultado", resultado)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Timer timerEtapa(String operacao, String etapa, String recurso) {
+        return Timer.builder(METRICA_ETAPA)
+                .description("Duração de cada etapa das operações de consultas e agendamentos")
+                .tag("operacao", operacao)
+                .tag("etapa", etapa)
+                .tag("recurso", recurso)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
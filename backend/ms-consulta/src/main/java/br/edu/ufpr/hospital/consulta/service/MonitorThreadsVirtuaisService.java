@@ -0,0 +1,82 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Carrier-pinning guard for the virtual-thread execution mode
+ * Listens to the JDK Flight Recorder jdk.VirtualThreadPinned event (a virtual
+ * thread blocked while holding a monitor or inside native code, which ties up
+ * its carrier), logs where it happened and counts it as
+ * jvm.threads.virtual.pinned, so a regression (e.g. I/O inside a synchronized
+ * block, or a JDBC driver that synchronizes) shows up in logs and metrics
+ */
+@Service
+@Slf4j
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class MonitorThreadsVirtuaisService {
+
+    private static final int MAX_FRAMES_LOG = 12;
+
+    private final Duration limite;
+    private final Counter fixacoes;
+
+    private RecordingStream gravacao;
+
+    public MonitorThreadsVirtuaisService(MeterRegistry meterRegistry,
+            @Value("${consulta.threads-virtuais.limite-fixacao-ms:20}") long limiteMs) {
+        this.limite = Duration.ofMillis(limiteMs);
+        this.fixacoes = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Threads virtuais que bloquearam presas à thread portadora")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        gravacao = new RecordingStream();
+        gravacao.enable("jdk.VirtualThreadPinned").withThreshold(limite).withStackTrace();
+        gravacao.onEvent("jdk.VirtualThreadPinned", this::registrar);
+        gravacao.startAsync();
+        log.info("Virtual thread pinning monitor started (threshold {} ms)", limite.toMillis());
+    }
+
+    void registrar(RecordedEvent evento) {
+        fixacoes.increment();
+        String pilha = evento.getStackTrace() == null ? "(no stack trace)"
+                : evento.getStackTrace().getFrames().stream()
+                        .limit(MAX_FRAMES_LOG)
+                        .map(MonitorThreadsVirtuaisService::formatar)
+                        .collect(Collectors.joining("\n\tat ", "\tat ", ""));
+        log.warn("Virtual thread pinned its carrier for {} ms\n{}", evento.getDuration().toMillis(), pilha);
+    }
+
+    long totalFixacoes() {
+        return (long) fixacoes.count();
+    }
+
+    private static String formatar(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        if (gravacao != null) {
+            gravacao.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-patient server-sent event streams
+ * Lets a patient be told about changes that happen on their behalf (e.g. a
+ * waitlist promotion) instead of polling. Delivery is best effort and local to
+ * this replica: events for a patient that is not connected here are dropped,
+ * and the current state is always available from the regular endpoints
+ */
+@Service
+@Slf4j
+public class NotificacaoPacienteService {
+
+    private final Map<Integer, Set<SseEmitter>> assinantes = new ConcurrentHashMap<>();
+    private final long timeoutAssinaturaMs;
+
+    public NotificacaoPacienteService(
+            @Value("${consulta.notificacoes.sse-timeout-ms:1800000}") long timeoutAssinaturaMs) {
+        this.timeoutAssinaturaMs = timeoutAssinaturaMs;
+    }
+
+    /**
+     * Open a notification stream for the patient (several devices may be connected at once)
+     */
+    public SseEmitter assinar(Integer pacienteId) {
+        SseEmitter emitter = new SseEmitter(timeoutAssinaturaMs);
+        assinantes.compute(pacienteId, (id, doPaciente) -> {
+            Set<SseEmitter> emissores = doPaciente != null ? doPaciente : ConcurrentHashMap.newKeySet();
+            emissores.add(emitter);
+            return emissores;
+        });
+        emitter.onCompletion(() -> remover(pacienteId, emitter));
+        emitter.onTimeout(() -> remover(pacienteId, emitter));
+        emitter.onError(e -> remover(pacienteId, emitter));
+        log.debug("Patient {} subscribed to notifications", pacienteId);
+        return emitter;
+    }
+
+    int totalAssinantes() {
+        return assinantes.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Send an event to the patient once the current transaction commits, so a
+     * rolled back change is never announced
+     */
+    public void notificarAposCommit(Integer pacienteId, String evento, Object dados) {
+        Runnable acao = () -> notificar(pacienteId, evento, dados);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    private void notificar(Integer pacienteId, String evento, Object dados) {
+        Set<SseEmitter> doPaciente = assinantes.get(pacienteId);
+        if (doPaciente == null) {
+            return;
+        }
+        for (SseEmitter emitter : doPaciente) {
+            try {
+                emitter.send(SseEmitter.event().name(evento).data(dados, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                descartar(pacienteId, emitter, e);
+            }
+        }
+    }
+
+    /**
+     * Keep idle connections alive (and find out about the dead ones)
+     */
+    @Scheduled(fixedDelayString = "${consulta.notificacoes.ping-ms:30000}")
+    public void manterConexoes() {
+        assinantes.forEach((pacienteId, doPaciente) -> {
+            for (SseEmitter emitter : doPaciente) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (IOException | IllegalStateException e) {
+                    descartar(pacienteId, emitter, e);
+                }
+            }
+        });
+    }
+
+    private void descartar(Integer pacienteId, SseEmitter emitter, Exception causa) {
+        remover(pacienteId, emitter);
+        emitter.completeWithError(causa);
+        log.debug("Notification subscriber of patient {} dropped: {}", pacienteId, causa.getMessage());
+    }
+
+    private void remover(Integer pacienteId, SseEmitter emitter) {
+        assinantes.computeIfPresent(pacienteId, (id, doPaciente) -> {
+            doPaciente.remove(emitter);
+            return doPaciente.isEmpty() ? null : doPaciente;
+        });
+    }
+}
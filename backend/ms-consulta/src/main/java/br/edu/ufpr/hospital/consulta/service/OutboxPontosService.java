@@ -0,0 +1,320 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.config.RoteamentoLeituraDataSource;
+import br.edu.ufpr.hospital.consulta.dto.OperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoOperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.exception.ServicoPacientesIndisponivelException;
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.OutboxPontos;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.model.StatusOutbox;
+import br.edu.ufpr.hospital.consulta.model.TipoOperacaoPontos;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for points operations on ms-paciente
+ * Debits (points used in a booking) and refunds (cancellations) are written in
+ * the same transaction as the booking change, then a relay delivers them after
+ * commit in batches of one bulk call each, on a bounded executor. Every operation
+ * carries an idempotency key, so redeliveries after a timeout or crash are safe.
+ * Failed deliveries stay queued with backoff and are retried by a scheduled sweep
+ */
+@Service
+@Slf4j
+public class OutboxPontosService {
+
+    public static final String ORIGEM_USO_CONSULTA = "USO_CONSULTA";
+    public static final String ORIGEM_CANCELAMENTO_AGENDAMENTO = "CANCELAMENTO_AGENDAMENTO";
+    public static final String ORIGEM_CANCELAMENTO_CONSULTA = "CANCELAMENTO_CONSULTA";
+
+    private final OutboxPontosRepository outboxRepository;
+    private final AgendamentoRepository agendamentoRepository;
+    private final ListaEsperaService listaEspera;
+    private final PacienteIntegrationService pacienteService;
+    private final TokenServicoService tokenServico;
+    private final Executor executor;
+    private final TransactionTemplate transacao;
+
+    private final int tamanhoLote;
+    private final int maxTentativas;
+    private final Duration intervaloBase;
+
+    public OutboxPontosService(OutboxPontosRepository outboxRepository,
+            AgendamentoRepository agendamentoRepository,
+            ListaEsperaService listaEspera,
+            PacienteIntegrationService pacienteService,
+            TokenServicoService tokenServico,
+            @Qualifier("outboxPontosTaskExecutor") Executor executor,
+            PlatformTransactionManager transactionManager,
+            @Value("${outbox.pontos.tamanho-lote:100}") int tamanhoLote,
+            @Value("${outbox.pontos.max-tentativas:10}") int maxTentativas,
+            @Value("${outbox.pontos.intervalo-ms:30000}") long intervaloMs) {
+        this.outboxRepository = outboxRepository;
+        this.agendamentoRepository = agendamentoRepository;
+        this.listaEspera = listaEspera;
+        this.pacienteService = pacienteService;
+        this.tokenServico = tokenServico;
+        this.executor = executor;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.tamanhoLote = tamanhoLote;
+        this.maxTentativas = maxTentativas;
+        this.intervaloBase = Duration.ofMillis(intervaloMs);
+    }
+
+    // ========== REGISTRATION ==========
+
+    /**
+     * Queue the debit of the points used by a new booking
+     * Runs in the caller's transaction; delivery starts once it commits, and the
+     * patient's cached balance is dropped then, so the next check reads it again
+     * alongside the debits still queued
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarDebito(Agendamento agendamento) {
+        if (agendamento.getPontosUsados().compareTo(BigDecimal.ZERO) <= 0) {
+            return;
+        }
+        outboxRepository.save(new OutboxPontos(TipoOperacaoPontos.SAIDA, agendamento,
+                "USO EM CONSULTA", ORIGEM_USO_CONSULTA));
+        Integer pacienteId = agendamento.getPacienteId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pacienteService.invalidarSaldo(pacienteId);
+            }
+        });
+        despacharAposCommit();
+    }
+
+    /**
+     * Points of the patient's debits queued or in flight, not yet reflected in the
+     * balance ms-paciente reports
+     * Reads the primary: a debit committed a moment ago must already count
+     */
+    public BigDecimal debitosNaoAplicados(Integer pacienteId) {
+        return RoteamentoLeituraDataSource.noPrimario(() -> outboxRepository.somarDebitosNaoAplicados(
+                pacienteId, StatusOutbox.PENDENTE, StatusOutbox.PROCESSANDO));
+    }
+
+    /**
+     * Queue refunds of the points used by cancelled bookings
+     * A debit that has not been sent yet is simply discarded instead of being
+     * refunded; a debit that never went through is not refunded at all
+     *
+     * @param agendamentos Cancelled bookings (those without points are ignored)
+     * @param descricao Description shown in the patient's points history
+     * @param origem Origin recorded on ms-paciente (CANCELAMENTO_AGENDAMENTO or CANCELAMENTO_CONSULTA)
+     * @return Number of refunds queued
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int registrarEstornos(List<Agendamento> agendamentos, String descricao, String origem) {
+        int registrados = 0;
+        for (Agendamento agendamento : agendamentos) {
+            if (agendamento.getPontosUsados().compareTo(BigDecimal.ZERO) > 0
+                    && precisaEstorno(agendamento.getCodigoAgendamento())) {
+                outboxRepository.save(new OutboxPontos(TipoOperacaoPontos.ENTRADA, agendamento, descricao, origem));
+                registrados++;
+            }
+        }
+        if (registrados > 0) {
+            despacharAposCommit();
+        }
+        return registrados;
+    }
+
+    private boolean precisaEstorno(String codigoAgendamento) {
+        String chaveDebito = OutboxPontos.chave(codigoAgendamento, TipoOperacaoPontos.SAIDA);
+        if (outboxRepository.descartarSePendente(chaveDebito, LocalDateTime.now(),
+                StatusOutbox.PENDENTE, StatusOutbox.DESCARTADO) > 0) {
+            return false;
+        }
+        Optional<OutboxPontos> debito = outboxRepository.findByChaveIdempotencia(chaveDebito);
+        // No outbox debit: booked before the outbox existed, points were deducted synchronously
+        return debito.map(d -> d.getStatus() == StatusOutbox.CONCLUIDO || d.getStatus() == StatusOutbox.PROCESSANDO)
+                .orElse(true);
+    }
+
+    private void despacharAposCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                executor.execute(OutboxPontosService.this::despacharPendentes);
+            }
+        });
+    }
+
+    // ========== RELAY ==========
+
+    /**
+     * Deliver every operation that is due, one bulk call per batch
+     * Also runs periodically to retry failed deliveries and recover batches
+     * abandoned by a crashed dispatcher
+     */
+    @Scheduled(fixedDelayString = "${outbox.pontos.intervalo-ms:30000}",
+            initialDelayString = "${outbox.pontos.intervalo-ms:30000}")
+    public void despacharPendentes() {
+        transacao.executeWithoutResult(status -> {
+            int liberados = outboxRepository.liberarLotesExpirados(
+                    LocalDateTime.now().minus(intervaloBase.multipliedBy(10)),
+                    StatusOutbox.PENDENTE, StatusOutbox.PROCESSANDO);
+            if (liberados > 0) {
+                log.warn("{} points operations returned to the queue after an abandoned dispatch", liberados);
+            }
+        });
+
+        List<OutboxPontos> lote;
+        while (!(lote = reservarLote()).isEmpty()) {
+            if (!enviarLote(lote)) {
+                // ms-paciente circuit is open: leave the rest for the next run
+                return;
+            }
+        }
+    }
+
+    private List<OutboxPontos> reservarLote() {
+        return transacao.execute(status -> {
+            LocalDateTime agora = LocalDateTime.now();
+            List<Long> ids = outboxRepository.findIdsProntosParaEnvio(StatusOutbox.PENDENTE,
+                    StatusOutbox.PROCESSANDO, agora, PageRequest.of(0, tamanhoLote));
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            String idLote = UUID.randomUUID().toString();
+            outboxRepository.reservarLote(ids, idLote, agora, StatusOutbox.PENDENTE, StatusOutbox.PROCESSANDO);
+            return outboxRepository.findByLoteOrderById(idLote);
+        });
+    }
+
+    /**
+     * @return false if ms-paciente refused the call locally (circuit open or
+     *         bulkhead full); the batch is put back without counting an attempt
+     */
+    private boolean enviarLote(List<OutboxPontos> lote) {
+        List<OperacaoPontosDTO> operacoes = lote.stream()
+                .map(o -> new OperacaoPontosDTO(o.getChaveIdempotencia(), o.getPacienteId(), o.getTipo().name(),
+                        o.getPontos(), o.getDescricao(), o.getOrigem()))
+                .toList();
+
+        Map<String, ResultadoOperacaoPontosDTO> resultados;
+        String erroEnvio = null;
+        try {
+            resultados = pacienteService.processarOperacoesEmLote(operacoes, tokenServico.obterAuthorization())
+                    .stream()
+                    .collect(Collectors.toMap(ResultadoOperacaoPontosDTO::getChaveIdempotencia,
+                            Function.identity(), (a, b) -> a));
+        } catch (ServicoPacientesIndisponivelException e) {
+            adiarLote(lote, e.getMessage());
+            log.info("Points batch of {} operations postponed: {}", lote.size(), e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            resultados = Map.of();
+            erroEnvio = e.getMessage();
+            log.warn("Points batch of {} operations failed: {}", lote.size(), e.getMessage());
+        }
+
+        registrarResultados(lote, resultados, erroEnvio);
+        return true;
+    }
+
+    private void adiarLote(List<OutboxPontos> lote, String motivo) {
+        LocalDateTime proxima = LocalDateTime.now().plus(intervaloBase);
+        transacao.executeWithoutResult(status -> {
+            lote.forEach(operacao -> operacao.adiar(motivo, proxima));
+            outboxRepository.saveAll(lote);
+        });
+    }
+
+    private void registrarResultados(List<OutboxPontos> lote, Map<String, ResultadoOperacaoPontosDTO> resultados,
+            String erroEnvio) {
+        transacao.executeWithoutResult(status -> {
+            int concluidas = 0;
+            for (OutboxPontos operacao : lote) {
+                ResultadoOperacaoPontosDTO resultado = resultados.get(operacao.getChaveIdempotencia());
+                if (resultado == null) {
+                    String erro = erroEnvio != null ? erroEnvio : "Item ausente na resposta do serviço de pacientes";
+                    operacao.registrarFalha(erro, maxTentativas, proximaTentativa(operacao.getTentativas()));
+                    if (operacao.getStatus() == StatusOutbox.FALHOU) {
+                        log.error("Points operation {} gave up after {} attempts: {}",
+                                operacao.getChaveIdempotencia(), operacao.getTentativas(), erro);
+                        descartarEstornoPendente(operacao);
+                    }
+                } else if (resultado.isSucesso()) {
+                    operacao.concluir();
+                    concluidas++;
+                } else {
+                    // Rejected by business rules (e.g. insufficient balance): retrying will not help
+                    operacao.recusar(resultado.getMensagem());
+                    log.error("Points operation {} for patient {} rejected: {}", operacao.getChaveIdempotencia(),
+                            operacao.getPacienteId(), resultado.getMensagem());
+                    if (operacao.getTipo() == TipoOperacaoPontos.SAIDA) {
+                        descartarEstornoPendente(operacao);
+                        compensarAgendamento(operacao.getCodigoAgendamento(), resultado.getMensagem());
+                    }
+                }
+            }
+            outboxRepository.saveAll(lote);
+            log.info("Points batch processed: {}/{} applied", concluidas, lote.size());
+        });
+    }
+
+    /**
+     * A debit that never went through must not be followed by its refund
+     */
+    private void descartarEstornoPendente(OutboxPontos debito) {
+        if (debito.getTipo() == TipoOperacaoPontos.SAIDA) {
+            outboxRepository.descartarSePendente(
+                    OutboxPontos.chave(debito.getCodigoAgendamento(), TipoOperacaoPontos.ENTRADA),
+                    LocalDateTime.now(), StatusOutbox.PENDENTE, StatusOutbox.DESCARTADO);
+        }
+    }
+
+    /**
+     * Cancel a booking whose points could not be debited (e.g. the balance was
+     * spent by a concurrent booking after the availability check) and hand its slot
+     * to the consultation's waitlist, or free it if nobody is waiting
+     */
+    private void compensarAgendamento(String codigoAgendamento, String motivo) {
+        agendamentoRepository.findByCodigoAgendamento(codigoAgendamento)
+                .filter(Agendamento::podeSerCancelado)
+                .ifPresent(agendamento -> {
+                    Long consultaId = agendamento.getConsulta().getId();
+                    agendamento.setStatus(StatusAgendamento.CANCELADO);
+                    agendamento.setObservacoes("Cancelado automaticamente: débito de pontos recusado (" + motivo + ")");
+                    agendamentoRepository.save(agendamento);
+                    listaEspera.repassarVaga(consultaId).ifPresent(this::registrarDebito);
+                    log.warn("Booking {} cancelled: points debit rejected", codigoAgendamento);
+                });
+    }
+
+    /**
+     * Exponential backoff from the base interval, capped at 64x
+     */
+    private LocalDateTime proximaTentativa(int tentativasAnteriores) {
+        long fator = 1L << Math.min(tentativasAnteriores, 6);
+        return LocalDateTime.now().plus(intervaloBase.multipliedBy(fator));
+    }
+}
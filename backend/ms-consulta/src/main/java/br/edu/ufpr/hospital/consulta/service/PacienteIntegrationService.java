@@ -1,19 +1,43 @@
 package br.edu.ufpr.hospital.consulta.service;
 
-import br.edu.ufpr.hospital.consulta.dto.AdicaoPontosDTO;
-import br.edu.ufpr.hospital.consulta.dto.DeducaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.dto.OperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoOperacaoPontosDTO;
 import br.edu.ufpr.hospital.consulta.dto.SaldoPontosDTO;
+import br.edu.ufpr.hospital.consulta.exception.ServicoPacientesIndisponivelException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Service for integration with ms-paciente microservice
- * Handles points operations and patient data communication
+ * Handles points operations and patient data communication. Points balances are
+ * kept in a short-lived, size-bounded near-cache keyed by patient, which is
+ * invalidated whenever ms-consulta applies a debit or refund. Every remote
+ * operation has its own circuit breaker and bulkhead (instances pacienteSaldo,
+ * pacienteOperacoesLote and pacienteExiste), so a slow ms-paciente makes calls
+ * fail fast with ServicoPacientesIndisponivelException instead of piling up.
+ * Each remote call runs inside a pacientes.chamada observation (span and timer,
+ * bulkhead and circuit breaker time included), parent of the HTTP client span
  */
 @Service
 public class PacienteIntegrationService {
@@ -25,144 +49,320 @@ public class PacienteIntegrationService {
     
     private static final Duration TIMEOUT = Duration.ofSeconds(10);
     
-    public PacienteIntegrationService(WebClient.Builder webClientBuilder) {
+    static final String INSTANCIA_SALDO = "pacienteSaldo";
+    static final String INSTANCIA_LOTE = "pacienteOperacoesLote";
+    static final String INSTANCIA_EXISTE = "pacienteExiste";
+    
+    private final CircuitBreakerRegistry circuitos;
+    private final BulkheadRegistry bulkheads;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    
+    private final CacheSaldo cacheSaldo;
+    private final Counter acertosCache;
+    private final Counter faltasCache;
+    
+    public PacienteIntegrationService(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry,
+            ObservationRegistry observationRegistry, CircuitBreakerRegistry circuitos, BulkheadRegistry bulkheads,
+            @Value("${ms.paciente.saldo-cache.ttl-ms:15000}") long ttlCacheMs,
+            @Value("${ms.paciente.saldo-cache.tamanho-maximo:10000}") int tamanhoMaximoCache) {
         this.webClient = webClientBuilder
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024))
                 .build();
+        this.circuitos = circuitos;
+        this.bulkheads = bulkheads;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.cacheSaldo = new CacheSaldo(ttlCacheMs, tamanhoMaximoCache);
+        this.acertosCache = Counter.builder("pacientes.saldo.cache")
+                .description("Consultas de saldo de pontos ao cache local")
+                .tag("resultado", "hit")
+                .register(meterRegistry);
+        this.faltasCache = Counter.builder("pacientes.saldo.cache")
+                .description("Consultas de saldo de pontos ao cache local")
+                .tag("resultado", "miss")
+                .register(meterRegistry);
+        Gauge.builder("pacientes.saldo.cache.tamanho", cacheSaldo, CacheSaldo::tamanho)
+                .description("Saldos de pontos mantidos no cache local")
+                .register(meterRegistry);
     }
     
     /**
-     * Verify patient's current points balance
+     * Verify patient's current points balance (blocking)
      * 
      * @param pacienteId The patient ID
      * @param token The authorization token
      * @return Current points balance
      * @throws RuntimeException if communication fails
+     * @see #verificarSaldoPontosReativo(Integer, String)
      */
     public BigDecimal verificarSaldoPontos(Integer pacienteId, String token) {
-        try {
-            SaldoPontosDTO response = webClient.get()
-                    .uri(msPacienteUrl + "/pacientes/{pacienteId}/saldo-e-historico", pacienteId)
-                    .header("Authorization", token)
-                    .retrieve()
-                    .bodyToMono(SaldoPontosDTO.class)
-                    .timeout(TIMEOUT)
-                    .block();
-                    
-            return response != null ? response.getSaldoAtual() : BigDecimal.ZERO;
-            
-        } catch (WebClientResponseException.NotFound e) {
-            throw new RuntimeException("Paciente não encontrado no sistema de pontos", e);
-        } catch (WebClientResponseException.Unauthorized e) {
-            throw new RuntimeException("Token de autenticação inválido", e);
-        } catch (WebClientResponseException e) {
-            throw new RuntimeException("Erro ao verificar saldo de pontos: " + e.getMessage(), e);
-        } catch (Exception e) {
-            throw new RuntimeException("Erro de comunicação com o serviço de pacientes", e);
-        }
+        return verificarSaldoPontosReativo(pacienteId, token).block();
     }
     
     /**
-     * Deduct points from patient's account
+     * Verify patient's current points balance without blocking the caller
+     * Served from the near-cache while the entry is fresh; callers must pass the
+     * ID of the authenticated patient, since cached values skip ms-paciente's
+     * ownership check
      * 
      * @param pacienteId The patient ID
-     * @param pontos Points to deduct
      * @param token The authorization token
-     * @throws RuntimeException if communication fails or insufficient balance
+     * @return Current points balance; fails with ServicoPacientesIndisponivelException
+     *         if the call is refused by the circuit breaker or bulkhead, or with
+     *         RuntimeException if communication fails
      */
-    public void deduzirPontos(Integer pacienteId, BigDecimal pontos, String token) {
-        if (pontos.compareTo(BigDecimal.ZERO) <= 0) {
-            return; // Nothing to deduct
-        }
-        
-        try {
-            DeducaoPontosDTO request = new DeducaoPontosDTO(pontos, "USO EM CONSULTA");
+    public Mono<BigDecimal> verificarSaldoPontosReativo(Integer pacienteId, String token) {
+        return Mono.defer(() -> {
+            BigDecimal emCache = cacheSaldo.obter(pacienteId);
+            if (emCache != null) {
+                acertosCache.increment();
+                return Mono.just(emCache);
+            }
+            faltasCache.increment();
             
-            webClient.put()
-                    .uri(msPacienteUrl + "/pacientes/{pacienteId}/deduzir-pontos", pacienteId)
+            SaldoEmCache leitura = cacheSaldo.iniciarLeitura(pacienteId);
+            return protegido(INSTANCIA_SALDO, webClient.get()
+                    .uri(msPacienteUrl + "/pacientes/{pacienteId}/saldo", pacienteId)
                     .header("Authorization", token)
-                    .bodyValue(request)
                     .retrieve()
-                    .bodyToMono(Void.class)
-                    .timeout(TIMEOUT)
-                    .block();
-                    
-        } catch (WebClientResponseException.BadRequest e) {
-            if (e.getResponseBodyAsString().contains("saldo insuficiente") || 
-                e.getResponseBodyAsString().contains("insufficient")) {
-                throw new RuntimeException("Saldo de pontos insuficiente", e);
-            }
-            throw new RuntimeException("Erro na validação dos dados: " + e.getMessage(), e);
-        } catch (WebClientResponseException.NotFound e) {
-            throw new RuntimeException("Paciente não encontrado no sistema de pontos", e);
-        } catch (WebClientResponseException.Unauthorized e) {
-            throw new RuntimeException("Token de autenticação inválido", e);
-        } catch (WebClientResponseException e) {
-            throw new RuntimeException("Erro ao deduzir pontos: " + e.getMessage(), e);
-        } catch (Exception e) {
-            throw new RuntimeException("Erro de comunicação com o serviço de pacientes", e);
+                    .bodyToMono(SaldoPontosDTO.class)
+                    .timeout(TIMEOUT))
+                    .map(response -> response.getSaldoAtual() != null ? response.getSaldoAtual() : BigDecimal.ZERO)
+                    .defaultIfEmpty(BigDecimal.ZERO)
+                    .doOnNext(saldo -> cacheSaldo.guardar(pacienteId, saldo, leitura))
+                    .onErrorMap(PacienteIntegrationService::erroSaldo);
+        });
+    }
+    
+    private static Throwable erroSaldo(Throwable e) {
+        if (e instanceof ServicoPacientesIndisponivelException) {
+            return e;
+        }
+        if (e instanceof WebClientResponseException.NotFound) {
+            return new RuntimeException("Paciente não encontrado no sistema de pontos", e);
         }
+        if (e instanceof WebClientResponseException.Unauthorized) {
+            return new RuntimeException("Token de autenticação inválido", e);
+        }
+        if (e instanceof WebClientResponseException) {
+            return new RuntimeException("Erro ao verificar saldo de pontos: " + e.getMessage(), e);
+        }
+        return new RuntimeException("Erro de comunicação com o serviço de pacientes", e);
     }
     
     /**
-     * Add points to patient's account (for refunds)
+     * Apply several points operations (debits and refunds) in a single call (blocking)
      * 
-     * @param pacienteId The patient ID
-     * @param pontos Points to add back
-     * @param descricao Description of the refund
+     * @param operacoes Operations to apply, in order
      * @param token The authorization token
+     * @return Per-item outcome, matched to the items by idempotency key
      * @throws RuntimeException if communication fails
+     * @see #processarOperacoesEmLoteReativo(List, String)
      */
-    public void adicionarPontos(Integer pacienteId, BigDecimal pontos, String descricao, String token) {
-        if (pontos.compareTo(BigDecimal.ZERO) <= 0) {
-            return; // Nothing to add
+    public List<ResultadoOperacaoPontosDTO> processarOperacoesEmLote(List<OperacaoPontosDTO> operacoes,
+            String token) {
+        return processarOperacoesEmLoteReativo(operacoes, token).block();
+    }
+    
+    /**
+     * Apply several points operations (debits and refunds) in a single call
+     * without blocking the caller
+     * ms-paciente applies each idempotency key only once, so a batch can be
+     * safely resent after a timeout
+     * 
+     * @param operacoes Operations to apply, in order
+     * @param token The authorization token
+     * @return Per-item outcome, matched to the items by idempotency key; fails
+     *         with RuntimeException if communication fails
+     */
+    public Mono<List<ResultadoOperacaoPontosDTO>> processarOperacoesEmLoteReativo(List<OperacaoPontosDTO> operacoes,
+            String token) {
+        if (operacoes.isEmpty()) {
+            return Mono.just(List.of());
         }
         
-        try {
-            AdicaoPontosDTO request = new AdicaoPontosDTO(pontos, descricao);
-            
-            webClient.put()
-                    .uri(msPacienteUrl + "/pacientes/{pacienteId}/adicionar-pontos", pacienteId)
-                    .header("Authorization", token)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .timeout(TIMEOUT)
-                    .block();
-                    
-        } catch (WebClientResponseException.NotFound e) {
-            throw new RuntimeException("Paciente não encontrado no sistema de pontos", e);
-        } catch (WebClientResponseException.Unauthorized e) {
-            throw new RuntimeException("Token de autenticação inválido", e);
-        } catch (WebClientResponseException e) {
-            throw new RuntimeException("Erro ao adicionar pontos: " + e.getMessage(), e);
-        } catch (Exception e) {
-            throw new RuntimeException("Erro de comunicação com o serviço de pacientes", e);
+        // Balances may have changed even if the call failed midway
+        Runnable invalidarSaldos = () -> operacoes.forEach(op -> cacheSaldo.invalidar(op.getPacienteId()));
+        return protegido(INSTANCIA_LOTE, webClient.put()
+                .uri(msPacienteUrl + "/pacientes/pontos/lote")
+                .header("Authorization", token)
+                .bodyValue(operacoes)
+                .retrieve()
+                .bodyToFlux(ResultadoOperacaoPontosDTO.class)
+                .collectList()
+                .timeout(TIMEOUT))
+                .onErrorMap(PacienteIntegrationService::erroLote)
+                .doOnTerminate(invalidarSaldos)
+                .doOnCancel(invalidarSaldos);
+    }
+    
+    private static Throwable erroLote(Throwable e) {
+        if (e instanceof ServicoPacientesIndisponivelException) {
+            return e;
+        }
+        if (e instanceof WebClientResponseException.Unauthorized
+                || e instanceof WebClientResponseException.Forbidden) {
+            return new RuntimeException("Token de serviço recusado pelo serviço de pacientes", e);
         }
+        if (e instanceof WebClientResponseException) {
+            return new RuntimeException("Erro ao processar operações de pontos em lote: " + e.getMessage(), e);
+        }
+        return new RuntimeException("Erro de comunicação com o serviço de pacientes", e);
     }
     
     /**
-     * Check if patient exists and is valid
+     * Check if patient exists and is valid (blocking)
      * 
      * @param pacienteId The patient ID
      * @param token The authorization token
      * @return true if patient exists
      */
     public boolean pacienteExiste(Integer pacienteId, String token) {
-        try {
-            webClient.get()
-                    .uri(msPacienteUrl + "/pacientes/{pacienteId}/saldo-e-historico", pacienteId)
-                    .header("Authorization", token)
-                    .retrieve()
-                    .bodyToMono(SaldoPontosDTO.class)
-                    .timeout(TIMEOUT)
-                    .block();
-            return true;
-        } catch (WebClientResponseException.NotFound e) {
-            return false;
-        } catch (Exception e) {
-            // On communication error, assume patient exists to avoid blocking operations
-            return true;
+        return Boolean.TRUE.equals(pacienteExisteReativo(pacienteId, token).block());
+    }
+    
+    /**
+     * Check if patient exists and is valid without blocking the caller
+     * 
+     * @param pacienteId The patient ID
+     * @param token The authorization token
+     * @return true if patient exists
+     */
+    public Mono<Boolean> pacienteExisteReativo(Integer pacienteId, String token) {
+        return protegido(INSTANCIA_EXISTE, webClient.get()
+                .uri(msPacienteUrl + "/pacientes/{pacienteId}/saldo", pacienteId)
+                .header("Authorization", token)
+                .retrieve()
+                .bodyToMono(SaldoPontosDTO.class)
+                .timeout(TIMEOUT))
+                .thenReturn(true)
+                // On communication error, assume patient exists to avoid blocking operations
+                .onErrorResume(e -> Mono.just(!(e instanceof WebClientResponseException.NotFound)));
+    }
+    
+    /**
+     * Run a remote call through the bulkhead and circuit breaker of the operation
+     * Calls refused by either fail immediately with ServicoPacientesIndisponivelException
+     * and are counted in pacientes.chamadas.recusadas
+     */
+    private <T> Mono<T> protegido(String instancia, Mono<T> chamada) {
+        return observado(instancia, chamada
+                .transformDeferred(BulkheadOperator.of(bulkheads.bulkhead(instancia)))
+                .transformDeferred(CircuitBreakerOperator.of(circuitos.circuitBreaker(instancia)))
+                .onErrorMap(e -> e instanceof CallNotPermittedException || e instanceof BulkheadFullException,
+                        e -> recusada(instancia, e)));
+    }
+    
+    /**
+     * Run a remote call inside its own observation, made current in the Reactor
+     * context so the WebClient exchange becomes its child span
+     */
+    private <T> Mono<T> observado(String instancia, Mono<T> chamada) {
+        return Mono.deferContextual(contexto -> {
+            Observation observacao = Observation.createNotStarted("pacientes.chamada", observationRegistry)
+                    .contextualName("ms-paciente " + instancia)
+                    .lowCardinalityKeyValue("operacao", instancia);
+            Observation pai = contexto.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+            if (pai != null) {
+                observacao.parentObservation(pai);
+            }
+            observacao.start();
+            return chamada
+                    .doOnError(observacao::error)
+                    .doFinally(sinal -> observacao.stop())
+                    .contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, observacao));
+        });
+    }
+    
+    private Throwable recusada(String instancia, Throwable causa) {
+        String motivo = causa instanceof CallNotPermittedException ? "circuito-aberto" : "bulkhead-cheio";
+        Counter.builder("pacientes.chamadas.recusadas")
+                .description("Chamadas ao ms-paciente recusadas sem serem enviadas")
+                .tag("operacao", instancia)
+                .tag("motivo", motivo)
+                .register(meterRegistry)
+                .increment();
+        return new ServicoPacientesIndisponivelException(
+                "Serviço de pontos temporariamente indisponível. Agende sem usar pontos ou tente novamente mais tarde",
+                causa);
+    }
+    
+    /**
+     * Drop the cached balance of a patient, so the next read goes to ms-paciente
+     */
+    public void invalidarSaldo(Integer pacienteId) {
+        cacheSaldo.invalidar(pacienteId);
+    }
+    
+    /**
+     * LRU map of balances with a fixed time-to-live
+     * A read from ms-paciente first leaves a placeholder in the patient's entry and
+     * only stores its result if that placeholder is still there; invalidating the
+     * patient removes it, so an in-flight read can't resurrect a stale value, while
+     * reads of other patients are unaffected. A read slower than the TTL outlives
+     * its placeholder and is not stored either
+     */
+    private static final class CacheSaldo {
+        
+        private final long ttlMs;
+        private final Map<Integer, SaldoEmCache> saldos;
+        
+        private CacheSaldo(long ttlMs, int tamanhoMaximo) {
+            this.ttlMs = ttlMs;
+            this.saldos = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, SaldoEmCache> maisAntigo) {
+                    return size() > tamanhoMaximo;
+                }
+            };
+        }
+        
+        synchronized BigDecimal obter(Integer pacienteId) {
+            SaldoEmCache saldo = saldos.get(pacienteId);
+            if (saldo == null) {
+                return null;
+            }
+            if (saldo.expiraEm() <= System.currentTimeMillis()) {
+                saldos.remove(pacienteId);
+                return null;
+            }
+            return saldo.valor();
+        }
+        
+        /**
+         * Placeholder a read of the patient's balance must hand back to guardar;
+         * reads started together since the last invalidation share it
+         */
+        synchronized SaldoEmCache iniciarLeitura(Integer pacienteId) {
+            if (ttlMs <= 0) {
+                return null;
+            }
+            SaldoEmCache atual = saldos.get(pacienteId);
+            if (atual != null && atual.valor() == null && atual.expiraEm() > System.currentTimeMillis()) {
+                return atual;
+            }
+            SaldoEmCache leitura = new SaldoEmCache(null, System.currentTimeMillis() + ttlMs);
+            saldos.put(pacienteId, leitura);
+            return leitura;
+        }
+        
+        synchronized void guardar(Integer pacienteId, BigDecimal valor, SaldoEmCache leitura) {
+            if (leitura != null && saldos.get(pacienteId) == leitura) {
+                saldos.put(pacienteId, new SaldoEmCache(valor, System.currentTimeMillis() + ttlMs));
+            }
+        }
+        
+        synchronized void invalidar(Integer pacienteId) {
+            saldos.remove(pacienteId);
+        }
+        
+        synchronized int tamanho() {
+            return (int) saldos.values().stream().filter(saldo -> saldo.valor() != null).count();
         }
     }
-}
\ No newline at end of file
+    
+    // valor == null: placeholder of a read in flight
+    private record SaldoEmCache(BigDecimal valor, long expiraEm) {
+    }
+}
@@ -0,0 +1,253 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Month-partitioned storage for agendamentos (PostgreSQL only)
+ * With agendamentos.particionamento.habilitado=true the table is converted, once,
+ * into a table partitioned by RANGE of data_consulta (the booking's copy of the
+ * consultation date), one partition per month plus a DEFAULT partition for
+ * months not created yet. Queries filtering by data_consulta (per-patient past
+ * and upcoming bookings, the archiver) only touch the matching partitions
+ * A daily job creates the partitions of the coming months, moving any rows that
+ * already landed in the DEFAULT partition, and drops month partitions older than
+ * the archive horizon once the archiver has emptied them
+ * On every startup, bookings created before data_consulta existed get it filled in
+ * The unique key on codigo_agendamento is created here rather than mapped on the
+ * entity: a regular table gets UNIQUE (codigo_agendamento), a partitioned one only
+ * UNIQUE (codigo_agendamento, data_consulta), since its unique keys must contain the
+ * partition key. There codes stay unique across months because GeradorCodigoService
+ * hands each one out once from a database sequence
+ */
+@Service
+@Slf4j
+public class ParticionamentoAgendamentosService {
+
+    static final String TABELA = "agendamentos";
+    static final String PARTICAO_PADRAO = "agendamentos_padrao";
+    static final String CHAVE_CODIGO = "uk_agendamentos_codigo";
+    private static final String PREFIXO_PARTICAO = "agendamentos_p";
+    private static final String SEQUENCIA_IDS = "agendamentos_particionado_id_seq";
+    private static final DateTimeFormatter SUFIXO_MES = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AgendamentoRepository agendamentoRepository;
+    private final TransactionTemplate transacao;
+
+    private final boolean habilitado;
+    private final int mesesAFrente;
+    private final long horizonteDias;
+
+    // EntityManagerFactory garante que o schema já foi criado/atualizado pelo Hibernate
+    public ParticionamentoAgendamentosService(JdbcTemplate jdbcTemplate,
+            AgendamentoRepository agendamentoRepository,
+            PlatformTransactionManager transactionManager,
+            EntityManagerFactory entityManagerFactory,
+            @Value("${agendamentos.particionamento.habilitado:false}") boolean habilitado,
+            @Value("${agendamentos.particionamento.meses-a-frente:3}") int mesesAFrente,
+            @Value("${agendamentos.arquivamento.horizonte-dias:365}") long horizonteDias) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.agendamentoRepository = agendamentoRepository;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.mesesAFrente = mesesAFrente;
+        this.horizonteDias = horizonteDias;
+    }
+
+    @PostConstruct
+    void preparar() {
+        int preenchidos = transacao.execute(status -> agendamentoRepository.preencherDataConsulta());
+        if (preenchidos > 0) {
+            log.info("Filled data_consulta of {} bookings", preenchidos);
+        }
+
+        boolean postgres = postgres();
+        if (habilitado && !postgres) {
+            log.warn("Booking partitioning needs PostgreSQL; keeping agendamentos as a regular table");
+        } else if (habilitado && !particionada()) {
+            transacao.executeWithoutResult(status -> converter());
+        }
+
+        if (postgres && particionada()) {
+            manterParticoes();
+        } else {
+            garantirCodigoUnico();
+        }
+    }
+
+    /**
+     * Create the partitions of the current and coming months and drop the emptied
+     * ones older than the archive horizon
+     */
+    @Scheduled(cron = "${agendamentos.particionamento.cron:0 30 3 * * *}")
+    public void manterParticoes() {
+        if (!habilitado || !postgres() || !particionada()) {
+            return;
+        }
+        YearMonth atual = YearMonth.now();
+        for (int i = 0; i <= mesesAFrente; i++) {
+            YearMonth mes = atual.plusMonths(i);
+            transacao.executeWithoutResult(status -> criarParticao(mes));
+        }
+        descartarParticoesVazias(YearMonth.from(LocalDate.now().minusDays(horizonteDias)));
+    }
+
+    // ========== CONVERSION ==========
+
+    private void converter() {
+        jdbcTemplate.execute("LOCK TABLE " + TABELA + " IN ACCESS EXCLUSIVE MODE");
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " RENAME TO agendamentos_legado");
+
+        // Identity columns cannot be partitioned before PostgreSQL 17: ids come from a sequence default
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCIA_IDS);
+        jdbcTemplate.queryForObject("SELECT setval('" + SEQUENCIA_IDS + "', " +
+                "(SELECT COALESCE(MAX(id), 0) + 1 FROM agendamentos_legado), false)", Long.class);
+
+        jdbcTemplate.execute("CREATE TABLE " + TABELA + " (LIKE agendamentos_legado INCLUDING DEFAULTS " +
+                "INCLUDING CONSTRAINTS) PARTITION BY RANGE (data_consulta)");
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " ALTER COLUMN id SET DEFAULT nextval('" +
+                SEQUENCIA_IDS + "')");
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " ALTER COLUMN data_consulta SET NOT NULL");
+        // Unique keys of a partitioned table must contain the partition key (see the class comment)
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " ADD PRIMARY KEY (id, data_consulta)");
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " ADD CONSTRAINT uk_agendamentos_codigo_mes " +
+                "UNIQUE (codigo_agendamento, data_consulta)");
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " ADD CONSTRAINT fk_agendamentos_consulta " +
+                "FOREIGN KEY (consulta_id) REFERENCES consultas (id)");
+        jdbcTemplate.execute("CREATE TABLE " + PARTICAO_PADRAO + " PARTITION OF " + TABELA + " DEFAULT");
+
+        LocalDateTime maisAntiga = jdbcTemplate.queryForObject(
+                "SELECT MIN(data_consulta) FROM agendamentos_legado", LocalDateTime.class);
+        YearMonth mes = maisAntiga != null ? YearMonth.from(maisAntiga) : YearMonth.now();
+        for (YearMonth ultimo = YearMonth.now().plusMonths(mesesAFrente); !mes.isAfter(ultimo);
+                mes = mes.plusMonths(1)) {
+            jdbcTemplate.execute("CREATE TABLE " + particao(mes) + " PARTITION OF " + TABELA +
+                    " FOR VALUES FROM ('" + mes.atDay(1) + "') TO ('" + mes.plusMonths(1).atDay(1) + "')");
+        }
+
+        int copiados = jdbcTemplate.update("INSERT INTO " + TABELA + " SELECT * FROM agendamentos_legado");
+        jdbcTemplate.execute("DROP TABLE agendamentos_legado");
+        jdbcTemplate.execute("CREATE INDEX idx_agendamentos_paciente_data ON " + TABELA +
+                " (paciente_id, data_agendamento)");
+        jdbcTemplate.execute("CREATE INDEX idx_agendamentos_status_data_consulta ON " + TABELA +
+                " (status, data_consulta)");
+        jdbcTemplate.execute("CREATE INDEX idx_agendamentos_consulta ON " + TABELA + " (consulta_id)");
+        log.info("Table {} converted to monthly partitions ({} bookings moved)", TABELA, copiados);
+    }
+
+    /**
+     * UNIQUE (codigo_agendamento) on the regular table, unless a unique index on that
+     * column alone already exists (e.g. the one Hibernate created while the entity
+     * still mapped it)
+     */
+    private void garantirCodigoUnico() {
+        if (Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                indicesUnicos(con.getMetaData()).containsValue(List.of("codigo_agendamento"))))) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + CHAVE_CODIGO + " ON " + TABELA +
+                " (codigo_agendamento)");
+        log.info("Created unique index {} on {}", CHAVE_CODIGO, TABELA);
+    }
+
+    // ========== MAINTENANCE ==========
+
+    private void criarParticao(YearMonth mes) {
+        String particao = particao(mes);
+        if (existe(particao)) {
+            return;
+        }
+        LocalDate inicio = mes.atDay(1);
+        LocalDate fim = mes.plusMonths(1).atDay(1);
+
+        // A new range partition cannot be created while the DEFAULT partition holds rows of
+        // that range: build it as a plain table, move those rows into it, then attach it
+        jdbcTemplate.execute("CREATE TABLE " + particao + " (LIKE " + TABELA + " INCLUDING DEFAULTS " +
+                "INCLUDING CONSTRAINTS)");
+        int movidos = jdbcTemplate.update("WITH movidos AS (DELETE FROM " + PARTICAO_PADRAO +
+                " WHERE data_consulta >= ? AND data_consulta < ? RETURNING *) " +
+                "INSERT INTO " + particao + " SELECT * FROM movidos", inicio.atStartOfDay(), fim.atStartOfDay());
+        jdbcTemplate.execute("ALTER TABLE " + TABELA + " ATTACH PARTITION " + particao +
+                " FOR VALUES FROM ('" + inicio + "') TO ('" + fim + "')");
+        log.info("Created partition {} ({} bookings moved from {})", particao, movidos, PARTICAO_PADRAO);
+    }
+
+    private void descartarParticoesVazias(YearMonth anteriorA) {
+        List<String> particoes = jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = '" + TABELA + "'::regclass",
+                String.class);
+        for (String particao : particoes) {
+            if (!particao.startsWith(PREFIXO_PARTICAO)) {
+                continue;
+            }
+            YearMonth mes = YearMonth.parse(particao.substring(PREFIXO_PARTICAO.length()), SUFIXO_MES);
+            if (mes.isBefore(anteriorA) && Boolean.FALSE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + particao + ")", Boolean.class))) {
+                jdbcTemplate.execute("DROP TABLE " + particao);
+                log.info("Dropped emptied partition {}", particao);
+            }
+        }
+    }
+
+    // ========== CATALOG ==========
+
+    private boolean postgres() {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                "PostgreSQL".equalsIgnoreCase(con.getMetaData().getDatabaseProductName()));
+    }
+
+    /**
+     * Columns of each unique index of the bookings table, by index name, lower case
+     */
+    private static Map<String, List<String>> indicesUnicos(DatabaseMetaData metaData) throws SQLException {
+        String tabela = metaData.storesUpperCaseIdentifiers() ? TABELA.toUpperCase(Locale.ROOT) : TABELA;
+        Map<String, List<String>> indices = new HashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(null, null, tabela, true, false)) {
+            while (rs.next()) {
+                String coluna = rs.getString("COLUMN_NAME");
+                if (coluna != null) {
+                    indices.computeIfAbsent(rs.getString("INDEX_NAME"), nome -> new ArrayList<>())
+                            .add(coluna.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return indices;
+    }
+
+    private boolean particionada() {
+        return "p".equals(jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, TABELA));
+    }
+
+    private boolean existe(String tabela) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, tabela));
+    }
+
+    static String particao(YearMonth mes) {
+        return PREFIXO_PARTICAO + mes.format(SUFIXO_MES);
+    }
+}
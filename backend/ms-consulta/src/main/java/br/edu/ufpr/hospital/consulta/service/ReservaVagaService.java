@@ -0,0 +1,75 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.exception.ConsultaIndisponivelException;
+import br.edu.ufpr.hospital.consulta.exception.ConsultaNaoEncontradaException;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Slot reservation engine for consultations
+ * Occupies and releases slots with a single conditional UPDATE in the database,
+ * so concurrent bookings (even across ms-consulta replicas) can never oversell
+ * a consultation or lose an occupancy update
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class ReservaVagaService {
+
+    private final ConsultaRepository consultaRepository;
+
+    public ReservaVagaService(ConsultaRepository consultaRepository) {
+        this.consultaRepository = consultaRepository;
+    }
+
+    /**
+     * Reserve one slot of the consultation
+     * The row stays locked until the caller's transaction ends, so a later failure
+     * in the booking flow rolls the reservation back together with the booking
+     *
+     * @param consultaId The consultation ID
+     * @return The consultation reloaded with its updated occupancy
+     * @throws ConsultaIndisponivelException if the consultation is full or not available
+     */
+    public Consulta reservarVaga(Long consultaId) {
+        int atualizadas = consultaRepository.ocuparVagaSeDisponivel(consultaId, StatusConsulta.DISPONIVEL);
+
+        Consulta consulta = consultaRepository.findById(consultaId)
+                .orElseThrow(() -> new ConsultaNaoEncontradaException("Consulta não encontrada"));
+
+        if (atualizadas == 0) {
+            if (consulta.getStatus() != StatusConsulta.DISPONIVEL) {
+                throw new ConsultaIndisponivelException("Consulta não está disponível para agendamento");
+            }
+            throw new ConsultaIndisponivelException("Consulta sem vagas disponíveis");
+        }
+
+        return consulta;
+    }
+
+    /**
+     * Lock the consultation row until the caller's transaction ends
+     * Used where occupancy alone is not enough to decide (e.g. handing a freed slot
+     * to the waitlist, or joining the waitlist of a full consultation)
+     *
+     * @param consultaId The consultation ID
+     * @return The locked consultation
+     */
+    public Consulta bloquearConsulta(Long consultaId) {
+        return consultaRepository.bloquearPorId(consultaId)
+                .orElseThrow(() -> new ConsultaNaoEncontradaException("Consulta não encontrada"));
+    }
+
+    /**
+     * Release one slot of the consultation
+     *
+     * @param consultaId The consultation ID
+     * @return true if a slot was released, false if there was nothing to release
+     */
+    public boolean liberarVaga(Long consultaId) {
+        return consultaRepository.liberarVagaOcupada(consultaId) > 0;
+    }
+}
@@ -0,0 +1,94 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Retries consultation and booking operations that lost an optimistic-lock race
+ * Consulta and Agendamento are versioned, so a transaction that changes a row
+ * another transaction changed after it was read fails at flush/commit with
+ * OptimisticLockingFailureException instead of overwriting it. The whole
+ * operation then runs again in a new transaction, after a jittered exponential
+ * backoff (Resilience4j retry instance consultaConcorrencia), re-reading the
+ * current state and re-checking its business rules. Collisions, retries and
+ * operations that ran out of attempts are counted per operation
+ */
+@Service
+@Slf4j
+public class RetentativaConcorrenciaService {
+
+    static final String INSTANCIA = "consultaConcorrencia";
+
+    static final String METRICA_COLISOES = "consulta.concorrencia.colisoes";
+    static final String METRICA_RETENTATIVAS = "consulta.concorrencia.retentativas";
+    static final String METRICA_ESGOTADAS = "consulta.concorrencia.esgotadas";
+
+    private final Retry retry;
+    private final MeterRegistry meterRegistry;
+
+    public RetentativaConcorrenciaService(RetryRegistry retentativas, MeterRegistry meterRegistry) {
+        this.retry = retentativas.retry(INSTANCIA);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run an operation that opens its own transaction (a ConsultaService call),
+     * retrying it while it collides with concurrent updates
+     *
+     * @param operacao Operation name used as metric tag (see MetricasConsultaService)
+     * @return The operation's result
+     * @throws OptimisticLockingFailureException once the attempts are exhausted
+     */
+    public <T> T executar(String operacao, Supplier<T> acao) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Inside the caller's transaction a new attempt would reuse its stale state
+            return acao.get();
+        }
+
+        AtomicInteger tentativas = new AtomicInteger();
+        Supplier<T> tentativa = () -> {
+            if (tentativas.getAndIncrement() > 0) {
+                contador(METRICA_RETENTATIVAS, "Novas tentativas após colisão de versão", operacao).increment();
+            }
+            try {
+                return acao.get();
+            } catch (OptimisticLockingFailureException e) {
+                contador(METRICA_COLISOES, "Colisões de versão (lock otimista) em consultas e agendamentos",
+                        operacao).increment();
+                throw e;
+            }
+        };
+
+        try {
+            return Retry.decorateSupplier(retry, tentativa).get();
+        } catch (OptimisticLockingFailureException e) {
+            contador(METRICA_ESGOTADAS, "Operações que esgotaram as tentativas por colisão de versão", operacao)
+                    .increment();
+            log.warn("Operation {} gave up after {} optimistic-lock collisions", operacao, tentativas.get());
+            throw e;
+        }
+    }
+
+    public void executar(String operacao, Runnable acao) {
+        executar(operacao, () -> {
+            acao.run();
+            return null;
+        });
+    }
+
+    private Counter contador(String nome, String descricao, String operacao) {
+        return Counter.builder(nome)
+                .description(descricao)
+                .tag("operacao", operacao)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,64 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Issues the service-to-service token used by background calls to ms-paciente
+ * Background jobs have no user request to borrow a token from, so ms-consulta
+ * signs its own short-lived token (tipo = SERVICO) with the shared JWT secret
+ */
+@Service
+public class TokenServicoService {
+
+    private static final Duration VALIDADE = Duration.ofMinutes(5);
+    private static final Duration RENOVACAO_ANTECIPADA = Duration.ofMinutes(1);
+
+    private final JwtEncoder encoder;
+
+    private volatile String token;
+    private volatile Instant expiraEm = Instant.EPOCH;
+
+    public TokenServicoService(@Value("${jwt.secret}") String jwtSecret) {
+        SecretKeySpec chave = new SecretKeySpec(jwtSecret.getBytes(), "HmacSHA256");
+        this.encoder = new NimbusJwtEncoder(new ImmutableSecret<>(chave));
+    }
+
+    /**
+     * Authorization header value for service calls, reusing the current token until close to expiry
+     */
+    public String obterAuthorization() {
+        if (Instant.now().isAfter(expiraEm.minus(RENOVACAO_ANTECIPADA))) {
+            renovar();
+        }
+        return "Bearer " + token;
+    }
+
+    private synchronized void renovar() {
+        Instant agora = Instant.now();
+        if (agora.isBefore(expiraEm.minus(RENOVACAO_ANTECIPADA))) {
+            return;
+        }
+        Instant expiracao = agora.plus(VALIDADE);
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject("ms-consulta")
+                .claim("tipo", "SERVICO")
+                .issuedAt(agora)
+                .expiresAt(expiracao)
+                .build();
+        token = encoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims))
+                .getTokenValue();
+        expiraEm = expiracao;
+    }
+}
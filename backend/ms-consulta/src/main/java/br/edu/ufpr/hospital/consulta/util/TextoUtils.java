@@ -0,0 +1,29 @@
+package br.edu.ufpr.hospital.consulta.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utilitários de texto usados nas buscas em memória
+ */
+public final class TextoUtils {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+
+    private TextoUtils() {
+    }
+
+    /**
+     * Normaliza um nome para comparação: remove acentos, converte para minúsculas
+     * e colapsa espaços (ex: "Dr. José  Álvares" -> "dr. jose alvares")
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String semAcentos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACOS.matcher(semAcentos.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+}
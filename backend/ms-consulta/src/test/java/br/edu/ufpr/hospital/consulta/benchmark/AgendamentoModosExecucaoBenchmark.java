@@ -0,0 +1,232 @@
+package br.edu.ufpr.hospital.consulta.benchmark;
+
+import br.edu.ufpr.hospital.consulta.MsConsultaApplication;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load benchmark of POST /agendamentos/consulta/{id} in the two execution modes
+ * (platform-thread Tomcat pool vs spring.threads.virtual.enabled=true), with
+ * ms-paciente replaced by a local stub that answers balance lookups after a
+ * fixed delay. Prints throughput and p50/p99 latency for each mode.
+ *
+ * Run with: mvn test -Pbenchmark
+ * Tunable with -Dbenchmark.requisicoes, -Dbenchmark.concorrencia and
+ * -Dbenchmark.latencia-paciente-ms
+ */
+@Tag("benchmark")
+class AgendamentoModosExecucaoBenchmark {
+
+    private static final int REQUISICOES = Integer.getInteger("benchmark.requisicoes", 2000);
+    private static final int AQUECIMENTO = Integer.getInteger("benchmark.aquecimento", 200);
+    private static final int CONCORRENCIA = Integer.getInteger("benchmark.concorrencia", 200);
+    private static final long LATENCIA_PACIENTE_MS = Long.getLong("benchmark.latencia-paciente-ms", 200);
+    private static final int CONSULTAS = 50;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void compararModosDeExecucao() throws Exception {
+        HttpServer pacienteSimulado = iniciarPacienteSimulado();
+        try {
+            String urlPaciente = "http://localhost:" + pacienteSimulado.getAddress().getPort();
+            Resultado plataforma = medir("plataforma", false, urlPaciente);
+            Resultado virtual = medir("virtual", true, urlPaciente);
+
+            System.out.printf("%nPOST /agendamentos/consulta/{id} - %d requisições, %d simultâneas, "
+                    + "ms-paciente com %d ms de latência%n", REQUISICOES, CONCORRENCIA, LATENCIA_PACIENTE_MS);
+            System.out.printf("%-12s %10s %10s %10s %10s%n", "modo", "req/s", "p50 (ms)", "p99 (ms)", "erros");
+            for (Resultado r : List.of(plataforma, virtual)) {
+                System.out.printf("%-12s %10.1f %10.1f %10.1f %10d%n", r.modo(), r.vazao(), r.p50Ms(), r.p99Ms(),
+                        r.erros());
+            }
+
+            assertTrue(plataforma.erros() == 0 && virtual.erros() == 0, "Agendamentos falharam durante a carga");
+        } finally {
+            pacienteSimulado.stop(0);
+        }
+    }
+
+    private Resultado medir(String modo, boolean threadsVirtuais, String urlPaciente) throws Exception {
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(MsConsultaApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + threadsVirtuais,
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + modo
+                                + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                        "ms.paciente.url=" + urlPaciente,
+                        "logging.level.root=WARN",
+                        "logging.level.br.edu.ufpr.hospital=WARN")
+                .run()) {
+
+            int porta = Integer.parseInt(contexto.getEnvironment().getProperty("local.server.port"));
+            String segredo = contexto.getEnvironment().getProperty("jwt.secret");
+            List<Long> consultas = criarConsultas(contexto.getBean(ConsultaRepository.class));
+
+            try (HttpClient cliente = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build()) {
+                disparar(cliente, porta, segredo, consultas, 0, AQUECIMENTO);
+                return disparar(cliente, porta, segredo, consultas, AQUECIMENTO, REQUISICOES).comModo(modo);
+            }
+        }
+    }
+
+    private List<Long> criarConsultas(ConsultaRepository repository) {
+        int vagas = (REQUISICOES + AQUECIMENTO) / CONSULTAS + 1;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < CONSULTAS; i++) {
+            ids.add(repository.save(new Consulta("BENCH" + i, LocalDateTime.now().plusDays(7),
+                    "CARD", "Dr. Carga " + i, new BigDecimal("200.00"), vagas)).getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Fire {@code total} bookings, each for a distinct patient, keeping at most
+     * CONCORRENCIA requests in flight
+     */
+    private Resultado disparar(HttpClient cliente, int porta, String segredo, List<Long> consultas, int primeiro,
+            int total) throws Exception {
+        List<HttpRequest> requisicoes = new ArrayList<>(total);
+        for (int i = primeiro; i < primeiro + total; i++) {
+            Long consultaId = consultas.get(i % consultas.size());
+            requisicoes.add(HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + porta + "/agendamentos/consulta/" + consultaId))
+                    .header("Authorization", token(segredo, 100_000 + i))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"pontosUsados\": 1}"))
+                    .build());
+        }
+
+        long[] latencias = new long[total];
+        AtomicInteger erros = new AtomicInteger();
+        Semaphore emVoo = new Semaphore(CONCORRENCIA);
+        long inicio = System.nanoTime();
+        try (ExecutorService disparos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < total; i++) {
+                int indice = i;
+                emVoo.acquire();
+                disparos.submit(() -> {
+                    long t0 = System.nanoTime();
+                    try {
+                        HttpResponse<Void> resposta = cliente.send(requisicoes.get(indice),
+                                HttpResponse.BodyHandlers.discarding());
+                        if (resposta.statusCode() != 201) {
+                            erros.incrementAndGet();
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        erros.incrementAndGet();
+                    } finally {
+                        latencias[indice] = System.nanoTime() - t0;
+                        emVoo.release();
+                    }
+                });
+            }
+        }
+        long duracao = System.nanoTime() - inicio;
+
+        Arrays.sort(latencias);
+        return new Resultado(null, total / (duracao / 1e9), percentil(latencias, 0.50), percentil(latencias, 0.99),
+                erros.get());
+    }
+
+    private static double percentil(long[] ordenadas, double p) {
+        int indice = (int) Math.ceil(p * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, indice)] / 1e6;
+    }
+
+    private static String token(String segredo, int pacienteId) throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("paciente" + pacienteId + "@carga")
+                .claim("tipo", "PACIENTE")
+                .claim("pacienteId", pacienteId)
+                .expirationTime(new Date(System.currentTimeMillis() + 3_600_000))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        jwt.sign(new MACSigner(segredo.getBytes()));
+        return "Bearer " + jwt.serialize();
+    }
+
+    /**
+     * Stand-in for ms-paciente: balance lookups answer after LATENCIA_PACIENTE_MS,
+     * points batches are acknowledged item by item
+     */
+    private HttpServer iniciarPacienteSimulado() throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        servidor.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        servidor.createContext("/pacientes", troca -> {
+            try {
+                if ("PUT".equals(troca.getRequestMethod())) {
+                    responder(troca, confirmarLote(mapper.readTree(troca.getRequestBody())));
+                } else {
+                    Thread.sleep(LATENCIA_PACIENTE_MS);
+                    responder(troca, "{\"saldoAtual\": 1000}");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                troca.close();
+            }
+        });
+        servidor.start();
+        return servidor;
+    }
+
+    private String confirmarLote(JsonNode operacoes) {
+        ArrayNode resultados = mapper.createArrayNode();
+        operacoes.forEach(op -> resultados.addObject()
+                .put("chaveIdempotencia", op.path("chaveIdempotencia").asText())
+                .put("pacienteId", op.path("pacienteId").asInt())
+                .put("sucesso", true));
+        return resultados.toString();
+    }
+
+    private static void responder(HttpExchange troca, String corpo) throws IOException {
+        byte[] bytes = corpo.getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().add("Content-Type", "application/json");
+        troca.sendResponseHeaders(200, bytes.length);
+        troca.getResponseBody().write(bytes);
+    }
+
+    private record Resultado(String modo, double vazao, double p50Ms, double p99Ms, int erros) {
+
+        Resultado comModo(String modo) {
+            return new Resultado(modo, vazao, p50Ms, p99Ms, erros);
+        }
+    }
+}
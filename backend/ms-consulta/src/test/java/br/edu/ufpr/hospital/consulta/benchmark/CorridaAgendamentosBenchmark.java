@@ -0,0 +1,609 @@
+package br.edu.ufpr.hospital.consulta.benchmark;
+
+import br.edu.ufpr.hospital.consulta.MsConsultaApplication;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.service.BuscaMedicosService;
+import br.edu.ufpr.hospital.consulta.service.IndiceDisponibilidadeService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Booking-rush load harness: the slots of a popular specialist open and
+ * thousands of patients search and book at once.
+ *
+ * Boots ms-consulta in-process and ms-paciente as a child process
+ * ({@code spring-boot:run} on its H2 test classpath), both on in-memory
+ * databases. ms-autenticacao is not needed: patient and employee JWTs are
+ * minted locally with the shared secret. Patients are registered and credited
+ * through the ms-paciente API, then arrive uniformly over the ramp; each one
+ * searches (by specialty or by doctor name), picks a consultation that still
+ * shows free slots and books it, half of them paying with points.
+ *
+ * The report has HdrHistogram latency percentiles per operation (also written
+ * as .hgrm files under target/carga), responses grouped by status and error
+ * code, and a consistency check after the rush: no consultation booked past
+ * its slots, the occupancy counter matching the active bookings, no repeated
+ * booking code, and every patient's points balance in ms-paciente matching the
+ * bookings that used points once the outbox has drained.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=CorridaAgendamentosBenchmark
+ * Tunable with -Dcarga.pacientes, -Dcarga.consultas, -Dcarga.vagas,
+ * -Dcarga.rampa-ms, -Dcarga.concorrencia, -Dcarga.pontos-por-agendamento and
+ * -Dcarga.threads-virtuais; -Dcarga.paciente.url targets an ms-paciente that is
+ * already running instead of starting one
+ */
+@Tag("benchmark")
+class CorridaAgendamentosBenchmark {
+
+    private static final int PACIENTES = Integer.getInteger("carga.pacientes", 2000);
+    private static final int CONSULTAS = Integer.getInteger("carga.consultas", 4);
+    private static final int VAGAS = Integer.getInteger("carga.vagas", 25);
+    private static final long RAMPA_MS = Long.getLong("carga.rampa-ms", 1000);
+    private static final int CONCORRENCIA = Integer.getInteger("carga.concorrencia", 400);
+    private static final int PONTOS_INICIAIS = Integer.getInteger("carga.pontos-iniciais", 20);
+    private static final int PONTOS_POR_AGENDAMENTO = Integer.getInteger("carga.pontos-por-agendamento", 2);
+    private static final boolean THREADS_VIRTUAIS = Boolean.getBoolean("carga.threads-virtuais");
+    private static final long TIMEOUT_MS = Long.getLong("carga.timeout-ms", 30_000);
+    private static final long ESPERA_PONTOS_MS = Long.getLong("carga.espera-pontos-ms", 60_000);
+    private static final long INICIO_PACIENTE_MS = Long.getLong("carga.paciente.inicio-ms", 180_000);
+    private static final String URL_PACIENTE = System.getProperty("carga.paciente.url");
+    private static final String PROJETO_PACIENTE = System.getProperty("carga.paciente.projeto", "../ms-paciente");
+    private static final String MAVEN = System.getProperty("carga.maven", "mvn");
+
+    private static final Path SAIDA = Path.of("target", "carga");
+    private static final String ESPECIALIDADE = "CARD";
+    private static final String MEDICO = "Dra. Especialista Concorrida";
+    private static final long LATENCIA_MAXIMA_US = TimeUnit.MINUTES.toMicros(5);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void corridaDeAgendamentos() throws Exception {
+        Files.createDirectories(SAIDA);
+        try (MsPaciente msPaciente = iniciarMsPaciente();
+                ConfigurableApplicationContext msConsulta = iniciarMsConsulta(msPaciente.url());
+                HttpClient cliente = HttpClient.newBuilder()
+                        .executor(Executors.newVirtualThreadPerTaskExecutor())
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .build()) {
+
+            String urlConsulta = "http://localhost:" + msConsulta.getEnvironment().getProperty("local.server.port");
+            String segredo = msConsulta.getEnvironment().getProperty("jwt.secret");
+            String tokenFuncionario = token(segredo, "FUNCIONARIO", "funcionario@carga", null, 1);
+
+            List<Long> consultas = criarConsultas(msConsulta.getBean(ConsultaRepository.class));
+            // Inseridas direto no repositório: os índices de busca precisam ser recarregados
+            msConsulta.getBean(IndiceDisponibilidadeService.class).reconstruir();
+            msConsulta.getBean(BuscaMedicosService.class).reconstruir();
+            List<PacienteCarga> pacientes = cadastrarPacientes(cliente, msPaciente.url(), segredo, tokenFuncionario);
+
+            Medicao medicao = executarCorrida(cliente, urlConsulta, pacientes);
+            Verificacao verificacao = verificar(msConsulta, cliente, msPaciente.url(), tokenFuncionario, consultas,
+                    pacientes, medicao);
+
+            String relatorio = relatorio(medicao, verificacao);
+            System.out.println(relatorio);
+            Files.writeString(SAIDA.resolve("relatorio.txt"), relatorio);
+            gravarHistogramas(medicao);
+
+            assertTrue(verificacao.consultasComExcesso() == 0, "Consultas com mais agendamentos do que vagas");
+            assertTrue(verificacao.contadoresDivergentes() == 0, "Vagas ocupadas divergem dos agendamentos ativos");
+            assertTrue(verificacao.codigosRepetidos() == 0, "Códigos de agendamento repetidos");
+            assertTrue(verificacao.saldosDivergentes() == 0, "Saldos de pontos divergem dos agendamentos");
+        }
+    }
+
+    // ========== AMBIENTE ==========
+
+    /**
+     * ms-paciente on its test classpath (H2 in memory), or the one given by carga.paciente.url
+     */
+    private MsPaciente iniciarMsPaciente() throws Exception {
+        if (URL_PACIENTE != null) {
+            return new MsPaciente(URL_PACIENTE, null);
+        }
+        int porta = portaLivre();
+        Path projeto = Path.of(PROJETO_PACIENTE).toAbsolutePath().normalize();
+        ProcessBuilder comando = new ProcessBuilder(MAVEN, "-q", "-f", projeto.resolve("pom.xml").toString(),
+                "spring-boot:run", "-Dspring-boot.run.useTestClasspath=true")
+                .redirectErrorStream(true)
+                .redirectOutput(SAIDA.resolve("ms-paciente.log").toFile());
+        // Variáveis de ambiente têm precedência sobre o application.properties do ms-paciente
+        Map<String, String> ambiente = comando.environment();
+        ambiente.put("SERVER_PORT", String.valueOf(porta));
+        ambiente.put("SPRING_DATASOURCE_URL", "jdbc:h2:mem:carga-paciente;DB_CLOSE_DELAY=-1");
+        ambiente.put("SPRING_DATASOURCE_USERNAME", "sa");
+        ambiente.put("SPRING_DATASOURCE_PASSWORD", "");
+        ambiente.put("SPRING_JPA_PROPERTIES_HIBERNATE_DIALECT", "org.hibernate.dialect.H2Dialect");
+        ambiente.put("SPRING_DEVTOOLS_RESTART_ENABLED", "false");
+        ambiente.put("LOGGING_LEVEL_ROOT", "WARN");
+        ambiente.put("LOGGING_LEVEL_BR_EDU_UFPR_HOSPITAL", "WARN");
+        Process processo = comando.start();
+        MsPaciente msPaciente = new MsPaciente("http://localhost:" + porta, processo);
+
+        try (HttpClient cliente = HttpClient.newHttpClient()) {
+            HttpRequest saude = HttpRequest.newBuilder(URI.create(msPaciente.url() + "/actuator/health")).build();
+            long limite = System.currentTimeMillis() + INICIO_PACIENTE_MS;
+            while (System.currentTimeMillis() < limite && processo.isAlive()) {
+                try {
+                    if (cliente.send(saude, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return msPaciente;
+                    }
+                } catch (IOException e) {
+                    // Ainda subindo
+                }
+                Thread.sleep(500);
+            }
+        }
+        msPaciente.close();
+        throw new IllegalStateException("ms-paciente não respondeu; veja " + SAIDA.resolve("ms-paciente.log"));
+    }
+
+    private ConfigurableApplicationContext iniciarMsConsulta(String urlPaciente) {
+        return new SpringApplicationBuilder(MsConsultaApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + THREADS_VIRTUAIS,
+                        "spring.datasource.url=jdbc:h2:mem:carga;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "ms.paciente.url=" + urlPaciente,
+                        "logging.level.root=WARN",
+                        "logging.level.br.edu.ufpr.hospital=WARN")
+                .run();
+    }
+
+    private List<Long> criarConsultas(ConsultaRepository repository) {
+        LocalDateTime abertura = LocalDateTime.now().plusDays(3).withHour(8).withMinute(0).withSecond(0).withNano(0);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < CONSULTAS; i++) {
+            ids.add(repository.save(new Consulta("RUSH" + i, abertura.plusHours(i), ESPECIALIDADE, MEDICO,
+                    new BigDecimal("300.00"), VAGAS)).getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Register the patients in ms-paciente and credit their points; CPFs and
+     * e-mails are unique per run so an external ms-paciente can be reused
+     */
+    private List<PacienteCarga> cadastrarPacientes(HttpClient cliente, String urlPaciente, String segredo,
+            String tokenFuncionario) throws Exception {
+        int execucao = (int) (System.currentTimeMillis() / 1000 % 9000);
+        PacienteCarga[] pacientes = new PacienteCarga[PACIENTES];
+        Semaphore emVoo = new Semaphore(50);
+        try (ExecutorService cadastros = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < PACIENTES; i++) {
+                int indice = i;
+                emVoo.acquire();
+                cadastros.submit(() -> {
+                    try {
+                        pacientes[indice] = cadastrarPaciente(cliente, urlPaciente, segredo, tokenFuncionario,
+                                indice, 100_000_000 + execucao * 100_000 + indice);
+                        return null;
+                    } finally {
+                        emVoo.release();
+                    }
+                });
+            }
+        }
+        for (PacienteCarga paciente : pacientes) {
+            if (paciente == null) {
+                throw new IllegalStateException("Falha ao cadastrar os pacientes da carga");
+            }
+        }
+        return List.of(pacientes);
+    }
+
+    private PacienteCarga cadastrarPaciente(HttpClient cliente, String urlPaciente, String segredo,
+            String tokenFuncionario, int indice, int documento) throws Exception {
+        String cadastro = mapper.createObjectNode()
+                .put("usuarioId", documento)
+                .put("cpf", cpf(documento))
+                .put("nome", "Paciente Carga " + indice)
+                .put("email", "carga" + documento + "@carga.local")
+                .put("cep", "80060000")
+                .put("logradouro", "Rua XV de Novembro")
+                .put("bairro", "Centro")
+                .put("cidade", "Curitiba")
+                .put("estado", "PR")
+                .put("dataNascimento", "01/01/1990")
+                .put("telefone", "41999990000")
+                .toString();
+        HttpResponse<String> resposta = cliente.send(HttpRequest.newBuilder(
+                        URI.create(urlPaciente + "/pacientes/cadastro"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cadastro))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (resposta.statusCode() != 201) {
+            throw new IllegalStateException("Cadastro recusado pelo ms-paciente: " + resposta.body());
+        }
+        int pacienteId = mapper.readTree(resposta.body()).path("id").asInt();
+
+        if (PONTOS_INICIAIS > 0) {
+            String credito = mapper.createObjectNode()
+                    .put("pontos", PONTOS_INICIAIS)
+                    .put("descricao", "Crédito para a carga")
+                    .put("origem", "COMPRA")
+                    .toString();
+            cliente.send(HttpRequest.newBuilder(
+                            URI.create(urlPaciente + "/pacientes/" + pacienteId + "/adicionar-pontos"))
+                    .header("Authorization", tokenFuncionario)
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(credito))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+        }
+
+        int pontos = indice % 2 == 0 ? Math.min(PONTOS_POR_AGENDAMENTO, PONTOS_INICIAIS) : 0;
+        String token = token(segredo, "PACIENTE", "carga" + documento + "@carga.local", pacienteId, documento);
+        return new PacienteCarga(indice, pacienteId, token, pontos);
+    }
+
+    // ========== CORRIDA ==========
+
+    private Medicao executarCorrida(HttpClient cliente, String urlConsulta, List<PacienteCarga> pacientes)
+            throws Exception {
+        Medicao medicao = new Medicao();
+        Semaphore emVoo = new Semaphore(CONCORRENCIA);
+        long rampaNs = TimeUnit.MILLISECONDS.toNanos(RAMPA_MS);
+        long inicio = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        try (ExecutorService chegadas = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (PacienteCarga paciente : pacientes) {
+                long chegada = inicio + rampaNs * paciente.indice() / PACIENTES;
+                chegadas.submit(() -> {
+                    LockSupport.parkNanos(chegada - System.nanoTime());
+                    emVoo.acquire();
+                    try {
+                        jornada(cliente, urlConsulta, paciente, chegada, medicao);
+                    } finally {
+                        emVoo.release();
+                    }
+                    return null;
+                });
+            }
+        }
+        medicao.duracaoNs = System.nanoTime() - inicio;
+        return medicao;
+    }
+
+    /**
+     * One patient: search, pick a consultation that still shows free slots, book it
+     */
+    private void jornada(HttpClient cliente, String urlConsulta, PacienteCarga paciente, long chegada,
+            Medicao medicao) throws Exception {
+        String busca = paciente.indice() / 2 % 2 == 0
+                ? urlConsulta + "/consultas/buscar/especialidade/" + ESPECIALIDADE
+                : urlConsulta + "/consultas/buscar/medico?medico="
+                        + URLEncoder.encode("especialista concorrida", StandardCharsets.UTF_8);
+        HttpResponse<String> resultado = enviar(cliente, HttpRequest.newBuilder(URI.create(busca))
+                .header("Authorization", paciente.token())
+                .GET(), "busca", medicao.busca, medicao);
+        if (resultado == null || resultado.statusCode() != 200) {
+            return;
+        }
+
+        List<Long> comVagas = new ArrayList<>();
+        for (JsonNode consulta : mapper.readTree(resultado.body())) {
+            if (consulta.path("vagasDisponiveis").asInt() > 0) {
+                comVagas.add(consulta.path("id").asLong());
+            }
+        }
+        if (comVagas.isEmpty()) {
+            medicao.contar("busca sem vagas");
+            return;
+        }
+        Long consultaId = comVagas.get(ThreadLocalRandom.current().nextInt(comVagas.size()));
+
+        HttpResponse<String> agendamento = enviar(cliente, HttpRequest.newBuilder(
+                        URI.create(urlConsulta + "/agendamentos/consulta/" + consultaId))
+                .header("Authorization", paciente.token())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"pontosUsados\": " + paciente.pontos() + "}")),
+                "agendamento", medicao.agendamento, medicao);
+        if (agendamento != null && agendamento.statusCode() == 201) {
+            medicao.chegadaAteAgendado.recordValue(
+                    Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - chegada), LATENCIA_MAXIMA_US));
+            medicao.confirmados.add(new Confirmacao(paciente, consultaId,
+                    mapper.readTree(agendamento.body()).path("codigoAgendamento").asText()));
+        }
+    }
+
+    /**
+     * Send a request, record its latency and classify the outcome by status and
+     * error code (or by exception when there is no response)
+     */
+    private HttpResponse<String> enviar(HttpClient cliente, HttpRequest.Builder requisicao, String operacao,
+            Histogram latencias, Medicao medicao) throws InterruptedException {
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<String> resposta = cliente.send(requisicao.timeout(Duration.ofMillis(TIMEOUT_MS)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            latencias.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - t0), LATENCIA_MAXIMA_US));
+            String desfecho = operacao + " " + resposta.statusCode();
+            if (resposta.statusCode() >= 400) {
+                desfecho += " " + codigoErro(resposta.body());
+            }
+            medicao.contar(desfecho.strip());
+            return resposta;
+        } catch (IOException e) {
+            medicao.contar(operacao + " " + e.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    private String codigoErro(String corpo) {
+        try {
+            return mapper.readTree(corpo).path("codigo").asText("");
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    // ========== VERIFICAÇÃO ==========
+
+    private Verificacao verificar(ConfigurableApplicationContext msConsulta, HttpClient cliente, String urlPaciente,
+            String tokenFuncionario, List<Long> consultas, List<PacienteCarga> pacientes, Medicao medicao)
+            throws Exception {
+        ConsultaRepository consultaRepository = msConsulta.getBean(ConsultaRepository.class);
+        AgendamentoRepository agendamentoRepository = msConsulta.getBean(AgendamentoRepository.class);
+
+        Map<Long, Integer> confirmadosPorConsulta = new TreeMap<>();
+        Map<Integer, Integer> pontosUsados = new ConcurrentHashMap<>();
+        Set<String> codigos = new HashSet<>();
+        int codigosRepetidos = 0;
+        for (Confirmacao confirmacao : medicao.confirmados) {
+            confirmadosPorConsulta.merge(confirmacao.consultaId(), 1, Integer::sum);
+            pontosUsados.merge(confirmacao.paciente().pacienteId(), confirmacao.paciente().pontos(), Integer::sum);
+            if (!codigos.add(confirmacao.codigoAgendamento())) {
+                codigosRepetidos++;
+            }
+        }
+
+        List<String> ocupacao = new ArrayList<>();
+        int consultasComExcesso = 0;
+        int contadoresDivergentes = 0;
+        for (Long consultaId : consultas) {
+            Consulta consulta = consultaRepository.findById(consultaId).orElseThrow();
+            int ativos = agendamentoRepository.countActiveBookingsByConsulta(consultaId);
+            int confirmados = confirmadosPorConsulta.getOrDefault(consultaId, 0);
+            if (Math.max(consulta.getVagasOcupadas(), Math.max(ativos, confirmados)) > consulta.getVagas()) {
+                consultasComExcesso++;
+            }
+            if (consulta.getVagasOcupadas() != ativos) {
+                contadoresDivergentes++;
+            }
+            ocupacao.add(String.format("  consulta %-6d vagas %4d   ocupadas %4d   ativos %4d   respostas 201 %4d",
+                    consultaId, consulta.getVagas(), consulta.getVagasOcupadas(), ativos, confirmados));
+        }
+
+        // Os débitos de pontos saem pelo outbox depois do commit: aguarda o relay drenar
+        long inicioEspera = System.currentTimeMillis();
+        int saldosDivergentes;
+        do {
+            saldosDivergentes = contarSaldosDivergentes(cliente, urlPaciente, tokenFuncionario, pacientes,
+                    pontosUsados);
+            if (saldosDivergentes == 0) {
+                break;
+            }
+            Thread.sleep(1000);
+        } while (System.currentTimeMillis() - inicioEspera < ESPERA_PONTOS_MS);
+
+        return new Verificacao(ocupacao, consultasComExcesso, contadoresDivergentes, codigosRepetidos,
+                saldosDivergentes, System.currentTimeMillis() - inicioEspera);
+    }
+
+    private int contarSaldosDivergentes(HttpClient cliente, String urlPaciente, String tokenFuncionario,
+            List<PacienteCarga> pacientes, Map<Integer, Integer> pontosUsados) throws Exception {
+        LongAdder divergentes = new LongAdder();
+        Semaphore emVoo = new Semaphore(50);
+        try (ExecutorService consultas = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (PacienteCarga paciente : pacientes) {
+                emVoo.acquire();
+                consultas.submit(() -> {
+                    try {
+                        HttpResponse<String> resposta = cliente.send(HttpRequest.newBuilder(URI.create(
+                                        urlPaciente + "/pacientes/" + paciente.pacienteId() + "/saldo"))
+                                .header("Authorization", tokenFuncionario)
+                                .build(), HttpResponse.BodyHandlers.ofString());
+                        BigDecimal esperado = BigDecimal.valueOf(
+                                PONTOS_INICIAIS - pontosUsados.getOrDefault(paciente.pacienteId(), 0));
+                        BigDecimal saldo = resposta.statusCode() == 200
+                                ? mapper.readTree(resposta.body()).path("saldoAtual").decimalValue()
+                                : null;
+                        if (saldo == null || saldo.compareTo(esperado) != 0) {
+                            divergentes.increment();
+                        }
+                        return null;
+                    } finally {
+                        emVoo.release();
+                    }
+                });
+            }
+        }
+        return divergentes.intValue();
+    }
+
+    // ========== RELATÓRIO ==========
+
+    private String relatorio(Medicao medicao, Verificacao verificacao) {
+        StringBuilder texto = new StringBuilder();
+        double duracaoS = medicao.duracaoNs / 1e9;
+        long requisicoes = medicao.busca.getTotalCount() + medicao.agendamento.getTotalCount();
+        texto.append(String.format("%nCorrida de agendamentos - %d pacientes em %d ms, %d consultas x %d vagas, "
+                        + "até %d requisições simultâneas, threads virtuais: %s%n",
+                PACIENTES, RAMPA_MS, CONSULTAS, VAGAS, CONCORRENCIA, THREADS_VIRTUAIS));
+        texto.append(String.format("Duração %.2f s, %d requisições, %.1f req/s%n%n", duracaoS, requisicoes,
+                requisicoes / duracaoS));
+
+        texto.append(String.format("%-20s %8s %9s %9s %9s %9s %9s%n", "latência (ms)", "n", "p50", "p90", "p99",
+                "p99.9", "máx"));
+        linhaLatencia(texto, "busca", medicao.busca);
+        linhaLatencia(texto, "agendamento", medicao.agendamento);
+        linhaLatencia(texto, "chegada até agendado", medicao.chegadaAteAgendado);
+
+        texto.append(String.format("%nDesfechos%n"));
+        new TreeMap<>(medicao.desfechos).forEach((desfecho, total) ->
+                texto.append(String.format("  %-50s %8d%n", desfecho, total.sum())));
+
+        texto.append(String.format("%nVerificação%n"));
+        verificacao.ocupacao().forEach(linha -> texto.append(linha).append('\n'));
+        texto.append(String.format("  consultas com excesso de agendamentos   %d%n", verificacao.consultasComExcesso()));
+        texto.append(String.format("  contadores de vagas divergentes         %d%n", verificacao.contadoresDivergentes()));
+        texto.append(String.format("  códigos de agendamento repetidos        %d%n", verificacao.codigosRepetidos()));
+        texto.append(String.format("  saldos de pontos divergentes            %d (após %d ms)%n",
+                verificacao.saldosDivergentes(), verificacao.esperaPontosMs()));
+        return texto.toString();
+    }
+
+    private static void linhaLatencia(StringBuilder texto, String operacao, Histogram h) {
+        texto.append(String.format("%-20s %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", operacao, h.getTotalCount(),
+                h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+                h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0,
+                h.getMaxValue() / 1000.0));
+    }
+
+    /**
+     * Full percentile distributions in milliseconds, loadable in HdrHistogram's plotter
+     */
+    private static void gravarHistogramas(Medicao medicao) throws IOException {
+        for (Map.Entry<String, Histogram> h : Map.of("busca", medicao.busca, "agendamento", medicao.agendamento,
+                "chegada-ate-agendado", medicao.chegadaAteAgendado).entrySet()) {
+            try (PrintStream saida = new PrintStream(SAIDA.resolve(h.getKey() + ".hgrm").toFile(),
+                    StandardCharsets.UTF_8)) {
+                h.getValue().outputPercentileDistribution(saida, 1000.0);
+            }
+        }
+    }
+
+    // ========== APOIO ==========
+
+    private static String token(String segredo, String tipo, String email, Integer pacienteId, int usuarioId)
+            throws Exception {
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+                .subject(email)
+                .claim("tipo", tipo)
+                .claim("id", usuarioId)
+                .expirationTime(new Date(System.currentTimeMillis() + 3_600_000));
+        if (pacienteId != null) {
+            claims.claim("pacienteId", pacienteId);
+        }
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims.build());
+        jwt.sign(new MACSigner(segredo.getBytes()));
+        return "Bearer " + jwt.serialize();
+    }
+
+    /**
+     * Valid CPF (check digits included) for a 9-digit base
+     */
+    static String cpf(int base) {
+        int[] d = new int[11];
+        String digitos = String.format("%09d", base);
+        for (int i = 0; i < 9; i++) {
+            d[i] = digitos.charAt(i) - '0';
+        }
+        for (int n = 9; n <= 10; n++) {
+            int soma = 0;
+            for (int i = 0; i < n; i++) {
+                soma += d[i] * (n + 1 - i);
+            }
+            int resto = soma % 11;
+            d[n] = resto < 2 ? 0 : 11 - resto;
+        }
+        StringBuilder cpf = new StringBuilder();
+        for (int digito : d) {
+            cpf.append(digito);
+        }
+        return cpf.toString();
+    }
+
+    private static int portaLivre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private record MsPaciente(String url, Process processo) implements AutoCloseable {
+
+        @Override
+        public void close() throws InterruptedException {
+            if (processo == null) {
+                return;
+            }
+            // spring-boot:run sobe a aplicação num processo filho do Maven
+            processo.descendants().forEach(ProcessHandle::destroy);
+            processo.destroy();
+            processo.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private record PacienteCarga(int indice, int pacienteId, String token, int pontos) {
+    }
+
+    private record Confirmacao(PacienteCarga paciente, Long consultaId, String codigoAgendamento) {
+    }
+
+    private record Verificacao(List<String> ocupacao, int consultasComExcesso, int contadoresDivergentes,
+            int codigosRepetidos, int saldosDivergentes, long esperaPontosMs) {
+    }
+
+    private static final class Medicao {
+
+        final Histogram busca = new ConcurrentHistogram(LATENCIA_MAXIMA_US, 3);
+        final Histogram agendamento = new ConcurrentHistogram(LATENCIA_MAXIMA_US, 3);
+        final Histogram chegadaAteAgendado = new ConcurrentHistogram(LATENCIA_MAXIMA_US, 3);
+        final Map<String, LongAdder> desfechos = new ConcurrentHashMap<>();
+        final Queue<Confirmacao> confirmados = new ConcurrentLinkedQueue<>();
+        long duracaoNs;
+
+        void contar(String desfecho) {
+            desfechos.computeIfAbsent(desfecho, d -> new LongAdder()).increment();
+        }
+    }
+}
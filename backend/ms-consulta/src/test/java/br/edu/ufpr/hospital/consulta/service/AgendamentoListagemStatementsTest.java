@@ -0,0 +1,95 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Guards the booking listings against N+1 queries: each listing must issue a
+ * fixed number of statements regardless of how many bookings it returns
+ */
+@SpringBootTest
+class AgendamentoListagemStatementsTest {
+
+    private static final long MAX_STATEMENTS_POR_LISTAGEM = 1;
+    private static final int PACIENTE_ID = 77;
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long consultaComVariosAgendamentos;
+
+    @BeforeEach
+    void preparar() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (int i = 0; i < 6; i++) {
+            Consulta consulta = consultaRepository.save(new Consulta("N1-" + i, LocalDateTime.now().plusDays(i + 1),
+                    "ORTO", "Dr. Sem N+1", new BigDecimal("120.00"), 10));
+            for (int p = 0; p < 4; p++) {
+                int pacienteId = p == 0 ? PACIENTE_ID : 500 + i * 10 + p;
+                agendamentoRepository.save(new Agendamento("N1-" + i + "-" + p, pacienteId, consulta,
+                        BigDecimal.ONE, new BigDecimal("115.00")));
+            }
+            consultaComVariosAgendamentos = consulta.getId();
+        }
+    }
+
+    @AfterEach
+    void limpar() {
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+    }
+
+    @Test
+    void listagemDoPacienteUsaStatementsFixos() {
+        statistics.clear();
+        List<AgendamentoResponseDTO> agendamentos = consultaService.listarAgendamentosPaciente(PACIENTE_ID);
+
+        assertEquals(6, agendamentos.size());
+        assertNotNull(agendamentos.get(0).getConsulta().getCodigo());
+        assertEquals(0, new BigDecimal("120.00").compareTo(agendamentos.get(0).getValorTotal()));
+        assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS_POR_LISTAGEM,
+                "Statements executados: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void listagemPorConsultaUsaStatementsFixos() {
+        statistics.clear();
+        List<AgendamentoResponseDTO> agendamentos = consultaService
+                .buscarAgendamentosPorConsultaId(consultaComVariosAgendamentos);
+
+        assertEquals(4, agendamentos.size());
+        assertEquals(0, new BigDecimal("5.00").compareTo(agendamentos.get(0).getDescontoPontos()));
+        assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS_POR_LISTAGEM,
+                "Statements executados: " + statistics.getPrepareStatementCount());
+    }
+}
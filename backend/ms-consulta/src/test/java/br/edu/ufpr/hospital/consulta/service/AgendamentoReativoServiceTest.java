@@ -0,0 +1,134 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Exercises POST /agendamentos/consulta/{id} through the non-blocking flow: the
+ * request is handled asynchronously and the slot is only reserved once both
+ * the local checks and the (slow) remote balance check pass
+ */
+@SpringBootTest(properties = "outbox.pontos.intervalo-ms=3600000")
+@AutoConfigureMockMvc
+class AgendamentoReativoServiceTest {
+
+    private static final int PACIENTE_ID = 5150;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private OutboxPontosRepository outboxPontosRepository;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @AfterEach
+    void limpar() {
+        outboxPontosRepository.deleteAll();
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+    }
+
+    @Test
+    void agendaDeFormaAssincronaAposVerificarSaldo() throws Exception {
+        Consulta consulta = novaConsulta("REAT01");
+        when(pacienteIntegrationService.verificarSaldoPontosReativo(eq(PACIENTE_ID), anyString()))
+                .thenReturn(Mono.delay(Duration.ofMillis(200)).thenReturn(new BigDecimal("30")));
+
+        MvcResult resultado = mockMvc.perform(agendar(consulta, 10)).andReturn();
+        assertTrue(resultado.getRequest().isAsyncStarted());
+
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.pontosUsados").value(10))
+                .andExpect(jsonPath("$.valorPago").value(150.0));
+
+        assertEquals(1, consultaRepository.findById(consulta.getId()).orElseThrow().getVagasOcupadas());
+        assertEquals(1, agendamentoRepository.findByConsultaIdAndStatus(consulta.getId(), StatusAgendamento.CRIADO)
+                .size());
+    }
+
+    @Test
+    void saldoInsuficienteNaoReservaVaga() throws Exception {
+        Consulta consulta = novaConsulta("REAT02");
+        when(pacienteIntegrationService.verificarSaldoPontosReativo(eq(PACIENTE_ID), anyString()))
+                .thenReturn(Mono.delay(Duration.ofMillis(50)).thenReturn(new BigDecimal("3")));
+
+        MvcResult resultado = mockMvc.perform(agendar(consulta, 10)).andReturn();
+
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.codigo").value("SALDO_INSUFICIENTE"));
+
+        assertEquals(0, consultaRepository.findById(consulta.getId()).orElseThrow().getVagasOcupadas());
+    }
+
+    private Consulta novaConsulta(String codigo) {
+        return consultaRepository.save(new Consulta(codigo, LocalDateTime.now().plusDays(2),
+                "DERMA", "Dra. Reativa", new BigDecimal("200.00"), 3));
+    }
+
+    private RequestBuilder agendar(Consulta consulta, int pontos) throws Exception {
+        return post("/agendamentos/consulta/{id}", consulta.getId())
+                .header("Authorization", tokenPaciente())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"pontosUsados\": " + pontos + "}");
+    }
+
+    private String tokenPaciente() throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("paciente@teste")
+                .claim("tipo", "PACIENTE")
+                .claim("pacienteId", PACIENTE_ID)
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        jwt.sign(new MACSigner(jwtSecret.getBytes()));
+        return "Bearer " + jwt.serialize();
+    }
+}
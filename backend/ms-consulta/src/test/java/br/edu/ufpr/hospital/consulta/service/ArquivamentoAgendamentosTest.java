@@ -0,0 +1,148 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoArquivadoRepository;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks archival of closed bookings: only REALIZADO/FALTOU/CANCELADO bookings of
+ * consultations older than the horizon leave agendamentos, the archive keeps what
+ * a patient's history needs, history queries read the hot table first and
+ * the archive only when asked, and booking codes stay unique on the regular table
+ */
+@SpringBootTest(properties = {
+        "outbox.pontos.intervalo-ms=3600000",
+        "agendamentos.arquivamento.horizonte-dias=365"
+})
+class ArquivamentoAgendamentosTest {
+
+    private static final int PACIENTE = 9201;
+
+    @Autowired
+    private ArquivamentoAgendamentosService arquivamento;
+
+    @Autowired
+    private ParticionamentoAgendamentosService particionamento;
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private AgendamentoArquivadoRepository arquivoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    private Consulta antiga;
+
+    @BeforeEach
+    void preparar() {
+        antiga = consultaRepository.save(new Consulta("ARQ-ANTIGA", LocalDateTime.now().minusDays(400)
+                .truncatedTo(ChronoUnit.MINUTES), "CARD", "Dra. Arquivo", new BigDecimal("200.00"), 5));
+        Consulta recente = consultaRepository.save(new Consulta("ARQ-RECENTE", LocalDateTime.now().minusDays(10),
+                "CARD", "Dr. Recente", new BigDecimal("150.00"), 5));
+
+        agendar("AGD-ARQ1", PACIENTE, antiga, StatusAgendamento.REALIZADO);
+        agendar("AGD-ARQ2", PACIENTE, antiga, StatusAgendamento.CANCELADO);
+        agendar("AGD-ARQ3", 9202, antiga, StatusAgendamento.FALTOU);
+        agendar("AGD-ARQ4", PACIENTE, antiga, StatusAgendamento.CRIADO); // Not closed: stays
+        agendar("AGD-ARQ5", PACIENTE, recente, StatusAgendamento.REALIZADO); // Within the horizon: stays
+    }
+
+    @AfterEach
+    void limpar() {
+        arquivoRepository.deleteAll();
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+    }
+
+    @Test
+    void arquivaSomenteEncerradosAlemDoHorizonte() {
+        assertEquals(3, arquivamento.arquivarEncerrados());
+        assertEquals(0, arquivamento.arquivarEncerrados());
+
+        assertEquals(List.of("AGD-ARQ4", "AGD-ARQ5"), agendamentoRepository.findAll().stream()
+                .map(Agendamento::getCodigoAgendamento).sorted().toList());
+        assertEquals(List.of("AGD-ARQ1", "AGD-ARQ2", "AGD-ARQ3"), arquivoRepository.findAll().stream()
+                .map(a -> a.getCodigoAgendamento()).sorted().toList());
+    }
+
+    @Test
+    void historicoLeOArquivoSomenteQuandoPedido() {
+        arquivamento.arquivarEncerrados();
+
+        List<AgendamentoResponseDTO> atuais = consultaService.listarAgendamentosPaciente(PACIENTE, false);
+        assertEquals(2, atuais.size());
+
+        List<AgendamentoResponseDTO> completo = consultaService.listarAgendamentosPaciente(PACIENTE, true);
+        assertEquals(4, completo.size());
+        // Hot bookings first, then the archived ones
+        assertEquals(atuais.stream().map(AgendamentoResponseDTO::getCodigoAgendamento).toList(),
+                completo.subList(0, 2).stream().map(AgendamentoResponseDTO::getCodigoAgendamento).toList());
+        AgendamentoResponseDTO arquivado = completo.get(2);
+        assertTrue(List.of("AGD-ARQ1", "AGD-ARQ2").contains(arquivado.getCodigoAgendamento()));
+        assertEquals("Dra. Arquivo", arquivado.getConsulta().getMedico());
+        assertEquals(antiga.getDataHora(), arquivado.getConsulta().getDataHora());
+
+        List<AgendamentoResponseDTO> passados = agendamentoRepository.listarPassadosPorPaciente(PACIENTE,
+                LocalDateTime.now(), true);
+        assertEquals(List.of("AGD-ARQ5", "AGD-ARQ4"), passados.subList(0, 2).stream()
+                .map(AgendamentoResponseDTO::getCodigoAgendamento).toList());
+        assertEquals(4, passados.size());
+    }
+
+    @Test
+    void dataDaConsultaEhPreenchidaNosAgendamentosAntigos() {
+        jdbcTemplate.update("UPDATE agendamentos SET data_consulta = NULL WHERE codigo_agendamento = 'AGD-ARQ1'");
+
+        particionamento.preparar();
+
+        assertEquals(antiga.getDataHora(),
+                agendamentoRepository.findByCodigoAgendamento("AGD-ARQ1").orElseThrow().getDataConsulta());
+    }
+
+    @Test
+    void codigoDoAgendamentoEhUnicoNaTabelaNaoParticionada() {
+        // Not mapped on the entity: created by ParticionamentoAgendamentosService, once
+        particionamento.preparar();
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> agendar("AGD-ARQ5", 9203, antiga, StatusAgendamento.CRIADO));
+    }
+
+    private void agendar(String codigo, Integer pacienteId, Consulta consulta, StatusAgendamento status) {
+        Agendamento agendamento = new Agendamento(codigo, pacienteId, consulta, BigDecimal.ZERO, consulta.getValor());
+        agendamento.setStatus(status);
+        agendamentoRepository.save(agendamento);
+    }
+}
@@ -0,0 +1,140 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.ConsultaDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.MedicoEncontradoDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.Funcionario;
+import br.edu.ufpr.hospital.consulta.model.StatusFuncionario;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.FuncionarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Checks the trigram doctor search: accent- and case-insensitive ranked matches
+ * over employees and consultation doctor names, typo tolerance, incremental
+ * registration (also while a rebuild runs) and the fallback of the consultation
+ * search by doctor
+ */
+@SpringBootTest
+class BuscaMedicosServiceTest {
+
+    @Autowired
+    private BuscaMedicosService buscaMedicos;
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @MockitoSpyBean
+    private FuncionarioRepository funcionarioRepository;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    @BeforeEach
+    void preparar() {
+        funcionarioRepository.save(new Funcionario("Dr. José Álvares", "11111111111", "jose@hospital.com",
+                "41999990001", "CARD", "12345-PR"));
+        funcionarioRepository.save(new Funcionario("Dra. Josefina Prado", "22222222222", "josefina@hospital.com",
+                "41999990002", "PED", "23456-PR"));
+        funcionarioRepository.save(new Funcionario("Ana Recepção", "33333333333", "ana@hospital.com",
+                "41999990003"));
+        consultaRepository.save(new Consulta("BUSCA1", LocalDateTime.now().plusDays(3), "DERM",
+                "Dra. Maria da Conceição", new BigDecimal("150.00"), 5));
+        consultaRepository.save(new Consulta("BUSCA2", LocalDateTime.now().plusDays(4), "CARD",
+                "Dr. José Álvares", new BigDecimal("200.00"), 5));
+        buscaMedicos.reconstruir();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @AfterEach
+    void limpar() {
+        consultaRepository.deleteAll();
+        funcionarioRepository.deleteAll();
+        buscaMedicos.reconstruir();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @Test
+    void buscaIgnoraAcentosEOrdenaPelaSemelhanca() {
+        List<MedicoEncontradoDTO> medicos = buscaMedicos.buscar("JOSE", 10);
+
+        assertEquals(List.of("Dr. José Álvares", "Dra. Josefina Prado"),
+                medicos.stream().map(MedicoEncontradoDTO::getNome).toList());
+        assertEquals("12345-PR", medicos.get(0).getCrm());
+        assertEquals(1.0, medicos.get(0).getSimilaridade());
+
+        MedicoEncontradoDTO consultaApenas = buscaMedicos.buscar("conceicao", 10).get(0);
+        assertEquals("Dra. Maria da Conceição", consultaApenas.getNome());
+        assertEquals("DERM", consultaApenas.getEspecialidade());
+        assertNull(consultaApenas.getCrm());
+
+        // Employees without CRM are not doctors
+        assertTrue(buscaMedicos.buscar("recepcao", 10).isEmpty());
+    }
+
+    @Test
+    void buscaToleraErrosDeDigitacao() {
+        List<MedicoEncontradoDTO> medicos = buscaMedicos.buscar("alvarez", 10);
+
+        assertEquals(1, medicos.size());
+        assertEquals("Dr. José Álvares", medicos.get(0).getNome());
+        assertTrue(medicos.get(0).getSimilaridade() < 1.0);
+    }
+
+    @Test
+    void novaConsultaEntraNoIndiceAposCommit() {
+        ConsultaDTO dto = new ConsultaDTO();
+        dto.setDataHora(LocalDateTime.now().plusDays(6));
+        dto.setEspecialidade("ORTO");
+        dto.setMedico("Dr. Órion Başaran");
+        dto.setValor(new BigDecimal("180.00"));
+        dto.setVagas(2);
+        consultaService.criarConsulta(dto);
+
+        assertEquals("Dr. Órion Başaran", buscaMedicos.buscar("orion basaran", 1).get(0).getNome());
+    }
+
+    @Test
+    void nomeRegistradoDuranteAReconstrucaoNaoSePerde() {
+        List<Funcionario> ativos = funcionarioRepository.findByStatus(StatusFuncionario.ATIVO);
+        doAnswer(invocacao -> {
+            // Committed after the rebuild started reading, so the rebuild's query can't see it
+            buscaMedicos.registrarAposCommit("Dr. Ícaro Durante", "NEURO", "34567-PR");
+            return ativos;
+        }).when(funcionarioRepository).findByStatus(StatusFuncionario.ATIVO);
+
+        buscaMedicos.reconstruir();
+
+        assertEquals("Dr. Ícaro Durante", buscaMedicos.buscar("icaro durante", 1).get(0).getNome());
+        assertEquals("Dr. José Álvares", buscaMedicos.buscar("jose alvares", 1).get(0).getNome());
+    }
+
+    @Test
+    void buscaDeConsultasPorMedicoUsaNomesSemelhantesQuandoNadaContemOTexto() {
+        List<ConsultaResponseDTO> consultas = consultaService.buscarPorMedico("Alvarez", null);
+
+        assertEquals(List.of("BUSCA2"), consultas.stream().map(ConsultaResponseDTO::getCodigo).toList());
+    }
+}
@@ -0,0 +1,200 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.exception.CancelamentoInvalidoException;
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks optimistic versioning of consultations and bookings: a write based on
+ * a stale read is rejected instead of overwriting the newer state, colliding
+ * operations are retried (and metered) by RetentativaConcorrenciaService, and
+ * racing cancellations of one booking refund and free the slot exactly once
+ */
+@SpringBootTest(properties = "outbox.pontos.intervalo-ms=3600000")
+class ConcorrenciaOtimistaTest {
+
+    private static final int CANCELAMENTOS_SIMULTANEOS = 8;
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private RetentativaConcorrenciaService retentativas;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private OutboxPontosRepository outboxRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    private Consulta consulta;
+
+    @BeforeEach
+    void preparar() {
+        when(pacienteIntegrationService.verificarSaldoPontos(anyInt(), anyString())).thenReturn(new BigDecimal("50"));
+        consulta = consultaRepository.save(new Consulta("VERSAO1", LocalDateTime.now().plusDays(5), "CARD",
+                "Dra. Versão", new BigDecimal("200.00"), 3));
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @AfterEach
+    void limpar() {
+        outboxRepository.deleteAll();
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @Test
+    void gravacaoSobreLeituraDesatualizadaEhRejeitada() {
+        Consulta lida = consultaRepository.findById(consulta.getId()).orElseThrow();
+
+        // A booking takes a slot through the atomic UPDATE, which also bumps the version
+        consultaService.agendarConsulta(consulta.getId(), new AgendamentoDTO(), 9001, "Bearer teste");
+
+        lida.setStatus(StatusConsulta.CANCELADA);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> consultaRepository.save(lida));
+
+        Consulta atual = consultaRepository.findById(consulta.getId()).orElseThrow();
+        assertEquals(StatusConsulta.DISPONIVEL, atual.getStatus());
+        assertEquals(1, atual.getVagasOcupadas().intValue());
+        assertTrue(atual.getVersao() > lida.getVersao());
+    }
+
+    @Test
+    void colisaoEhRepetidaEContabilizada() {
+        double colisoesAntes = contagem(RetentativaConcorrenciaService.METRICA_COLISOES, "teste_colisao");
+        double retentativasAntes = contagem(RetentativaConcorrenciaService.METRICA_RETENTATIVAS, "teste_colisao");
+        AtomicInteger chamadas = new AtomicInteger();
+
+        String resultado = retentativas.executar("teste_colisao", () -> {
+            if (chamadas.incrementAndGet() <= 2) {
+                throw new ObjectOptimisticLockingFailureException(Consulta.class, consulta.getId());
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", resultado);
+        assertEquals(3, chamadas.get());
+        assertEquals(colisoesAntes + 2, contagem(RetentativaConcorrenciaService.METRICA_COLISOES, "teste_colisao"));
+        assertEquals(retentativasAntes + 2,
+                contagem(RetentativaConcorrenciaService.METRICA_RETENTATIVAS, "teste_colisao"));
+    }
+
+    @Test
+    void colisaoPersistenteEsgotaAsTentativas() {
+        AtomicInteger chamadas = new AtomicInteger();
+
+        assertThrows(OptimisticLockingFailureException.class, () -> retentativas.executar("teste_esgotada", () -> {
+            chamadas.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Consulta.class, consulta.getId());
+        }));
+
+        // resilience4j.retry.instances.consultaConcorrencia.max-attempts
+        assertEquals(4, chamadas.get());
+        assertEquals(1, contagem(RetentativaConcorrenciaService.METRICA_ESGOTADAS, "teste_esgotada"));
+    }
+
+    @Test
+    void cancelamentosSimultaneosEstornamELiberamAVagaUmaVez() throws Exception {
+        AgendamentoResponseDTO agendamento = consultaService.agendarConsulta(consulta.getId(),
+                new AgendamentoDTO(), 9002, "Bearer teste");
+        String codigo = agendamento.getCodigoAgendamento();
+        // Points without an outbox debit (deducted synchronously), so a cancellation must queue a refund;
+        // keeps the booking's own asynchronous debit dispatch out of the race
+        Agendamento comPontos = agendamentoRepository.findByCodigoAgendamento(codigo).orElseThrow();
+        comPontos.setPontosUsados(new BigDecimal("20"));
+        agendamentoRepository.save(comPontos);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CANCELAMENTOS_SIMULTANEOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Throwable>> resultados = new ArrayList<>();
+        for (int i = 0; i < CANCELAMENTOS_SIMULTANEOS; i++) {
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                try {
+                    retentativas.executar(MetricasConsultaService.CANCELAR_AGENDAMENTO,
+                            () -> consultaService.cancelarAgendamento(codigo, 9002));
+                    return null;
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            }));
+        }
+        largada.countDown();
+
+        int sucessos = 0;
+        for (Future<Throwable> resultado : resultados) {
+            Throwable falha = resultado.get(30, TimeUnit.SECONDS);
+            if (falha == null) {
+                sucessos++;
+            } else {
+                // Losers either see the committed cancellation on retry or lose the version race for good
+                assertTrue(falha instanceof CancelamentoInvalidoException
+                        || falha instanceof OptimisticLockingFailureException, falha.toString());
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, sucessos);
+        assertEquals(0, consultaRepository.findById(consulta.getId()).orElseThrow().getVagasOcupadas().intValue());
+        long estornos = outboxRepository.findAll().stream()
+                .filter(item -> OutboxPontosService.ORIGEM_CANCELAMENTO_AGENDAMENTO.equals(item.getOrigem()))
+                .count();
+        assertEquals(1, estornos);
+        assertInstanceOf(CancelamentoInvalidoException.class, assertThrows(RuntimeException.class,
+                () -> consultaService.cancelarAgendamento(codigo, 9002)));
+    }
+
+    private double contagem(String metrica, String operacao) {
+        Counter contador = meterRegistry.find(metrica).tag("operacao", operacao).counter();
+        return contador != null ? contador.count() : 0;
+    }
+}
@@ -0,0 +1,99 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.exception.ConsultaIndisponivelException;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fires many parallel bookings at a single consultation and checks that
+ * exactly the available slots are sold
+ */
+@SpringBootTest
+class ConsultaServiceConcurrencyTest {
+
+    private static final int VAGAS = 5;
+    private static final int TENTATIVAS = 60;
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    @AfterEach
+    void limpar() {
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+    }
+
+    @Test
+    void agendamentosConcorrentesNaoExcedemVagas() throws Exception {
+        Consulta consulta = consultaRepository.save(new Consulta("CONCUR", LocalDateTime.now().plusDays(3),
+                "CARD", "Dr. Concorrente", new BigDecimal("200.00"), VAGAS));
+        Long consultaId = consulta.getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+
+        for (int i = 0; i < TENTATIVAS; i++) {
+            int pacienteId = 1000 + i;
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                try {
+                    consultaService.agendarConsulta(consultaId, new AgendamentoDTO(BigDecimal.ZERO),
+                            pacienteId, "Bearer teste");
+                    return true;
+                } catch (ConsultaIndisponivelException e) {
+                    return false;
+                } catch (RuntimeException e) {
+                    // Any other failure rolls the reservation back; the slot goes to another patient
+                    return false;
+                }
+            }));
+        }
+
+        largada.countDown();
+        int sucessos = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get(60, TimeUnit.SECONDS)) {
+                sucessos++;
+            }
+        }
+        executor.shutdown();
+
+        Consulta atualizada = consultaRepository.findById(consultaId).orElseThrow();
+        long agendamentosAtivos = agendamentoRepository.findByConsultaIdAndStatus(consultaId, StatusAgendamento.CRIADO)
+                .size();
+
+        assertEquals(VAGAS, sucessos);
+        assertEquals(VAGAS, atualizada.getVagasOcupadas());
+        assertEquals(VAGAS, agendamentosAtivos);
+    }
+}
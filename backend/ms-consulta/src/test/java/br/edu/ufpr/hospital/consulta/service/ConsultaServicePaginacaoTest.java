@@ -0,0 +1,93 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.PaginaConsultasDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class ConsultaServicePaginacaoTest {
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @AfterEach
+    void limpar() {
+        consultaRepository.deleteAll();
+    }
+
+    @Test
+    void cursorPercorreTodasAsConsultasSemRepetir() {
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withNano(0);
+        List<Consulta> consultas = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            // Pares de consultas no mesmo horário exercitam o desempate por id
+            consultas.add(new Consulta("PAG" + i, base.plusHours(i / 2), "CARD", "Dr. Pagina",
+                    new BigDecimal("100.00"), 3));
+        }
+        consultaRepository.saveAll(consultas);
+
+        List<Long> vistos = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            PaginaConsultasDTO pagina = consultaService.buscarConsultasPaginadas(cursor, 5);
+            pagina.getItens().forEach(c -> vistos.add(c.getId()));
+            cursor = pagina.getProximoCursor();
+            paginas++;
+        } while (cursor != null);
+
+        assertEquals(23, vistos.size());
+        assertEquals(23, vistos.stream().distinct().count());
+        assertEquals(5, paginas);
+
+        List<ConsultaResponseDTO> transmitidas = new ArrayList<>();
+        consultaService.transmitirTodasConsultas(transmitidas::add);
+        assertEquals(vistos, transmitidas.stream().map(ConsultaResponseDTO::getId).toList());
+    }
+
+    @Test
+    void transmissaoLeVariasPaginasSemSegurarTransacao() {
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withNano(0);
+        List<Consulta> consultas = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            consultas.add(new Consulta("TRA" + i, base.plusMinutes(i / 3), "CARD", "Dr. Transmissao",
+                    new BigDecimal("100.00"), 3));
+        }
+        consultaRepository.saveAll(consultas);
+
+        List<Long> transmitidas = new ArrayList<>();
+        consultaService.transmitirTodasConsultas(c -> {
+            // O consumidor (cliente lento) roda entre as páginas, sem conexão presa
+            assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+            transmitidas.add(c.getId());
+        });
+
+        assertEquals(1001, transmitidas.size());
+        assertEquals(1001, transmitidas.stream().distinct().count());
+    }
+
+    @Test
+    void cursorInvalidoLancaIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> consultaService.buscarConsultasPaginadas("xx", 5));
+        assertNull(consultaService.buscarConsultasPaginadas(null, 5).getProximoCursor());
+    }
+}
@@ -0,0 +1,148 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Checks that the employee dashboard is served from the materialized window and
+ * that stream subscribers receive a snapshot followed by deltas
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class DashboardConsultasServiceTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @AfterEach
+    void limpar() {
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+    }
+
+    @Test
+    void dashboardVemDaJanelaMaterializadaSemConsultarBanco() {
+        ConsultaResponseDTO proxima = consultaService.criarConsulta(new ConsultaDTO(
+                LocalDateTime.now().plusHours(20), "PED", "Dra. Painel", new BigDecimal("100.00"), 3));
+        consultaService.criarConsulta(new ConsultaDTO(
+                LocalDateTime.now().plusDays(5), "PED", "Dra. Painel", new BigDecimal("100.00"), 3));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<ConsultaResponseDTO> dashboard = consultaService.buscarConsultasProximas48h();
+
+        assertEquals(List.of(proxima.getCodigo()), dashboard.stream().map(ConsultaResponseDTO::getCodigo).toList());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void streamEnviaSnapshotEDeltas() throws Exception {
+        ConsultaResponseDTO consulta = consultaService.criarConsulta(new ConsultaDTO(
+                LocalDateTime.now().plusHours(30), "NEURO", "Dr. Tempo Real", new BigDecimal("150.00"), 4));
+
+        MvcResult stream = mockMvc.perform(get("/consultas/dashboard/stream")
+                        .header("Authorization", tokenFuncionario()))
+                .andReturn();
+        assertTrue(stream.getRequest().isAsyncStarted());
+        MockHttpServletResponse resposta = stream.getResponse();
+        aguardarConteudo(resposta, "event:snapshot");
+        assertTrue(resposta.getContentAsString().contains(consulta.getCodigo()));
+
+        consultaService.agendarConsulta(consulta.getId(), new AgendamentoDTO(BigDecimal.ZERO), 4242, "Bearer teste");
+        aguardarConteudo(resposta, "event:consulta");
+        aguardarConteudo(resposta, "\"vagasOcupadas\":1");
+
+        consultaService.cancelarConsulta(consulta.getId());
+        aguardarConteudo(resposta, "event:remocao");
+    }
+
+    @Test
+    void assinanteAtrasadoEDescartadoSemBloquearQuemPublica() {
+        // Executor that never writes: a browser that stopped reading
+        DashboardConsultasService dashboard = new DashboardConsultasService(indiceDisponibilidade,
+                tarefa -> { }, 48, 60_000, 2);
+        dashboard.assinar(); // snapshot: 1 of 2 pending
+        assertEquals(1, dashboard.totalAssinantes());
+
+        ConsultaResponseDTO primeira = consultaService.criarConsulta(new ConsultaDTO(
+                LocalDateTime.now().plusHours(10), "PED", "Dra. Lenta", new BigDecimal("100.00"), 3));
+        dashboard.aoAlterarIndice(new AlteracaoIndiceEvent(primeira.getId()));
+        assertEquals(1, dashboard.totalAssinantes());
+
+        ConsultaResponseDTO segunda = consultaService.criarConsulta(new ConsultaDTO(
+                LocalDateTime.now().plusHours(11), "PED", "Dra. Lenta", new BigDecimal("100.00"), 3));
+        dashboard.aoAlterarIndice(new AlteracaoIndiceEvent(segunda.getId()));
+        assertEquals(0, dashboard.totalAssinantes());
+    }
+
+    private static void aguardarConteudo(MockHttpServletResponse resposta, String trecho) throws Exception {
+        // Events are written by the dashboard executor, after the change is committed
+        long limite = System.currentTimeMillis() + 5_000;
+        while (!resposta.getContentAsString().contains(trecho) && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        assertTrue(resposta.getContentAsString().contains(trecho), () -> "Evento não recebido: " + trecho);
+    }
+
+    private String tokenFuncionario() throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("funcionario@teste")
+                .claim("tipo", "FUNCIONARIO")
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        jwt.sign(new MACSigner(jwtSecret.getBytes()));
+        return "Bearer " + jwt.serialize();
+    }
+}
@@ -0,0 +1,142 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the specialty registry lookups and the per-specialty availability
+ * counts: one GROUP BY per change, conditional GET with ETag, and a new tag
+ * once a booking changes the counts
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class EspecialidadeServiceTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EspecialidadeService especialidadeService;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private Statistics statistics;
+    private Consulta cardiologiaUmaVaga;
+
+    @BeforeEach
+    void preparar() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        cardiologiaUmaVaga = consultaRepository.save(new Consulta("ESP1", LocalDateTime.now().plusDays(2), "CARD",
+                "Dr. Contagem", new BigDecimal("200.00"), 1));
+        consultaRepository.save(new Consulta("ESP2", LocalDateTime.now().plusDays(3), "CARD",
+                "Dr. Contagem", new BigDecimal("200.00"), 4));
+        consultaRepository.save(new Consulta("ESP3", LocalDateTime.now().minusDays(1), "CARD",
+                "Dr. Contagem", new BigDecimal("200.00"), 4));
+        consultaRepository.save(new Consulta("ESP4", LocalDateTime.now().plusDays(3), "XYZ",
+                "Dra. Fora do Catálogo", new BigDecimal("90.00"), 2));
+        // Drop whatever an earlier test left cached
+        especialidadeService.aoAlterarIndice(AlteracaoIndiceEvent.reconstrucao());
+    }
+
+    @AfterEach
+    void limpar() {
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @Test
+    void catalogoEImutavelEBuscaPorCodigo() {
+        assertSame(especialidadeService.buscarTodasEspecialidades(), especialidadeService.buscarTodasEspecialidades());
+        assertEquals(13, especialidadeService.buscarTodasEspecialidades().size());
+        assertEquals("Pediatria", especialidadeService.buscarPorCodigo("PED").getNome());
+        assertNull(especialidadeService.buscarPorCodigo("PEDI"));
+        assertNull(especialidadeService.buscarPorCodigo(null));
+    }
+
+    @Test
+    void contagemUsaUmaConsultaEAtendeGetCondicional() throws Exception {
+        statistics.clear();
+        String etag = mockMvc.perform(get("/especialidades/disponibilidade").header("Authorization", token()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].codigo").value("CARD"))
+                .andExpect(jsonPath("$[0].consultasDisponiveis").value(2))
+                .andExpect(jsonPath("$[1].consultasDisponiveis").value(0))
+                .andExpect(jsonPath("$[13].codigo").value("XYZ"))
+                .andExpect(jsonPath("$[13].nome").doesNotExist())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/especialidades/disponibilidade").header("Authorization", token())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        // Filling the last slot changes the count and therefore the tag
+        cardiologiaUmaVaga.setVagasOcupadas(1);
+        consultaRepository.save(cardiologiaUmaVaga);
+        indiceDisponibilidade.ajustarOcupacaoAposCommit(cardiologiaUmaVaga.getId(), 1);
+
+        String novaEtag = mockMvc.perform(get("/especialidades/disponibilidade").header("Authorization", token())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].consultasDisponiveis").value(1))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, novaEtag);
+    }
+
+    private String token() throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("paciente@teste")
+                .claim("tipo", "PACIENTE")
+                .claim("pacienteId", 4242)
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        jwt.sign(new MACSigner(jwtSecret.getBytes()));
+        return "Bearer " + jwt.serialize();
+    }
+}
@@ -0,0 +1,115 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.model.StatusConsulta;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the set-based booking transitions of realizarConsulta and the chunked
+ * finalizer of past consultations
+ */
+@SpringBootTest(properties = "consulta.finalizador.tamanho-lote=2")
+class FinalizacaoConsultasTest {
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private FinalizadorConsultasService finalizadorConsultasService;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void limpar() {
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+    }
+
+    @Test
+    void realizarConsultaAtualizaAgendamentosComStatementsFixos() {
+        Consulta consulta = novaConsulta("FIN-1", LocalDateTime.now().minusHours(2));
+        StatusAgendamento[] iniciais = {StatusAgendamento.COMPARECEU, StatusAgendamento.CRIADO,
+                StatusAgendamento.CHECK_IN, StatusAgendamento.CANCELADO, StatusAgendamento.COMPARECEU,
+                StatusAgendamento.CRIADO};
+        for (int i = 0; i < iniciais.length; i++) {
+            Agendamento agendamento = new Agendamento("FIN-1-" + i, 900 + i, consulta, BigDecimal.ZERO,
+                    new BigDecimal("90.00"));
+            agendamento.setStatus(iniciais[i]);
+            agendamentoRepository.save(agendamento);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        consultaService.realizarConsulta(consulta.getId());
+
+        // existence check + consultation update + one update per target booking status
+        assertTrue(statistics.getPrepareStatementCount() <= 4,
+                "Statements executados: " + statistics.getPrepareStatementCount());
+
+        Map<String, StatusAgendamento> status = agendamentoRepository.findByConsultaId(consulta.getId()).stream()
+                .collect(Collectors.toMap(Agendamento::getCodigoAgendamento, Agendamento::getStatus));
+        assertEquals(StatusAgendamento.REALIZADO, status.get("FIN-1-0"));
+        assertEquals(StatusAgendamento.FALTOU, status.get("FIN-1-1"));
+        assertEquals(StatusAgendamento.FALTOU, status.get("FIN-1-2"));
+        assertEquals(StatusAgendamento.CANCELADO, status.get("FIN-1-3"));
+        assertEquals(StatusAgendamento.REALIZADO, status.get("FIN-1-4"));
+        assertEquals(StatusAgendamento.FALTOU, status.get("FIN-1-5"));
+        assertEquals(StatusConsulta.REALIZADA,
+                consultaRepository.findById(consulta.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void finalizadorFechaConsultasPassadasEmLotes() {
+        for (int i = 0; i < 5; i++) {
+            Consulta passada = novaConsulta("FIN-P" + i, LocalDateTime.now().minusDays(2 + i));
+            agendamentoRepository.save(new Agendamento("FIN-P" + i + "-A", 950 + i, passada, BigDecimal.ZERO,
+                    new BigDecimal("90.00")));
+        }
+        Consulta recente = novaConsulta("FIN-R", LocalDateTime.now().minusHours(1));
+        Consulta futura = novaConsulta("FIN-F", LocalDateTime.now().plusDays(1));
+
+        int finalizadas = finalizadorConsultasService.finalizarConsultasPassadas();
+
+        assertEquals(5, finalizadas);
+        Map<String, Consulta> consultas = consultaRepository.findAll().stream()
+                .collect(Collectors.toMap(Consulta::getCodigo, Function.identity()));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(StatusConsulta.REALIZADA, consultas.get("FIN-P" + i).getStatus());
+        }
+        assertEquals(StatusConsulta.DISPONIVEL, consultas.get(recente.getCodigo()).getStatus());
+        assertEquals(StatusConsulta.DISPONIVEL, consultas.get(futura.getCodigo()).getStatus());
+        assertTrue(agendamentoRepository.findAll().stream()
+                .allMatch(a -> a.getStatus() == StatusAgendamento.FALTOU));
+    }
+
+    private Consulta novaConsulta(String codigo, LocalDateTime dataHora) {
+        return consultaRepository.save(new Consulta(codigo, dataHora, "GINE", "Dra. Finalizadora",
+                new BigDecimal("90.00"), 10));
+    }
+}
@@ -0,0 +1,78 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class GeradorCodigoServiceTest {
+
+    @Autowired
+    private GeradorCodigoService geradorCodigoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void codigosGeradosConcorrentementeSaoUnicos() throws Exception {
+        Set<String> codigos = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> tarefas = new ArrayList<>();
+
+        for (int t = 0; t < 16; t++) {
+            tarefas.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    codigos.add(geradorCodigoService.proximoCodigoAgendamento());
+                }
+            }));
+        }
+        for (Future<?> tarefa : tarefas) {
+            tarefa.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(16 * 500, codigos.size());
+        assertTrue(codigos.stream().allMatch(c -> c.startsWith("AGD")));
+    }
+
+    @Test
+    void codigoConsultaUsaPrefixoCon() {
+        String primeiro = geradorCodigoService.proximoCodigoConsulta();
+        String segundo = geradorCodigoService.proximoCodigoConsulta();
+
+        assertTrue(primeiro.startsWith("CON"));
+        assertTrue(!primeiro.equals(segundo));
+    }
+
+    @Test
+    void replicasComOutroTamanhoDeBlocoNaoRepetemCodigos() {
+        // Another replica (or a later deploy) configured with a different block size
+        GeradorCodigoService outraReplica = new GeradorCodigoService(jdbcTemplate, entityManagerFactory, 7);
+        outraReplica.preparar();
+
+        Set<String> codigos = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 300; i++) {
+            codigos.add(geradorCodigoService.proximoCodigoAgendamento());
+            codigos.add(outraReplica.proximoCodigoAgendamento());
+        }
+
+        assertEquals(600, codigos.size());
+    }
+}
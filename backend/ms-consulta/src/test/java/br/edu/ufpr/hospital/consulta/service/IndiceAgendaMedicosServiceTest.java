@@ -0,0 +1,202 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.ConsultaDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.ErroItemLoteDTO;
+import br.edu.ufpr.hospital.consulta.dto.JanelaLivreDTO;
+import br.edu.ufpr.hospital.consulta.dto.LoteConsultasDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoLoteConsultasDTO;
+import br.edu.ufpr.hospital.consulta.exception.ConflitoAgendaMedicoException;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.util.TextoUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the in-memory doctor agenda: overlapping consultations rejected on single
+ * and bulk creation, also against consultations other replicas saved, times
+ * released on cancellation and rollback, free windows of a day, the rebuild
+ * from the database, and doctor names matched normalized in the database
+ */
+@SpringBootTest(properties = {
+        "consulta.agenda.duracao-minutos=30",
+        "consulta.agenda.inicio-expediente=08:00",
+        "consulta.agenda.fim-expediente=12:00"
+})
+class IndiceAgendaMedicosServiceTest {
+
+    private static final String MEDICO = "Dr. Agenda Intervalo";
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private LoteConsultasService loteConsultasService;
+
+    @Autowired
+    private IndiceAgendaMedicosService indiceAgenda;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    private final LocalDate dia = LocalDate.now().plusDays(10);
+
+    @AfterEach
+    void limpar() {
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+        indiceAgenda.reconstruir();
+    }
+
+    @Test
+    void consultaSobrepostaDoMedicoERejeitada() {
+        ConsultaResponseDTO dezHoras = criar(MEDICO, 10, 0);
+
+        // Same doctor written differently, 15 minutes later
+        assertThrows(ConflitoAgendaMedicoException.class, () -> criar("dr. agendá intervalo", 10, 15));
+        assertThrows(ConflitoAgendaMedicoException.class, () -> criar(MEDICO, 9, 45));
+        assertEquals(1, consultaRepository.count());
+
+        criar(MEDICO, 10, 30);
+        criar(MEDICO, 9, 30);
+        criar("Dra. Outra", 10, 0);
+        assertEquals(4, consultaRepository.count());
+
+        consultaService.cancelarConsulta(dezHoras.getId());
+        criar(MEDICO, 10, 0);
+    }
+
+    @Test
+    void janelasLivresDoDiaSemConsultarOBanco() {
+        criar(MEDICO, 9, 0);
+        criar(MEDICO, 9, 30);
+        criar(MEDICO, 11, 15);
+
+        assertEquals(List.of(
+                        new JanelaLivreDTO(dia.atTime(8, 0), dia.atTime(9, 0)),
+                        new JanelaLivreDTO(dia.atTime(10, 0), dia.atTime(11, 15))),
+                consultaService.buscarJanelasLivres(MEDICO, dia));
+        assertEquals(List.of(new JanelaLivreDTO(dia.atTime(8, 0), dia.atTime(12, 0))),
+                consultaService.buscarJanelasLivres("Dra. Sem Consultas", dia));
+        assertTrue(consultaService.buscarJanelasLivres(MEDICO, LocalDate.now().minusDays(1)).isEmpty());
+    }
+
+    @Test
+    void horarioVoltaAFicarLivreQuandoATransacaoEDesfeita() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            criar(MEDICO, 10, 0);
+            assertTrue(indiceAgenda.temConflito(MEDICO, dia.atTime(10, 0)));
+            status.setRollbackOnly();
+        });
+
+        assertFalse(indiceAgenda.temConflito(MEDICO, dia.atTime(10, 0)));
+        criar(MEDICO, 10, 0);
+    }
+
+    @Test
+    void loteRejeitaSobreposicoesComAAgendaENoProprioLote() {
+        criar(MEDICO, 10, 0);
+        LoteConsultasDTO lote = new LoteConsultasDTO(List.of(
+                dto(MEDICO, 10, 20), dto(MEDICO, 11, 0), dto(MEDICO, 11, 10), dto(MEDICO, 11, 30)), null);
+
+        ResultadoLoteConsultasDTO resultado = loteConsultasService.criar(lote);
+
+        assertEquals(List.of(
+                        new ErroItemLoteDTO("consultas[0]", "dataHora", "Médico já possui consulta neste horário"),
+                        new ErroItemLoteDTO("consultas[2]", "dataHora",
+                                "Horário sobreposto a outra consulta do médico no lote")),
+                resultado.getErros());
+        assertEquals(1, consultaRepository.count());
+    }
+
+    @Test
+    void reconstrucaoIncluiConsultasCriadasForaDesteServico() {
+        // e.g. created by another replica
+        consultaRepository.save(new Consulta("AGENDA-EXTERNA", dia.atTime(8, 0), "CARD", MEDICO,
+                new BigDecimal("100.00"), 2));
+        assertFalse(indiceAgenda.temConflito(MEDICO, dia.atTime(8, 10)));
+
+        indiceAgenda.reconstruir();
+
+        assertTrue(indiceAgenda.temConflito(MEDICO, dia.atTime(8, 10)));
+        assertFalse(indiceAgenda.temConflito(MEDICO, dia.atTime(8, 30)));
+    }
+
+    @Test
+    void consultaDeOutraReplicaBloqueiaOHorarioAntesDaReconstrucao() {
+        // Saved by another replica: not in this instance's agenda yet
+        consultaRepository.save(new Consulta("AGENDA-REPLICA", dia.atTime(9, 0), "CARD", MEDICO,
+                new BigDecimal("100.00"), 2));
+
+        assertThrows(ConflitoAgendaMedicoException.class, () -> criar(MEDICO, 9, 20));
+        assertFalse(indiceAgenda.temConflito(MEDICO, dia.atTime(9, 20)));
+        ResultadoLoteConsultasDTO resultado = loteConsultasService.criar(
+                new LoteConsultasDTO(List.of(dto(MEDICO, 8, 40)), null));
+        assertEquals(1, resultado.getErros().size());
+        assertEquals(1, consultaRepository.count());
+
+        criar(MEDICO, 9, 30);
+    }
+
+    @Test
+    void consultaDeOutraReplicaComNomeEscritoDiferenteBloqueiaOHorario() {
+        consultaRepository.save(new Consulta("AGENDA-GRAFIA", dia.atTime(10, 0), "CARD", "DR.  AGÊNDA intervalo",
+                new BigDecimal("100.00"), 2));
+
+        assertThrows(ConflitoAgendaMedicoException.class, () -> criar(MEDICO, 10, 15));
+        ResultadoLoteConsultasDTO resultado = loteConsultasService.criar(
+                new LoteConsultasDTO(List.of(dto(MEDICO, 9, 45)), null));
+        assertEquals(1, resultado.getErros().size());
+        assertEquals(1, consultaRepository.count());
+    }
+
+    @Test
+    void consultaSemNomeNormalizadoEPreenchidaNaInicializacao() {
+        Consulta antiga = consultaRepository.save(new Consulta("AGENDA-ANTIGA", dia.atTime(11, 0), "CARD", MEDICO,
+                new BigDecimal("100.00"), 2));
+        // As saved before the column existed
+        jdbcTemplate.update("UPDATE consultas SET medico_normalizado = NULL WHERE id = ?", antiga.getId());
+
+        indiceAgenda.carregarNaInicializacao();
+
+        assertEquals(TextoUtils.normalizar(MEDICO),
+                consultaRepository.findById(antiga.getId()).orElseThrow().getMedicoNormalizado());
+    }
+
+    private ConsultaResponseDTO criar(String medico, int hora, int minuto) {
+        return consultaService.criarConsulta(dto(medico, hora, minuto));
+    }
+
+    private ConsultaDTO dto(String medico, int hora, int minuto) {
+        return new ConsultaDTO(dia.atTime(hora, minuto), "CARD", medico, new BigDecimal("100.00"), 2);
+    }
+}
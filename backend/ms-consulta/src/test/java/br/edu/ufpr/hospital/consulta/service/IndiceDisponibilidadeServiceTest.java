@@ -0,0 +1,90 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class IndiceDisponibilidadeServiceTest {
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    @AfterEach
+    void limpar() {
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @Test
+    void indiceAcompanhaCriacaoAgendamentoECancelamento() {
+        LocalDateTime dataHora = LocalDateTime.now().plusDays(5).withNano(0);
+        ConsultaResponseDTO criada = consultaService.criarConsulta(
+                new ConsultaDTO(dataHora, "DERM", "Dra. Lúcia Araújo", new BigDecimal("150.00"), 1));
+
+        assertEquals(1, consultaService.buscarPorEspecialidade("DERM", null).size());
+        assertEquals(1, consultaService.buscarPorEspecialidade("DERM", dataHora.toLocalDate()).size());
+        assertEquals(1, consultaService.buscarPorMedico("lucia araujo", null).size());
+        assertTrue(consultaService.buscarPorEspecialidade("DERM", dataHora.toLocalDate().plusDays(1)).isEmpty());
+
+        String codigo = consultaService.agendarConsulta(criada.getId(), new AgendamentoDTO(BigDecimal.ZERO),
+                42, "Bearer teste").getCodigoAgendamento();
+        assertTrue(consultaService.buscarPorEspecialidade("DERM", null).isEmpty());
+
+        consultaService.cancelarAgendamento(codigo, 42);
+        List<ConsultaResponseDTO> reabertas = consultaService.buscarPorMedico("Araujo", null);
+        assertEquals(1, reabertas.size());
+        assertEquals(1, reabertas.get(0).getVagasDisponiveis());
+    }
+
+    @Test
+    void snapshotMaisAntigoAplicadoDepoisEIgnorado() {
+        ConsultaResponseDTO criada = consultaService.criarConsulta(new ConsultaDTO(
+                LocalDateTime.now().plusDays(6).withNano(0), "NEURO", "Dr. Versão", new BigDecimal("150.00"), 3));
+        Consulta antesDoAgendamento = consultaRepository.findById(criada.getId()).orElseThrow();
+
+        consultaService.agendarConsulta(criada.getId(), new AgendamentoDTO(BigDecimal.ZERO), 43, "Bearer teste");
+        assertEquals(2, indiceDisponibilidade.buscarPorId(criada.getId()).orElseThrow().getVagasDisponiveis());
+
+        // e.g. the afterCommit of an earlier transaction running late
+        indiceDisponibilidade.registrarAposCommit(antesDoAgendamento);
+        assertEquals(2, indiceDisponibilidade.buscarPorId(criada.getId()).orElseThrow().getVagasDisponiveis());
+
+        consultaService.cancelarConsulta(criada.getId());
+        indiceDisponibilidade.registrarAposCommit(antesDoAgendamento);
+        assertTrue(indiceDisponibilidade.buscarPorId(criada.getId()).isEmpty());
+
+        // Still gone after a rebuild, which keeps the removals of the previous index
+        indiceDisponibilidade.reconstruir();
+        indiceDisponibilidade.registrarAposCommit(antesDoAgendamento);
+        assertTrue(indiceDisponibilidade.buscarPorId(criada.getId()).isEmpty());
+    }
+}
@@ -0,0 +1,164 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.EntradaListaEsperaDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoOperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.dto.OperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.exception.ConsultaIndisponivelException;
+import br.edu.ufpr.hospital.consulta.exception.ListaEsperaInvalidaException;
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.OutboxPontos;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.model.StatusListaEspera;
+import br.edu.ufpr.hospital.consulta.model.TipoOperacaoPontos;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.ListaEsperaRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the consultation waitlist: joining only full consultations, FIFO
+ * promotion of the head of the queue when a booking is cancelled (same slot,
+ * points debit queued, patient notified), freeing the slot when nobody waits
+ * and closing the queue when the consultation is finalized
+ */
+@SpringBootTest(properties = "outbox.pontos.intervalo-ms=3600000")
+class ListaEsperaServiceTest {
+
+    @Autowired
+    private ListaEsperaService listaEsperaService;
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private ListaEsperaRepository listaEsperaRepository;
+
+    @Autowired
+    private OutboxPontosRepository outboxRepository;
+
+    @MockitoSpyBean
+    private NotificacaoPacienteService notificacoes;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    private Consulta consulta;
+    private AgendamentoResponseDTO agendamentoOriginal;
+
+    @BeforeEach
+    void preparar() {
+        when(pacienteIntegrationService.verificarSaldoPontos(anyInt(), anyString())).thenReturn(new BigDecimal("50"));
+        when(pacienteIntegrationService.processarOperacoesEmLote(anyList(), anyString()))
+                .thenAnswer(inv -> ((List<OperacaoPontosDTO>) inv.getArgument(0)).stream()
+                        .map(o -> new ResultadoOperacaoPontosDTO(o.getChaveIdempotencia(), o.getPacienteId(), true,
+                                null))
+                        .toList());
+
+        consulta = consultaRepository.save(new Consulta("ESPERA1", LocalDateTime.now().plusDays(5), "CARD",
+                "Dra. Fila", new BigDecimal("200.00"), 1));
+        indiceDisponibilidade.reconstruir();
+        agendamentoOriginal = consultaService.agendarConsulta(consulta.getId(), new AgendamentoDTO(), 5001,
+                "Bearer teste");
+    }
+
+    @AfterEach
+    void limpar() {
+        listaEsperaRepository.deleteAll();
+        outboxRepository.deleteAll();
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @Test
+    void cancelamentoPromoveOPrimeiroDaFilaNaMesmaVaga() {
+        assertThrows(ConsultaIndisponivelException.class, () -> consultaService.agendarConsulta(consulta.getId(),
+                new AgendamentoDTO(), 5002, "Bearer teste"));
+        EntradaListaEsperaDTO primeiro = listaEsperaService.entrar(consulta.getId(), new BigDecimal("10"), 5002,
+                "Bearer teste");
+        EntradaListaEsperaDTO segundo = listaEsperaService.entrar(consulta.getId(), BigDecimal.ZERO, 5003,
+                "Bearer teste");
+        assertEquals(1L, primeiro.getPosicao());
+        assertEquals(2L, segundo.getPosicao());
+        assertThrows(ListaEsperaInvalidaException.class, () -> listaEsperaService.entrar(consulta.getId(),
+                BigDecimal.ZERO, 5003, "Bearer teste"));
+
+        consultaService.cancelarAgendamento(agendamentoOriginal.getCodigoAgendamento(), 5001);
+
+        assertEquals(1, consultaRepository.findById(consulta.getId()).orElseThrow().getVagasOcupadas());
+        EntradaListaEsperaDTO promovido = listaEsperaService.listarPorPaciente(5002).get(0);
+        assertEquals(StatusListaEspera.PROMOVIDO, promovido.getStatus());
+        assertNull(promovido.getPosicao());
+
+        Agendamento agendamento = agendamentoRepository.findByCodigoAgendamento(promovido.getCodigoAgendamento())
+                .orElseThrow();
+        assertEquals(StatusAgendamento.CRIADO, agendamento.getStatus());
+        assertEquals(0, new BigDecimal("150.00").compareTo(agendamento.getValorPago()));
+        assertTrue(outboxRepository.findByChaveIdempotencia(
+                OutboxPontos.chave(promovido.getCodigoAgendamento(), TipoOperacaoPontos.SAIDA)).isPresent());
+        verify(notificacoes).notificarAposCommit(eq(5002), eq(ListaEsperaService.EVENTO_PROMOCAO),
+                eq(new ListaEsperaService.PromocaoListaEspera(consulta.getId(), promovido.getCodigoAgendamento())));
+
+        assertEquals(1L, listaEsperaService.listarPorPaciente(5003).get(0).getPosicao());
+    }
+
+    @Test
+    void semNinguemAguardandoCancelamentoLiberaAVaga() {
+        listaEsperaService.entrar(consulta.getId(), BigDecimal.ZERO, 5002, "Bearer teste");
+        listaEsperaService.sair(consulta.getId(), 5002);
+
+        consultaService.cancelarAgendamento(agendamentoOriginal.getCodigoAgendamento(), 5001);
+
+        assertEquals(0, consultaRepository.findById(consulta.getId()).orElseThrow().getVagasOcupadas());
+        assertEquals(StatusListaEspera.SAIU, listaEsperaService.listarPorPaciente(5002).get(0).getStatus());
+        // With a free slot the patient books directly instead of joining the queue
+        assertThrows(ListaEsperaInvalidaException.class, () -> listaEsperaService.entrar(consulta.getId(),
+                BigDecimal.ZERO, 5002, "Bearer teste"));
+    }
+
+    @Test
+    void finalizacaoDaConsultaEncerraAFila() {
+        listaEsperaService.entrar(consulta.getId(), BigDecimal.ZERO, 5002, "Bearer teste");
+
+        consultaService.realizarConsulta(consulta.getId());
+        assertEquals(1, listaEsperaService.encerrarFilasVencidas());
+
+        assertEquals(StatusListaEspera.ENCERRADO, listaEsperaService.listarPorPaciente(5002).get(0).getStatus());
+        verify(notificacoes).notificarAposCommit(eq(5002), eq(ListaEsperaService.EVENTO_ENCERRAMENTO),
+                eq(new ListaEsperaService.EncerramentoListaEspera(consulta.getId())));
+    }
+}
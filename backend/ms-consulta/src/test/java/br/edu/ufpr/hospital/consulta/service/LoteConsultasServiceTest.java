@@ -0,0 +1,118 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendaRecorrenteDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaDTO;
+import br.edu.ufpr.hospital.consulta.dto.ErroItemLoteDTO;
+import br.edu.ufpr.hospital.consulta.dto.LoteConsultasDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoLoteConsultasDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks bulk consultation creation: a recurring template expanded and inserted
+ * with JDBC batches (statements independent of the number of consultations),
+ * and all-or-nothing rejection with per-item validation errors
+ */
+@SpringBootTest
+class LoteConsultasServiceTest {
+
+    @Autowired
+    private LoteConsultasService loteConsultasService;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private IndiceAgendaMedicosService indiceAgenda;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    private final LocalDate segunda = LocalDate.now().plusDays(7).with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+
+    @AfterEach
+    void limpar() {
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+        indiceAgenda.reconstruir();
+    }
+
+    @Test
+    void agendaRecorrenteEInseridaEmLotesJdbc() {
+        // 8 weeks x 3 weekdays x 5 times = 120 consultations
+        AgendaRecorrenteDTO agenda = agenda(segunda, segunda.plusWeeks(8).minusDays(1));
+        LoteConsultasDTO lote = new LoteConsultasDTO(List.of(consulta(segunda.plusDays(1), "Dra. Avulsa", 3)), agenda);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ResultadoLoteConsultasDTO resultado = loteConsultasService.criar(lote);
+
+        assertTrue(resultado.getErros().isEmpty(), () -> resultado.getErros().toString());
+        assertEquals(121, resultado.getConsultas().size());
+        assertEquals(121, statistics.getEntityInsertCount());
+        // conflict check + a few sequence blocks + one prepared insert per JDBC batch, never one per row
+        assertTrue(statistics.getPrepareStatementCount() <= 12,
+                "Statements executados: " + statistics.getPrepareStatementCount());
+
+        assertEquals(121, consultaRepository.count());
+        assertEquals(5, indiceDisponibilidade.buscarPorMedico("Dr. Agenda", segunda.plusWeeks(1)).size());
+    }
+
+    @Test
+    void errosDeItensRejeitamOLoteInteiro() {
+        consultaRepository.save(new Consulta("LOTE-EXISTENTE", segunda.atTime(9, 0), "CARD", "Dr. Agenda",
+                new BigDecimal("150.00"), 5));
+        ConsultaDTO semVagas = consulta(segunda.plusDays(1), "Dra. Avulsa", 0);
+        ConsultaDTO repetida = consulta(segunda.plusDays(1), "Dra. Avulsa", 2);
+        ConsultaDTO valida = consulta(segunda.plusDays(2), "Dra. Avulsa", 2);
+        LoteConsultasDTO lote = new LoteConsultasDTO(List.of(semVagas, valida, repetida, valida),
+                agenda(segunda, segunda));
+
+        ResultadoLoteConsultasDTO resultado = loteConsultasService.criar(lote);
+
+        assertTrue(resultado.getConsultas().isEmpty());
+        assertEquals(List.of(
+                        new ErroItemLoteDTO("consultas[0]", "vagas", "Deve haver pelo menos 1 vaga"),
+                        new ErroItemLoteDTO("consultas[3]", "dataHora", "Horário repetido para o médico no lote"),
+                        new ErroItemLoteDTO("agenda " + segunda.atTime(9, 0), "dataHora",
+                                "Médico já possui consulta neste horário")),
+                resultado.getErros());
+        assertEquals(1, consultaRepository.count());
+    }
+
+    private AgendaRecorrenteDTO agenda(LocalDate inicio, LocalDate fim) {
+        return new AgendaRecorrenteDTO("Dr. Agenda", "CARD", new BigDecimal("150.00"), 5, inicio, fim,
+                Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY),
+                List.of(LocalTime.of(8, 0), LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0),
+                        LocalTime.of(14, 0)));
+    }
+
+    private static ConsultaDTO consulta(LocalDate dia, String medico, int vagas) {
+        return new ConsultaDTO(dia.atTime(8, 0), "DERM", medico, new BigDecimal("120.00"), vagas);
+    }
+}
@@ -0,0 +1,151 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.exception.ConsultaNaoEncontradaException;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the booking lifecycle instrumentation: the whole operation timed with
+ * its outcome (including the exception type on failure), each phase timed with
+ * the resource it waits on (database, ms-paciente points call, commit), the
+ * slots-remaining distribution and the Prometheus percentile histogram buckets
+ */
+@SpringBootTest(properties = "outbox.pontos.intervalo-ms=3600000")
+@AutoConfigureObservability(tracing = false)
+class MetricasConsultaServiceTest {
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private OutboxPontosRepository outboxRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PrometheusMeterRegistry prometheusRegistry;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    private Consulta consulta;
+
+    @BeforeEach
+    void preparar() {
+        when(pacienteIntegrationService.verificarSaldoPontos(anyInt(), anyString())).thenReturn(new BigDecimal("50"));
+        consulta = consultaRepository.save(new Consulta("METRICA1", LocalDateTime.now().plusHours(24), "CARD",
+                "Dra. Medida", new BigDecimal("200.00"), 3));
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @AfterEach
+    void limpar() {
+        outboxRepository.deleteAll();
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @Test
+    void agendamentoRegistraOperacaoEEtapas() {
+        long antes = contagem(timerOperacao(MetricasConsultaService.AGENDAR, MetricasConsultaService.SUCESSO));
+
+        AgendamentoDTO dto = new AgendamentoDTO();
+        dto.setPontosUsados(new BigDecimal("10"));
+        AgendamentoResponseDTO agendamento = consultaService.agendarConsulta(consulta.getId(), dto, 7001,
+                "Bearer teste");
+
+        assertEquals(antes + 1,
+                contagem(timerOperacao(MetricasConsultaService.AGENDAR, MetricasConsultaService.SUCESSO)));
+        assertNotNull(timerEtapa(MetricasConsultaService.AGENDAR, "validacao", MetricasConsultaService.BANCO));
+        assertNotNull(timerEtapa(MetricasConsultaService.AGENDAR, "saldo_pontos", MetricasConsultaService.PONTOS));
+        assertNotNull(timerEtapa(MetricasConsultaService.AGENDAR, "reserva_vaga", MetricasConsultaService.BANCO));
+        assertNotNull(timerEtapa(MetricasConsultaService.AGENDAR, "registro", MetricasConsultaService.BANCO));
+        assertNotNull(timerEtapa(MetricasConsultaService.AGENDAR, "commit", MetricasConsultaService.BANCO));
+        assertTrue(meterRegistry.get(MetricasConsultaService.METRICA_VAGAS_RESTANTES).summary().count() > 0);
+
+        consultaService.realizarCheckin(agendamento.getCodigoAgendamento(), 7001);
+        consultaService.confirmarComparecimento(agendamento.getCodigoAgendamento());
+        assertNotNull(timerOperacao(MetricasConsultaService.CHECKIN, MetricasConsultaService.SUCESSO));
+        assertNotNull(timerEtapa(MetricasConsultaService.CONFIRMAR_COMPARECIMENTO, "commit",
+                MetricasConsultaService.BANCO));
+    }
+
+    @Test
+    void falhaRegistraOTipoDaExcecao() {
+        long antes = contagem(timerOperacao(MetricasConsultaService.CANCELAR_CONSULTA,
+                "ConsultaNaoEncontradaException"));
+
+        assertThrows(ConsultaNaoEncontradaException.class, () -> consultaService.cancelarConsulta(-1L));
+
+        assertEquals(antes + 1, contagem(timerOperacao(MetricasConsultaService.CANCELAR_CONSULTA,
+                "ConsultaNaoEncontradaException")));
+        // The rollback that follows must not record the operation a second time
+        assertNull(timerOperacao(MetricasConsultaService.CANCELAR_CONSULTA, MetricasConsultaService.ROLLBACK));
+    }
+
+    @Test
+    void prometheusPublicaHistogramaDePercentis() {
+        consultaService.agendarConsulta(consulta.getId(), new AgendamentoDTO(), 7002, "Bearer teste");
+
+        String exposicao = prometheusRegistry.scrape();
+        assertTrue(exposicao.contains("consulta_operacao_seconds_bucket{"));
+        assertTrue(exposicao.contains("operacao=\"agendar\""));
+        assertTrue(exposicao.contains("consulta_vagas_disponiveis"));
+    }
+
+    private Timer timerOperacao(String operacao, String resultado) {
+        return meterRegistry.find(MetricasConsultaService.METRICA_OPERACAO)
+                .tag("operacao", operacao)
+                .tag("resultado", resultado)
+                .timer();
+    }
+
+    private Timer timerEtapa(String operacao, String etapa, String recurso) {
+        return meterRegistry.find(MetricasConsultaService.METRICA_ETAPA)
+                .tag("operacao", operacao)
+                .tag("etapa", etapa)
+                .tag("recurso", recurso)
+                .timer();
+    }
+
+    private static long contagem(Timer timer) {
+        return timer != null ? timer.count() : 0;
+    }
+}
@@ -0,0 +1,83 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots ms-consulta in virtual-thread mode: executors hand out virtual threads,
+ * the code generator stays correct under heavy virtual-thread concurrency, and
+ * the pinning monitor reports a carrier pinned by a blocking call inside synchronized
+ */
+@SpringBootTest(properties = {
+        "spring.threads.virtual.enabled=true",
+        "codigo.bloco.tamanho=5",
+        "consulta.threads-virtuais.limite-fixacao-ms=20"
+})
+class ModoThreadsVirtuaisTest {
+
+    @Autowired
+    @Qualifier("agendamentoTaskExecutor")
+    private Executor agendamentoTaskExecutor;
+
+    @Autowired
+    private GeradorCodigoService geradorCodigoService;
+
+    @Autowired
+    private MonitorThreadsVirtuaisService monitor;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    @Test
+    void executoresUsamThreadsVirtuais() throws Exception {
+        CompletableFuture<Boolean> virtual = CompletableFuture.supplyAsync(
+                () -> Thread.currentThread().isVirtual(), agendamentoTaskExecutor);
+        assertTrue(virtual.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void geradorDeCodigosEmThreadsVirtuais() throws Exception {
+        Set<String> codigos = ConcurrentHashMap.newKeySet();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 500; i++) {
+                executor.submit(() -> codigos.add(geradorCodigoService.proximoCodigoAgendamento()));
+            }
+        }
+        assertEquals(500, codigos.size());
+    }
+
+    @Test
+    void monitorDetectaThreadVirtualPresaNaPortadora() throws Exception {
+        long antes = monitor.totalFixacoes();
+        Object trava = new Object();
+        Thread.ofVirtual().start(() -> {
+            synchronized (trava) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+
+        long limite = System.currentTimeMillis() + 15_000;
+        while (monitor.totalFixacoes() == antes && System.currentTimeMillis() < limite) {
+            Thread.sleep(100);
+        }
+        assertTrue(monitor.totalFixacoes() > antes);
+    }
+}
@@ -0,0 +1,209 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoResponseDTO;
+import br.edu.ufpr.hospital.consulta.dto.OperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.dto.ResultadoOperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.exception.SaldoInsuficienteException;
+import br.edu.ufpr.hospital.consulta.exception.ServicoPacientesIndisponivelException;
+import br.edu.ufpr.hospital.consulta.model.Agendamento;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.model.OutboxPontos;
+import br.edu.ufpr.hospital.consulta.model.StatusAgendamento;
+import br.edu.ufpr.hospital.consulta.model.StatusOutbox;
+import br.edu.ufpr.hospital.consulta.model.TipoOperacaoPontos;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that points debits and refunds are written to the outbox with the
+ * booking change and delivered to ms-paciente in batches after commit, and that
+ * debits not delivered yet count against the patient's balance
+ */
+@SpringBootTest(properties = "outbox.pontos.intervalo-ms=3600000")
+class OutboxPontosServiceTest {
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private OutboxPontosService outboxPontosService;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private OutboxPontosRepository outboxRepository;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    @AfterEach
+    void limpar() {
+        outboxRepository.deleteAll();
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+    }
+
+    @Test
+    void agendamentoComPontosEnviaDebitoAposCommit() throws Exception {
+        Consulta consulta = novaConsulta("CONOUT1");
+        when(pacienteIntegrationService.verificarSaldoPontos(anyInt(), anyString())).thenReturn(new BigDecimal("50"));
+        when(pacienteIntegrationService.processarOperacoesEmLote(anyList(), anyString()))
+                .thenAnswer(inv -> aplicarTodas(inv.getArgument(0)));
+
+        AgendamentoResponseDTO agendamento = consultaService.agendarConsulta(consulta.getId(),
+                new AgendamentoDTO(new BigDecimal("10")), 3001, "Bearer teste");
+
+        String chave = OutboxPontos.chave(agendamento.getCodigoAgendamento(),
+                TipoOperacaoPontos.SAIDA);
+        aguardar(() -> outboxRepository.findByChaveIdempotencia(chave)
+                .map(o -> o.getStatus() == StatusOutbox.CONCLUIDO).orElse(false));
+    }
+
+    @Test
+    void debitoRecusadoCancelaAgendamentoELiberaVaga() throws Exception {
+        Consulta consulta = novaConsulta("CONOUT2");
+        when(pacienteIntegrationService.verificarSaldoPontos(anyInt(), anyString())).thenReturn(new BigDecimal("50"));
+        when(pacienteIntegrationService.processarOperacoesEmLote(anyList(), anyString()))
+                .thenAnswer(inv -> ((List<OperacaoPontosDTO>) inv.getArgument(0)).stream()
+                        .map(o -> new ResultadoOperacaoPontosDTO(o.getChaveIdempotencia(), o.getPacienteId(), false,
+                                "Saldo de pontos insuficiente."))
+                        .toList());
+
+        AgendamentoResponseDTO agendamento = consultaService.agendarConsulta(consulta.getId(),
+                new AgendamentoDTO(new BigDecimal("10")), 3002, "Bearer teste");
+
+        aguardar(() -> agendamentoRepository.findByCodigoAgendamento(agendamento.getCodigoAgendamento())
+                .map(a -> a.getStatus() == StatusAgendamento.CANCELADO).orElse(false));
+        assertEquals(0, consultaRepository.findById(consulta.getId()).orElseThrow().getVagasOcupadas());
+        assertEquals(1, outboxRepository.findByStatus(StatusOutbox.FALHOU).size());
+    }
+
+    @Test
+    void cancelamentoDeConsultaEnviaEstornosEmUmUnicoLote() throws Exception {
+        Long consultaId = criarConsultaComAgendamentos();
+        when(pacienteIntegrationService.processarOperacoesEmLote(anyList(), anyString()))
+                .thenAnswer(inv -> aplicarTodas(inv.getArgument(0)));
+
+        consultaService.cancelarConsulta(consultaId);
+
+        aguardar(() -> outboxRepository.findByStatus(StatusOutbox.CONCLUIDO).size() == 2);
+        verify(pacienteIntegrationService, times(1)).processarOperacoesEmLote(anyList(), anyString());
+        assertTrue(agendamentoRepository.findByConsultaId(consultaId).stream()
+                .allMatch(a -> a.getStatus() == StatusAgendamento.CANCELADO));
+    }
+
+    @Test
+    void falhaDeComunicacaoMantemOperacoesParaNovaTentativa() throws Exception {
+        Long consultaId = criarConsultaComAgendamentos();
+        when(pacienteIntegrationService.processarOperacoesEmLote(anyList(), anyString()))
+                .thenThrow(new RuntimeException("Erro de comunicação com o serviço de pacientes"))
+                .thenAnswer(inv -> aplicarTodas(inv.getArgument(0)));
+
+        consultaService.cancelarConsulta(consultaId);
+
+        aguardar(() -> outboxRepository.findAll().stream().allMatch(o -> o.getTentativas() == 1));
+        List<OutboxPontos> pendentes = outboxRepository.findByStatus(StatusOutbox.PENDENTE);
+        assertEquals(2, pendentes.size());
+
+        // Make them due now instead of waiting for the backoff
+        pendentes.forEach(o -> o.setProximaTentativa(LocalDateTime.now().minusSeconds(1)));
+        outboxRepository.saveAll(pendentes);
+
+        outboxPontosService.despacharPendentes();
+
+        assertEquals(2, outboxRepository.findByStatus(StatusOutbox.CONCLUIDO).size());
+    }
+
+    @Test
+    void circuitoAbertoAdiaLoteSemGastarTentativas() throws Exception {
+        Long consultaId = criarConsultaComAgendamentos();
+        when(pacienteIntegrationService.processarOperacoesEmLote(anyList(), anyString()))
+                .thenThrow(new ServicoPacientesIndisponivelException("Serviço de pontos temporariamente indisponível"));
+
+        consultaService.cancelarConsulta(consultaId);
+
+        aguardar(() -> outboxRepository.findAll().stream()
+                .allMatch(o -> o.getUltimoErro() != null && o.getLote() == null));
+        List<OutboxPontos> pendentes = outboxRepository.findByStatus(StatusOutbox.PENDENTE);
+        assertEquals(2, pendentes.size());
+        assertTrue(pendentes.stream().allMatch(o -> o.getTentativas() == 0
+                && o.getProximaTentativa().isAfter(LocalDateTime.now())));
+    }
+
+    @Test
+    void debitosAindaNaoEnviadosContamNoSaldo() throws Exception {
+        Consulta primeira = novaConsulta("CONOUT4");
+        Consulta segunda = novaConsulta("CONOUT5");
+        when(pacienteIntegrationService.verificarSaldoPontos(anyInt(), anyString())).thenReturn(new BigDecimal("50"));
+        // ms-paciente unreachable: the first debit stays queued and the balance it reports is unchanged
+        when(pacienteIntegrationService.processarOperacoesEmLote(anyList(), anyString()))
+                .thenThrow(new ServicoPacientesIndisponivelException("Serviço de pontos temporariamente indisponível"));
+
+        consultaService.agendarConsulta(primeira.getId(), new AgendamentoDTO(new BigDecimal("30")), 3003,
+                "Bearer teste");
+        verify(pacienteIntegrationService).invalidarSaldo(3003);
+
+        assertThrows(SaldoInsuficienteException.class, () -> consultaService.agendarConsulta(segunda.getId(),
+                new AgendamentoDTO(new BigDecimal("30")), 3003, "Bearer teste"));
+        consultaService.agendarConsulta(segunda.getId(), new AgendamentoDTO(new BigDecimal("20")), 3003,
+                "Bearer teste");
+    }
+
+    private Consulta novaConsulta(String codigo) {
+        return consultaRepository.save(new Consulta(codigo, LocalDateTime.now().plusDays(5),
+                "CARD", "Dr. Outbox", new BigDecimal("200.00"), 10));
+    }
+
+    private Long criarConsultaComAgendamentos() {
+        Consulta consulta = novaConsulta("CONOUT3");
+        agendamentoRepository.save(new Agendamento("AGDOUT1", 2001, consulta,
+                new BigDecimal("10.00"), new BigDecimal("150.00")));
+        agendamentoRepository.save(new Agendamento("AGDOUT2", 2002, consulta,
+                new BigDecimal("4.00"), new BigDecimal("180.00")));
+        agendamentoRepository.save(new Agendamento("AGDOUT3", 2003, consulta,
+                BigDecimal.ZERO, new BigDecimal("200.00")));
+        return consulta.getId();
+    }
+
+    private static List<ResultadoOperacaoPontosDTO> aplicarTodas(List<OperacaoPontosDTO> operacoes) {
+        return operacoes.stream()
+                .map(o -> new ResultadoOperacaoPontosDTO(o.getChaveIdempotencia(), o.getPacienteId(), true, null))
+                .toList();
+    }
+
+    private static void aguardar(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condicao.getAsBoolean()) {
+            if (System.currentTimeMillis() > limite) {
+                throw new AssertionError("Condição não atingida em 10s");
+            }
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.OperacaoPontosDTO;
+import br.edu.ufpr.hospital.consulta.exception.ServicoPacientesIndisponivelException;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the points-balance near-cache against a stubbed ms-paciente: repeated
+ * reads stay local, and a points batch forces the next read back to the network.
+ * Also checks that a failing or saturated ms-paciente makes calls fail fast
+ * through the circuit breaker and bulkhead
+ */
+class PacienteIntegrationServiceTest {
+
+    private final AtomicInteger leiturasSaldo = new AtomicInteger();
+    private volatile String saldoRemoto = "10";
+    private volatile boolean pacienteFora;
+    private volatile Mono<Void> atrasoSaldo = Mono.empty();
+
+    private SimpleMeterRegistry metricas;
+    private PacienteIntegrationService service;
+
+    @BeforeEach
+    void configurar() {
+        service = criarService(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults());
+    }
+
+    private PacienteIntegrationService criarService(CircuitBreakerRegistry circuitos, BulkheadRegistry bulkheads) {
+        WebClient.Builder builder = WebClient.builder().exchangeFunction(request -> {
+            if (request.method() == HttpMethod.GET) {
+                leiturasSaldo.incrementAndGet();
+                if (pacienteFora) {
+                    return Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                }
+                return atrasoSaldo.then(Mono.fromSupplier(() -> json("{\"saldoAtual\": " + saldoRemoto + "}")));
+            }
+            return Mono.just(json("[]"));
+        });
+        metricas = new SimpleMeterRegistry();
+        return new PacienteIntegrationService(builder, metricas, ObservationRegistry.NOOP, circuitos, bulkheads, 60_000, 100);
+    }
+
+    @Test
+    void leiturasRepetidasSaoServidasDoCache() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, new BigDecimal("10").compareTo(service.verificarSaldoPontos(1, "Bearer teste")));
+        }
+        service.verificarSaldoPontos(2, "Bearer teste");
+
+        assertEquals(2, leiturasSaldo.get());
+        assertEquals(4.0, metricas.get("pacientes.saldo.cache").tag("resultado", "hit").counter().count());
+        assertEquals(2.0, metricas.get("pacientes.saldo.cache").tag("resultado", "miss").counter().count());
+        assertEquals(2.0, metricas.get("pacientes.saldo.cache.tamanho").gauge().value());
+    }
+
+    @Test
+    void operacoesDePontosInvalidamOSaldoDoPaciente() {
+        service.verificarSaldoPontos(1, "Bearer teste");
+        service.verificarSaldoPontos(2, "Bearer teste");
+
+        saldoRemoto = "4";
+        service.processarOperacoesEmLote(List.of(new OperacaoPontosDTO("AGD000001:SAIDA", 1, "SAIDA",
+                new BigDecimal("6"), "Uso em consulta", "USO_CONSULTA")), "Bearer servico");
+
+        assertEquals(0, new BigDecimal("4").compareTo(service.verificarSaldoPontos(1, "Bearer teste")));
+        assertEquals(0, new BigDecimal("10").compareTo(service.verificarSaldoPontos(2, "Bearer teste")));
+        assertEquals(3, leiturasSaldo.get());
+    }
+
+    @Test
+    void invalidacaoDuranteLeituraSoDescartaOSaldoDoProprioPaciente() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        atrasoSaldo = Mono.fromRunnable(() -> {
+            try {
+                liberar.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).subscribeOn(Schedulers.boundedElastic()).then();
+
+        CompletableFuture<BigDecimal> leitura1 = service.verificarSaldoPontosReativo(1, "Bearer teste").toFuture();
+        CompletableFuture<BigDecimal> leitura2 = service.verificarSaldoPontosReativo(2, "Bearer teste").toFuture();
+        long limite = System.currentTimeMillis() + 5_000;
+        while (leiturasSaldo.get() < 2 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+
+        service.invalidarSaldo(2);
+        liberar.countDown();
+        leitura1.get(10, TimeUnit.SECONDS);
+        leitura2.get(10, TimeUnit.SECONDS);
+        atrasoSaldo = Mono.empty();
+
+        service.verificarSaldoPontos(1, "Bearer teste");
+        service.verificarSaldoPontos(2, "Bearer teste");
+        // Only patient 2's in-flight read was discarded
+        assertEquals(3, leiturasSaldo.get());
+    }
+
+    @Test
+    void circuitoAbertoRecusaChamadasSemIrAoServico() {
+        CircuitBreakerRegistry circuitos = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(2)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build());
+        service = criarService(circuitos, BulkheadRegistry.ofDefaults());
+        pacienteFora = true;
+
+        for (int pacienteId = 1; pacienteId <= 2; pacienteId++) {
+            int id = pacienteId;
+            RuntimeException erro = assertThrows(RuntimeException.class,
+                    () -> service.verificarSaldoPontos(id, "Bearer teste"));
+            assertFalse(erro instanceof ServicoPacientesIndisponivelException);
+        }
+        assertThrows(ServicoPacientesIndisponivelException.class,
+                () -> service.verificarSaldoPontos(3, "Bearer teste"));
+        // Each operation has its own circuit: points batches are unaffected
+        assertTrue(service.processarOperacoesEmLote(List.of(new OperacaoPontosDTO("AGD000002:SAIDA", 1,
+                "SAIDA", new BigDecimal("6"), "Uso em consulta", "USO_CONSULTA")), "Bearer servico").isEmpty());
+
+        assertEquals(2, leiturasSaldo.get());
+        assertEquals(1.0, metricas.get("pacientes.chamadas.recusadas")
+                .tag("operacao", PacienteIntegrationService.INSTANCIA_SALDO)
+                .tag("motivo", "circuito-aberto").counter().count());
+    }
+
+    @Test
+    void bulkheadCheioRecusaChamadasExcedentes() throws Exception {
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        service = criarService(CircuitBreakerRegistry.ofDefaults(), bulkheads);
+        CountDownLatch liberar = new CountDownLatch(1);
+        atrasoSaldo = Mono.fromRunnable(() -> {
+            try {
+                liberar.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).subscribeOn(Schedulers.boundedElastic()).then();
+
+        CompletableFuture<BigDecimal> lenta = service.verificarSaldoPontosReativo(1, "Bearer teste").toFuture();
+        long limite = System.currentTimeMillis() + 5_000;
+        while (leiturasSaldo.get() == 0 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+
+        assertThrows(ServicoPacientesIndisponivelException.class,
+                () -> service.verificarSaldoPontos(2, "Bearer teste"));
+        liberar.countDown();
+        assertEquals(0, new BigDecimal("10").compareTo(lenta.get(10, TimeUnit.SECONDS)));
+        assertEquals(1.0, metricas.get("pacientes.chamadas.recusadas")
+                .tag("operacao", PacienteIntegrationService.INSTANCIA_SALDO)
+                .tag("motivo", "bulkhead-cheio").counter().count());
+    }
+
+    private static ClientResponse json(String corpo) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(corpo)
+                .build();
+    }
+}
@@ -0,0 +1,153 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks distributed tracing of the booking flow: the balance call to
+ * ms-paciente carries the W3C traceparent of the current trace, and the
+ * ms-paciente call, HTTP client and JDBC spans are exported as OTLP JSON lines
+ * to the trace file under that same traceId
+ */
+@SpringBootTest(properties = {
+        "outbox.pontos.intervalo-ms=3600000",
+        "management.tracing.sampling.probability=1.0",
+        "rastreamento.arquivo.caminho=target/traces/rastreamento-teste.%g.jsonl"
+})
+@AutoConfigureObservability(metrics = false)
+class RastreamentoAgendamentoTest {
+
+    private static final Path ARQUIVO_SPANS = Path.of("target/traces/rastreamento-teste.0.jsonl");
+    private static final Queue<String> TRACEPARENTS_RECEBIDOS = new ConcurrentLinkedQueue<>();
+    private static final HttpServer PACIENTE_SIMULADO = iniciarPacienteSimulado();
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private OutboxPontosRepository outboxRepository;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    private Consulta consulta;
+
+    @DynamicPropertySource
+    static void urlPaciente(DynamicPropertyRegistry registry) {
+        registry.add("ms.paciente.url", () -> "http://localhost:" + PACIENTE_SIMULADO.getAddress().getPort());
+    }
+
+    @BeforeEach
+    void preparar() {
+        TRACEPARENTS_RECEBIDOS.clear();
+        consulta = consultaRepository.save(new Consulta("RASTRO1", LocalDateTime.now().plusDays(2), "CARD",
+                "Dr. Rastro", new BigDecimal("200.00"), 2));
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @AfterEach
+    void limpar() {
+        outboxRepository.deleteAll();
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @AfterAll
+    static void pararPacienteSimulado() {
+        PACIENTE_SIMULADO.stop(0);
+    }
+
+    @Test
+    void agendamentoComPontosPropagaOTraceEExportaOsSpans() throws IOException {
+        Observation requisicao = Observation.createNotStarted("teste.agendamento", observationRegistry).start();
+        try (Observation.Scope escopo = requisicao.openScope()) {
+            consultaService.agendarConsulta(consulta.getId(), new AgendamentoDTO(new BigDecimal("10")), 8001,
+                    "Bearer teste");
+        } finally {
+            requisicao.stop();
+        }
+        assertTrue(tracerProvider.forceFlush().join(10, TimeUnit.SECONDS).isSuccess());
+
+        // traceparent: 00-<traceId>-<parentSpanId>-<flags>
+        assertEquals(1, TRACEPARENTS_RECEBIDOS.size());
+        String traceId = TRACEPARENTS_RECEBIDOS.peek().split("-")[1];
+
+        List<String> linhasDoTrace = Files.readAllLines(ARQUIVO_SPANS, StandardCharsets.UTF_8).stream()
+                .filter(linha -> linha.contains("\"traceId\":\"" + traceId + "\""))
+                .toList();
+        String spans = String.join("\n", linhasDoTrace);
+        assertTrue(spans.contains("\"name\":\"teste.agendamento\""));
+        assertTrue(spans.contains("\"name\":\"ms-paciente paciente-saldo\""));
+        assertTrue(spans.contains("\"name\":\"http get\""));
+        assertTrue(spans.contains("\"name\":\"query\""));
+        assertTrue(spans.contains("\"service.name\""));
+    }
+
+    private static HttpServer iniciarPacienteSimulado() {
+        try {
+            HttpServer servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            servidor.createContext("/pacientes", troca -> {
+                String traceparent = troca.getRequestHeaders().getFirst("traceparent");
+                // Only the balance read: the points outbox delivers its batch asynchronously, in its own trace
+                if (traceparent != null && "GET".equals(troca.getRequestMethod())) {
+                    TRACEPARENTS_RECEBIDOS.add(traceparent);
+                }
+                byte[] corpo = "{\"saldoAtual\":50}".getBytes(StandardCharsets.UTF_8);
+                troca.getResponseHeaders().add("Content-Type", "application/json");
+                troca.sendResponseHeaders(200, corpo.length);
+                try (OutputStream saida = troca.getResponseBody()) {
+                    saida.write(corpo);
+                }
+            });
+            servidor.start();
+            return servidor;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package br.edu.ufpr.hospital.consulta.service;
+
+import br.edu.ufpr.hospital.consulta.dto.AgendamentoDTO;
+import br.edu.ufpr.hospital.consulta.dto.ConsultaResponseDTO;
+import br.edu.ufpr.hospital.consulta.model.Consulta;
+import br.edu.ufpr.hospital.consulta.repository.AgendamentoRepository;
+import br.edu.ufpr.hospital.consulta.repository.ConsultaRepository;
+import br.edu.ufpr.hospital.consulta.repository.OutboxPontosRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks read-replica routing with two H2 databases: read-only transactions are
+ * served by the replica, writes and booking pre-checks by the primary, and a
+ * patient who just booked reads their own bookings from the primary while the
+ * replica has not caught up. Replication is simulated by copying the primary
+ * into the replica (H2 SCRIPT) when the test says so
+ */
+@SpringBootTest(properties = {
+        "outbox.pontos.intervalo-ms=3600000",
+        "consulta.datasource.replica.jdbc-url=jdbc:h2:mem:replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "consulta.datasource.replica.username=sa"
+})
+class ReplicaLeituraTest {
+
+    @Autowired
+    private ConsultaService consultaService;
+
+    @Autowired
+    private AgendamentoReativoService agendamentoReativoService;
+
+    @Autowired
+    private LeituraPropriaService leituraPropria;
+
+    @Autowired
+    private IndiceDisponibilidadeService indiceDisponibilidade;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private AgendamentoRepository agendamentoRepository;
+
+    @Autowired
+    private OutboxPontosRepository outboxRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("dataSourcePrimario")
+    private DataSource primario;
+
+    @Autowired
+    @Qualifier("dataSourceReplica")
+    private DataSource replica;
+
+    @MockitoBean
+    private PacienteIntegrationService pacienteIntegrationService;
+
+    private Consulta consulta;
+
+    @BeforeEach
+    void preparar() {
+        replicar();
+        // Written to the primary only: the replica is "lagging" until the next replicar()
+        consulta = consultaRepository.save(new Consulta("REPLICA1", LocalDateTime.now().plusDays(4), "CARD",
+                "Dr. Réplica", new BigDecimal("200.00"), 3));
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @AfterEach
+    void limpar() {
+        outboxRepository.deleteAll();
+        agendamentoRepository.deleteAll();
+        consultaRepository.deleteAll();
+        indiceDisponibilidade.reconstruir();
+    }
+
+    @Test
+    void transacoesSomenteLeituraVaoParaAReplica() {
+        double antes = conexoesReplica();
+
+        assertFalse(contemConsulta(consultaService.buscarConsultasPaginadas(null, 100).getItens()));
+        assertTrue(conexoesReplica() > antes);
+
+        replicar();
+        assertTrue(contemConsulta(consultaService.buscarConsultasPaginadas(null, 100).getItens()));
+    }
+
+    @Test
+    void pacienteLeOProprioAgendamentoAntesDaReplicacao() {
+        // The pre-checks read the primary, or the not yet replicated consultation would not be found
+        agendamentoReativoService.agendarConsulta(consulta.getId(), new AgendamentoDTO(), 9101, "Bearer teste")
+                .block();
+
+        assertTrue(leituraPropria.escreveuRecentemente(9101));
+        assertEquals(1, leituraPropria.ler(9101, () -> consultaService.listarAgendamentosPaciente(9101)).size());
+        // Plain read-only access still goes to the lagging replica
+        assertTrue(consultaService.listarAgendamentosPaciente(9101).isEmpty());
+
+        assertFalse(leituraPropria.escreveuRecentemente(9102));
+        replicar();
+        assertEquals(1, consultaService.listarAgendamentosPaciente(9101).size());
+    }
+
+    private boolean contemConsulta(List<ConsultaResponseDTO> consultas) {
+        return consultas.stream().anyMatch(c -> c.getId().equals(consulta.getId()));
+    }
+
+    private double conexoesReplica() {
+        return meterRegistry.get("consulta.datasource.conexoes").tag("destino", "replica").counter().count();
+    }
+
+    private void replicar() {
+        List<String> script = new JdbcTemplate(primario).queryForList("SCRIPT", String.class);
+        JdbcTemplate destino = new JdbcTemplate(replica);
+        destino.execute("DROP ALL OBJECTS");
+        script.forEach(destino::execute);
+    }
+}
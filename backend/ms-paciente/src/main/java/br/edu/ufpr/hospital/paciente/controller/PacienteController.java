@@ -1,6 +1,7 @@
 package br.edu.ufpr.hospital.paciente.controller;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
 
 import org.springframework.http.HttpStatus;
@@ -22,8 +23,10 @@ import org.springframework.web.bind.annotation.RestController;
 import br.edu.ufpr.hospital.paciente.dto.AdicaoPontosDTO;
 import br.edu.ufpr.hospital.paciente.dto.CompraPontosDTO;
 import br.edu.ufpr.hospital.paciente.dto.DeducaoPontosDTO;
+import br.edu.ufpr.hospital.paciente.dto.OperacaoPontosDTO;
 import br.edu.ufpr.hospital.paciente.dto.PacienteCadastroDTO;
 import br.edu.ufpr.hospital.paciente.dto.PacienteResponseDTO;
+import br.edu.ufpr.hospital.paciente.dto.ResultadoOperacaoPontosDTO;
 import br.edu.ufpr.hospital.paciente.dto.SaldoPontosDTO;
 import br.edu.ufpr.hospital.paciente.model.OrigemTransacaoPonto;
 import br.edu.ufpr.hospital.paciente.service.PacienteService;
@@ -80,6 +83,22 @@ public class PacienteController {
         return ResponseEntity.ok(saldoDTO);
     }
 
+    @PreAuthorize("hasAnyAuthority('PACIENTE', 'FUNCIONARIO')")
+    @GetMapping("/{pacienteId}/saldo")
+    public ResponseEntity<SaldoPontosDTO> consultarSaldo(
+            @PathVariable Integer pacienteId,
+            @AuthenticationPrincipal Jwt jwt) {
+
+        String userRole = jwt.getClaim("tipo");
+        if ("PACIENTE".equals(userRole)) {
+            if (!pacienteService.pacientePertenceAoUsuario(pacienteId, jwt)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+        }
+
+        return ResponseEntity.ok(pacienteService.consultarSaldo(pacienteId));
+    }
+
     // Endpoint para comunicação entre microsserviços - buscar paciente por CPF
     @GetMapping("/by-cpf/{cpf}")
     public ResponseEntity<PacienteResponseDTO> buscarPacientePorCpf(@PathVariable String cpf) {
@@ -111,6 +130,15 @@ public class PacienteController {
         return ResponseEntity.ok().build();
     }
 
+    // Débitos e créditos de pontos em lote, idempotentes por chave - usado pelo
+    // relay do MS Consulta (uso de pontos em agendamentos e estornos)
+    @PreAuthorize("hasAnyAuthority('FUNCIONARIO', 'SERVICO')")
+    @PutMapping("/pontos/lote")
+    public ResponseEntity<List<ResultadoOperacaoPontosDTO>> processarOperacoesEmLote(
+            @Valid @RequestBody List<@Valid OperacaoPontosDTO> operacoes) {
+        return ResponseEntity.ok(pacienteService.processarOperacoesEmLote(operacoes));
+    }
+
     // Endpoint para buscar detalhes de um paciente específico (para dashboard)
     @PreAuthorize("hasAnyAuthority('PACIENTE', 'FUNCIONARIO')")
     @GetMapping("/{pacienteId}")
@@ -0,0 +1,80 @@
+package br.edu.ufpr.hospital.paciente.dto;
+
+import java.math.BigDecimal;
+
+import br.edu.ufpr.hospital.paciente.model.OrigemTransacaoPonto;
+import br.edu.ufpr.hospital.paciente.model.TipoTransacaoPonto;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Item de uma operação de pontos em lote (débito ou crédito) enviada pelo MS Consulta.
+ * A chave de idempotência identifica a operação: reenvios com a mesma chave não são
+ * aplicados de novo.
+ */
+public class OperacaoPontosDTO {
+  @NotBlank
+  @Size(max = 100)
+  private String chaveIdempotencia;
+  @NotNull
+  private Integer pacienteId;
+  @NotNull
+  private TipoTransacaoPonto tipo;
+  @NotNull
+  @Positive
+  private BigDecimal pontos;
+  @NotBlank
+  private String descricao;
+  private OrigemTransacaoPonto origem;
+
+  // Getters e Setters
+  public String getChaveIdempotencia() {
+    return chaveIdempotencia;
+  }
+
+  public void setChaveIdempotencia(String chaveIdempotencia) {
+    this.chaveIdempotencia = chaveIdempotencia;
+  }
+
+  public Integer getPacienteId() {
+    return pacienteId;
+  }
+
+  public void setPacienteId(Integer pacienteId) {
+    this.pacienteId = pacienteId;
+  }
+
+  public TipoTransacaoPonto getTipo() {
+    return tipo;
+  }
+
+  public void setTipo(TipoTransacaoPonto tipo) {
+    this.tipo = tipo;
+  }
+
+  public BigDecimal getPontos() {
+    return pontos;
+  }
+
+  public void setPontos(BigDecimal pontos) {
+    this.pontos = pontos;
+  }
+
+  public String getDescricao() {
+    return descricao;
+  }
+
+  public void setDescricao(String descricao) {
+    this.descricao = descricao;
+  }
+
+  public OrigemTransacaoPonto getOrigem() {
+    return origem;
+  }
+
+  public void setOrigem(OrigemTransacaoPonto origem) {
+    this.origem = origem;
+  }
+}
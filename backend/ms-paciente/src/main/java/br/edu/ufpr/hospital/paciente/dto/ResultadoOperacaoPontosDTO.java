@@ -0,0 +1,55 @@
+package br.edu.ufpr.hospital.paciente.dto;
+
+/**
+ * Resultado de um item de uma operação de pontos em lote.
+ */
+public class ResultadoOperacaoPontosDTO {
+  private String chaveIdempotencia;
+  private Integer pacienteId;
+  private boolean sucesso;
+  private String mensagem;
+
+  public ResultadoOperacaoPontosDTO() {
+  }
+
+  public ResultadoOperacaoPontosDTO(String chaveIdempotencia, Integer pacienteId, boolean sucesso,
+      String mensagem) {
+    this.chaveIdempotencia = chaveIdempotencia;
+    this.pacienteId = pacienteId;
+    this.sucesso = sucesso;
+    this.mensagem = mensagem;
+  }
+
+  // Getters e Setters
+  public String getChaveIdempotencia() {
+    return chaveIdempotencia;
+  }
+
+  public void setChaveIdempotencia(String chaveIdempotencia) {
+    this.chaveIdempotencia = chaveIdempotencia;
+  }
+
+  public Integer getPacienteId() {
+    return pacienteId;
+  }
+
+  public void setPacienteId(Integer pacienteId) {
+    this.pacienteId = pacienteId;
+  }
+
+  public boolean isSucesso() {
+    return sucesso;
+  }
+
+  public void setSucesso(boolean sucesso) {
+    this.sucesso = sucesso;
+  }
+
+  public String getMensagem() {
+    return mensagem;
+  }
+
+  public void setMensagem(String mensagem) {
+    this.mensagem = mensagem;
+  }
+}
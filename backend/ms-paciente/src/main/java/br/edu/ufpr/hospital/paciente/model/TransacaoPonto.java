@@ -54,6 +54,9 @@ public class TransacaoPonto {
     @Column(nullable = false)
     private String descricao;
 
+    @Column(name = "chave_idempotencia", unique = true, length = 100)
+    private String chaveIdempotencia; // Definida pelo MS Consulta em operações em lote
+
     @PrePersist
     protected void onCreate() {
         this.dataHora = LocalDateTime.now();
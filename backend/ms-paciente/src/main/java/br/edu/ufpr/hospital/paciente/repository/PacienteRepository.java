@@ -4,8 +4,12 @@ import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import br.edu.ufpr.hospital.paciente.model.Paciente;
+import jakarta.persistence.LockModeType;
 
 public interface PacienteRepository extends JpaRepository<Paciente, Integer> {
     Optional<Paciente> findByCpf(String cpf);
@@ -15,4 +19,13 @@ public interface PacienteRepository extends JpaRepository<Paciente, Integer> {
     boolean existsByCpf(String cpf);
 
     boolean existsByEmail(String email);
+
+    /**
+     * Busca o paciente com bloqueio de escrita (SELECT ... FOR UPDATE) até o fim da
+     * transação. Usado em toda alteração de saldo, para que operações simultâneas
+     * sobre o mesmo paciente sejam aplicadas uma após a outra.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Paciente p WHERE p.id = :id")
+    Optional<Paciente> findByIdParaAtualizacao(@Param("id") Integer id);
 }
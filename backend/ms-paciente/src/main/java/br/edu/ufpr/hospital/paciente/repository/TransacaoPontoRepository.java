@@ -13,6 +13,8 @@ import br.edu.ufpr.hospital.paciente.model.TransacaoPonto;
 public interface TransacaoPontoRepository extends JpaRepository<TransacaoPonto, Integer> {
     List<TransacaoPonto> findByPacienteIdOrderByDataHoraDesc(Integer pacienteId);
 
+    boolean existsByChaveIdempotencia(String chaveIdempotencia);
+
     /**
      * Calcula o saldo de pontos de um paciente somando todas as transações.
      * Transações de ENTRADA são somadas e as de SAIDA são subtraídas.
@@ -2,6 +2,7 @@ package br.edu.ufpr.hospital.paciente.service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -10,8 +11,10 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 
 import br.edu.ufpr.hospital.paciente.dto.CompraPontosDTO;
+import br.edu.ufpr.hospital.paciente.dto.OperacaoPontosDTO;
 import br.edu.ufpr.hospital.paciente.dto.PacienteCadastroDTO;
 import br.edu.ufpr.hospital.paciente.dto.PacienteResponseDTO;
+import br.edu.ufpr.hospital.paciente.dto.ResultadoOperacaoPontosDTO;
 import br.edu.ufpr.hospital.paciente.dto.SaldoPontosDTO;
 import br.edu.ufpr.hospital.paciente.dto.TransacaoPontoDTO;
 import br.edu.ufpr.hospital.paciente.exception.NegocioException;
@@ -73,7 +76,7 @@ public class PacienteService {
 
     @Transactional
     public PacienteResponseDTO comprarPontos(Integer pacienteId, CompraPontosDTO dto) {
-        Paciente paciente = pacienteRepository.findById(pacienteId)
+        Paciente paciente = pacienteRepository.findByIdParaAtualizacao(pacienteId)
                 .orElseThrow(() -> new PacienteNaoEncontradoException("Paciente não encontrado."));
 
         if (dto.getValorReais().compareTo(BigDecimal.ZERO) <= 0) {
@@ -103,6 +106,16 @@ public class PacienteService {
         return convertToResponseDTO(updatedPaciente);
     }
 
+    // Apenas o saldo, sem carregar o histórico (usado pelo ms-consulta ao agendar)
+    public SaldoPontosDTO consultarSaldo(Integer pacienteId) {
+        Paciente paciente = pacienteRepository.findById(pacienteId)
+                .orElseThrow(() -> new PacienteNaoEncontradoException("Paciente não encontrado."));
+
+        SaldoPontosDTO saldoDTO = new SaldoPontosDTO();
+        saldoDTO.setSaldoAtual(paciente.getSaldoPontos());
+        return saldoDTO;
+    }
+
     public SaldoPontosDTO consultarSaldoEHistorico(Integer pacienteId) {
         Paciente paciente = pacienteRepository.findById(pacienteId)
                 .orElseThrow(() -> new PacienteNaoEncontradoException("Paciente não encontrado."));
@@ -121,11 +134,75 @@ public class PacienteService {
 
     @Transactional
     public PacienteResponseDTO deduzirPontos(Integer pacienteId, BigDecimal pontosADeduzir, String descricao) {
+        return debitar(pacienteId, pontosADeduzir, descricao, OrigemTransacaoPonto.USO_CONSULTA, null);
+    }
+
+    @Transactional
+    public PacienteResponseDTO adicionarPontos(Integer pacienteId, BigDecimal pontosAAdicionar, String descricao,
+            OrigemTransacaoPonto origem) {
+        return creditar(pacienteId, pontosAAdicionar, descricao,
+                origem != null ? origem : OrigemTransacaoPonto.COMPRA, null);
+    }
+
+    /**
+     * Aplica débitos e créditos de pontos de vários pacientes em uma única transação,
+     * na ordem recebida. Operações cuja chave de idempotência já foi aplicada são
+     * reconhecidas sem alterar o saldo, de modo que reenvios são seguros.
+     * Itens recusados (paciente inexistente, saldo insuficiente) são reportados
+     * individualmente sem impedir a aplicação dos demais.
+     * <p>
+     * Os pacientes do lote são bloqueados antes de qualquer alteração, em ordem
+     * crescente de id: lotes simultâneos com pacientes em comum (o relay envia lotes
+     * em paralelo e pode rodar em várias réplicas) esperam um pelo outro sem risco
+     * de deadlock. Como cada chave pertence a um único paciente, a verificação da
+     * chave feita depois do bloqueio já enxerga o que o outro lote gravou, e o
+     * reenvio simultâneo da mesma operação não chega a violar a constraint única.
+     */
+    @Transactional
+    public List<ResultadoOperacaoPontosDTO> processarOperacoesEmLote(List<OperacaoPontosDTO> operacoes) {
+        operacoes.stream()
+                .map(OperacaoPontosDTO::getPacienteId)
+                .distinct()
+                .sorted()
+                .forEach(pacienteRepository::findByIdParaAtualizacao);
+
+        List<ResultadoOperacaoPontosDTO> resultados = new ArrayList<>(operacoes.size());
+        for (OperacaoPontosDTO operacao : operacoes) {
+            String chave = operacao.getChaveIdempotencia();
+            if (transacaoPontoRepository.existsByChaveIdempotencia(chave)) {
+                resultados.add(new ResultadoOperacaoPontosDTO(chave, operacao.getPacienteId(), true,
+                        "Operação já aplicada anteriormente."));
+                continue;
+            }
+            try {
+                if (operacao.getTipo() == TipoTransacaoPonto.SAIDA) {
+                    debitar(operacao.getPacienteId(), operacao.getPontos(), operacao.getDescricao(),
+                            operacao.getOrigem() != null ? operacao.getOrigem() : OrigemTransacaoPonto.USO_CONSULTA,
+                            chave);
+                } else {
+                    creditar(operacao.getPacienteId(), operacao.getPontos(), operacao.getDescricao(),
+                            operacao.getOrigem() != null ? operacao.getOrigem() : OrigemTransacaoPonto.COMPRA,
+                            chave);
+                }
+                resultados.add(new ResultadoOperacaoPontosDTO(chave, operacao.getPacienteId(), true, null));
+            } catch (NegocioException | PacienteNaoEncontradoException e) {
+                log.warn("Operação de pontos {} recusada para paciente {}: {}", chave, operacao.getPacienteId(),
+                        e.getMessage());
+                resultados.add(new ResultadoOperacaoPontosDTO(chave, operacao.getPacienteId(), false,
+                        e.getMessage()));
+            }
+        }
+        log.info("Operações de pontos em lote processadas: {} itens", operacoes.size());
+        return resultados;
+    }
+
+    private PacienteResponseDTO debitar(Integer pacienteId, BigDecimal pontosADeduzir, String descricao,
+            OrigemTransacaoPonto origem, String chaveIdempotencia) {
         if (pontosADeduzir.compareTo(BigDecimal.ZERO) <= 0) {
             throw new NegocioException("A quantidade de pontos a deduzir deve ser positiva.");
         }
 
-        Paciente paciente = pacienteRepository.findById(pacienteId)
+        Paciente paciente = pacienteRepository.findByIdParaAtualizacao(pacienteId)
                 .orElseThrow(() -> new PacienteNaoEncontradoException("Paciente não encontrado."));
 
         if (paciente.getSaldoPontos().compareTo(pontosADeduzir) < 0) {
@@ -135,40 +212,41 @@ public class PacienteService {
         paciente.setSaldoPontos(paciente.getSaldoPontos().subtract(pontosADeduzir));
         Paciente updatedPaciente = pacienteRepository.save(paciente);
 
-        TransacaoPonto transacao = new TransacaoPonto();
-        transacao.setPaciente(updatedPaciente);
-        transacao.setTipo(TipoTransacaoPonto.SAIDA);
-        transacao.setOrigem(OrigemTransacaoPonto.USO_CONSULTA); // Ou outra origem específica se for o caso
-        transacao.setQuantidadePontos(pontosADeduzir);
-        transacao.setDescricao(descricao);
-        transacaoPontoRepository.save(transacao);
+        registrarTransacao(updatedPaciente, TipoTransacaoPonto.SAIDA, origem, pontosADeduzir, descricao,
+                chaveIdempotencia);
 
         return convertToResponseDTO(updatedPaciente);
     }
 
-    @Transactional
-    public PacienteResponseDTO adicionarPontos(Integer pacienteId, BigDecimal pontosAAdicionar, String descricao,
-            OrigemTransacaoPonto origem) {
+    private PacienteResponseDTO creditar(Integer pacienteId, BigDecimal pontosAAdicionar, String descricao,
+            OrigemTransacaoPonto origem, String chaveIdempotencia) {
         if (pontosAAdicionar.compareTo(BigDecimal.ZERO) <= 0) {
             throw new NegocioException("A quantidade de pontos a adicionar deve ser positiva.");
         }
 
-        Paciente paciente = pacienteRepository.findById(pacienteId)
+        Paciente paciente = pacienteRepository.findByIdParaAtualizacao(pacienteId)
                 .orElseThrow(() -> new PacienteNaoEncontradoException("Paciente não encontrado."));
 
         paciente.setSaldoPontos(paciente.getSaldoPontos().add(pontosAAdicionar));
 
         Paciente updatedPaciente = pacienteRepository.save(paciente);
 
+        registrarTransacao(updatedPaciente, TipoTransacaoPonto.ENTRADA, origem, pontosAAdicionar, descricao,
+                chaveIdempotencia);
+
+        return convertToResponseDTO(updatedPaciente);
+    }
+
+    private void registrarTransacao(Paciente paciente, TipoTransacaoPonto tipo, OrigemTransacaoPonto origem,
+            BigDecimal pontos, String descricao, String chaveIdempotencia) {
         TransacaoPonto transacao = new TransacaoPonto();
-        transacao.setPaciente(updatedPaciente);
-        transacao.setTipo(TipoTransacaoPonto.ENTRADA);
-        transacao.setOrigem(OrigemTransacaoPonto.COMPRA); // Ou outra origem específica se
-        transacao.setQuantidadePontos(pontosAAdicionar);
+        transacao.setPaciente(paciente);
+        transacao.setTipo(tipo);
+        transacao.setOrigem(origem);
+        transacao.setQuantidadePontos(pontos);
         transacao.setDescricao(descricao);
+        transacao.setChaveIdempotencia(chaveIdempotencia);
         transacaoPontoRepository.save(transacao);
-
-        return convertToResponseDTO(updatedPaciente);
     }
 
     public boolean pacientePertenceAoUsuario(Integer pacienteId, Jwt jwt) {
@@ -0,0 +1,198 @@
+package br.edu.ufpr.hospital.paciente.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import br.edu.ufpr.hospital.paciente.dto.OperacaoPontosDTO;
+import br.edu.ufpr.hospital.paciente.model.OrigemTransacaoPonto;
+import br.edu.ufpr.hospital.paciente.model.Paciente;
+import br.edu.ufpr.hospital.paciente.model.TipoTransacaoPonto;
+import br.edu.ufpr.hospital.paciente.repository.PacienteRepository;
+import br.edu.ufpr.hospital.paciente.repository.TransacaoPontoRepository;
+
+/**
+ * Operações de pontos em lote (PUT /pacientes/pontos/lote): idempotência por chave
+ * e saldo consistente quando lotes do mesmo paciente chegam ao mesmo tempo.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class PacienteServiceTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PacienteService pacienteService;
+
+    @Autowired
+    private PacienteRepository pacienteRepository;
+
+    @Autowired
+    private TransacaoPontoRepository transacaoPontoRepository;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private final AtomicInteger sequencia = new AtomicInteger();
+
+    @AfterEach
+    void limpar() {
+        transacaoPontoRepository.deleteAll();
+        pacienteRepository.deleteAll();
+    }
+
+    @Test
+    void loteAplicaOperacoesEReconheceChaveRepetida() throws Exception {
+        Paciente paciente = novoPaciente(new BigDecimal("10"));
+        String corpo = """
+                [
+                  {"chaveIdempotencia": "AGD000001:SAIDA", "pacienteId": %1$d, "tipo": "SAIDA",
+                   "pontos": 4, "descricao": "USO EM CONSULTA", "origem": "USO_CONSULTA"},
+                  {"chaveIdempotencia": "AGD000002:SAIDA", "pacienteId": %1$d, "tipo": "SAIDA",
+                   "pontos": 50, "descricao": "USO EM CONSULTA", "origem": "USO_CONSULTA"}
+                ]
+                """.formatted(paciente.getId());
+
+        for (int envio = 0; envio < 2; envio++) {
+            mockMvc.perform(put("/pacientes/pontos/lote")
+                    .header("Authorization", "Bearer " + tokenServico())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(corpo))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].sucesso").value(true))
+                    .andExpect(jsonPath("$[1].sucesso").value(false))
+                    .andExpect(jsonPath("$[1].mensagem").value("Saldo de pontos insuficiente."));
+        }
+
+        assertSaldo(paciente, "6");
+        assertEquals(1, transacaoPontoRepository.findByPacienteIdOrderByDataHoraDesc(paciente.getId()).size());
+    }
+
+    @Test
+    void lotesSimultaneosNaoUltrapassamOSaldo() throws Exception {
+        Paciente paciente = novoPaciente(new BigDecimal("5"));
+
+        List<Callable<Boolean>> lotes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String chave = "AGD1000" + i + ":SAIDA";
+            lotes.add(() -> pacienteService.processarOperacoesEmLote(List.of(
+                    operacao(chave, paciente, TipoTransacaoPonto.SAIDA, "1"))).get(0).isSucesso());
+        }
+
+        long aplicados = executarJuntos(lotes).stream().filter(Boolean::booleanValue).count();
+
+        assertEquals(5, aplicados);
+        assertSaldo(paciente, "0");
+    }
+
+    @Test
+    void reenvioSimultaneoDaMesmaChaveAplicaUmaVez() throws Exception {
+        Paciente paciente = novoPaciente(BigDecimal.ZERO);
+
+        List<Callable<Boolean>> lotes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            lotes.add(() -> pacienteService.processarOperacoesEmLote(List.of(
+                    operacao("AGD200001:ENTRADA", paciente, TipoTransacaoPonto.ENTRADA, "3"))).get(0).isSucesso());
+        }
+
+        assertTrue(executarJuntos(lotes).stream().allMatch(Boolean::booleanValue));
+        assertSaldo(paciente, "3");
+        assertEquals(1, transacaoPontoRepository.findByPacienteIdOrderByDataHoraDesc(paciente.getId()).size());
+    }
+
+    private Paciente novoPaciente(BigDecimal saldo) {
+        int n = sequencia.incrementAndGet();
+        Paciente paciente = new Paciente();
+        paciente.setUsuarioId(n);
+        paciente.setCpf(String.format("%011d", 90000000000L + n));
+        paciente.setNome("Paciente Lote " + n);
+        paciente.setEmail("lote" + n + "@teste.com");
+        paciente.setCep("80000000");
+        paciente.setLogradouro("Rua Teste");
+        paciente.setBairro("Centro");
+        paciente.setCidade("Curitiba");
+        paciente.setUf("PR");
+        paciente.setSaldoPontos(saldo);
+        return pacienteRepository.save(paciente);
+    }
+
+    private static OperacaoPontosDTO operacao(String chave, Paciente paciente, TipoTransacaoPonto tipo,
+            String pontos) {
+        OperacaoPontosDTO operacao = new OperacaoPontosDTO();
+        operacao.setChaveIdempotencia(chave);
+        operacao.setPacienteId(paciente.getId());
+        operacao.setTipo(tipo);
+        operacao.setPontos(new BigDecimal(pontos));
+        operacao.setDescricao("TESTE");
+        operacao.setOrigem(tipo == TipoTransacaoPonto.SAIDA ? OrigemTransacaoPonto.USO_CONSULTA
+                : OrigemTransacaoPonto.CANCELAMENTO_CONSULTA);
+        return operacao;
+    }
+
+    private static <T> List<T> executarJuntos(List<Callable<T>> tarefas) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tarefas.size());
+        CountDownLatch largada = new CountDownLatch(1);
+        try {
+            List<Future<T>> futuros = new ArrayList<>();
+            for (Callable<T> tarefa : tarefas) {
+                futuros.add(executor.submit(() -> {
+                    largada.await();
+                    return tarefa.call();
+                }));
+            }
+            largada.countDown();
+            List<T> resultados = new ArrayList<>();
+            for (Future<T> futuro : futuros) {
+                resultados.add(futuro.get(30, TimeUnit.SECONDS));
+            }
+            return resultados;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertSaldo(Paciente paciente, String esperado) {
+        BigDecimal saldo = pacienteRepository.findById(paciente.getId()).orElseThrow().getSaldoPontos();
+        assertEquals(0, new BigDecimal(esperado).compareTo(saldo), "saldo atual: " + saldo);
+    }
+
+    private String tokenServico() throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("ms-consulta")
+                .claim("tipo", "SERVICO")
+                .expirationTime(new java.util.Date(System.currentTimeMillis() + 60_000))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        jwt.sign(new MACSigner(jwtSecret.getBytes()));
+        return jwt.serialize();
+    }
+}